@@ -0,0 +1,71 @@
+package com.neuroviz.dsp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Scalar against vector kernels on one Welch segment
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class NumericKernelsBenchmark {
+
+    @Param({"scalar", "vector"})
+    public String kernels;
+
+    @Param({"1024"})
+    public int length;
+
+    private NumericKernels impl;
+    private double[] x;
+    private double[] y;
+    private double[] window;
+    private double[] out;
+    private double[] frequencies;
+
+    @Setup
+    public void setUp() {
+        impl = "vector".equals(kernels) ? new VectorKernels() : new ScalarKernels();
+        Random random = new Random(1);
+        x = new double[length];
+        y = new double[length];
+        out = new double[length];
+        frequencies = new double[length];
+        for (int i = 0; i < length; i++) {
+            x[i] = random.nextGaussian();
+            y[i] = random.nextGaussian();
+            frequencies[i] = i * 250.0 / length;
+        }
+        window = Windows.hann(length);
+    }
+
+    @Benchmark
+    public double sum() {
+        return impl.sum(x, 0, length);
+    }
+
+    @Benchmark
+    public double[] subtractMultiply() {
+        impl.subtractMultiply(x, 0.5, window, out, length);
+        return out;
+    }
+
+    @Benchmark
+    public double[] accumulateSquaredMagnitude() {
+        impl.accumulateSquaredMagnitude(x, y, out, length);
+        return out;
+    }
+
+    @Benchmark
+    public double trapezoid() {
+        return impl.trapezoid(frequencies, y, 0, length - 1);
+    }
+}
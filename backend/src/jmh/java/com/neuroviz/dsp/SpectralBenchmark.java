@@ -0,0 +1,56 @@
+package com.neuroviz.dsp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Welch estimate and band powers of a 10-minute 250 Hz channel. The kernels are picked once
+// per JVM, so the scalar variants run in a fork that forces them.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SpectralBenchmark {
+
+    private double[] channel;
+    private PowerSpectrum spectrum;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        channel = new double[250 * 600];
+        for (int i = 0; i < channel.length; i++) {
+            channel[i] = 20 * Math.sin(2 * Math.PI * 10 * i / 250.0) + random.nextGaussian();
+        }
+        spectrum = WelchPsd.estimate(channel, 250);
+    }
+
+    @Benchmark
+    @Fork(jvmArgsAppend = "-Dneuroviz.kernels=scalar")
+    public PowerSpectrum welchScalar() {
+        return WelchPsd.estimate(channel, 250);
+    }
+
+    @Benchmark
+    public PowerSpectrum welchVector() {
+        return WelchPsd.estimate(channel, 250);
+    }
+
+    @Benchmark
+    @Fork(jvmArgsAppend = "-Dneuroviz.kernels=scalar")
+    public Object bandPowerScalar() {
+        return BandPower.of(spectrum);
+    }
+
+    @Benchmark
+    public Object bandPowerVector() {
+        return BandPower.of(spectrum);
+    }
+}
@@ -0,0 +1,123 @@
+package com.neuroviz.ingest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Ingest of a 64 MB, 32-channel CSV file by the single-threaded scanner and by the parallel
+// parser at increasing core counts; MB/s is the file size over the reported time
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CsvParseBenchmark {
+
+    @Param({"64"})
+    public int sizeMb;
+
+    @Param({"32"})
+    public int channels;
+
+    private Path file;
+
+    @State(Scope.Benchmark)
+    public static class Pool {
+        @Param({"1", "2", "4", "8"})
+        public int parallelism;
+
+        private ForkJoinPool pool;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            pool = new ForkJoinPool(parallelism);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("neuroviz-bench", ".csv");
+        writeCsv(file, sizeMb * 1024L * 1024L, channels);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public double streamScanner() throws IOException {
+        ChecksumSink sink = new ChecksumSink();
+        try (InputStream in = Files.newInputStream(file)) {
+            new CsvStreamScanner().scan(in, null, sink);
+        }
+        return sink.sum;
+    }
+
+    @Benchmark
+    public double parallelParser(Pool pool) throws IOException {
+        ChecksumSink sink = new ChecksumSink();
+        new ParallelCsvParser(pool.pool).parse(file, sink);
+        return sink.sum;
+    }
+
+    private static void writeCsv(Path file, long bytes, int channels) throws IOException {
+        Random random = new Random(42);
+        double[] values = new double[channels];
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            for (int c = 0; c < channels; c++) {
+                out.write(c == 0 ? "" : ",");
+                out.write("ch" + (c + 1));
+            }
+            out.write('\n');
+            long written = 0;
+            StringBuilder row = new StringBuilder();
+            while (written < bytes) {
+                row.setLength(0);
+                for (int c = 0; c < channels; c++) {
+                    values[c] += random.nextGaussian();
+                    if (c > 0) row.append(',');
+                    row.append(String.format(Locale.ROOT, "%.6f", values[c]));
+                }
+                row.append('\n');
+                out.write(row.toString());
+                written += row.length();
+            }
+        }
+    }
+
+    // Consumes every value so the parse cannot be optimised away
+    private static final class ChecksumSink implements SampleSink {
+        private double sum;
+
+        @Override
+        public void start(List<String> channelNames) {
+        }
+
+        @Override
+        public void accept(int channel, double value) {
+            if (!Double.isNaN(value)) sum += value;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.neuroviz.classify;
+
+// A trained model evaluated on standardized features. Implementations are immutable and
+// thread-safe, and allocate nothing per call.
+public interface ClassifierModel {
+
+    int getClassCount();
+
+    int getFeatureCount();
+
+    // Class probabilities of one feature vector, written to probabilities[0, getClassCount())
+    void predictProba(double[] features, double[] probabilities);
+}
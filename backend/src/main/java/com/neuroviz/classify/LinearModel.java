@@ -0,0 +1,70 @@
+package com.neuroviz.classify;
+
+// Logistic regression as scikit-learn evaluates it: one coefficient row per class with a
+// softmax over the decision values, or a single row for two classes whose sigmoid is the
+// probability of the second class.
+public final class LinearModel implements ClassifierModel {
+
+    private final int classes;
+    private final int features;
+    // Row-major, one row of features per decision value
+    private final double[] coefficients;
+    private final double[] intercepts;
+
+    public LinearModel(int classes, int features, double[] coefficients, double[] intercepts) {
+        int rows = classes == 2 ? intercepts.length : classes;
+        if (intercepts.length != rows || (rows != classes && rows != 1)) {
+            throw new IllegalArgumentException("Expected " + classes + " intercepts, got " + intercepts.length);
+        }
+        if (coefficients.length != rows * features) {
+            throw new IllegalArgumentException("Expected " + rows * features + " coefficients, got "
+                    + coefficients.length);
+        }
+        this.classes = classes;
+        this.features = features;
+        this.coefficients = coefficients;
+        this.intercepts = intercepts;
+    }
+
+    @Override
+    public int getClassCount() {
+        return classes;
+    }
+
+    @Override
+    public int getFeatureCount() {
+        return features;
+    }
+
+    @Override
+    public void predictProba(double[] x, double[] probabilities) {
+        if (intercepts.length == 1) {
+            double p = 1 / (1 + Math.exp(-decision(x, 0)));
+            probabilities[0] = 1 - p;
+            probabilities[1] = p;
+            return;
+        }
+        double max = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < classes; c++) {
+            probabilities[c] = decision(x, c);
+            max = Math.max(max, probabilities[c]);
+        }
+        double sum = 0;
+        for (int c = 0; c < classes; c++) {
+            probabilities[c] = Math.exp(probabilities[c] - max);
+            sum += probabilities[c];
+        }
+        for (int c = 0; c < classes; c++) {
+            probabilities[c] /= sum;
+        }
+    }
+
+    private double decision(double[] x, int row) {
+        double z = intercepts[row];
+        int base = row * features;
+        for (int f = 0; f < features; f++) {
+            z += coefficients[base + f] * x[f];
+        }
+        return z;
+    }
+}
@@ -0,0 +1,186 @@
+package com.neuroviz.classify;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A classifier exported by the processing service in its portable JSON form: class labels,
+// feature names, the standard scaler fitted with the model, the window length the features
+// describe, and a linear model or a tree ensemble.
+//
+//   {"format": "neuroviz-classifier", "version": 1, "type": "linear" | "tree_ensemble",
+//    "classes": [...], "features": [...], "window_seconds": 2.0,
+//    "scaler": {"mean": [...], "scale": [...]},
+//    "coefficients": [[...], ...], "intercepts": [...],                 linear
+//    "trees": [{"feature": [...], "threshold": [...], "left": [...],     tree_ensemble
+//               "right": [...], "value": [[...], ...]}, ...]}
+//
+// Tree nodes are numbered per tree as scikit-learn numbers them, leaves having a negative
+// feature; leaf values may be class counts or fractions.
+public final class PortableClassifier {
+
+    public static final String FORMAT = "neuroviz-classifier";
+    public static final int VERSION = 1;
+
+    private final List<String> classes;
+    private final List<String> features;
+    private final double windowSeconds;
+    private final double[] mean;
+    private final double[] scale;
+    private final ClassifierModel model;
+
+    public PortableClassifier(List<String> classes, List<String> features, double windowSeconds, double[] mean,
+                              double[] scale, ClassifierModel model) {
+        if (model.getClassCount() != classes.size() || model.getFeatureCount() != features.size()
+                || mean.length != features.size() || scale.length != features.size()) {
+            throw new IllegalArgumentException("Model, scaler and labels disagree on the number of classes or features");
+        }
+        this.classes = List.copyOf(classes);
+        this.features = List.copyOf(features);
+        this.windowSeconds = windowSeconds;
+        this.mean = mean;
+        this.scale = scale;
+        this.model = model;
+    }
+
+    public static PortableClassifier load(Path file, ObjectMapper mapper) throws IOException {
+        JsonNode root = mapper.readTree(file.toFile());
+        if (!FORMAT.equals(root.path("format").asText()) || root.path("version").asInt() != VERSION) {
+            throw new IOException("Unsupported classifier file " + file.getFileName());
+        }
+        List<String> classes = strings(root.path("classes"));
+        List<String> features = strings(root.path("features"));
+        JsonNode scaler = root.path("scaler");
+        double[] mean = scaler.isMissingNode() ? new double[features.size()] : doubles(scaler.path("mean"));
+        double[] scale = scaler.isMissingNode() ? filled(features.size(), 1) : doubles(scaler.path("scale"));
+        double windowSeconds = root.path("window_seconds").asDouble(2.0);
+
+        ClassifierModel model;
+        try {
+            String type = root.path("type").asText();
+            if ("linear".equals(type)) {
+                model = linear(root, classes.size(), features.size());
+            } else if ("tree_ensemble".equals(type)) {
+                model = trees(root.path("trees"), classes.size(), features.size());
+            } else {
+                throw new IOException("Unsupported classifier type '" + type + "' in " + file.getFileName());
+            }
+            return new PortableClassifier(classes, features, windowSeconds, mean, scale, model);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid classifier file " + file.getFileName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    public List<String> getClasses() {
+        return classes;
+    }
+
+    public List<String> getFeatures() {
+        return features;
+    }
+
+    public double getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public ClassifierModel getModel() {
+        return model;
+    }
+
+    // Standardizes features in place, then writes the class probabilities
+    public void predictProba(double[] features, double[] probabilities) {
+        for (int f = 0; f < mean.length; f++) {
+            features[f] = (features[f] - mean[f]) / scale[f];
+        }
+        model.predictProba(features, probabilities);
+    }
+
+    private static LinearModel linear(JsonNode root, int classes, int features) {
+        JsonNode rows = root.path("coefficients");
+        double[] coefficients = new double[rows.size() * features];
+        for (int r = 0; r < rows.size(); r++) {
+            double[] row = doubles(rows.get(r));
+            if (row.length != features) {
+                throw new IllegalArgumentException("Coefficient row " + r + " has " + row.length + " entries");
+            }
+            System.arraycopy(row, 0, coefficients, r * features, features);
+        }
+        return new LinearModel(classes, features, coefficients, doubles(root.path("intercepts")));
+    }
+
+    private static TreeEnsembleModel trees(JsonNode trees, int classes, int features) {
+        if (trees.size() == 0) {
+            throw new IllegalArgumentException("Tree ensemble has no trees");
+        }
+        int nodes = 0;
+        for (JsonNode tree : trees) {
+            nodes += tree.path("feature").size();
+        }
+        int[] roots = new int[trees.size()];
+        int[] feature = new int[nodes];
+        double[] threshold = new double[nodes];
+        int[] left = new int[nodes];
+        int[] right = new int[nodes];
+        double[] values = new double[nodes * classes];
+
+        int base = 0;
+        for (int t = 0; t < trees.size(); t++) {
+            JsonNode tree = trees.get(t);
+            int count = tree.path("feature").size();
+            if (tree.path("threshold").size() != count || tree.path("left").size() != count
+                    || tree.path("right").size() != count || tree.path("value").size() != count) {
+                throw new IllegalArgumentException("Tree " + t + " arrays differ in length");
+            }
+            roots[t] = base;
+            for (int n = 0; n < count; n++) {
+                int split = tree.path("feature").get(n).asInt();
+                feature[base + n] = split < 0 ? -1 : split;
+                threshold[base + n] = tree.path("threshold").get(n).asDouble();
+                left[base + n] = split < 0 ? -1 : base + tree.path("left").get(n).asInt();
+                right[base + n] = split < 0 ? -1 : base + tree.path("right").get(n).asInt();
+
+                JsonNode value = tree.path("value").get(n);
+                if (value.size() != classes) {
+                    throw new IllegalArgumentException("Tree " + t + " node " + n + " has " + value.size()
+                            + " class values");
+                }
+                double total = 0;
+                for (int c = 0; c < classes; c++) {
+                    total += value.get(c).asDouble();
+                }
+                for (int c = 0; c < classes; c++) {
+                    values[(base + n) * classes + c] = total > 0 ? value.get(c).asDouble() / total : 0;
+                }
+            }
+            base += count;
+        }
+        return new TreeEnsembleModel(classes, features, roots, feature, threshold, left, right, values);
+    }
+
+    private static List<String> strings(JsonNode array) {
+        List<String> result = new ArrayList<>(array.size());
+        for (JsonNode node : array) {
+            result.add(node.asText());
+        }
+        return result;
+    }
+
+    private static double[] doubles(JsonNode array) {
+        double[] result = new double[array.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = array.get(i).asDouble();
+        }
+        return result;
+    }
+
+    private static double[] filled(int length, double value) {
+        double[] result = new double[length];
+        Arrays.fill(result, value);
+        return result;
+    }
+}
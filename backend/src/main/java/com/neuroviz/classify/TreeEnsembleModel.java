@@ -0,0 +1,85 @@
+package com.neuroviz.classify;
+
+// A forest of decision trees as scikit-learn's RandomForestClassifier and ExtraTreesClassifier
+// evaluate them: every tree votes with the class fractions of the leaf a sample reaches, and
+// the votes are averaged. The nodes of all trees share flat arrays, so a prediction walks
+// primitive arrays only.
+public final class TreeEnsembleModel implements ClassifierModel {
+
+    private final int classes;
+    private final int features;
+    // Index of each tree's root node
+    private final int[] roots;
+    // Per node: split feature (-1 for leaves), threshold, children as absolute node indices
+    private final int[] feature;
+    private final double[] threshold;
+    private final int[] left;
+    private final int[] right;
+    // Per node, classes entries of leaf class fractions
+    private final double[] values;
+
+    public TreeEnsembleModel(int classes, int features, int[] roots, int[] feature, double[] threshold,
+                             int[] left, int[] right, double[] values) {
+        int nodes = feature.length;
+        if (threshold.length != nodes || left.length != nodes || right.length != nodes
+                || values.length != nodes * classes) {
+            throw new IllegalArgumentException("Tree arrays do not describe the same " + nodes + " nodes");
+        }
+        for (int n = 0; n < nodes; n++) {
+            if (feature[n] >= features) {
+                throw new IllegalArgumentException("Node " + n + " splits on unknown feature " + feature[n]);
+            }
+            if (feature[n] >= 0 && (left[n] <= n || right[n] <= n || left[n] >= nodes || right[n] >= nodes)) {
+                throw new IllegalArgumentException("Node " + n + " has invalid children");
+            }
+        }
+        for (int root : roots) {
+            if (root < 0 || root >= nodes) {
+                throw new IllegalArgumentException("Tree root out of range: " + root);
+            }
+        }
+        this.classes = classes;
+        this.features = features;
+        this.roots = roots;
+        this.feature = feature;
+        this.threshold = threshold;
+        this.left = left;
+        this.right = right;
+        this.values = values;
+    }
+
+    public int getTreeCount() {
+        return roots.length;
+    }
+
+    @Override
+    public int getClassCount() {
+        return classes;
+    }
+
+    @Override
+    public int getFeatureCount() {
+        return features;
+    }
+
+    @Override
+    public void predictProba(double[] x, double[] probabilities) {
+        for (int c = 0; c < classes; c++) {
+            probabilities[c] = 0;
+        }
+        for (int root : roots) {
+            int node = root;
+            while (feature[node] >= 0) {
+                // scikit-learn compares single-precision features with double thresholds
+                node = (float) x[feature[node]] <= threshold[node] ? left[node] : right[node];
+            }
+            int base = node * classes;
+            for (int c = 0; c < classes; c++) {
+                probabilities[c] += values[base + c];
+            }
+        }
+        for (int c = 0; c < classes; c++) {
+            probabilities[c] /= roots.length;
+        }
+    }
+}
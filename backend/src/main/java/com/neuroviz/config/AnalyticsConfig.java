@@ -0,0 +1,25 @@
+package com.neuroviz.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class AnalyticsConfig {
+    
+    // Per-channel analytics run here, apart from ingest so uploads and dashboards do not queue
+    // behind each other; 0 uses every core
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool analyticsPool(@Value("${app.analytics.parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+    
+    // Preprocessing filters whole recordings channel by channel; kept apart from the analytics
+    // pool so a long job does not hold up interactive spectra
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool processingPool(@Value("${app.processing.parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+}
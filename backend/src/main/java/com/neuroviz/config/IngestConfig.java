@@ -0,0 +1,17 @@
+package com.neuroviz.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class IngestConfig {
+    
+    // Dedicated pool so large uploads do not starve the common pool; 0 uses every core
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool ingestPool(@Value("${app.ingest.parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+}
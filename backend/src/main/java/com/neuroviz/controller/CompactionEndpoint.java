@@ -0,0 +1,23 @@
+package com.neuroviz.controller;
+
+import com.neuroviz.service.CompactionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// GET /actuator/compaction: progress of the current or last compaction run and bytes reclaimed
+@Component
+@Endpoint(id = "compaction")
+public class CompactionEndpoint {
+
+    @Autowired
+    private CompactionService compactionService;
+
+    @ReadOperation
+    public Map<String, Object> progress() {
+        return compactionService.getProgress();
+    }
+}
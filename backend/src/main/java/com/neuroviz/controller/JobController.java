@@ -1,12 +1,35 @@
 package com.neuroviz.controller;
 
+import com.neuroviz.dto.request.BatchAnalyticsRequest;
 import com.neuroviz.dto.response.ApiResponse;
 import com.neuroviz.entity.ProcessingJob;
 import com.neuroviz.repository.ProcessingJobRepository;
+import com.neuroviz.security.JwtTokenProvider;
+import com.neuroviz.service.BatchAnalyticsService;
+import com.neuroviz.service.JobEvents;
+import com.neuroviz.service.JobProgressTracker;
+import com.neuroviz.service.JobQueueFullException;
+import com.neuroviz.service.ProcessingService;
+import com.neuroviz.service.UserService;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -14,9 +37,32 @@ import java.util.Optional;
 @RequestMapping("/api/jobs")
 public class JobController {
     
+    // Suggested wait before retrying a job the queue rejected
+    private static final int RETRY_AFTER_SECONDS = 5;
+    
+    private static final long EVENT_STREAM_TIMEOUT_MS = 30 * 60 * 1000L;
+    
     @Autowired
     private ProcessingJobRepository processingJobRepository;
     
+    @Autowired
+    private ProcessingService processingService;
+    
+    @Autowired
+    private BatchAnalyticsService batchAnalyticsService;
+    
+    @Autowired
+    private JobProgressTracker progressTracker;
+    
+    @Autowired
+    private JobEvents jobEvents;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+    
     @GetMapping("/{jobId}")
     public ResponseEntity<?> getJobStatus(@PathVariable Long jobId) {
         try {
@@ -32,4 +78,154 @@ public class JobController {
                     .body(ApiResponse.error("Error fetching job: " + e.getMessage()));
         }
     }
+    
+    // Band powers, and optionally spectra, of the given sessions as one job
+    @PostMapping("/batch-analytics")
+    public ResponseEntity<?> startBatchAnalytics(@Valid @RequestBody BatchAnalyticsRequest request) {
+        try {
+            com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+            ProcessingJob job = processingService.startBatchAnalyticsJob(currentUser.getId(), request);
+            return ResponseEntity.ok(ApiResponse.success("Batch analytics job started", job));
+        } catch (JobQueueFullException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS))
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Error starting batch analytics: " + e.getMessage()));
+        }
+    }
+    
+    // Work items done so far while the job runs on this instance, otherwise its status
+    @GetMapping("/{jobId}/progress")
+    public ResponseEntity<?> getJobProgress(@PathVariable Long jobId) {
+        try {
+            com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+            Optional<Long> owner = processingJobRepository.findOwnerId(jobId);
+            if (owner.isEmpty() || !owner.get().equals(currentUser.getId())) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("Job not found"));
+            }
+            Optional<ProcessingJob> job = processingJobRepository.findById(jobId);
+            if (job.isEmpty()) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("Job not found"));
+            }
+            Map<String, Object> progress = progressTracker.get(jobId);
+            if (progress == null) {
+                progress = new LinkedHashMap<>();
+                progress.put("fraction", job.get().getStatus() == ProcessingJob.Status.COMPLETED ? 1.0 : 0.0);
+            }
+            progress.put("status", job.get().getStatus());
+            return ResponseEntity.ok(ApiResponse.success(progress));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Error fetching job progress: " + e.getMessage()));
+        }
+    }
+    
+    // Token for opening the event stream with EventSource, which cannot send the Authorization
+    // header: new EventSource("/api/jobs/{jobId}/events?access_token=" + token). It only opens
+    // the stream of this job and expires quickly, so fetch one right before connecting.
+    @PostMapping("/{jobId}/events/token")
+    public ResponseEntity<?> createJobEventsToken(@PathVariable Long jobId) {
+        try {
+            com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+            Optional<Long> owner = processingJobRepository.findOwnerId(jobId);
+            if (owner.isEmpty() || !owner.get().equals(currentUser.getId())) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("Job not found"));
+            }
+            Map<String, Object> token = new LinkedHashMap<>();
+            token.put("token", jwtTokenProvider.generateJobEventsToken(currentUser.getEmail(), jobId));
+            token.put("expiresInSeconds", jwtTokenProvider.getJobEventsExpirationMs() / 1000);
+            return ResponseEntity.ok(ApiResponse.success(token));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Error creating job events token: " + e.getMessage()));
+        }
+    }
+    
+    // Server-sent events of the job for clients without a STOMP connection: its current state,
+    // then the same events as the user's /user/queue/jobs until the job completes or fails.
+    // Authenticated by the usual bearer header, or by a token from /events/token.
+    @GetMapping("/{jobId}/events")
+    public SseEmitter streamJobEvents(@PathVariable Long jobId) throws IOException {
+        com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+        Optional<Long> owner = processingJobRepository.findOwnerId(jobId);
+        if (owner.isEmpty() || !owner.get().equals(currentUser.getId())) {
+            throw new JobNotFoundException();
+        }
+        
+        // Subscribed before reading the state, so no event falls in between
+        SseEmitter emitter = jobEvents.openStream(jobId, EVENT_STREAM_TIMEOUT_MS);
+        ProcessingJob job = processingJobRepository.findById(jobId)
+                .orElseThrow(JobNotFoundException::new);
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("jobId", jobId);
+        state.put("status", job.getStatus());
+        Map<String, Object> progress = progressTracker.get(jobId);
+        if (progress != null) {
+            state.putAll(progress);
+        }
+        if (job.getErrorMessage() != null) {
+            state.put("error", job.getErrorMessage());
+        }
+        emitter.send(SseEmitter.event().name("job").data(state));
+        if (job.getStatus() == ProcessingJob.Status.COMPLETED || job.getStatus() == ProcessingJob.Status.FAILED) {
+            emitter.complete();
+        }
+        return emitter;
+    }
+    
+    // Gzipped JSON lines of a completed batch analytics job, one per channel
+    @GetMapping("/{jobId}/result")
+    public ResponseEntity<?> downloadResult(@PathVariable Long jobId, HttpServletResponse response) {
+        Path result;
+        try {
+            com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+            Optional<ProcessingJob> job = processingJobRepository.findById(jobId)
+                    .filter(j -> j.getJobType() == ProcessingJob.JobType.BATCH_ANALYTICS
+                            && currentUser.getId().equals(j.getUserId()));
+            if (job.isEmpty()) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("Job not found"));
+            }
+            result = batchAnalyticsService.getResultPath(jobId);
+            if (job.get().getStatus() != ProcessingJob.Status.COMPLETED || !Files.isRegularFile(result)) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("Job has no result yet"));
+            }
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Error fetching job result: " + e.getMessage()));
+        }
+        
+        try (FileChannel in = FileChannel.open(result)) {
+            response.setContentType("application/gzip");
+            response.setContentLengthLong(in.size());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=\"" + result.getFileName() + "\"");
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < in.size()) {
+                position += in.transferTo(position, in.size() - position, target);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error streaming job result", e);
+        }
+        return null;
+    }
+    
+    // An SseEmitter return type cannot carry an ApiResponse, so a rejected stream ends up here.
+    // The content type is set explicitly: the request only accepts text/event-stream.
+    @ExceptionHandler(JobNotFoundException.class)
+    public ResponseEntity<?> handleJobNotFound(JobNotFoundException e) {
+        return ResponseEntity.badRequest()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(ApiResponse.error("Job not found"));
+    }
+    
+    private static class JobNotFoundException extends RuntimeException {
+    }
 }
@@ -1,19 +1,28 @@
 package com.neuroviz.controller;
 
+import com.neuroviz.dsp.Connectivity;
+import com.neuroviz.dsp.FrequencyBand;
 import com.neuroviz.dto.request.PreprocessRequest;
 import com.neuroviz.dto.response.ApiResponse;
 import com.neuroviz.entity.ProcessingJob;
 import com.neuroviz.repository.ProcessingJobRepository;
 import com.neuroviz.repository.SessionRepository;
+import com.neuroviz.service.ConnectivityService;
+import com.neuroviz.service.JobQueueFullException;
+import com.neuroviz.service.ProcessingServiceUnavailableException;
 import com.neuroviz.service.UserService;
 import com.neuroviz.service.ProcessingService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -21,6 +30,10 @@ import java.util.Map;
 @RequestMapping("/api/sessions/{sessionId}")
 public class ProcessingController {
     
+    // Suggested wait before retrying a job the queue rejected, or a call the processing service
+    // could not take
+    private static final int RETRY_AFTER_SECONDS = 5;
+    
     @Autowired
     private ProcessingService processingService;
     
@@ -33,6 +46,9 @@ public class ProcessingController {
     @Autowired
     private ProcessingJobRepository processingJobRepository;
     
+    @Autowired
+    private ConnectivityService connectivityService;
+    
     @PostMapping("/preprocess")
     public ResponseEntity<?> preprocessSession(
             @PathVariable Long sessionId,
@@ -49,12 +65,41 @@ public class ProcessingController {
             
             ProcessingJob job = processingService.startPreprocessingJob(sessionId, request);
             return ResponseEntity.ok(ApiResponse.success("Preprocessing job started", job));
+        } catch (JobQueueFullException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS))
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                     .body(ApiResponse.error("Error starting preprocessing: " + e.getMessage()));
         }
     }
     
+    // Precomputes spectrogram tiles for every channel; tiles are read per viewport afterwards
+    @PostMapping("/spectrogram")
+    public ResponseEntity<?> computeSpectrogram(
+            @PathVariable Long sessionId,
+            Authentication authentication) {
+        try {
+            com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+            
+            if (!sessionRepository.findByUserIdAndId(currentUser.getId(), sessionId).isPresent()) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("Session not found"));
+            }
+            
+            ProcessingJob job = processingService.startSpectrogramJob(sessionId);
+            return ResponseEntity.ok(ApiResponse.success("Spectrogram job started", job));
+        } catch (JobQueueFullException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS))
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Error starting spectrogram job: " + e.getMessage()));
+        }
+    }
+    
     @GetMapping("/analytics/psd")
     public ResponseEntity<?> getPSDAnalysis(
             @PathVariable Long sessionId,
@@ -97,6 +142,93 @@ public class ProcessingController {
         }
     }
     
+    // All channels, or those listed in channels, in one request
+    @GetMapping("/analytics/bandpowers")
+    public ResponseEntity<?> getBandPowers(
+            @PathVariable Long sessionId,
+            @RequestParam(required = false) List<String> channels,
+            Authentication authentication) {
+        try {
+            com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+            
+            if (!sessionRepository.findByUserIdAndId(currentUser.getId(), sessionId).isPresent()) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("Session not found"));
+            }
+            
+            Map<String, Object> bandPowers = processingService.getBandPowers(sessionId, channels);
+            return ResponseEntity.ok(ApiResponse.success(bandPowers));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Error getting band power analysis: " + e.getMessage()));
+        }
+    }
+    
+    // Coherence or correlation between every pair of channels, within a named band or fmin/fmax
+    @GetMapping("/analytics/connectivity")
+    public ResponseEntity<?> getConnectivity(
+            @PathVariable Long sessionId,
+            @RequestParam(defaultValue = "coherence") String measure,
+            @RequestParam(required = false) String band,
+            @RequestParam(required = false) Double fmin,
+            @RequestParam(required = false) Double fmax,
+            Authentication authentication) {
+        try {
+            com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+            
+            if (!sessionRepository.findByUserIdAndId(currentUser.getId(), sessionId).isPresent()) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("Session not found"));
+            }
+            
+            Connectivity.Measure parsedMeasure = Connectivity.Measure.valueOf(measure.toUpperCase(Locale.ROOT));
+            double low;
+            double high;
+            if (band != null) {
+                FrequencyBand frequencyBand = FrequencyBand.valueOf(band.toUpperCase(Locale.ROOT));
+                low = frequencyBand.getLowHz();
+                high = frequencyBand.getHighHz();
+            } else if (fmin != null && fmax != null && fmin >= 0 && fmin < fmax) {
+                low = fmin;
+                high = fmax;
+            } else {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("Give a band or 0 <= fmin < fmax"));
+            }
+            
+            Map<String, Object> matrix = connectivityService.getMatrix(sessionId, parsedMeasure, low, high);
+            return ResponseEntity.ok(ApiResponse.success(matrix));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Error getting connectivity: " + e.getMessage()));
+        }
+    }
+    
+    // Artifact intervals of one channel from a completed preprocess job; from/to are in seconds
+    @GetMapping("/jobs/{jobId}/artifacts")
+    public ResponseEntity<?> getArtifacts(
+            @PathVariable Long sessionId,
+            @PathVariable Long jobId,
+            @RequestParam String channel,
+            @RequestParam(defaultValue = "0") double from,
+            @RequestParam(required = false) Double to,
+            Authentication authentication) {
+        try {
+            com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+            
+            if (!sessionRepository.findByUserIdAndId(currentUser.getId(), sessionId).isPresent()) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("Session not found"));
+            }
+            
+            Map<String, Object> artifacts = processingService.getArtifacts(sessionId, jobId, channel, from, to);
+            return ResponseEntity.ok(ApiResponse.success(artifacts));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Error getting artifact intervals: " + e.getMessage()));
+        }
+    }
+    
     @PostMapping("/classify")
     public ResponseEntity<?> classifySession(
             @PathVariable Long sessionId,
@@ -111,6 +243,10 @@ public class ProcessingController {
             
             Map<String, Object> classificationResult = processingService.classifySession(sessionId);
             return ResponseEntity.ok(ApiResponse.success(classificationResult));
+        } catch (ProcessingServiceUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS))
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                     .body(ApiResponse.error("Error classifying session: " + e.getMessage()));
@@ -3,18 +3,30 @@ package com.neuroviz.controller;
 import com.neuroviz.dto.SessionDto;
 import com.neuroviz.dto.request.CreateSessionRequest;
 import com.neuroviz.dto.response.ApiResponse;
+import com.neuroviz.entity.ChannelData;
+import com.neuroviz.service.ChannelStoreService;
 import com.neuroviz.service.UserService;
 import com.neuroviz.service.SessionService;
+import com.neuroviz.service.SpectrogramService;
+import com.neuroviz.storage.LodWindow;
+import com.neuroviz.storage.SampleWindow;
+import com.neuroviz.storage.SpectrogramView;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -22,12 +34,21 @@ import java.util.List;
 @RequestMapping("/api/sessions")
 public class SessionController {
     
+    private static final int MAX_OVERVIEW_WIDTH = 10000;
+    private static final int MAX_SPECTROGRAM_WIDTH = 4096;
+    
     @Autowired
     private SessionService sessionService;
     
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private ChannelStoreService channelStoreService;
+    
+    @Autowired
+    private SpectrogramService spectrogramService;
+    
     @PostMapping
     public ResponseEntity<?> createSession(
             @Valid @ModelAttribute CreateSessionRequest request,
@@ -71,6 +92,18 @@ public class SessionController {
         }
     }
     
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> deleteSession(@PathVariable Long id, Authentication authentication) {
+        try {
+            com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+            sessionService.deleteSession(id, currentUser.getId());
+            return ResponseEntity.ok(ApiResponse.success("Session deleted successfully!", null));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Error deleting session: " + e.getMessage()));
+        }
+    }
+    
     @GetMapping("/search")
     public ResponseEntity<?> searchSessions(
             @RequestParam String name,
@@ -84,4 +117,91 @@ public class SessionController {
                     .body(ApiResponse.error("Error searching sessions: " + e.getMessage()));
         }
     }
+    
+    // Raw little-endian samples of one channel; from/to are in seconds
+    @GetMapping("/{id}/channels/{name}/samples")
+    public ResponseEntity<?> getChannelSamples(
+            @PathVariable Long id,
+            @PathVariable String name,
+            @RequestParam(defaultValue = "0") double from,
+            @RequestParam(required = false) Double to,
+            HttpServletResponse response) {
+        ChannelData channel;
+        SampleWindow window;
+        try {
+            com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+            channel = sessionService.getSessionChannel(id, currentUser.getId(), name);
+            window = SampleWindow.forTimeRange(from, to, channel.getSampleRate(), channel.getSampleCount());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Error fetching channel samples: " + e.getMessage()));
+        }
+        
+        long byteCount = window.getSampleCount() * channel.getSampleFormat().getBytesPerSample();
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(byteCount);
+        response.setHeader("X-Sample-Rate", String.valueOf(channel.getSampleRate()));
+        response.setHeader("X-Sample-Format", channel.getSampleFormat().name());
+        response.setHeader("X-Byte-Order", "little-endian");
+        response.setHeader("X-Start-Sample", String.valueOf(window.getStartSample()));
+        response.setHeader("X-Sample-Count", String.valueOf(window.getSampleCount()));
+        
+        try {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            channelStoreService.writeWindow(channel, window, target);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error streaming channel samples", e);
+        }
+        return null;
+    }
+    
+    // Min/max/mean buckets for drawing a time range at the given pixel width
+    @GetMapping("/{id}/channels/{name}/overview")
+    public ResponseEntity<?> getChannelOverview(
+            @PathVariable Long id,
+            @PathVariable String name,
+            @RequestParam(defaultValue = "0") double from,
+            @RequestParam(required = false) Double to,
+            @RequestParam(defaultValue = "1000") int width) {
+        try {
+            if (width < 1 || width > MAX_OVERVIEW_WIDTH) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("width must be between 1 and " + MAX_OVERVIEW_WIDTH));
+            }
+            com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+            ChannelData channel = sessionService.getSessionChannel(id, currentUser.getId(), name);
+            SampleWindow window = SampleWindow.forTimeRange(from, to, channel.getSampleRate(), channel.getSampleCount());
+            LodWindow overview = channelStoreService.getOverview(channel, window, width);
+            return ResponseEntity.ok(ApiResponse.success(overview));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Error fetching channel overview: " + e.getMessage()));
+        }
+    }
+    
+    // Precomputed spectrogram tiles covering a viewport: from/to in seconds, fmin/fmax in Hz,
+    // at a level with no more than width frames across
+    @GetMapping("/{id}/channels/{name}/spectrogram")
+    public ResponseEntity<?> getChannelSpectrogram(
+            @PathVariable Long id,
+            @PathVariable String name,
+            @RequestParam(defaultValue = "0") double from,
+            @RequestParam(required = false) Double to,
+            @RequestParam(defaultValue = "0") double fmin,
+            @RequestParam(required = false) Double fmax,
+            @RequestParam(defaultValue = "1000") int width) {
+        try {
+            if (width < 1 || width > MAX_SPECTROGRAM_WIDTH) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("width must be between 1 and " + MAX_SPECTROGRAM_WIDTH));
+            }
+            com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+            ChannelData channel = sessionService.getSessionChannel(id, currentUser.getId(), name);
+            SpectrogramView view = spectrogramService.getTiles(channel, from, to, fmin, fmax, width);
+            return ResponseEntity.ok(ApiResponse.success(view));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Error fetching spectrogram: " + e.getMessage()));
+        }
+    }
 }
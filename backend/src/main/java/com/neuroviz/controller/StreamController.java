@@ -1,22 +1,39 @@
 package com.neuroviz.controller;
 
+import com.neuroviz.dsp.ArtifactDetector;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.stereotype.Controller;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
 @Controller
 public class StreamController {
     
+    private static final int SAMPLE_RATE = 250;
+    
+    // Live artifact detection, with thresholds from the stream's own running statistics; a
+    // half-second window, so intervals are reported half a second after the samples arrive
+    private static final ArtifactDetector.Settings ARTIFACT_SETTINGS =
+            new ArtifactDetector.Settings(3.0, 8.0, 0.01, SAMPLE_RATE / 2);
+    private static final long ARTIFACT_WARMUP_SAMPLES = 2L * SAMPLE_RATE;
+    
     private final Random random = new Random();
     
+    // Per channel, since the stream started; guarded by this
+    private final Map<String, ArtifactDetector> detectors = new HashMap<>();
+    private final Map<String, List<long[]>> pendingArtifacts = new HashMap<>();
+    
     @MessageMapping("/stream.start")
     @SendTo("/topic/eeg-data")
-    public Map<String, Object> startStream() {
+    public synchronized Map<String, Object> startStream() {
+        detectors.clear();
+        pendingArtifacts.clear();
         Map<String, Object> response = new HashMap<>();
         response.put("type", "stream_started");
         response.put("timestamp", Instant.now().toEpochMilli());
@@ -37,11 +54,11 @@ public class StreamController {
     // This method simulates EEG data - in production, this would connect to real EEG hardware
     @MessageMapping("/stream.data")
     @SendTo("/topic/eeg-data")
-    public Map<String, Object> generateEEGData() {
+    public synchronized Map<String, Object> generateEEGData() {
         Map<String, Object> response = new HashMap<>();
         
         long timestamp = Instant.now().toEpochMilli();
-        int sampleRate = 250;
+        int sampleRate = SAMPLE_RATE;
         String[] channels = {"Fz", "Cz", "Pz", "C3", "C4"};
         
         Map<String, double[]> channelData = new HashMap<>();
@@ -54,14 +71,44 @@ public class StreamController {
                 data[i] = alpha + noise;
             }
             channelData.put(channel, data);
+            ArtifactDetector detector = detectorFor(channel);
+            for (double value : data) {
+                detector.add(value);
+            }
+        }
+        
+        // Intervals finalised since the last message, as [start, end) sample indices of the stream
+        Map<String, List<long[]>> artifacts = new HashMap<>();
+        for (Map.Entry<String, List<long[]>> pending : pendingArtifacts.entrySet()) {
+            if (!pending.getValue().isEmpty()) {
+                artifacts.put(pending.getKey(), new ArrayList<>(pending.getValue()));
+                pending.getValue().clear();
+            }
         }
         
         response.put("timestamp", timestamp);
         response.put("sampleRate", sampleRate);
         response.put("channels", channels);
         response.put("data", channelData);
+        response.put("artifacts", artifacts);
         response.put("type", "eeg_data");
         
         return response;
     }
+    
+    private ArtifactDetector detectorFor(String channel) {
+        return detectors.computeIfAbsent(channel, name -> {
+            List<long[]> pending = pendingArtifacts.computeIfAbsent(name, key -> new ArrayList<>());
+            return ArtifactDetector.online(ARTIFACT_SETTINGS, ARTIFACT_WARMUP_SAMPLES, new ArtifactDetector.Listener() {
+                @Override
+                public void clean(long index, double value) {
+                }
+                
+                @Override
+                public void artifact(long start, long end, int flags) {
+                    pending.add(new long[] {start, end, flags});
+                }
+            });
+        });
+    }
 }
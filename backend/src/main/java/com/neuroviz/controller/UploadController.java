@@ -0,0 +1,108 @@
+package com.neuroviz.controller;
+
+import com.neuroviz.dto.UploadSessionDto;
+import com.neuroviz.dto.request.InitUploadRequest;
+import com.neuroviz.dto.response.ApiResponse;
+import com.neuroviz.entity.UploadSession;
+import com.neuroviz.service.JobQueueFullException;
+import com.neuroviz.service.UploadService;
+import com.neuroviz.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/uploads")
+public class UploadController {
+    
+    // Suggested wait before completing again when the job queue is full
+    private static final int RETRY_AFTER_SECONDS = 5;
+    
+    @Autowired
+    private UploadService uploadService;
+    
+    @Autowired
+    private UserService userService;
+    
+    @PostMapping
+    public ResponseEntity<?> initUpload(@Valid @RequestBody InitUploadRequest request, Authentication authentication) {
+        try {
+            com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+            UploadSessionDto upload = uploadService.initUpload(request, currentUser.getId());
+            return ResponseEntity.ok(ApiResponse.success("Upload started", upload));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Error starting upload: " + e.getMessage()));
+        }
+    }
+    
+    // The chunk is the raw request body (application/octet-stream)
+    @PutMapping("/{uploadId}/chunks/{index}")
+    public ResponseEntity<?> uploadChunk(
+            @PathVariable String uploadId,
+            @PathVariable int index,
+            HttpServletRequest request,
+            Authentication authentication) {
+        try {
+            com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+            UploadSessionDto upload = uploadService.writeChunk(
+                    uploadId, index, request.getInputStream(), request.getContentLengthLong(), currentUser.getId());
+            return ResponseEntity.ok(ApiResponse.success(upload));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Error uploading chunk: " + e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<?> getUpload(@PathVariable String uploadId, Authentication authentication) {
+        try {
+            com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+            UploadSessionDto upload = uploadService.getUploadStatus(uploadId, currentUser.getId());
+            return ResponseEntity.ok(ApiResponse.success(upload));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Error fetching upload: " + e.getMessage()));
+        }
+    }
+    
+    // 202 while the recording is read in; poll GET /api/uploads/{uploadId} until it is COMPLETED
+    // and carries the sessionId. Completing again returns the same status and does not start over.
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<?> completeUpload(@PathVariable String uploadId, Authentication authentication) {
+        try {
+            com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+            UploadSessionDto upload = uploadService.completeUpload(uploadId, currentUser.getId());
+            if (upload.getStatus() == UploadSession.Status.COMPLETED) {
+                return ResponseEntity.ok(ApiResponse.success("Session created successfully!", upload));
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success("Upload is being processed", upload));
+        } catch (JobQueueFullException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS))
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Error completing upload: " + e.getMessage()));
+        }
+    }
+    
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<?> abortUpload(@PathVariable String uploadId, Authentication authentication) {
+        try {
+            com.neuroviz.dto.UserDto currentUser = userService.getCurrentUser();
+            uploadService.abortUpload(uploadId, currentUser.getId());
+            return ResponseEntity.ok(ApiResponse.success("Upload cancelled", null));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Error cancelling upload: " + e.getMessage()));
+        }
+    }
+}
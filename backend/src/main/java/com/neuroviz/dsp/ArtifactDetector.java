@@ -0,0 +1,241 @@
+package com.neuroviz.dsp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Marks artifact segments in a single streaming pass. Each sample is checked for amplitude
+// (|x - mean| beyond amplitudeZ standard deviations) and gradient (|x[i] - x[i-1]| beyond
+// gradientZ standard deviations of the first differences); a sliding window of
+// windowSamples is flat when its standard deviation falls below flatlineRatio times the
+// signal's. Samples are released windowSamples late, once every window containing them has
+// been seen, as clean samples or as merged artifact intervals, so memory is one window.
+//
+// Thresholds come either from statistics known up front, such as a first pass over a stored
+// channel, or online from Welford statistics of the samples seen so far, for live streams.
+public class ArtifactDetector {
+
+    public static final int AMPLITUDE = 1;
+    public static final int FLATLINE = 2;
+    public static final int GRADIENT = 4;
+
+    private final Settings settings;
+    private final Listener listener;
+    private final int window;
+
+    // Statistics of the samples seen so far when online, fixed ones otherwise
+    private final boolean online;
+    private final double fixedMean;
+    private final double fixedStd;
+    private final double fixedGradientStd;
+    private final long warmupSamples;
+    private final RunningStats values = new RunningStats();
+    private final RunningStats gradients = new RunningStats();
+
+    private final double[] ring;
+    private final byte[] ringFlags;
+    private long index;
+    private double previous = Double.NaN;
+    private long lastFlatEnd = -1;
+
+    // Sliding window mean and sum of squared deviations
+    private double windowMean;
+    private double windowM2;
+
+    private long intervalStart = -1;
+    private long intervalEnd;
+    private int intervalFlags;
+    private long artifactSamples;
+
+    public interface Listener {
+        void clean(long index, double value);
+
+        // Samples [start, end) are artifacts; flags is a combination of AMPLITUDE, FLATLINE and GRADIENT
+        void artifact(long start, long end, int flags);
+    }
+
+    // Thresholds; a threshold of 0 or less disables its check
+    public static class Settings {
+        private final double amplitudeZ;
+        private final double gradientZ;
+        private final double flatlineRatio;
+        private final int windowSamples;
+
+        public Settings(double amplitudeZ, double gradientZ, double flatlineRatio, int windowSamples) {
+            if (windowSamples < 1) {
+                throw new IllegalArgumentException("Artifact window must hold at least one sample");
+            }
+            this.amplitudeZ = amplitudeZ;
+            this.gradientZ = gradientZ;
+            this.flatlineRatio = flatlineRatio;
+            this.windowSamples = windowSamples;
+        }
+
+        public double getAmplitudeZ() {
+            return amplitudeZ;
+        }
+
+        public double getGradientZ() {
+            return gradientZ;
+        }
+
+        public double getFlatlineRatio() {
+            return flatlineRatio;
+        }
+
+        public int getWindowSamples() {
+            return windowSamples;
+        }
+    }
+
+    private ArtifactDetector(Settings settings, Listener listener, boolean online, double mean, double std,
+                             double gradientStd, long warmupSamples) {
+        this.settings = settings;
+        this.listener = listener;
+        this.window = settings.windowSamples;
+        this.online = online;
+        this.fixedMean = mean;
+        this.fixedStd = std;
+        this.fixedGradientStd = gradientStd;
+        this.warmupSamples = warmupSamples;
+        this.ring = new double[window];
+        this.ringFlags = new byte[window];
+    }
+
+    public static ArtifactDetector withStatistics(Settings settings, double mean, double std, double gradientStd,
+                                                  Listener listener) {
+        return new ArtifactDetector(settings, listener, false, mean, std, gradientStd, 0);
+    }
+
+    // Nothing is flagged before warmupSamples samples have been seen
+    public static ArtifactDetector online(Settings settings, long warmupSamples, Listener listener) {
+        return new ArtifactDetector(settings, listener, true, 0, 0, 0, Math.max(1, warmupSamples));
+    }
+
+    public void add(double value) {
+        if (index >= window) {
+            release(index - window);
+        }
+
+        double mean;
+        double std;
+        double gradientStd;
+        if (!online) {
+            mean = fixedMean;
+            std = fixedStd;
+            gradientStd = fixedGradientStd;
+        } else if (values.getCount() >= warmupSamples) {
+            mean = values.getMean();
+            std = values.getStd();
+            gradientStd = gradients.getStd();
+        } else {
+            mean = std = gradientStd = Double.NaN;
+        }
+
+        int flags = 0;
+        if (settings.amplitudeZ > 0 && std > 0 && Math.abs(value - mean) > settings.amplitudeZ * std) {
+            flags |= AMPLITUDE;
+        }
+        double gradient = value - previous;
+        if (settings.gradientZ > 0 && gradientStd > 0 && Math.abs(gradient) > settings.gradientZ * gradientStd) {
+            flags |= GRADIENT;
+        }
+        if (online) {
+            values.add(value);
+            gradients.add(gradient);
+        }
+        previous = value;
+
+        int slot = (int) (index % window);
+        slide(value, ring[slot]);
+        ring[slot] = value;
+        ringFlags[slot] = (byte) flags;
+        if (slot == window - 1) {
+            recomputeWindow();
+        }
+        if (index >= window - 1 && settings.flatlineRatio > 0 && std > 0
+                && Math.sqrt(Math.max(0, windowM2) / window) < settings.flatlineRatio * std) {
+            lastFlatEnd = index;
+        }
+        index++;
+    }
+
+    // Releases the samples still held back at the end of the signal
+    public void finish() {
+        for (long j = Math.max(0, index - window); j < index; j++) {
+            release(j);
+        }
+        closeInterval();
+    }
+
+    public static List<String> flagNames(int flags) {
+        List<String> names = new ArrayList<>(3);
+        if ((flags & AMPLITUDE) != 0) names.add("amplitude");
+        if ((flags & FLATLINE) != 0) names.add("flatline");
+        if ((flags & GRADIENT) != 0) names.add("gradient");
+        return names;
+    }
+
+    public long getSampleCount() {
+        return index;
+    }
+
+    public long getArtifactSamples() {
+        return artifactSamples;
+    }
+
+    // Sliding Welford update: adds value, and drops the oldest one once the window is full
+    private void slide(double value, double oldest) {
+        if (index < window) {
+            double delta = value - windowMean;
+            windowMean += delta / (index + 1);
+            windowM2 += delta * (value - windowMean);
+        } else {
+            double mean = windowMean + (value - oldest) / window;
+            windowM2 += (value - oldest) * (value - mean + oldest - windowMean);
+            windowMean = mean;
+        }
+    }
+
+    // Exact statistics of the window once per turn of the ring, so rounding cannot drift
+    private void recomputeWindow() {
+        double sum = 0;
+        for (double v : ring) {
+            sum += v;
+        }
+        double mean = sum / window;
+        double m2 = 0;
+        for (double v : ring) {
+            m2 += (v - mean) * (v - mean);
+        }
+        windowMean = mean;
+        windowM2 = m2;
+    }
+
+    // Every window containing sample j has been checked by now
+    private void release(long j) {
+        int slot = (int) (j % window);
+        int flags = ringFlags[slot] | (lastFlatEnd >= j ? FLATLINE : 0);
+        if (flags != 0) {
+            if (intervalStart >= 0 && intervalEnd == j) {
+                intervalEnd = j + 1;
+                intervalFlags |= flags;
+            } else {
+                closeInterval();
+                intervalStart = j;
+                intervalEnd = j + 1;
+                intervalFlags = flags;
+            }
+            artifactSamples++;
+        } else {
+            closeInterval();
+            listener.clean(j, ring[slot]);
+        }
+    }
+
+    private void closeInterval() {
+        if (intervalStart >= 0) {
+            listener.artifact(intervalStart, intervalEnd, intervalFlags);
+            intervalStart = -1;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.neuroviz.dsp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class BandPower {
+
+    private static final NumericKernels KERNELS = NumericKernels.get();
+
+    private BandPower() {}
+
+    // Trapezoidal integral of the density over the bins inside [low, high], both edges
+    // included, as numpy.trapz over the masked spectrum; 0 when fewer than two bins fall inside.
+    // Frequencies are ascending, so the bins inside form one run.
+    public static double integrate(PowerSpectrum spectrum, double lowHz, double highHz) {
+        return integrate(spectrum.getFrequencies(), spectrum.getDensity(), spectrum.getFrequencies().length,
+                lowHz, highHz);
+    }
+
+    // Over the first bins entries of frequencies and density
+    public static double integrate(double[] frequencies, double[] density, int bins, double lowHz, double highHz) {
+        int first = 0;
+        while (first < bins && frequencies[first] < lowHz) first++;
+        int last = first - 1;
+        while (last + 1 < bins && frequencies[last + 1] <= highHz) last++;
+        if (last - first < 1) return 0;
+        return KERNELS.trapezoid(frequencies, density, first, last);
+    }
+
+    // Keyed delta, theta, alpha, beta, gamma
+    public static Map<String, Double> of(PowerSpectrum spectrum) {
+        Map<String, Double> powers = new LinkedHashMap<>();
+        for (FrequencyBand band : FrequencyBand.values()) {
+            powers.put(band.getKey(), integrate(spectrum, band.getLowHz(), band.getHighHz()));
+        }
+        return powers;
+    }
+}
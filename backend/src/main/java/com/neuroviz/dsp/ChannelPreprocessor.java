@@ -0,0 +1,269 @@
+package com.neuroviz.dsp;
+
+import com.neuroviz.storage.ArtifactIntervals;
+import com.neuroviz.storage.ChannelReader;
+import com.neuroviz.storage.MappedChannelFile;
+import com.neuroviz.storage.SampleFormat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Filters one stored channel into a new packed channel file, BLOCK_SAMPLES at a time, so
+// memory does not depend on the recording length. Filter state carries across blocks.
+//
+// Zero-phase mode follows scipy.signal.filtfilt: odd extension of 3 * (2 * sections + 1)
+// samples at both ends, steady-state initial conditions, a forward pass into a float64
+// scratch file and a backward pass over it from the end. The filtering pass also gathers the
+// statistics that artifact detection is measured against; a second pass runs the detector
+// over the output, and only the samples of the intervals it reports are read again and
+// replaced by linear interpolation between the neighbouring clean samples.
+public class ChannelPreprocessor {
+
+    static final int BLOCK_SAMPLES = 64 * 1024;
+
+    private final double[] sos;
+    private final boolean zeroPhase;
+    private final ArtifactDetector.Settings artifacts;
+
+    // artifacts of null disables artifact rejection
+    public ChannelPreprocessor(double[] sos, boolean zeroPhase, ArtifactDetector.Settings artifacts) {
+        this.sos = sos;
+        this.zeroPhase = zeroPhase;
+        this.artifacts = artifacts;
+    }
+
+    public Result process(ChannelReader input, Path output, SampleFormat format) throws IOException {
+        long n = input.getSampleCount();
+        SignalStats filtered = new SignalStats();
+        RunningStats summary = filtered.values;
+        ArtifactIntervals intervals = new ArtifactIntervals();
+        // Created outside the try: a file that could not be created is not this call's to delete
+        MappedChannelFile out = MappedChannelFile.create(output, format, n);
+        try (out) {
+            if (n > 0) {
+                SosFilter filter = new SosFilter(sos);
+                if (zeroPhase && filter.getSectionCount() > 0) {
+                    filtfilt(input, out, filter, filtered);
+                } else {
+                    forward(input, out, filter, filtered);
+                }
+                if (artifacts != null && filtered.values.getStd() > 0) {
+                    summary = new RunningStats();
+                    intervals = rejectArtifacts(out, filtered, summary);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(output);
+            throw e;
+        }
+        return new Result(n, intervals, summary);
+    }
+
+    // Causal filtering, started from the steady state for the first sample
+    private void forward(ChannelReader input, MappedChannelFile out, SosFilter filter, SignalStats stats)
+            throws IOException {
+        double[] block = new double[BLOCK_SAMPLES];
+        long n = input.getSampleCount();
+        for (long start = 0; start < n; start += BLOCK_SAMPLES) {
+            int len = (int) Math.min(BLOCK_SAMPLES, n - start);
+            readFully(input, start, block, len);
+            if (start == 0) filter.setSteadyState(block[0]);
+            filter.filter(block, 0, len);
+            out.write(start, block, 0, len);
+            stats.addAll(block, len);
+        }
+    }
+
+    private void filtfilt(ChannelReader input, MappedChannelFile out, SosFilter filter, SignalStats stats)
+            throws IOException {
+        long n = input.getSampleCount();
+        // scipy rejects signals no longer than the padding; shorter padding keeps them usable
+        int pad = (int) Math.min(3L * (2 * filter.getSectionCount() + 1), n - 1);
+        double[] block = new double[BLOCK_SAMPLES];
+        double[] edge = new double[pad + 1];
+        double[] extension = new double[pad];
+
+        // 2 x[0] - x[pad], ..., 2 x[0] - x[1]
+        readFully(input, 0, edge, pad + 1);
+        for (int i = 0; i < pad; i++) {
+            extension[i] = 2 * edge[0] - edge[pad - i];
+        }
+
+        Path scratch = out.getPath().resolveSibling(out.getPath().getFileName() + ".forward.tmp");
+        MappedChannelFile forward = MappedChannelFile.create(scratch, SampleFormat.FLOAT64, n);
+        try (forward) {
+            filter.setSteadyState(pad > 0 ? extension[0] : edge[0]);
+            filter.filter(extension, 0, pad);
+            for (long start = 0; start < n; start += BLOCK_SAMPLES) {
+                int len = (int) Math.min(BLOCK_SAMPLES, n - start);
+                readFully(input, start, block, len);
+                filter.filter(block, 0, len);
+                forward.write(start, block, 0, len);
+            }
+
+            // 2 x[n-1] - x[n-2], ..., 2 x[n-1] - x[n-1-pad]; its forward output starts the way back
+            readFully(input, n - 1 - pad, edge, pad + 1);
+            for (int j = 0; j < pad; j++) {
+                extension[j] = 2 * edge[pad] - edge[pad - 1 - j];
+            }
+            filter.filter(extension, 0, pad);
+            reverse(extension, pad);
+            double last = pad > 0 ? extension[0] : lastSample(forward);
+            filter.setSteadyState(last);
+            filter.filter(extension, 0, pad);
+
+            for (long end = n; end > 0; ) {
+                int len = (int) Math.min(BLOCK_SAMPLES, end);
+                long start = end - len;
+                readFully(forward, start, block, len);
+                reverse(block, len);
+                filter.filter(block, 0, len);
+                reverse(block, len);
+                out.write(start, block, 0, len);
+                stats.addAll(block, len);
+                end = start;
+            }
+        } finally {
+            Files.deleteIfExists(scratch);
+        }
+    }
+
+    // Detection streams over the output once; the intervals it reports are then replaced in
+    // place, runs at either end taking the value of the nearest clean sample as numpy.interp
+    // does. Statistics of the clean samples and of the replacements are merged at the end.
+    private ArtifactIntervals rejectArtifacts(MappedChannelFile out, SignalStats filtered, RunningStats stats)
+            throws IOException {
+        ArtifactIntervals intervals = new ArtifactIntervals();
+        ArtifactDetector detector = ArtifactDetector.withStatistics(artifacts, filtered.values.getMean(),
+                filtered.values.getStd(), filtered.gradients.getStd(), new ArtifactDetector.Listener() {
+                    @Override
+                    public void clean(long index, double value) {
+                        stats.add(value);
+                    }
+
+                    @Override
+                    public void artifact(long start, long end, int flags) {
+                        intervals.add(start, end, flags);
+                    }
+                });
+
+        long n = out.getSampleCount();
+        double[] block = new double[BLOCK_SAMPLES];
+        for (long start = 0; start < n; start += BLOCK_SAMPLES) {
+            int len = (int) Math.min(BLOCK_SAMPLES, n - start);
+            readFully(out, start, block, len);
+            for (int i = 0; i < len; i++) {
+                detector.add(block[i]);
+            }
+        }
+        detector.finish();
+        if (stats.getCount() == 0) {
+            return new ArtifactIntervals(); // Nothing clean to interpolate from
+        }
+
+        RunningStats replaced = new RunningStats();
+        double[] one = new double[1];
+        for (int i = 0; i < intervals.size(); i++) {
+            long from = intervals.getStart(i);
+            long to = intervals.getEnd(i);
+            double leftValue = Double.NaN;
+            if (from > 0) {
+                readFully(out, from - 1, one, 1);
+                leftValue = one[0];
+            }
+            double rightValue = leftValue;
+            if (to < n) {
+                readFully(out, to, one, 1);
+                rightValue = one[0];
+            }
+            fillRun(out, from, to, from - 1, leftValue, rightValue, replaced, block);
+        }
+        stats.merge(replaced);
+        return intervals;
+    }
+
+    // Interpolates samples [from, to) between the clean samples at left and at to
+    private static void fillRun(MappedChannelFile out, long from, long to, long left, double leftValue,
+                                double rightValue, RunningStats stats, double[] fill) throws IOException {
+        for (long start = from; start < to; start += fill.length) {
+            int len = (int) Math.min(fill.length, to - start);
+            for (int i = 0; i < len; i++) {
+                double value = left < 0
+                        ? rightValue
+                        : leftValue + (rightValue - leftValue) * (start + i - left) / (double) (to - left);
+                fill[i] = value;
+                stats.add(value);
+            }
+            out.write(start, fill, 0, len);
+        }
+    }
+
+    private static double lastSample(ChannelReader reader) throws IOException {
+        double[] one = new double[1];
+        readFully(reader, reader.getSampleCount() - 1, one, 1);
+        return one[0];
+    }
+
+    private static void readFully(ChannelReader reader, long start, double[] dst, int len) throws IOException {
+        int done = 0;
+        while (done < len) {
+            int n = reader.read(start + done, dst, done, len - done);
+            if (n <= 0) throw new IOException("Unexpected end of channel at sample " + (start + done));
+            done += n;
+        }
+    }
+
+    private static void reverse(double[] values, int len) {
+        for (int i = 0, j = len - 1; i < j; i++, j--) {
+            double t = values[i];
+            values[i] = values[j];
+            values[j] = t;
+        }
+    }
+
+    // Statistics of the filtered signal and of its first differences. Blocks of a backward
+    // pass arrive in reverse, which flips the sign of the differences but not their spread.
+    private static final class SignalStats {
+        private final RunningStats values = new RunningStats();
+        private final RunningStats gradients = new RunningStats();
+        private double previous = Double.NaN;
+
+        void addAll(double[] block, int len) {
+            for (int i = 0; i < len; i++) {
+                values.add(block[i]);
+                if (!Double.isNaN(previous)) gradients.add(block[i] - previous);
+                previous = block[i];
+            }
+        }
+    }
+
+    public static class Result {
+        private final long sampleCount;
+        private final ArtifactIntervals artifacts;
+        private final RunningStats stats;
+
+        public Result(long sampleCount, ArtifactIntervals artifacts, RunningStats stats) {
+            this.sampleCount = sampleCount;
+            this.artifacts = artifacts;
+            this.stats = stats;
+        }
+
+        public long getSampleCount() {
+            return sampleCount;
+        }
+
+        public long getArtifactSamples() {
+            return artifacts.getSampleCount();
+        }
+
+        public ArtifactIntervals getArtifacts() {
+            return artifacts;
+        }
+
+        // Of the output, after artifact rejection
+        public RunningStats getStats() {
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.neuroviz.dsp;
+
+import com.neuroviz.storage.ChannelReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+// Channel-by-channel coherence or correlation within a frequency band, from one pass of
+// Welch cross-spectra. Segments follow scipy.signal.coherence: periodic Hann window, mean
+// removal, half-overlapping segments. Each channel's segment is transformed once (two
+// segments per complex FFT) and only the bins inside the band are kept; the cross-spectral
+// matrix of every band bin then grows by a rank-T update per batch of T segments. That update
+// is split into tiles of channel pairs, so a tile's spectra stay in cache while its pairs
+// are accumulated, and tiles are spread over the executor, as are the FFTs of a batch.
+//
+// Coherence is the mean over the band's bins of |Sxy|^2 / (Sxx Syy). Correlation is the
+// zero-lag correlation of the two signals limited to the band, Re(sum Sxy) / sqrt(sum Sxx
+// sum Syy) with the one-sided bins weighted as in the density.
+public final class Connectivity {
+
+    public enum Measure {
+        COHERENCE, CORRELATION
+    }
+
+    // Segments per batch and channels per tile side
+    static final int BATCH_SEGMENTS = 32;
+    static final int TILE_CHANNELS = 16;
+
+    private static final NumericKernels KERNELS = NumericKernels.get();
+
+    private static final ThreadLocal<Workspace> WORKSPACE = ThreadLocal.withInitial(Workspace::new);
+
+    private final int channels;
+    private final int segmentLength;
+    private final int step;
+    private final int firstBin;
+    private final int bins;
+    private final double[] binWeight;
+    private final Fft fft;
+    private final double[] window;
+
+    // Per channel: band spectra of the current batch, bin-major, [b * BATCH_SEGMENTS + t]
+    private final double[][] spectraRe;
+    private final double[][] spectraIm;
+
+    // Cross-spectra of the upper triangle including the diagonal, [pair * bins + b]
+    private final double[] crossRe;
+    private final double[] crossIm;
+
+    private Connectivity(int channels, int segmentLength, int firstBin, int bins) {
+        this.channels = channels;
+        this.segmentLength = segmentLength;
+        this.step = segmentLength - segmentLength / 2;
+        this.firstBin = firstBin;
+        this.bins = bins;
+        this.fft = Fft.forSize(segmentLength);
+        this.window = Windows.hann(segmentLength);
+        this.binWeight = new double[bins];
+        for (int b = 0; b < bins; b++) {
+            int k = firstBin + b;
+            binWeight[b] = k == 0 || (segmentLength % 2 == 0 && k == segmentLength / 2) ? 1 : 2;
+        }
+        this.spectraRe = new double[channels][bins * BATCH_SEGMENTS];
+        this.spectraIm = new double[channels][bins * BATCH_SEGMENTS];
+        long pairs = (long) channels * (channels + 1) / 2;
+        if (pairs * bins > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many channel pairs and bins: " + channels + " channels, "
+                    + bins + " bins");
+        }
+        this.crossRe = new double[(int) (pairs * bins)];
+        this.crossIm = new double[(int) (pairs * bins)];
+    }
+
+    // scipy.signal.coherence defaults to 256-sample segments
+    public static int defaultSegmentLength(long sampleCount) {
+        return (int) Math.min(256, sampleCount);
+    }
+
+    public static long segmentCount(long sampleCount, int segmentLength) {
+        return (sampleCount - segmentLength / 2) / (segmentLength - segmentLength / 2);
+    }
+
+    // Row-major channels x channels matrix, symmetric with ones on the diagonal. The readers
+    // are read up to sampleCount samples, each by one task at a time.
+    public static double[] compute(ChannelReader[] readers, long sampleCount, double sampleRate, int segmentLength,
+                                   double lowHz, double highHz, Measure measure, ExecutorService executor)
+            throws IOException {
+        int channels = readers.length;
+        if (channels < 1) {
+            throw new IllegalArgumentException("At least one channel is needed");
+        }
+        if (segmentLength < 2 || segmentLength > sampleCount) {
+            throw new IllegalArgumentException("Segment length " + segmentLength + " does not fit " + sampleCount
+                    + " samples");
+        }
+        int firstBin = (int) Math.ceil(lowHz * segmentLength / sampleRate);
+        int lastBin = (int) Math.min(segmentLength / 2, Math.floor(highHz * segmentLength / sampleRate));
+        // Bin frequencies are compared as the band power does, k * fs / n within [low, high]
+        while (firstBin > 0 && (firstBin - 1) * sampleRate / segmentLength >= lowHz) firstBin--;
+        while (firstBin <= lastBin && firstBin * sampleRate / segmentLength < lowHz) firstBin++;
+        while (lastBin >= firstBin && lastBin * sampleRate / segmentLength > highHz) lastBin--;
+        if (firstBin > lastBin) {
+            throw new IllegalArgumentException("No frequency bin of a " + segmentLength + "-sample segment lies in ["
+                    + lowHz + ", " + highHz + "] Hz");
+        }
+
+        long segments = segmentCount(sampleCount, segmentLength);
+        Connectivity engine = new Connectivity(channels, segmentLength, firstBin, lastBin - firstBin + 1);
+        for (long first = 0; first < segments; first += BATCH_SEGMENTS) {
+            int count = (int) Math.min(BATCH_SEGMENTS, segments - first);
+            engine.transformBatch(readers, first, count, executor);
+            engine.accumulateBatch(count, executor);
+        }
+        return engine.matrix(measure);
+    }
+
+    private void transformBatch(ChannelReader[] readers, long firstSegment, int count, ExecutorService executor)
+            throws IOException {
+        List<Callable<Void>> tasks = new ArrayList<>(channels);
+        for (int c = 0; c < channels; c++) {
+            int channel = c;
+            tasks.add(() -> {
+                transform(readers[channel], channel, firstSegment, count);
+                return null;
+            });
+        }
+        run(tasks, executor);
+    }
+
+    // Band spectra of count segments of one channel, packed two real segments per complex FFT
+    private void transform(ChannelReader reader, int channel, long firstSegment, int count) throws IOException {
+        Workspace ws = WORKSPACE.get();
+        int span = (count - 1) * step + segmentLength;
+        ws.ensure(segmentLength, span, fft.scratchLength());
+        readFully(reader, firstSegment * step, ws.span, span);
+
+        double[] re = spectraRe[channel];
+        double[] im = spectraIm[channel];
+        for (int t = 0; t < count; t += 2) {
+            window(ws.span, t * step, ws.re);
+            if (t + 1 < count) {
+                window(ws.span, (t + 1) * step, ws.im);
+            } else {
+                Arrays.fill(ws.im, 0, segmentLength, 0.0);
+            }
+            fft.forward(ws.re, ws.im, ws.outRe, ws.outIm, ws.scratch);
+            for (int b = 0; b < bins; b++) {
+                int k = firstBin + b;
+                int mirror = k == 0 ? 0 : segmentLength - k;
+                double a = ws.outRe[k], bi = ws.outIm[k], c = ws.outRe[mirror], d = ws.outIm[mirror];
+                // With z = x + iy, X[k] = (Z[k] + conj Z[n-k]) / 2 and Y[k] = (Z[k] - conj Z[n-k]) / 2i
+                re[b * BATCH_SEGMENTS + t] = 0.5 * (a + c);
+                im[b * BATCH_SEGMENTS + t] = 0.5 * (bi - d);
+                if (t + 1 < count) {
+                    re[b * BATCH_SEGMENTS + t + 1] = 0.5 * (bi + d);
+                    im[b * BATCH_SEGMENTS + t + 1] = 0.5 * (c - a);
+                }
+            }
+        }
+    }
+
+    private void window(double[] span, int offset, double[] dst) {
+        double mean = KERNELS.sum(span, offset, segmentLength) / segmentLength;
+        for (int i = 0; i < segmentLength; i++) {
+            dst[i] = (span[offset + i] - mean) * window[i];
+        }
+    }
+
+    private void accumulateBatch(int count, ExecutorService executor) throws IOException {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i0 = 0; i0 < channels; i0 += TILE_CHANNELS) {
+            for (int j0 = i0; j0 < channels; j0 += TILE_CHANNELS) {
+                int rowStart = i0;
+                int columnStart = j0;
+                tasks.add(() -> {
+                    accumulateTile(rowStart, columnStart, count);
+                    return null;
+                });
+            }
+        }
+        run(tasks, executor);
+    }
+
+    // Sxy[b] += sum over the batch of X[t, b] conj(Y[t, b]) for the pairs of one tile; tiles
+    // own disjoint pairs, so no two tasks write the same accumulator
+    private void accumulateTile(int rowStart, int columnStart, int count) {
+        int rowEnd = Math.min(channels, rowStart + TILE_CHANNELS);
+        int columnEnd = Math.min(channels, columnStart + TILE_CHANNELS);
+        for (int i = rowStart; i < rowEnd; i++) {
+            double[] xRe = spectraRe[i];
+            double[] xIm = spectraIm[i];
+            for (int j = Math.max(i, columnStart); j < columnEnd; j++) {
+                double[] yRe = spectraRe[j];
+                double[] yIm = spectraIm[j];
+                int base = pairIndex(i, j) * bins;
+                for (int b = 0; b < bins; b++) {
+                    int offset = b * BATCH_SEGMENTS;
+                    double sumRe = 0;
+                    double sumIm = 0;
+                    for (int t = offset; t < offset + count; t++) {
+                        sumRe += xRe[t] * yRe[t] + xIm[t] * yIm[t];
+                        sumIm += xIm[t] * yRe[t] - xRe[t] * yIm[t];
+                    }
+                    crossRe[base + b] += sumRe;
+                    crossIm[base + b] += sumIm;
+                }
+            }
+        }
+    }
+
+    private double[] matrix(Measure measure) {
+        double[] result = new double[channels * channels];
+        for (int i = 0; i < channels; i++) {
+            result[i * channels + i] = 1;
+            int ii = pairIndex(i, i) * bins;
+            for (int j = i + 1; j < channels; j++) {
+                int jj = pairIndex(j, j) * bins;
+                int ij = pairIndex(i, j) * bins;
+                double value;
+                if (measure == Measure.COHERENCE) {
+                    double sum = 0;
+                    for (int b = 0; b < bins; b++) {
+                        double denominator = crossRe[ii + b] * crossRe[jj + b];
+                        double re = crossRe[ij + b];
+                        double im = crossIm[ij + b];
+                        sum += denominator > 0 ? (re * re + im * im) / denominator : 0;
+                    }
+                    value = sum / bins;
+                } else {
+                    double cross = 0;
+                    double powerI = 0;
+                    double powerJ = 0;
+                    for (int b = 0; b < bins; b++) {
+                        cross += binWeight[b] * crossRe[ij + b];
+                        powerI += binWeight[b] * crossRe[ii + b];
+                        powerJ += binWeight[b] * crossRe[jj + b];
+                    }
+                    value = powerI > 0 && powerJ > 0 ? cross / Math.sqrt(powerI * powerJ) : 0;
+                }
+                result[i * channels + j] = value;
+                result[j * channels + i] = value;
+            }
+        }
+        return result;
+    }
+
+    // Row-major upper triangle including the diagonal, i <= j
+    private int pairIndex(int i, int j) {
+        return i * channels - i * (i - 1) / 2 + (j - i);
+    }
+
+    private static void run(List<Callable<Void>> tasks, ExecutorService executor) throws IOException {
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Connectivity computation was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static void readFully(ChannelReader reader, long start, double[] dst, int len) throws IOException {
+        int done = 0;
+        while (done < len) {
+            int n = reader.read(start + done, dst, done, len - done);
+            if (n <= 0) throw new IOException("Unexpected end of channel at sample " + (start + done));
+            done += n;
+        }
+    }
+
+    // Per-thread buffers, grown to the largest segment and batch span seen on the thread
+    private static final class Workspace {
+        double[] span = new double[0];
+        double[] re = new double[0];
+        double[] im = new double[0];
+        double[] outRe = new double[0];
+        double[] outIm = new double[0];
+        double[] scratch = new double[0];
+
+        void ensure(int segmentLength, int spanLength, int scratchLength) {
+            if (span.length < spanLength) span = new double[spanLength];
+            if (re.length < segmentLength) {
+                re = new double[segmentLength];
+                im = new double[segmentLength];
+                outRe = new double[segmentLength];
+                outIm = new double[segmentLength];
+            }
+            if (scratch.length < scratchLength) scratch = new double[scratchLength];
+        }
+    }
+}
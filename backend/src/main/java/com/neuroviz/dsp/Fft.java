@@ -0,0 +1,205 @@
+package com.neuroviz.dsp;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Mixed-radix complex FFT on split re/im double arrays (decimation in time, after kissfft).
+// A plan holds only the factorisation and twiddles, so one cached plan per size is shared by
+// every thread; callers bring their own output and scratch arrays and transforms allocate
+// nothing. Radix 4, 2 and 3 have dedicated butterflies, other factors use a generic one.
+public final class Fft {
+
+    private static final ConcurrentHashMap<Integer, Fft> PLANS = new ConcurrentHashMap<>();
+
+    private final int n;
+    private final int[] factors; // radix, remaining length; per stage
+    private final double[] twiddleRe;
+    private final double[] twiddleIm;
+    private final int maxGenericRadix;
+
+    private Fft(int n) {
+        this.n = n;
+        this.factors = factor(n);
+        this.twiddleRe = new double[n];
+        this.twiddleIm = new double[n];
+        for (int i = 0; i < n; i++) {
+            double phase = -2 * Math.PI * i / n;
+            twiddleRe[i] = Math.cos(phase);
+            twiddleIm[i] = Math.sin(phase);
+        }
+        int maxRadix = 0;
+        for (int s = 0; s < factors.length; s += 2) {
+            int p = factors[s];
+            if (p != 2 && p != 3 && p != 4) maxRadix = Math.max(maxRadix, p);
+        }
+        this.maxGenericRadix = maxRadix;
+    }
+
+    public static Fft forSize(int n) {
+        if (n < 1) throw new IllegalArgumentException("FFT size must be positive: " + n);
+        return PLANS.computeIfAbsent(n, Fft::new);
+    }
+
+    public int size() {
+        return n;
+    }
+
+    // Length of the scratch array forward() needs; 0 when every factor has its own butterfly
+    public int scratchLength() {
+        return 2 * maxGenericRadix;
+    }
+
+    // Forward transform, X[k] = sum x[j] e^(-2 pi i jk / n). Input and output must not overlap.
+    public void forward(double[] inRe, double[] inIm, double[] outRe, double[] outIm, double[] scratch) {
+        if (n == 1) {
+            outRe[0] = inRe[0];
+            outIm[0] = inIm[0];
+            return;
+        }
+        work(inRe, inIm, 0, outRe, outIm, 0, 1, 0, scratch);
+    }
+
+    private void work(double[] inRe, double[] inIm, int in, double[] outRe, double[] outIm, int out,
+                      int fstride, int stage, double[] scratch) {
+        int p = factors[stage];
+        int m = factors[stage + 1];
+        if (m == 1) {
+            for (int j = 0; j < p; j++) {
+                outRe[out + j] = inRe[in + j * fstride];
+                outIm[out + j] = inIm[in + j * fstride];
+            }
+        } else {
+            // Each sub-transform covers every p-th input and lands in its own block of m outputs
+            for (int q = 0; q < p; q++) {
+                work(inRe, inIm, in + q * fstride, outRe, outIm, out + q * m, fstride * p, stage + 2, scratch);
+            }
+        }
+
+        switch (p) {
+            case 2 -> butterfly2(outRe, outIm, out, fstride, m);
+            case 3 -> butterfly3(outRe, outIm, out, fstride, m);
+            case 4 -> butterfly4(outRe, outIm, out, fstride, m);
+            default -> butterflyGeneric(outRe, outIm, out, fstride, m, p, scratch);
+        }
+    }
+
+    private void butterfly2(double[] re, double[] im, int out, int fstride, int m) {
+        for (int k = 0; k < m; k++) {
+            int a = out + k;
+            int b = a + m;
+            double tr = twiddleRe[k * fstride];
+            double ti = twiddleIm[k * fstride];
+            double xr = re[b] * tr - im[b] * ti;
+            double xi = re[b] * ti + im[b] * tr;
+            re[b] = re[a] - xr;
+            im[b] = im[a] - xi;
+            re[a] += xr;
+            im[a] += xi;
+        }
+    }
+
+    private void butterfly3(double[] re, double[] im, int out, int fstride, int m) {
+        double epi3 = twiddleIm[fstride * m]; // -sin(2 pi / 3)
+        for (int k = 0; k < m; k++) {
+            int i0 = out + k;
+            int i1 = i0 + m;
+            int i2 = i1 + m;
+            double t1r = twiddleRe[k * fstride], t1i = twiddleIm[k * fstride];
+            double t2r = twiddleRe[2 * k * fstride], t2i = twiddleIm[2 * k * fstride];
+            double s1r = re[i1] * t1r - im[i1] * t1i;
+            double s1i = re[i1] * t1i + im[i1] * t1r;
+            double s2r = re[i2] * t2r - im[i2] * t2i;
+            double s2i = re[i2] * t2i + im[i2] * t2r;
+
+            double s3r = s1r + s2r, s3i = s1i + s2i;
+            double s0r = (s1r - s2r) * epi3, s0i = (s1i - s2i) * epi3;
+
+            double hr = re[i0] - s3r * 0.5;
+            double hi = im[i0] - s3i * 0.5;
+            re[i0] += s3r;
+            im[i0] += s3i;
+            re[i2] = hr + s0i;
+            im[i2] = hi - s0r;
+            re[i1] = hr - s0i;
+            im[i1] = hi + s0r;
+        }
+    }
+
+    private void butterfly4(double[] re, double[] im, int out, int fstride, int m) {
+        for (int k = 0; k < m; k++) {
+            int i0 = out + k;
+            int i1 = i0 + m;
+            int i2 = i1 + m;
+            int i3 = i2 + m;
+            double t1r = twiddleRe[k * fstride], t1i = twiddleIm[k * fstride];
+            double t2r = twiddleRe[2 * k * fstride], t2i = twiddleIm[2 * k * fstride];
+            double t3r = twiddleRe[3 * k * fstride], t3i = twiddleIm[3 * k * fstride];
+            double s0r = re[i1] * t1r - im[i1] * t1i;
+            double s0i = re[i1] * t1i + im[i1] * t1r;
+            double s1r = re[i2] * t2r - im[i2] * t2i;
+            double s1i = re[i2] * t2i + im[i2] * t2r;
+            double s2r = re[i3] * t3r - im[i3] * t3i;
+            double s2i = re[i3] * t3i + im[i3] * t3r;
+
+            double s5r = re[i0] - s1r, s5i = im[i0] - s1i;
+            double ar = re[i0] + s1r, ai = im[i0] + s1i;
+            double s3r = s0r + s2r, s3i = s0i + s2i;
+            double s4r = s0r - s2r, s4i = s0i - s2i;
+
+            re[i2] = ar - s3r;
+            im[i2] = ai - s3i;
+            re[i0] = ar + s3r;
+            im[i0] = ai + s3i;
+            re[i1] = s5r + s4i;
+            im[i1] = s5i - s4r;
+            re[i3] = s5r - s4i;
+            im[i3] = s5i + s4r;
+        }
+    }
+
+    private void butterflyGeneric(double[] re, double[] im, int out, int fstride, int m, int p, double[] scratch) {
+        for (int u = 0; u < m; u++) {
+            for (int q = 0, k = u; q < p; q++, k += m) {
+                scratch[2 * q] = re[out + k];
+                scratch[2 * q + 1] = im[out + k];
+            }
+            for (int q1 = 0, k = u; q1 < p; q1++, k += m) {
+                double sumR = scratch[0];
+                double sumI = scratch[1];
+                int twiddle = 0;
+                for (int q = 1; q < p; q++) {
+                    twiddle += fstride * k;
+                    if (twiddle >= n) twiddle -= n;
+                    double xr = scratch[2 * q], xi = scratch[2 * q + 1];
+                    sumR += xr * twiddleRe[twiddle] - xi * twiddleIm[twiddle];
+                    sumI += xr * twiddleIm[twiddle] + xi * twiddleRe[twiddle];
+                }
+                re[out + k] = sumR;
+                im[out + k] = sumI;
+            }
+        }
+    }
+
+    // Radix 4 first, then 2, 3 and odd numbers; a prime left above sqrt(n) is one stage
+    private static int[] factor(int n) {
+        int[] factors = new int[64];
+        int count = 0;
+        int p = 4;
+        double floorSqrt = Math.floor(Math.sqrt(n));
+        int remaining = n;
+        while (remaining > 1) {
+            while (remaining % p != 0) {
+                switch (p) {
+                    case 4 -> p = 2;
+                    case 2 -> p = 3;
+                    default -> p += 2;
+                }
+                if (p > floorSqrt) p = remaining;
+            }
+            remaining /= p;
+            factors[count++] = p;
+            factors[count++] = remaining;
+        }
+        return Arrays.copyOf(factors, count);
+    }
+}
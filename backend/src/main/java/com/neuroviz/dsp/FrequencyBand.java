@@ -0,0 +1,32 @@
+package com.neuroviz.dsp;
+
+import java.util.Locale;
+
+// Classical EEG bands, with the edges the processing service uses
+public enum FrequencyBand {
+    DELTA(0.5, 4.0),
+    THETA(4.0, 8.0),
+    ALPHA(8.0, 13.0),
+    BETA(13.0, 30.0),
+    GAMMA(30.0, 45.0);
+
+    private final double lowHz;
+    private final double highHz;
+
+    FrequencyBand(double lowHz, double highHz) {
+        this.lowHz = lowHz;
+        this.highHz = highHz;
+    }
+
+    public double getLowHz() {
+        return lowHz;
+    }
+
+    public double getHighHz() {
+        return highHz;
+    }
+
+    public String getKey() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,126 @@
+package com.neuroviz.dsp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// IIR designs as second-order sections, flattened six coefficients per section in scipy's
+// layout (b0, b1, b2, 1, a1, a2). Responses match scipy.signal.butter and iirnotch, which
+// the processing service uses; sections avoid the precision loss of one high-order polynomial.
+public final class IirDesign {
+
+    private IirDesign() {}
+
+    // scipy.signal.butter(order, [low, high], btype="band"): 2 * order poles in order sections
+    public static double[] butterworthBandpass(int order, double lowHz, double highHz, double sampleRate) {
+        double nyquist = sampleRate / 2;
+        double low = lowHz / nyquist;
+        double high = highHz / nyquist;
+        if (order < 1 || !(low > 0) || !(high > low) || !(high < 1)) {
+            throw new IllegalArgumentException("Bandpass " + lowHz + "-" + highHz + " Hz needs 0 < low < high < "
+                    + nyquist + " Hz");
+        }
+
+        // Pre-warped analog band edges for the bilinear transform (fs = 2, as scipy uses)
+        double warpedLow = 4 * Math.tan(Math.PI * low / 2);
+        double warpedHigh = 4 * Math.tan(Math.PI * high / 2);
+        double bandwidth = warpedHigh - warpedLow;
+        double centre = Math.sqrt(warpedLow * warpedHigh);
+
+        // Prototype poles -exp(i pi m / 2N), m = -N+1, -N+3, ..., N-1, moved to the band and
+        // mapped to z = (4 + s) / (4 - s). The gain tracks prod(4 - zeros) / prod(4 - poles).
+        List<double[]> poles = new ArrayList<>();
+        double gainRe = Math.pow(bandwidth, order) * Math.pow(4, order);
+        double gainIm = 0;
+        for (int m = -order + 1; m < order; m += 2) {
+            double angle = Math.PI * m / (2.0 * order);
+            double pr = -Math.cos(angle) * bandwidth / 2;
+            double pi = -Math.sin(angle) * bandwidth / 2;
+            // sqrt(p^2 - centre^2)
+            double[] root = sqrt(pr * pr - pi * pi - centre * centre, 2 * pr * pi);
+            for (int sign = -1; sign <= 1; sign += 2) {
+                double sr = pr + sign * root[0];
+                double si = pi + sign * root[1];
+                double[] quotient = divide(gainRe, gainIm, 4 - sr, -si);
+                gainRe = quotient[0];
+                gainIm = quotient[1];
+                poles.add(divide(4 + sr, si, 4 - sr, -si));
+            }
+        }
+
+        // N zeros at z = 1 and N at z = -1 give every section the numerator 1 - z^-2
+        double[] sos = new double[6 * order];
+        List<double[]> pairs = pairConjugates(poles);
+        for (int s = 0; s < order; s++) {
+            double[] pair = pairs.get(s);
+            double gain = s == 0 ? gainRe : 1.0;
+            sos[6 * s] = gain;
+            sos[6 * s + 1] = 0;
+            sos[6 * s + 2] = -gain;
+            sos[6 * s + 3] = 1;
+            sos[6 * s + 4] = pair[0];
+            sos[6 * s + 5] = pair[1];
+        }
+        return sos;
+    }
+
+    // scipy.signal.iirnotch(f0, q, fs): one section with unity gain away from the notch
+    public static double[] notch(double frequencyHz, double q, double sampleRate) {
+        double w0 = 2 * frequencyHz / sampleRate;
+        if (!(w0 > 0) || !(w0 < 1) || !(q > 0)) {
+            throw new IllegalArgumentException("Notch at " + frequencyHz + " Hz needs 0 < f0 < " + sampleRate / 2 + " Hz");
+        }
+        double bandwidth = w0 / q * Math.PI;
+        double beta = Math.tan(bandwidth / 2); // sqrt(1 - gb^2) / gb = 1 for gb = 1 / sqrt(2)
+        double gain = 1 / (1 + beta);
+        double cos = Math.cos(w0 * Math.PI);
+        return new double[] {gain, -2 * gain * cos, gain, 1, -2 * gain * cos, 2 * gain - 1};
+    }
+
+    public static double[] cascade(double[]... designs) {
+        int length = 0;
+        for (double[] sos : designs) {
+            length += sos.length;
+        }
+        double[] combined = new double[length];
+        int position = 0;
+        for (double[] sos : designs) {
+            System.arraycopy(sos, 0, combined, position, sos.length);
+            position += sos.length;
+        }
+        return combined;
+    }
+
+    // Denominator terms (a1, a2) per section: complex poles with their conjugates, then real
+    // poles two at a time
+    private static List<double[]> pairConjugates(List<double[]> poles) {
+        List<double[]> pairs = new ArrayList<>();
+        List<Double> real = new ArrayList<>();
+        for (double[] p : poles) {
+            if (Math.abs(p[1]) <= 1e-12) {
+                real.add(p[0]);
+            } else if (p[1] > 0) {
+                pairs.add(new double[] {-2 * p[0], p[0] * p[0] + p[1] * p[1]});
+            }
+        }
+        double[] reals = real.stream().mapToDouble(Double::doubleValue).toArray();
+        Arrays.sort(reals);
+        for (int i = 0; i + 1 < reals.length; i += 2) {
+            pairs.add(new double[] {-(reals[i] + reals[i + 1]), reals[i] * reals[i + 1]});
+        }
+        return pairs;
+    }
+
+    private static double[] divide(double ar, double ai, double br, double bi) {
+        double d = br * br + bi * bi;
+        return new double[] {(ar * br + ai * bi) / d, (ai * br - ar * bi) / d};
+    }
+
+    // Principal square root of re + i im
+    private static double[] sqrt(double re, double im) {
+        double modulus = Math.hypot(re, im);
+        double r = Math.sqrt((modulus + re) / 2);
+        double i = Math.copySign(Math.sqrt((modulus - re) / 2), im);
+        return new double[] {r, i};
+    }
+}
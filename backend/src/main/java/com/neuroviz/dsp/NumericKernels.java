@@ -0,0 +1,49 @@
+package com.neuroviz.dsp;
+
+// The element-wise loops of the spectral code. get() returns the Vector API
+// implementation when the JVM runs with --add-modules jdk.incubator.vector and the CPU has
+// more than one double lane, and the scalar one otherwise; -Dneuroviz.kernels=scalar forces
+// the scalar one. Results of the two agree to rounding, not bit for bit.
+public interface NumericKernels {
+
+    String getName();
+
+    int getLanes();
+
+    double sum(double[] x, int off, int len);
+
+    // dst[i] = (x[i] - offset) * w[i]
+    void subtractMultiply(double[] x, double offset, double[] w, double[] dst, int len);
+
+    // acc[i] += re[i]^2 + im[i]^2
+    void accumulateSquaredMagnitude(double[] re, double[] im, double[] acc, int len);
+
+    // Trapezoidal integral of y over x for indices [from, to]
+    double trapezoid(double[] x, double[] y, int from, int to);
+
+    static NumericKernels get() {
+        return Selection.KERNELS;
+    }
+
+    final class Selection {
+
+        static final NumericKernels KERNELS = select();
+
+        private Selection() {}
+
+        private static NumericKernels select() {
+            boolean vectorModule = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+            if (!vectorModule || "scalar".equalsIgnoreCase(System.getProperty("neuroviz.kernels"))) {
+                return new ScalarKernels();
+            }
+            try {
+                // Loaded by name so the scalar path never links against the incubator module
+                NumericKernels vector = (NumericKernels) Class.forName("com.neuroviz.dsp.VectorKernels")
+                        .getDeclaredConstructor().newInstance();
+                return vector.getLanes() > 1 ? vector : new ScalarKernels();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return new ScalarKernels();
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.neuroviz.dsp;
+
+// One-sided power spectral density, in signal units squared per Hz
+public class PowerSpectrum {
+    private final double[] frequencies;
+    private final double[] density;
+    private final int segmentLength;
+    private final long segmentCount;
+
+    public PowerSpectrum(double[] frequencies, double[] density, int segmentLength, long segmentCount) {
+        this.frequencies = frequencies;
+        this.density = density;
+        this.segmentLength = segmentLength;
+        this.segmentCount = segmentCount;
+    }
+
+    public double[] getFrequencies() {
+        return frequencies;
+    }
+
+    public double[] getDensity() {
+        return density;
+    }
+
+    public int getSegmentLength() {
+        return segmentLength;
+    }
+
+    public long getSegmentCount() {
+        return segmentCount;
+    }
+}
@@ -0,0 +1,71 @@
+package com.neuroviz.dsp;
+
+// Mean and variance by Welford's update, plus extremes and mean square, in one pass.
+// NaN samples (unparseable cells) are counted separately and leave the statistics alone.
+public class RunningStats {
+
+    private long count;
+    private long nanCount;
+    private double mean;
+    private double m2;
+    private double sumSquares;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            nanCount++;
+            return;
+        }
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        sumSquares += value * value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    // Adds the samples summarised by other, by Chan's pairwise update of the mean and variance
+    public void merge(RunningStats other) {
+        nanCount += other.nanCount;
+        if (other.count == 0) return;
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+        sumSquares += other.sumSquares;
+        if (other.min < min) min = other.min;
+        if (other.max > max) max = other.max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getNanCount() {
+        return nanCount;
+    }
+
+    public double getMean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    // Population standard deviation (ddof = 0), as numpy.std and scipy.stats.zscore use
+    public double getStd() {
+        return count > 0 ? Math.sqrt(m2 / count) : Double.NaN;
+    }
+
+    public double getMin() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    public double getMax() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+    public double getRms() {
+        return count > 0 ? Math.sqrt(sumSquares / count) : Double.NaN;
+    }
+}
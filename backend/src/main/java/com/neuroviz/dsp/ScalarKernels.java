@@ -0,0 +1,46 @@
+package com.neuroviz.dsp;
+
+final class ScalarKernels implements NumericKernels {
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public int getLanes() {
+        return 1;
+    }
+
+    @Override
+    public double sum(double[] x, int off, int len) {
+        double sum = 0;
+        for (int i = off; i < off + len; i++) {
+            sum += x[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void subtractMultiply(double[] x, double offset, double[] w, double[] dst, int len) {
+        for (int i = 0; i < len; i++) {
+            dst[i] = (x[i] - offset) * w[i];
+        }
+    }
+
+    @Override
+    public void accumulateSquaredMagnitude(double[] re, double[] im, double[] acc, int len) {
+        for (int i = 0; i < len; i++) {
+            acc[i] += re[i] * re[i] + im[i] * im[i];
+        }
+    }
+
+    @Override
+    public double trapezoid(double[] x, double[] y, int from, int to) {
+        double area = 0;
+        for (int i = from; i < to; i++) {
+            area += (x[i + 1] - x[i]) * (y[i + 1] + y[i]);
+        }
+        return area / 2;
+    }
+}
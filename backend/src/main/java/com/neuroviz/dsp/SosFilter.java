@@ -0,0 +1,106 @@
+package com.neuroviz.dsp;
+
+import java.util.Arrays;
+
+// Cascade of biquads in transposed direct form II, the structure of scipy.signal.sosfilt.
+// The state survives between calls, so a signal can be filtered block by block.
+public class SosFilter {
+
+    private final double[] sos;
+    private final int sections;
+    private final double[] state;
+    private final double[] steadyState;
+
+    public SosFilter(double[] sos) {
+        if (sos.length % 6 != 0) {
+            throw new IllegalArgumentException("Second-order sections need six coefficients each");
+        }
+        this.sos = sos.clone();
+        this.sections = sos.length / 6;
+        this.state = new double[2 * sections];
+        this.steadyState = steadyState(this.sos);
+    }
+
+    public int getSectionCount() {
+        return sections;
+    }
+
+    public void reset() {
+        Arrays.fill(state, 0);
+    }
+
+    // State the filter would have after an infinitely long constant input x0, as
+    // scipy.signal.sosfilt_zi(sos) * x0; avoids the start-up transient of a DC offset
+    public void setSteadyState(double x0) {
+        for (int i = 0; i < state.length; i++) {
+            state[i] = steadyState[i] * x0;
+        }
+    }
+
+    // Filters len samples of x in place. The recursion cannot be vectorised along the signal, so
+    // sections run two per pass instead: the second section's chain overlaps the first's on
+    // the next sample, which keeps more of the CPU busy than one latency-bound chain.
+    public void filter(double[] x, int off, int len) {
+        int end = off + len;
+        int s = 0;
+        for (; s + 1 < sections; s += 2) {
+            double b0 = sos[6 * s], b1 = sos[6 * s + 1], b2 = sos[6 * s + 2];
+            double a1 = sos[6 * s + 4], a2 = sos[6 * s + 5];
+            double c0 = sos[6 * s + 6], c1 = sos[6 * s + 7], c2 = sos[6 * s + 8];
+            double d1 = sos[6 * s + 10], d2 = sos[6 * s + 11];
+            double z1 = state[2 * s];
+            double z2 = state[2 * s + 1];
+            double w1 = state[2 * s + 2];
+            double w2 = state[2 * s + 3];
+            for (int i = off; i < end; i++) {
+                double v = x[i];
+                double y = b0 * v + z1;
+                z1 = b1 * v - a1 * y + z2;
+                z2 = b2 * v - a2 * y;
+                double u = c0 * y + w1;
+                w1 = c1 * y - d1 * u + w2;
+                w2 = c2 * y - d2 * u;
+                x[i] = u;
+            }
+            state[2 * s] = z1;
+            state[2 * s + 1] = z2;
+            state[2 * s + 2] = w1;
+            state[2 * s + 3] = w2;
+        }
+        if (s < sections) {
+            double b0 = sos[6 * s], b1 = sos[6 * s + 1], b2 = sos[6 * s + 2];
+            double a1 = sos[6 * s + 4], a2 = sos[6 * s + 5];
+            double z1 = state[2 * s];
+            double z2 = state[2 * s + 1];
+            for (int i = off; i < end; i++) {
+                double v = x[i];
+                double y = b0 * v + z1;
+                z1 = b1 * v - a1 * y + z2;
+                z2 = b2 * v - a2 * y;
+                x[i] = y;
+            }
+            state[2 * s] = z1;
+            state[2 * s + 1] = z2;
+        }
+    }
+
+    // Per section, the steady state for a unit step entering the cascade: the section sees
+    // the DC gain of the sections before it, and passes on its own DC gain G = sum(b) / sum(a)
+    private static double[] steadyState(double[] sos) {
+        int sections = sos.length / 6;
+        double[] zi = new double[2 * sections];
+        double scale = 1;
+        for (int s = 0; s < sections; s++) {
+            double b0 = sos[6 * s], b1 = sos[6 * s + 1], b2 = sos[6 * s + 2];
+            double a0 = sos[6 * s + 3], a1 = sos[6 * s + 4] / a0, a2 = sos[6 * s + 5] / a0;
+            b0 /= a0;
+            b1 /= a0;
+            b2 /= a0;
+            double gain = (b0 + b1 + b2) / (1 + a1 + a2);
+            zi[2 * s] = scale * (b1 - a1 * gain + b2 - a2 * gain);
+            zi[2 * s + 1] = scale * (b2 - a2 * gain);
+            scale *= gain;
+        }
+        return zi;
+    }
+}
@@ -0,0 +1,109 @@
+package com.neuroviz.dsp;
+
+import com.neuroviz.storage.ChannelReader;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+// Short-time Fourier transform with the semantics of scipy.signal.spectrogram: periodic Hann
+// window, per-frame mean removal, density scaling and one-sided output, frames that must fit
+// entirely. Frames are streamed from the channel reader and handed to the consumer one at a
+// time in order; two real frames share one complex FFT, as in WelchPsd.
+public final class Stft {
+
+    private static final NumericKernels KERNELS = NumericKernels.get();
+
+    private Stft() {}
+
+    // Receives the density of each frame; the array is reused for the next frame
+    @FunctionalInterface
+    public interface FrameConsumer {
+        void accept(long frame, double[] density) throws IOException;
+    }
+
+    public static long frameCount(long sampleCount, int segmentLength, int hop) {
+        return sampleCount < segmentLength ? 0 : (sampleCount - segmentLength) / hop + 1;
+    }
+
+    public static int binCount(int segmentLength) {
+        return segmentLength / 2 + 1;
+    }
+
+    public static void compute(ChannelReader reader, double sampleRate, int segmentLength, int hop,
+                               FrameConsumer consumer) throws IOException {
+        if (segmentLength < 1) {
+            throw new IllegalArgumentException("Segment length must be positive: " + segmentLength);
+        }
+        if (hop < 1 || hop > segmentLength) {
+            throw new IllegalArgumentException("Hop must be in [1, " + segmentLength + "]: " + hop);
+        }
+
+        long frames = frameCount(reader.getSampleCount(), segmentLength, hop);
+        int overlap = segmentLength - hop;
+        int bins = binCount(segmentLength);
+        Fft fft = Fft.forSize(segmentLength);
+        double[] window = Windows.hann(segmentLength);
+
+        double[] segment = new double[segmentLength];
+        double[] re = new double[segmentLength];
+        double[] im = new double[segmentLength];
+        double[] outRe = new double[segmentLength];
+        double[] outIm = new double[segmentLength];
+        double[] scratch = new double[fft.scratchLength()];
+        double[] even = new double[bins];
+        double[] odd = new double[bins];
+
+        // Density scaling of a single segment, doubled for the bins that fold negative frequencies
+        double scale = 1.0 / (sampleRate * Windows.sumOfSquares(window));
+        int lastDoubled = segmentLength % 2 == 0 ? bins - 2 : bins - 1;
+        double[] binScale = new double[bins];
+        for (int k = 0; k < bins; k++) {
+            binScale[k] = (k >= 1 && k <= lastDoubled) ? 2 * scale : scale;
+        }
+
+        for (long f = 0; f < frames; f++) {
+            if (f == 0 || overlap == 0) {
+                readFully(reader, f * hop, segment, 0, segmentLength);
+            } else {
+                System.arraycopy(segment, hop, segment, 0, overlap);
+                readFully(reader, f * hop + overlap, segment, overlap, hop);
+            }
+
+            double mean = KERNELS.sum(segment, 0, segmentLength) / segmentLength;
+            // Even frames go to the real part, odd ones to the imaginary part
+            KERNELS.subtractMultiply(segment, mean, window, (f & 1) == 0 ? re : im, segmentLength);
+
+            if ((f & 1) == 1) {
+                fft.forward(re, im, outRe, outIm, scratch);
+                unpack(outRe, outIm, even, odd, binScale);
+                consumer.accept(f - 1, even);
+                consumer.accept(f, odd);
+            } else if (f == frames - 1) {
+                Arrays.fill(im, 0.0);
+                fft.forward(re, im, outRe, outIm, scratch);
+                unpack(outRe, outIm, even, odd, binScale);
+                consumer.accept(f, even);
+            }
+        }
+    }
+
+    // With z = x + iy, X[k] = (Z[k] + conj Z[n-k]) / 2 and Y[k] = (Z[k] - conj Z[n-k]) / 2i
+    private static void unpack(double[] re, double[] im, double[] x, double[] y, double[] binScale) {
+        int n = re.length;
+        for (int k = 0; k < x.length; k++) {
+            int mirror = k == 0 ? 0 : n - k;
+            double a = re[k], b = im[k], c = re[mirror], d = im[mirror];
+            x[k] = 0.25 * ((a + c) * (a + c) + (b - d) * (b - d)) * binScale[k];
+            y[k] = 0.25 * ((b + d) * (b + d) + (a - c) * (a - c)) * binScale[k];
+        }
+    }
+
+    private static void readFully(ChannelReader reader, long start, double[] dst, int off, int len) throws IOException {
+        int done = 0;
+        while (done < len) {
+            int n = reader.read(start + done, dst, off + done, len - done);
+            if (n <= 0) throw new IOException("Unexpected end of channel at sample " + (start + done));
+            done += n;
+        }
+    }
+}
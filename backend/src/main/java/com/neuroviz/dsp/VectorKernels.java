@@ -0,0 +1,86 @@
+package com.neuroviz.dsp;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Vector API kernels at the widest double shape of the CPU (4 lanes with AVX2, 8 with
+// AVX-512). Each loop runs full vectors and finishes the remainder with scalar code.
+final class VectorKernels implements NumericKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public String getName() {
+        return "vector";
+    }
+
+    @Override
+    public int getLanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public double sum(double[] x, int off, int len) {
+        int bound = SPECIES.loopBound(len);
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            acc = acc.add(DoubleVector.fromArray(SPECIES, x, off + i));
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < len; i++) {
+            sum += x[off + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void subtractMultiply(double[] x, double offset, double[] w, double[] dst, int len) {
+        int bound = SPECIES.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, x, i)
+                    .sub(offset)
+                    .mul(DoubleVector.fromArray(SPECIES, w, i))
+                    .intoArray(dst, i);
+        }
+        for (; i < len; i++) {
+            dst[i] = (x[i] - offset) * w[i];
+        }
+    }
+
+    @Override
+    public void accumulateSquaredMagnitude(double[] re, double[] im, double[] acc, int len) {
+        int bound = SPECIES.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector r = DoubleVector.fromArray(SPECIES, re, i);
+            DoubleVector m = DoubleVector.fromArray(SPECIES, im, i);
+            r.fma(r, m.fma(m, DoubleVector.fromArray(SPECIES, acc, i))).intoArray(acc, i);
+        }
+        for (; i < len; i++) {
+            acc[i] += re[i] * re[i] + im[i] * im[i];
+        }
+    }
+
+    @Override
+    public double trapezoid(double[] x, double[] y, int from, int to) {
+        int len = to - from;
+        int bound = SPECIES.loopBound(len);
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            int k = from + i;
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, x, k + 1).sub(DoubleVector.fromArray(SPECIES, x, k));
+            DoubleVector sy = DoubleVector.fromArray(SPECIES, y, k + 1).add(DoubleVector.fromArray(SPECIES, y, k));
+            acc = dx.fma(sy, acc);
+        }
+        double area = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < len; i++) {
+            int k = from + i;
+            area += (x[k + 1] - x[k]) * (y[k + 1] + y[k]);
+        }
+        return area / 2;
+    }
+}
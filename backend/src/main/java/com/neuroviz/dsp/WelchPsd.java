@@ -0,0 +1,185 @@
+package com.neuroviz.dsp;
+
+import com.neuroviz.storage.ChannelReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+// Welch power spectral density with the semantics of scipy.signal.welch as the processing
+// service calls it: periodic Hann window, per-segment mean removal, density scaling, one-sided
+// output and segments that must fit entirely (no padding). Segments are streamed from the
+// channel reader into per-thread buffers, two real segments share one complex FFT, and
+// nothing is allocated per segment.
+public final class WelchPsd {
+
+    // Defaults of the processing service: min(1024, n / 4) and min(512, n / 8)
+    public static final int MAX_SEGMENT_LENGTH = 1024;
+    public static final int MAX_OVERLAP = 512;
+
+    private static final NumericKernels KERNELS = NumericKernels.get();
+
+    private static final ThreadLocal<Workspace> WORKSPACE = ThreadLocal.withInitial(Workspace::new);
+
+    private WelchPsd() {}
+
+    public static PowerSpectrum estimate(ChannelReader reader, double sampleRate) throws IOException {
+        long n = reader.getSampleCount();
+        return estimate(reader, sampleRate, defaultSegmentLength(n), defaultOverlap(n));
+    }
+
+    public static PowerSpectrum estimate(double[] samples, double sampleRate) {
+        try {
+            return estimate(new ArrayReader(samples), sampleRate);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static int defaultSegmentLength(long sampleCount) {
+        return (int) Math.min(MAX_SEGMENT_LENGTH, sampleCount / 4);
+    }
+
+    public static int defaultOverlap(long sampleCount) {
+        return (int) Math.min(MAX_OVERLAP, sampleCount / 8);
+    }
+
+    public static PowerSpectrum estimate(ChannelReader reader, double sampleRate, int segmentLength, int overlap)
+            throws IOException {
+        int bins = segmentLength / 2 + 1;
+        double[] frequencies = new double[Math.max(0, bins)];
+        double[] density = new double[Math.max(0, bins)];
+        long segments = estimateInto(reader, sampleRate, segmentLength, overlap, frequencies, density);
+        return new PowerSpectrum(frequencies, density, segmentLength, segments);
+    }
+
+    // The same estimate written to caller-owned arrays of at least segmentLength / 2 + 1
+    // entries, for callers that estimate many short windows; once the thread's workspace has
+    // grown to the segment length nothing is allocated. Returns the number of segments.
+    public static long estimateInto(ChannelReader reader, double sampleRate, int segmentLength, int overlap,
+                                    double[] frequencies, double[] density) throws IOException {
+        long n = reader.getSampleCount();
+        if (segmentLength < 1) {
+            throw new IllegalArgumentException("Channel is too short for a spectral estimate: " + n + " samples");
+        }
+        if (segmentLength > n) {
+            throw new IllegalArgumentException("Segment length " + segmentLength + " exceeds " + n + " samples");
+        }
+        if (overlap < 0 || overlap >= segmentLength) {
+            throw new IllegalArgumentException("Overlap must be in [0, " + segmentLength + "): " + overlap);
+        }
+
+        int step = segmentLength - overlap;
+        long segments = (n - overlap) / step;
+        Fft fft = Fft.forSize(segmentLength);
+        double[] window = Windows.hann(segmentLength);
+        Workspace ws = WORKSPACE.get();
+        ws.ensure(segmentLength, fft.scratchLength());
+
+        int bins = segmentLength / 2 + 1;
+        double[] segment = ws.segment;
+        Arrays.fill(ws.power, 0, segmentLength, 0.0);
+
+        for (long s = 0; s < segments; s++) {
+            if (s == 0) {
+                readFully(reader, 0, segment, 0, segmentLength);
+            } else {
+                System.arraycopy(segment, step, segment, 0, overlap);
+                readFully(reader, s * step + overlap, segment, overlap, step);
+            }
+
+            double mean = KERNELS.sum(segment, 0, segmentLength) / segmentLength;
+
+            // Even segments go to the real part, odd ones to the imaginary part
+            double[] target = (s & 1) == 0 ? ws.re : ws.im;
+            KERNELS.subtractMultiply(segment, mean, window, target, segmentLength);
+            if ((s & 1) == 1) {
+                accumulate(fft, ws);
+            }
+        }
+        if ((segments & 1) == 1) {
+            Arrays.fill(ws.im, 0, segmentLength, 0.0);
+            accumulate(fft, ws);
+        }
+
+        // With z = x + iy for real x and y, |X[k]|^2 + |Y[k]|^2 = (|Z[k]|^2 + |Z[n-k]|^2) / 2,
+        // so the pairs' power needs no unpacking; a lone segment (y = 0) works the same way.
+        // |Z|^2 is summed over all segments first and folded once here.
+        double[] power = ws.power;
+        for (int k = 0; k < bins; k++) {
+            int mirror = k == 0 ? 0 : segmentLength - k;
+            density[k] = 0.5 * (power[k] + power[mirror]);
+        }
+
+        double scale = 1.0 / (sampleRate * Windows.sumOfSquares(window) * segments);
+        int lastDoubled = segmentLength % 2 == 0 ? bins - 2 : bins - 1;
+        for (int k = 0; k < bins; k++) {
+            density[k] *= (k >= 1 && k <= lastDoubled) ? 2 * scale : scale;
+            frequencies[k] = k * sampleRate / segmentLength;
+        }
+        return segments;
+    }
+
+    private static void accumulate(Fft fft, Workspace ws) {
+        fft.forward(ws.re, ws.im, ws.outRe, ws.outIm, ws.scratch);
+        KERNELS.accumulateSquaredMagnitude(ws.outRe, ws.outIm, ws.power, fft.size());
+    }
+
+    private static void readFully(ChannelReader reader, long start, double[] dst, int off, int len) throws IOException {
+        int done = 0;
+        while (done < len) {
+            int n = reader.read(start + done, dst, off + done, len - done);
+            if (n <= 0) throw new IOException("Unexpected end of channel at sample " + (start + done));
+            done += n;
+        }
+    }
+
+    private static final class Workspace {
+        private double[] segment = new double[0];
+        private double[] re = new double[0];
+        private double[] im = new double[0];
+        private double[] outRe = new double[0];
+        private double[] outIm = new double[0];
+        private double[] power = new double[0];
+        private double[] scratch = new double[0];
+
+        // Grows to the largest segment length seen on this thread and is reused after that
+        void ensure(int length, int scratchLength) {
+            if (segment.length < length) {
+                segment = new double[length];
+                re = new double[length];
+                im = new double[length];
+                outRe = new double[length];
+                outIm = new double[length];
+                power = new double[length];
+            }
+            if (scratch.length < scratchLength) {
+                scratch = new double[scratchLength];
+            }
+        }
+    }
+
+    private static final class ArrayReader implements ChannelReader {
+        private final double[] samples;
+
+        ArrayReader(double[] samples) {
+            this.samples = samples;
+        }
+
+        @Override
+        public long getSampleCount() {
+            return samples.length;
+        }
+
+        @Override
+        public int read(long start, double[] dst, int off, int len) {
+            int count = (int) Math.max(0, Math.min(len, samples.length - start));
+            System.arraycopy(samples, (int) start, dst, off, count);
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
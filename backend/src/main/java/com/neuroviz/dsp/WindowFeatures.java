@@ -0,0 +1,131 @@
+package com.neuroviz.dsp;
+
+import com.neuroviz.storage.ChannelReader;
+
+import java.io.IOException;
+import java.util.List;
+
+// The features the processing service's classifier extracts from one window, in its order:
+// mean, standard deviation, variance, range and RMS of the samples, the five band powers,
+// then mean, standard deviation, peak frequency and sum of the Welch density. The PSD uses
+// the service's defaults for the window length.
+//
+// An instance holds the buffers for one window length and is reused for every window a
+// thread evaluates, so extraction allocates nothing; instances are not thread-safe.
+public final class WindowFeatures {
+
+    public static final List<String> NAMES = List.of(
+            "mean", "std", "var", "range", "rms",
+            "delta", "theta", "alpha", "beta", "gamma",
+            "psd_mean", "psd_std", "peak_frequency", "total_power");
+
+    public static final int COUNT = 14;
+
+    private static final FrequencyBand[] BANDS = FrequencyBand.values();
+
+    private final int windowSamples;
+    private final int segmentLength;
+    private final int overlap;
+    private final double[] frequencies;
+    private final double[] density;
+    private final WindowReader reader = new WindowReader();
+
+    public WindowFeatures(int windowSamples) {
+        this.windowSamples = windowSamples;
+        this.segmentLength = WelchPsd.defaultSegmentLength(windowSamples);
+        this.overlap = WelchPsd.defaultOverlap(windowSamples);
+        if (segmentLength < 1) {
+            throw new IllegalArgumentException("Window is too short for a spectral estimate: " + windowSamples
+                    + " samples");
+        }
+        this.frequencies = new double[segmentLength / 2 + 1];
+        this.density = new double[segmentLength / 2 + 1];
+    }
+
+    public int getWindowSamples() {
+        return windowSamples;
+    }
+
+    // Features of samples[offset, offset + windowSamples) written to out[0, COUNT)
+    public void extract(double[] samples, int offset, double sampleRate, double[] out) {
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = offset; i < offset + windowSamples; i++) {
+            double v = samples[i];
+            sum += v;
+            if (v < min) min = v;
+            if (v > max) max = v;
+        }
+        double mean = sum / windowSamples;
+        double m2 = 0;
+        double squares = 0;
+        for (int i = offset; i < offset + windowSamples; i++) {
+            double v = samples[i];
+            m2 += (v - mean) * (v - mean);
+            squares += v * v;
+        }
+        double variance = m2 / windowSamples;
+        out[0] = mean;
+        out[1] = Math.sqrt(variance);
+        out[2] = variance;
+        out[3] = max - min;
+        out[4] = Math.sqrt(squares / windowSamples);
+
+        reader.wrap(samples, offset, windowSamples);
+        try {
+            WelchPsd.estimateInto(reader, sampleRate, segmentLength, overlap, frequencies, density);
+        } catch (IOException e) {
+            throw new IllegalStateException("Reading an array cannot fail", e);
+        }
+        int bins = frequencies.length;
+        for (int b = 0; b < BANDS.length; b++) {
+            out[5 + b] = BandPower.integrate(frequencies, density, bins, BANDS[b].getLowHz(), BANDS[b].getHighHz());
+        }
+
+        double total = 0;
+        int peak = 0;
+        for (int k = 0; k < bins; k++) {
+            total += density[k];
+            if (density[k] > density[peak]) peak = k;
+        }
+        double psdMean = total / bins;
+        double psdM2 = 0;
+        for (int k = 0; k < bins; k++) {
+            psdM2 += (density[k] - psdMean) * (density[k] - psdMean);
+        }
+        out[10] = psdMean;
+        out[11] = Math.sqrt(psdM2 / bins);
+        out[12] = frequencies[peak];
+        out[13] = total;
+    }
+
+    // A window of a caller's array, re-pointed for every window
+    private static final class WindowReader implements ChannelReader {
+        private double[] samples;
+        private int offset;
+        private int length;
+
+        void wrap(double[] samples, int offset, int length) {
+            this.samples = samples;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public long getSampleCount() {
+            return length;
+        }
+
+        @Override
+        public int read(long start, double[] dst, int off, int len) {
+            int count = (int) Math.max(0, Math.min(len, length - start));
+            System.arraycopy(samples, offset + (int) start, dst, off, count);
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
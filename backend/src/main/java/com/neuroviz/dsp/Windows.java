@@ -0,0 +1,30 @@
+package com.neuroviz.dsp;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// Cached analysis windows. The arrays are shared and must not be modified by callers.
+public final class Windows {
+
+    private static final ConcurrentHashMap<Integer, double[]> HANN = new ConcurrentHashMap<>();
+
+    private Windows() {}
+
+    // Periodic Hann, as scipy.signal.get_window("hann", n) uses for spectral estimates
+    public static double[] hann(int n) {
+        return HANN.computeIfAbsent(n, length -> {
+            double[] window = new double[length];
+            for (int i = 0; i < length; i++) {
+                window[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / length);
+            }
+            return window;
+        });
+    }
+
+    public static double sumOfSquares(double[] window) {
+        double sum = 0;
+        for (double w : window) {
+            sum += w * w;
+        }
+        return sum;
+    }
+}
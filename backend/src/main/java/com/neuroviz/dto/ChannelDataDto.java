@@ -1,5 +1,7 @@
 package com.neuroviz.dto;
 
+import com.neuroviz.storage.ChannelCodec;
+import com.neuroviz.storage.SampleFormat;
 import java.time.LocalDateTime;
 
 public class ChannelDataDto {
@@ -8,6 +10,11 @@ public class ChannelDataDto {
     private Integer sampleRate;
     private String dataLocation;
     private Long dataSizeBytes;
+    private SampleFormat sampleFormat;
+    private Long sampleCount;
+    private ChannelCodec codec;
+    private Double compressionRatio;
+    private Double decodeMbPerSecond;
     private LocalDateTime createdAt;
 
     // Constructors
@@ -63,6 +70,46 @@ public class ChannelDataDto {
         this.dataSizeBytes = dataSizeBytes;
     }
 
+    public SampleFormat getSampleFormat() {
+        return sampleFormat;
+    }
+
+    public void setSampleFormat(SampleFormat sampleFormat) {
+        this.sampleFormat = sampleFormat;
+    }
+
+    public Long getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(Long sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public ChannelCodec getCodec() {
+        return codec;
+    }
+
+    public void setCodec(ChannelCodec codec) {
+        this.codec = codec;
+    }
+
+    public Double getCompressionRatio() {
+        return compressionRatio;
+    }
+
+    public void setCompressionRatio(Double compressionRatio) {
+        this.compressionRatio = compressionRatio;
+    }
+
+    public Double getDecodeMbPerSecond() {
+        return decodeMbPerSecond;
+    }
+
+    public void setDecodeMbPerSecond(Double decodeMbPerSecond) {
+        this.decodeMbPerSecond = decodeMbPerSecond;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
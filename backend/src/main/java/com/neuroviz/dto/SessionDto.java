@@ -4,6 +4,7 @@ import com.neuroviz.entity.Session;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 public class SessionDto {
     private Long id;
@@ -11,6 +12,7 @@ public class SessionDto {
     private String description;
     private Session.SourceType sourceType;
     private String filePath;
+    private String contentHash;
     private Integer sampleRate;
     private BigDecimal durationSeconds;
     private Integer channelCount;
@@ -19,6 +21,7 @@ public class SessionDto {
     private LocalDateTime updatedAt;
     private List<ChannelDataDto> channelData;
     private List<ProcessingJobDto> processingJobs;
+    private Map<String, Long> parseErrors;
 
     // Constructors
     public SessionDto() {}
@@ -80,6 +83,14 @@ public class SessionDto {
         this.filePath = filePath;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     public Integer getSampleRate() {
         return sampleRate;
     }
@@ -143,4 +154,12 @@ public class SessionDto {
     public void setProcessingJobs(List<ProcessingJobDto> processingJobs) {
         this.processingJobs = processingJobs;
     }
+
+    public Map<String, Long> getParseErrors() {
+        return parseErrors;
+    }
+
+    public void setParseErrors(Map<String, Long> parseErrors) {
+        this.parseErrors = parseErrors;
+    }
 }
@@ -0,0 +1,110 @@
+package com.neuroviz.dto;
+
+import com.neuroviz.entity.UploadSession;
+import java.util.List;
+
+public class UploadSessionDto {
+    private String uploadId;
+    private String fileName;
+    private Long totalSize;
+    private Integer chunkSize;
+    private Integer chunkCount;
+    private Integer receivedChunks;
+    private List<Integer> missingChunks;
+    private UploadSession.Status status;
+    private Long sessionId;
+    private Long jobId;
+    private String error;
+
+    // Constructors
+    public UploadSessionDto() {}
+
+    // Getters and Setters
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public Long getTotalSize() {
+        return totalSize;
+    }
+
+    public void setTotalSize(Long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    public Integer getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(Integer chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public Integer getChunkCount() {
+        return chunkCount;
+    }
+
+    public void setChunkCount(Integer chunkCount) {
+        this.chunkCount = chunkCount;
+    }
+
+    public Integer getReceivedChunks() {
+        return receivedChunks;
+    }
+
+    public void setReceivedChunks(Integer receivedChunks) {
+        this.receivedChunks = receivedChunks;
+    }
+
+    public List<Integer> getMissingChunks() {
+        return missingChunks;
+    }
+
+    public void setMissingChunks(List<Integer> missingChunks) {
+        this.missingChunks = missingChunks;
+    }
+
+    public UploadSession.Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(UploadSession.Status status) {
+        this.status = status;
+    }
+
+    public Long getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(Long sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(Long jobId) {
+        this.jobId = jobId;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,42 @@
+package com.neuroviz.dto.request;
+
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+public class BatchAnalyticsRequest {
+    
+    @NotEmpty
+    private List<Long> sessionIds;
+    private List<String> channels; // every channel of each session when empty
+    private Boolean includePsd; // full Welch spectra next to the band powers
+    
+    public BatchAnalyticsRequest() {
+        this.includePsd = false;
+    }
+    
+    // Getters and Setters
+    public List<Long> getSessionIds() {
+        return sessionIds;
+    }
+    
+    public void setSessionIds(List<Long> sessionIds) {
+        this.sessionIds = sessionIds;
+    }
+    
+    public List<String> getChannels() {
+        return channels;
+    }
+    
+    public void setChannels(List<String> channels) {
+        this.channels = channels;
+    }
+    
+    public Boolean getIncludePsd() {
+        return includePsd;
+    }
+    
+    public void setIncludePsd(Boolean includePsd) {
+        this.includePsd = includePsd;
+    }
+}
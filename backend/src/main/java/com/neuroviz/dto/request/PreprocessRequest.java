@@ -7,17 +7,20 @@ public class PreprocessRequest {
     private List<Double> bandpass; // [low, high] frequencies
     private Integer notch; // 50 or 60 Hz
     private Boolean artifact; // enable artifact rejection
+    private Boolean zeroPhase; // forward-backward filtering, no phase shift
     
     public PreprocessRequest() {
         this.bandpass = List.of(1.0, 40.0); // Default 1-40 Hz
         this.notch = 50; // Default 50 Hz notch
         this.artifact = true; // Default enable artifact rejection
+        this.zeroPhase = true; // Default zero-phase, as scipy filtfilt
     }
 
     public PreprocessRequest(List<Double> bandpass, Integer notch, Boolean artifact) {
         this.bandpass = bandpass;
         this.notch = notch;
         this.artifact = artifact;
+        this.zeroPhase = true;
     }
 
     // Getters and Setters
@@ -44,4 +47,12 @@ public class PreprocessRequest {
     public void setArtifact(Boolean artifact) {
         this.artifact = artifact;
     }
+
+    public Boolean getZeroPhase() {
+        return zeroPhase;
+    }
+
+    public void setZeroPhase(Boolean zeroPhase) {
+        this.zeroPhase = zeroPhase;
+    }
 }
@@ -1,5 +1,7 @@
 package com.neuroviz.entity;
 
+import com.neuroviz.storage.ChannelCodec;
+import com.neuroviz.storage.SampleFormat;
 import jakarta.persistence.*;
 import org.hibernate.annotations.CreationTimestamp;
 
@@ -32,6 +34,23 @@ public class ChannelData {
     @Column(name = "data_size_bytes")
     private Long dataSizeBytes;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "sample_format")
+    private SampleFormat sampleFormat;
+
+    @Column(name = "sample_count")
+    private Long sampleCount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "codec")
+    private ChannelCodec codec;
+
+    @Column(name = "compression_ratio")
+    private Double compressionRatio;
+
+    @Column(name = "decode_mb_per_sec")
+    private Double decodeMbPerSecond;
+
     @CreationTimestamp
     @Column(name = "created_at")
     private LocalDateTime createdAt;
@@ -98,6 +117,46 @@ public class ChannelData {
         this.dataSizeBytes = dataSizeBytes;
     }
 
+    public SampleFormat getSampleFormat() {
+        return sampleFormat;
+    }
+
+    public void setSampleFormat(SampleFormat sampleFormat) {
+        this.sampleFormat = sampleFormat;
+    }
+
+    public Long getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(Long sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public ChannelCodec getCodec() {
+        return codec;
+    }
+
+    public void setCodec(ChannelCodec codec) {
+        this.codec = codec;
+    }
+
+    public Double getCompressionRatio() {
+        return compressionRatio;
+    }
+
+    public void setCompressionRatio(Double compressionRatio) {
+        this.compressionRatio = compressionRatio;
+    }
+
+    public Double getDecodeMbPerSecond() {
+        return decodeMbPerSecond;
+    }
+
+    public void setDecodeMbPerSecond(Double decodeMbPerSecond) {
+        this.decodeMbPerSecond = decodeMbPerSecond;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -15,10 +15,14 @@ public class ProcessingJob {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // Null for batch jobs, which span sessions and belong to userId instead
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "session_id", nullable = false)
+    @JoinColumn(name = "session_id")
     private Session session;
 
+    @Column(name = "user_id")
+    private Long userId;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "job_type", nullable = false)
     private JobType jobType;
@@ -30,6 +34,10 @@ public class ProcessingJob {
     @Column(name = "params_json", columnDefinition = "TEXT")
     private String paramsJson;
 
+    // Identical submissions for the session share the job carrying this key
+    @Column(name = "dedup_key", length = 64)
+    private String dedupKey;
+
     @Column(name = "results_json", columnDefinition = "TEXT")
     private String resultsJson;
 
@@ -42,6 +50,19 @@ public class ProcessingJob {
     @Column(name = "completed_at")
     private LocalDateTime completedAt;
 
+    // Node whose worker claimed the job; the claim lapses when the node stops renewing the lease
+    @Column(name = "claimed_by", length = 100)
+    private String claimedBy;
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    @Column(name = "heartbeat_at")
+    private LocalDateTime heartbeatAt;
+
+    @Column(nullable = false)
+    private int attempts;
+
     @CreationTimestamp
     @Column(name = "created_at")
     private LocalDateTime createdAt;
@@ -51,7 +72,7 @@ public class ProcessingJob {
     private LocalDateTime updatedAt;
 
     public enum JobType {
-        PREPROCESS, ANALYTICS, CLASSIFY
+        PREPROCESS, ANALYTICS, CLASSIFY, SPECTROGRAM, BATCH_ANALYTICS, UPLOAD_INGEST
     }
 
     public enum Status {
@@ -92,6 +113,14 @@ public class ProcessingJob {
         this.session = session;
     }
 
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
     public JobType getJobType() {
         return jobType;
     }
@@ -116,6 +145,14 @@ public class ProcessingJob {
         this.paramsJson = paramsJson;
     }
 
+    public String getDedupKey() {
+        return dedupKey;
+    }
+
+    public void setDedupKey(String dedupKey) {
+        this.dedupKey = dedupKey;
+    }
+
     public String getResultsJson() {
         return resultsJson;
     }
@@ -148,6 +185,38 @@ public class ProcessingJob {
         this.completedAt = completedAt;
     }
 
+    public String getClaimedBy() {
+        return claimedBy;
+    }
+
+    public void setClaimedBy(String claimedBy) {
+        this.claimedBy = claimedBy;
+    }
+
+    public LocalDateTime getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
+
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) {
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
+
+    public LocalDateTime getHeartbeatAt() {
+        return heartbeatAt;
+    }
+
+    public void setHeartbeatAt(LocalDateTime heartbeatAt) {
+        this.heartbeatAt = heartbeatAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
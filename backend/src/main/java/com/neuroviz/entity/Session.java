@@ -34,6 +34,10 @@ public class Session {
     @Column(name = "file_path")
     private String filePath;
 
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "blob_id")
+    private StoredBlob blob;
+
     @Column(name = "sample_rate")
     private Integer sampleRate;
 
@@ -133,6 +137,14 @@ public class Session {
         this.filePath = filePath;
     }
 
+    public StoredBlob getBlob() {
+        return blob;
+    }
+
+    public void setBlob(StoredBlob blob) {
+        this.blob = blob;
+    }
+
     public Integer getSampleRate() {
         return sampleRate;
     }
@@ -0,0 +1,148 @@
+package com.neuroviz.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+// One stored recording, shared by every session uploaded with identical content
+@Entity
+@Table(name = "stored_blobs")
+public class StoredBlob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 64)
+    private String sha256;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    @Column(name = "file_path", nullable = false)
+    private String filePath;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount = 0;
+
+    @Column(name = "last_accessed_at")
+    private LocalDateTime lastAccessedAt;
+
+    @Column(name = "compacted_at")
+    private LocalDateTime compactedAt;
+
+    @Column(name = "compaction_claimed_by", length = 100)
+    private String compactionClaimedBy;
+
+    @Column(name = "compaction_claim_expires_at")
+    private LocalDateTime compactionClaimExpiresAt;
+
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public StoredBlob() {}
+
+    public StoredBlob(String sha256, Long sizeBytes, String filePath) {
+        this.sha256 = sha256;
+        this.sizeBytes = sizeBytes;
+        this.filePath = filePath;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public Long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(Long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public Integer getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(Integer refCount) {
+        this.refCount = refCount;
+    }
+
+    public LocalDateTime getLastAccessedAt() {
+        return lastAccessedAt;
+    }
+
+    public void setLastAccessedAt(LocalDateTime lastAccessedAt) {
+        this.lastAccessedAt = lastAccessedAt;
+    }
+
+    public LocalDateTime getCompactedAt() {
+        return compactedAt;
+    }
+
+    public void setCompactedAt(LocalDateTime compactedAt) {
+        this.compactedAt = compactedAt;
+    }
+
+    public String getCompactionClaimedBy() {
+        return compactionClaimedBy;
+    }
+
+    public void setCompactionClaimedBy(String compactionClaimedBy) {
+        this.compactionClaimedBy = compactionClaimedBy;
+    }
+
+    public LocalDateTime getCompactionClaimExpiresAt() {
+        return compactionClaimExpiresAt;
+    }
+
+    public void setCompactionClaimExpiresAt(LocalDateTime compactionClaimExpiresAt) {
+        this.compactionClaimExpiresAt = compactionClaimExpiresAt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StoredBlob that = (StoredBlob) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
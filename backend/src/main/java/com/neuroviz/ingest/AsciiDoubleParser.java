@@ -0,0 +1,97 @@
+package com.neuroviz.ingest;
+
+import java.nio.charset.StandardCharsets;
+
+// Parses decimal numbers straight from ASCII bytes so CSV cells never become Strings.
+// Uses the exact fast path (mantissa < 2^53, |exponent| <= 22) and falls back to
+// Double.parseDouble only for the rare cells outside it.
+public final class AsciiDoubleParser {
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private AsciiDoubleParser() {}
+
+    // Returns NaN for empty or malformed input
+    public static double parse(byte[] buf, int off, int len) {
+        int i = off;
+        int end = off + len;
+        if (i == end) return Double.NaN;
+
+        boolean negative = false;
+        if (buf[i] == '-' || buf[i] == '+') {
+            negative = buf[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean overflow = false;
+
+        int start = i;
+        while (i < end && isDigit(buf[i])) {
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (buf[i] - '0');
+                if (mantissa != 0) digits++;
+            } else {
+                overflow = true;
+                exponent++;
+            }
+            i++;
+        }
+        boolean hasDigits = i > start;
+
+        if (i < end && buf[i] == '.') {
+            i++;
+            int fractionStart = i;
+            while (i < end && isDigit(buf[i])) {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (buf[i] - '0');
+                    if (mantissa != 0) digits++;
+                    exponent--;
+                } else {
+                    overflow = true;
+                }
+                i++;
+            }
+            hasDigits |= i > fractionStart;
+        }
+        if (!hasDigits) return Double.NaN;
+
+        if (i < end && (buf[i] == 'e' || buf[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+                negativeExponent = buf[i] == '-';
+                i++;
+            }
+            int exponentStart = i;
+            int explicitExponent = 0;
+            while (i < end && isDigit(buf[i])) {
+                if (explicitExponent < 10000) {
+                    explicitExponent = explicitExponent * 10 + (buf[i] - '0');
+                }
+                i++;
+            }
+            if (i == exponentStart) return Double.NaN;
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != end) return Double.NaN;
+
+        if (!overflow && mantissa < MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            double value = (double) mantissa;
+            value = exponent < 0 ? value / POWERS_OF_TEN[-exponent] : value * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(new String(buf, off, len, StandardCharsets.US_ASCII));
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
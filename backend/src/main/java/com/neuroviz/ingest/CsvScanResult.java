@@ -0,0 +1,57 @@
+package com.neuroviz.ingest;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CsvScanResult {
+    private final List<String> channelNames;
+    private final long sampleCount;
+    private final long[] parseErrors;
+    private final long bytesRead;
+
+    public CsvScanResult(List<String> channelNames, long sampleCount, long[] parseErrors, long bytesRead) {
+        this.channelNames = channelNames;
+        this.sampleCount = sampleCount;
+        this.parseErrors = parseErrors;
+        this.bytesRead = bytesRead;
+    }
+
+    public List<String> getChannelNames() {
+        return channelNames;
+    }
+
+    public int getChannelCount() {
+        return channelNames.size();
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getParseErrors(int channel) {
+        return parseErrors[channel];
+    }
+
+    // Only channels with at least one unparseable or missing cell
+    public Map<String, Long> getParseErrorsByChannel() {
+        Map<String, Long> errors = new LinkedHashMap<>();
+        for (int i = 0; i < channelNames.size(); i++) {
+            if (parseErrors[i] > 0) {
+                errors.put(channelNames.get(i), parseErrors[i]);
+            }
+        }
+        return errors;
+    }
+
+    public boolean hasParseErrors() {
+        for (long count : parseErrors) {
+            if (count > 0) return true;
+        }
+        return false;
+    }
+}
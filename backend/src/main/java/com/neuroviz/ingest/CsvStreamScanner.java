@@ -0,0 +1,203 @@
+package com.neuroviz.ingest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Single pass over a CSV upload with a fixed-size buffer. Every chunk read is written to the
+// tee stream (the stored raw file) and scanned for the header, row count and per-column
+// parse errors, so heap use does not depend on the size of the upload. Parsed cells are
+// handed to the sink in row order.
+public class CsvStreamScanner {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+    private static final int MAX_CELL_BYTES = 64;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final byte[] cell = new byte[MAX_CELL_BYTES];
+
+    // Row state, carried across buffer boundaries
+    private SampleSink sink;
+    private long[] parseErrors;
+    private long sampleCount;
+    private int column;
+    private int cellLength;
+    private boolean cellInvalid;
+    private boolean cellGap;
+    private boolean rowHasContent;
+
+    public CsvScanResult scan(InputStream in, OutputStream tee) throws IOException {
+        return scan(in, tee, null);
+    }
+
+    public CsvScanResult scan(InputStream in, OutputStream tee, SampleSink sink) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        boolean inHeader = true;
+
+        List<String> channelNames = List.of();
+        reset(sink, new long[0]);
+        long bytesRead = 0;
+
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            if (tee != null) {
+                tee.write(buffer, 0, n);
+            }
+            bytesRead += n;
+
+            int i = 0;
+            if (inHeader) {
+                while (i < n && buffer[i] != '\n') i++;
+                header.write(buffer, 0, i);
+                if (header.size() > MAX_HEADER_BYTES) {
+                    throw new IOException("CSV header exceeds " + MAX_HEADER_BYTES + " bytes");
+                }
+                if (i == n) continue;
+                i++;
+                inHeader = false;
+                channelNames = parseHeader(header.toByteArray());
+                parseErrors = new long[channelNames.size()];
+                if (sink != null) sink.start(channelNames);
+            }
+
+            scanRows(i, n);
+        }
+
+        if (inHeader) {
+            channelNames = parseHeader(header.toByteArray());
+            parseErrors = new long[channelNames.size()];
+            if (sink != null) sink.start(channelNames);
+        } else {
+            finishLastRow();
+        }
+
+        return new CsvScanResult(channelNames, sampleCount, parseErrors, bytesRead);
+    }
+
+    // Parses headerless rows, e.g. one newline-aligned range of a file parsed in parallel.
+    // Errors are added to parseErrors, whose length is the channel count; returns the row count.
+    public long scanRows(ByteBuffer data, long[] parseErrors, SampleSink sink) throws IOException {
+        reset(sink, parseErrors);
+        while (data.hasRemaining()) {
+            int n = Math.min(data.remaining(), BUFFER_SIZE);
+            data.get(buffer, 0, n);
+            scanRows(0, n);
+        }
+        finishLastRow();
+        return sampleCount;
+    }
+
+    private void reset(SampleSink sink, long[] parseErrors) {
+        this.sink = sink;
+        this.parseErrors = parseErrors;
+        sampleCount = 0;
+        column = 0;
+        cellLength = 0;
+        cellInvalid = false;
+        cellGap = false;
+        rowHasContent = false;
+    }
+
+    private void scanRows(int from, int to) throws IOException {
+        // Locals keep the hot loop in registers; the state is written back at the end
+        int column = this.column;
+        int cellLength = this.cellLength;
+        boolean cellInvalid = this.cellInvalid;
+        boolean cellGap = this.cellGap;
+        boolean rowHasContent = this.rowHasContent;
+
+        for (int i = from; i < to; i++) {
+            byte b = buffer[i];
+            switch (b) {
+                case '\n' -> {
+                    if (rowHasContent) {
+                        finishCell(column, cellLength, cellInvalid);
+                        finishRow(column);
+                        sampleCount++;
+                    }
+                    column = 0;
+                    cellLength = 0;
+                    cellInvalid = false;
+                    cellGap = false;
+                    rowHasContent = false;
+                }
+                case ',' -> {
+                    finishCell(column, cellLength, cellInvalid);
+                    column++;
+                    cellLength = 0;
+                    cellInvalid = false;
+                    cellGap = false;
+                    rowHasContent = true;
+                }
+                case '\r', ' ', '\t', '"' -> {
+                    // Ignored around a number, but one split by them, as in "1 2", is malformed
+                    cellGap = cellLength > 0;
+                }
+                default -> {
+                    rowHasContent = true;
+                    if (cellGap || cellLength == MAX_CELL_BYTES) {
+                        cellInvalid = true;
+                    } else {
+                        cell[cellLength++] = b;
+                    }
+                }
+            }
+        }
+
+        this.column = column;
+        this.cellLength = cellLength;
+        this.cellInvalid = cellInvalid;
+        this.cellGap = cellGap;
+        this.rowHasContent = rowHasContent;
+    }
+
+    // Last row without a trailing newline
+    private void finishLastRow() throws IOException {
+        if (rowHasContent) {
+            finishCell(column, cellLength, cellInvalid);
+            finishRow(column);
+            sampleCount++;
+        }
+        column = 0;
+        cellLength = 0;
+        cellInvalid = false;
+        cellGap = false;
+        rowHasContent = false;
+    }
+
+    private void finishCell(int column, int length, boolean invalid) throws IOException {
+        if (column >= parseErrors.length) return; // Cells beyond the header are ignored
+        double value = invalid ? Double.NaN : AsciiDoubleParser.parse(cell, 0, length);
+        if (Double.isNaN(value)) {
+            parseErrors[column]++;
+        }
+        if (sink != null) sink.accept(column, value);
+    }
+
+    // Short rows are padded with NaN so every channel keeps the same sample count
+    private void finishRow(int lastColumn) throws IOException {
+        for (int c = lastColumn + 1; c < parseErrors.length; c++) {
+            parseErrors[c]++;
+            if (sink != null) sink.accept(c, Double.NaN);
+        }
+    }
+
+    static List<String> parseHeader(byte[] bytes) {
+        String line = new String(bytes, StandardCharsets.UTF_8);
+        if (line.startsWith("\uFEFF")) line = line.substring(1);
+        line = line.strip();
+        if (line.isEmpty()) return List.of();
+
+        List<String> names = new ArrayList<>();
+        for (String name : line.split(",", -1)) {
+            names.add(name.strip().replace("\"", ""));
+        }
+        return names;
+    }
+}
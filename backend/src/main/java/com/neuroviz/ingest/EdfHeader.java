@@ -0,0 +1,89 @@
+package com.neuroviz.ingest;
+
+import java.util.List;
+
+public class EdfHeader {
+    private final boolean bdf;
+    private final String patient;
+    private final String recording;
+    private final String startDate;
+    private final String startTime;
+    private final int headerBytes;
+    private final String reserved;
+    private final long recordCount;
+    private final double recordDuration;
+    private final List<EdfSignal> signals;
+
+    public EdfHeader(boolean bdf, String patient, String recording, String startDate, String startTime, int headerBytes,
+                     String reserved, long recordCount, double recordDuration, List<EdfSignal> signals) {
+        this.bdf = bdf;
+        this.patient = patient;
+        this.recording = recording;
+        this.startDate = startDate;
+        this.startTime = startTime;
+        this.headerBytes = headerBytes;
+        this.reserved = reserved;
+        this.recordCount = recordCount;
+        this.recordDuration = recordDuration;
+        this.signals = signals;
+    }
+
+    public boolean isBdf() {
+        return bdf;
+    }
+
+    public int getBytesPerSample() {
+        return bdf ? 3 : 2;
+    }
+
+    public String getPatient() {
+        return patient;
+    }
+
+    public String getRecording() {
+        return recording;
+    }
+
+    public String getStartDate() {
+        return startDate;
+    }
+
+    public String getStartTime() {
+        return startTime;
+    }
+
+    public int getHeaderBytes() {
+        return headerBytes;
+    }
+
+    // "EDF+C", "EDF+D", "BDF+C", "24BIT" or empty for plain EDF
+    public String getReserved() {
+        return reserved;
+    }
+
+    // -1 while the recording was still running when the file was written
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public double getRecordDuration() {
+        return recordDuration;
+    }
+
+    public List<EdfSignal> getSignals() {
+        return signals;
+    }
+
+    // Exact, so a header declaring huge signals cannot wrap around into a plausible size
+    public long getRecordBytes() {
+        long samples = 0;
+        for (EdfSignal signal : signals) {
+            samples = Math.addExact(samples, signal.getSamplesPerRecord());
+        }
+        return Math.multiplyExact(samples, getBytesPerSample());
+    }
+
+    public double getSampleRate(EdfSignal signal) {
+        return recordDuration > 0 ? signal.getSamplesPerRecord() / recordDuration : 0;
+    }
+}
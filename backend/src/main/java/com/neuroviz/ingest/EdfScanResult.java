@@ -0,0 +1,41 @@
+package com.neuroviz.ingest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class EdfScanResult {
+    private final EdfHeader header;
+    private final long recordsRead;
+    private final long bytesRead;
+
+    public EdfScanResult(EdfHeader header, long recordsRead, long bytesRead) {
+        this.header = header;
+        this.recordsRead = recordsRead;
+        this.bytesRead = bytesRead;
+    }
+
+    public EdfHeader getHeader() {
+        return header;
+    }
+
+    public long getRecordsRead() {
+        return recordsRead;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public double getDurationSeconds() {
+        return recordsRead * header.getRecordDuration();
+    }
+
+    // Data signals in store order, i.e. without annotation signals
+    public List<EdfSignal> getDataSignals() {
+        List<EdfSignal> signals = new ArrayList<>();
+        for (EdfSignal signal : header.getSignals()) {
+            if (!signal.isAnnotation()) signals.add(signal);
+        }
+        return signals;
+    }
+}
@@ -0,0 +1,76 @@
+package com.neuroviz.ingest;
+
+// One signal of an EDF/BDF header with the linear digital-to-physical mapping
+public class EdfSignal {
+    private final String label;
+    private final String transducer;
+    private final String physicalDimension;
+    private final double physicalMin;
+    private final double physicalMax;
+    private final int digitalMin;
+    private final int digitalMax;
+    private final String prefiltering;
+    private final int samplesPerRecord;
+    private final double scale;
+    private final double offset;
+
+    public EdfSignal(String label, String transducer, String physicalDimension, double physicalMin, double physicalMax,
+                     int digitalMin, int digitalMax, String prefiltering, int samplesPerRecord) {
+        this.label = label;
+        this.transducer = transducer;
+        this.physicalDimension = physicalDimension;
+        this.physicalMin = physicalMin;
+        this.physicalMax = physicalMax;
+        this.digitalMin = digitalMin;
+        this.digitalMax = digitalMax;
+        this.prefiltering = prefiltering;
+        this.samplesPerRecord = samplesPerRecord;
+        this.scale = digitalMax != digitalMin ? (physicalMax - physicalMin) / (digitalMax - digitalMin) : 1.0;
+        this.offset = physicalMin - scale * digitalMin;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getTransducer() {
+        return transducer;
+    }
+
+    public String getPhysicalDimension() {
+        return physicalDimension;
+    }
+
+    public double getPhysicalMin() {
+        return physicalMin;
+    }
+
+    public double getPhysicalMax() {
+        return physicalMax;
+    }
+
+    public int getDigitalMin() {
+        return digitalMin;
+    }
+
+    public int getDigitalMax() {
+        return digitalMax;
+    }
+
+    public String getPrefiltering() {
+        return prefiltering;
+    }
+
+    public int getSamplesPerRecord() {
+        return samplesPerRecord;
+    }
+
+    // EDF+ and BDF+ keep annotations in a pseudo-signal that carries no samples
+    public boolean isAnnotation() {
+        return label.equals("EDF Annotations") || label.equals("BDF Annotations");
+    }
+
+    public double toPhysical(int digital) {
+        return scale * digital + offset;
+    }
+}
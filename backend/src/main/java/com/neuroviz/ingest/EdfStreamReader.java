@@ -0,0 +1,206 @@
+package com.neuroviz.ingest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Streams EDF, EDF+ and BDF files one data record at a time through a direct buffer. Samples
+// are converted to physical units and handed to the sink per signal, each at its own rate;
+// annotation signals are skipped. EDF+D files are read as if they were continuous.
+public class EdfStreamReader {
+
+    private static final int FIXED_HEADER_BYTES = 256;
+    private static final int SIGNAL_HEADER_BYTES = 256;
+    private static final int MAX_SIGNALS = 4096;
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    public static boolean isEdfFile(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".edf") || name.endsWith(".bdf");
+    }
+
+    public EdfScanResult read(ReadableByteChannel in, WritableByteChannel tee, SampleSink sink) throws IOException {
+        ByteBuffer fixed = ByteBuffer.allocateDirect(FIXED_HEADER_BYTES);
+        readHeaderBlock(in, tee, fixed);
+        long bytesRead = FIXED_HEADER_BYTES;
+
+        boolean bdf = (fixed.get(0) & 0xFF) == 0xFF;
+        if (!bdf && fixed.get(0) != '0') {
+            throw new IOException("Not an EDF or BDF file");
+        }
+        String patient = text(fixed, 8, 80);
+        String recording = text(fixed, 88, 80);
+        String startDate = text(fixed, 168, 8);
+        String startTime = text(fixed, 176, 8);
+        int headerBytes = integer(fixed, 184, 8, "header size");
+        String reserved = text(fixed, 192, 44);
+        long recordCount = integer(fixed, 236, 8, "number of data records");
+        double recordDuration = number(fixed, 244, 8, "data record duration");
+        int signalCount = integer(fixed, 252, 4, "number of signals");
+        if (signalCount < 1 || signalCount > MAX_SIGNALS) {
+            throw new IOException("Invalid number of signals: " + signalCount);
+        }
+        if (headerBytes != FIXED_HEADER_BYTES + signalCount * SIGNAL_HEADER_BYTES) {
+            throw new IOException("Header size " + headerBytes + " does not match " + signalCount + " signals");
+        }
+
+        ByteBuffer signalHeader = ByteBuffer.allocateDirect(signalCount * SIGNAL_HEADER_BYTES);
+        readHeaderBlock(in, tee, signalHeader);
+        bytesRead += signalHeader.capacity();
+        EdfHeader header = new EdfHeader(bdf, patient, recording, startDate, startTime, headerBytes, reserved,
+                recordCount, recordDuration, parseSignals(signalHeader, signalCount));
+
+        List<EdfSignal> signals = header.getSignals();
+        int[] channelOf = new int[signals.size()];
+        List<String> names = new ArrayList<>();
+        for (int s = 0; s < signals.size(); s++) {
+            channelOf[s] = signals.get(s).isAnnotation() ? -1 : names.size();
+            if (channelOf[s] >= 0) names.add(signals.get(s).getLabel());
+        }
+        if (sink != null) sink.start(names);
+
+        long recordBytes = header.getRecordBytes();
+        if (recordBytes < 1 || recordBytes > MAX_RECORD_BYTES) {
+            throw new IOException("Unsupported data record size: " + recordBytes + " bytes");
+        }
+        ByteBuffer record = ByteBuffer.allocateDirect((int) recordBytes).order(ByteOrder.LITTLE_ENDIAN);
+        long recordsRead = 0;
+        while (recordCount < 0 || recordsRead < recordCount) {
+            record.clear();
+            fill(in, record);
+            if (record.position() == 0) break;
+            bytesRead += record.position();
+            if (record.hasRemaining()) {
+                // A truncated trailing record has no usable samples
+                writeTee(tee, record.flip());
+                break;
+            }
+            record.flip();
+            writeTee(tee, record.duplicate());
+            decodeRecord(record, header, channelOf, sink);
+            recordsRead++;
+        }
+        // Bytes beyond the declared records are still part of the stored file
+        if (tee != null) {
+            while (true) {
+                record.clear();
+                int n = in.read(record);
+                if (n < 0) break;
+                bytesRead += n;
+                writeTee(tee, record.flip());
+            }
+        }
+
+        return new EdfScanResult(header, recordsRead, bytesRead);
+    }
+
+    private static void decodeRecord(ByteBuffer record, EdfHeader header, int[] channelOf, SampleSink sink) throws IOException {
+        List<EdfSignal> signals = header.getSignals();
+        int position = 0;
+        for (int s = 0; s < signals.size(); s++) {
+            EdfSignal signal = signals.get(s);
+            int samples = signal.getSamplesPerRecord();
+            if (channelOf[s] < 0 || sink == null) {
+                position += samples * header.getBytesPerSample();
+                continue;
+            }
+            if (header.isBdf()) {
+                for (int i = 0; i < samples; i++, position += 3) {
+                    int digital = (record.get(position) & 0xFF)
+                            | (record.get(position + 1) & 0xFF) << 8
+                            | record.get(position + 2) << 16;
+                    sink.accept(channelOf[s], signal.toPhysical(digital));
+                }
+            } else {
+                for (int i = 0; i < samples; i++, position += 2) {
+                    sink.accept(channelOf[s], signal.toPhysical(record.getShort(position)));
+                }
+            }
+        }
+    }
+
+    private static List<EdfSignal> parseSignals(ByteBuffer header, int count) throws IOException {
+        // Each field is stored for all signals before the next field starts
+        int labels = 0;
+        int transducers = labels + 16 * count;
+        int dimensions = transducers + 80 * count;
+        int physicalMins = dimensions + 8 * count;
+        int physicalMaxs = physicalMins + 8 * count;
+        int digitalMins = physicalMaxs + 8 * count;
+        int digitalMaxs = digitalMins + 8 * count;
+        int prefilterings = digitalMaxs + 8 * count;
+        int samplesPerRecord = prefilterings + 80 * count;
+
+        List<EdfSignal> signals = new ArrayList<>(count);
+        for (int s = 0; s < count; s++) {
+            String label = text(header, labels + 16 * s, 16);
+            int samples = integer(header, samplesPerRecord + 8 * s, 8, "samples per record of " + label);
+            if (samples < 0) {
+                throw new IOException("Invalid samples per record for " + label);
+            }
+            signals.add(new EdfSignal(
+                    label,
+                    text(header, transducers + 80 * s, 80),
+                    text(header, dimensions + 8 * s, 8),
+                    number(header, physicalMins + 8 * s, 8, "physical minimum of " + label),
+                    number(header, physicalMaxs + 8 * s, 8, "physical maximum of " + label),
+                    integer(header, digitalMins + 8 * s, 8, "digital minimum of " + label),
+                    integer(header, digitalMaxs + 8 * s, 8, "digital maximum of " + label),
+                    text(header, prefilterings + 80 * s, 80),
+                    samples));
+        }
+        return signals;
+    }
+
+    private static void readHeaderBlock(ReadableByteChannel in, WritableByteChannel tee, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) throw new IOException("Unexpected end of EDF header");
+        }
+        buffer.flip();
+        writeTee(tee, buffer.duplicate());
+    }
+
+    private static void fill(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) return;
+        }
+    }
+
+    private static void writeTee(WritableByteChannel tee, ByteBuffer buffer) throws IOException {
+        if (tee == null) return;
+        while (buffer.hasRemaining()) {
+            tee.write(buffer);
+        }
+    }
+
+    private static String text(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII).trim();
+    }
+
+    private static int integer(ByteBuffer buffer, int offset, int length, String field) throws IOException {
+        String value = text(buffer, offset, length);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid " + field + ": '" + value + "'");
+        }
+    }
+
+    private static double number(ByteBuffer buffer, int offset, int length, String field) throws IOException {
+        String value = text(buffer, offset, length);
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid " + field + ": '" + value + "'");
+        }
+    }
+}
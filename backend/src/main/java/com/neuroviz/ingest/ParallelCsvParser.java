@@ -0,0 +1,186 @@
+package com.neuroviz.ingest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Parses a CSV file that is already on disk by splitting it into newline-aligned byte ranges
+// that are parsed on a ForkJoinPool. Parsed ranges are handed to the sink strictly in file
+// order, and only a bounded window of ranges is in flight, so memory stays independent of
+// the file size. Cells follow the same rules as CsvStreamScanner.
+public class ParallelCsvParser {
+
+    private static final int RANGE_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+    private static final int NEWLINE_PROBE_BYTES = 4096;
+
+    private final ForkJoinPool pool;
+    private final int rangeBytes;
+    private final ThreadLocal<CsvStreamScanner> scanners = ThreadLocal.withInitial(CsvStreamScanner::new);
+    private final ConcurrentLinkedQueue<double[]> freeBuffers = new ConcurrentLinkedQueue<>();
+
+    public ParallelCsvParser(ForkJoinPool pool) {
+        this(pool, RANGE_BYTES);
+    }
+
+    ParallelCsvParser(ForkJoinPool pool, int rangeBytes) {
+        this.pool = pool;
+        this.rangeBytes = rangeBytes;
+    }
+
+    public CsvScanResult parse(Path file, SampleSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long dataStart = findLineEnd(channel, 0, Math.min(size, MAX_HEADER_BYTES + 1));
+            if (dataStart < 0) {
+                // No complete header line, nothing to split
+                try (InputStream in = Files.newInputStream(file)) {
+                    return new CsvStreamScanner().scan(in, null, sink);
+                }
+            }
+
+            ByteBuffer headerBytes = ByteBuffer.allocate((int) (dataStart - 1));
+            readFully(channel, headerBytes, 0);
+            List<String> channelNames = CsvStreamScanner.parseHeader(headerBytes.array());
+            if (sink != null) sink.start(channelNames);
+
+            long[] parseErrors = new long[channelNames.size()];
+            long sampleCount = 0;
+            int window = pool.getParallelism() + 2;
+            ArrayDeque<RangeTask> inFlight = new ArrayDeque<>(window);
+
+            try {
+                long position = dataStart;
+                while (position < size || !inFlight.isEmpty()) {
+                    while (position < size && inFlight.size() < window) {
+                        long end = position + rangeBytes >= size ? size : findLineEnd(channel, position + rangeBytes, size);
+                        if (end < 0) end = size;
+                        RangeTask task = new RangeTask(channel, position, end, channelNames.size());
+                        inFlight.add(task);
+                        pool.execute(task);
+                        position = end;
+                    }
+
+                    RangeTask next = inFlight.poll();
+                    ParsedRange range = next.join();
+                    sampleCount += range.rows;
+                    for (int c = 0; c < parseErrors.length; c++) {
+                        parseErrors[c] += range.parseErrors[c];
+                    }
+                    if (sink != null) {
+                        int column = 0;
+                        for (int i = 0; i < range.count; i++) {
+                            sink.accept(column, range.values[i]);
+                            if (++column == parseErrors.length) column = 0;
+                        }
+                    }
+                    freeBuffers.offer(range.values);
+                }
+            } finally {
+                for (RangeTask task : inFlight) {
+                    task.cancel(false);
+                }
+            }
+
+            return new CsvScanResult(channelNames, sampleCount, parseErrors, size);
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw e;
+        }
+    }
+
+    // Position just past the first '\n' at or after from, or -1 if there is none before limit
+    private static long findLineEnd(FileChannel channel, long from, long limit) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(NEWLINE_PROBE_BYTES);
+        long position = from;
+        while (position < limit) {
+            probe.clear();
+            probe.limit((int) Math.min(probe.capacity(), limit - position));
+            int read = channel.read(probe, position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') return position + i + 1;
+            }
+            position += read;
+        }
+        return -1;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("Unexpected end of file");
+            position += read;
+        }
+    }
+
+    private double[] takeBuffer(int minimum) {
+        double[] buffer = freeBuffers.poll();
+        return buffer != null && buffer.length >= minimum ? buffer : new double[minimum];
+    }
+
+    private static final class ParsedRange implements SampleSink {
+        private final long[] parseErrors;
+        private double[] values;
+        private int count;
+        private long rows;
+
+        ParsedRange(int channelCount, double[] values) {
+            this.parseErrors = new long[channelCount];
+            this.values = values;
+        }
+
+        @Override
+        public void start(List<String> channelNames) {
+        }
+
+        // Every row delivers exactly one value per channel, so values stay row-major
+        @Override
+        public void accept(int channel, double value) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[count++] = value;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class RangeTask extends RecursiveTask<ParsedRange> {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final int channelCount;
+
+        RangeTask(FileChannel channel, long start, long end, int channelCount) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.channelCount = channelCount;
+        }
+
+        @Override
+        protected ParsedRange compute() {
+            // Roughly one value per 8 bytes of text; the buffer grows if a range is denser
+            ParsedRange range = new ParsedRange(channelCount, takeBuffer((int) Math.max(1024, (end - start) / 8)));
+            if (channelCount == 0) return range;
+            try {
+                MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                range.rows = scanners.get().scanRows(data, range.parseErrors, range);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return range;
+        }
+    }
+}
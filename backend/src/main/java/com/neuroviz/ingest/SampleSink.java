@@ -0,0 +1,12 @@
+package com.neuroviz.ingest;
+
+import java.io.IOException;
+import java.util.List;
+
+// Receives parsed samples column by column; unparseable or missing cells arrive as NaN
+public interface SampleSink {
+
+    void start(List<String> channelNames) throws IOException;
+
+    void accept(int channel, double value) throws IOException;
+}
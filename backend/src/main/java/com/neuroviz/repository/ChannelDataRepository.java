@@ -1,7 +1,9 @@
 package com.neuroviz.repository;
 
 import com.neuroviz.entity.ChannelData;
+import com.neuroviz.storage.ChannelCodec;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -18,4 +20,15 @@ public interface ChannelDataRepository extends JpaRepository<ChannelData, Long>
     
     @Query("SELECT DISTINCT cd.channelName FROM ChannelData cd WHERE cd.session.id = :sessionId ORDER BY cd.channelName")
     List<String> findChannelNamesBySessionId(@Param("sessionId") Long sessionId);
+    
+    @Query("SELECT cd FROM ChannelData cd WHERE cd.session.blob.id = :blobId")
+    List<ChannelData> findByBlobId(@Param("blobId") Long blobId);
+    
+    // Channel files are shared by every session of a recording, so rows are updated by location
+    @Modifying
+    @Query("UPDATE ChannelData cd SET cd.dataLocation = :newLocation, cd.dataSizeBytes = :sizeBytes, cd.codec = :codec, " +
+           "cd.compressionRatio = :compressionRatio, cd.decodeMbPerSecond = :decodeMbPerSecond WHERE cd.dataLocation = :oldLocation")
+    int relocate(@Param("oldLocation") String oldLocation, @Param("newLocation") String newLocation,
+                 @Param("sizeBytes") Long sizeBytes, @Param("codec") ChannelCodec codec,
+                 @Param("compressionRatio") Double compressionRatio, @Param("decodeMbPerSecond") Double decodeMbPerSecond);
 }
@@ -1,11 +1,19 @@
 package com.neuroviz.repository;
 
 import com.neuroviz.entity.ProcessingJob;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,4 +33,33 @@ public interface ProcessingJobRepository extends JpaRepository<ProcessingJob, Lo
     
     @Query("SELECT pj FROM ProcessingJob pj WHERE pj.session.id = :sessionId AND pj.jobType = :jobType AND pj.status = 'COMPLETED' ORDER BY pj.completedAt DESC")
     Optional<ProcessingJob> findLatestCompletedBySessionIdAndJobType(@Param("sessionId") Long sessionId, @Param("jobType") ProcessingJob.JobType jobType);
+    
+    // Batch jobs belong to a user directly, the others to their session's user
+    @Query("SELECT COALESCE(pj.userId, s.user.id) FROM ProcessingJob pj LEFT JOIN pj.session s WHERE pj.id = :jobId")
+    Optional<Long> findOwnerId(@Param("jobId") Long jobId);
+    
+    // Latest job an identical submission can share: one that has not failed
+    @Query("SELECT pj FROM ProcessingJob pj WHERE pj.session.id = :sessionId AND pj.jobType = :jobType AND pj.dedupKey = :dedupKey AND pj.status <> 'FAILED' ORDER BY pj.createdAt DESC")
+    List<ProcessingJob> findCoalescable(@Param("sessionId") Long sessionId, @Param("jobType") ProcessingJob.JobType jobType, @Param("dedupKey") String dedupKey, Pageable pageable);
+    
+    @Query("SELECT pj FROM ProcessingJob pj WHERE pj.session.id = :sessionId AND pj.jobType = :jobType AND pj.status IN ('PENDING', 'RUNNING') ORDER BY pj.createdAt DESC")
+    List<ProcessingJob> findActiveBySession(@Param("sessionId") Long sessionId, @Param("jobType") ProcessingJob.JobType jobType, Pageable pageable);
+    
+    // Pending or running jobs on any of a user's sessions of one stored recording
+    @Query("SELECT pj FROM ProcessingJob pj WHERE pj.session.blob.id = :blobId AND pj.session.user.id = :userId AND pj.jobType = :jobType AND pj.status IN ('PENDING', 'RUNNING') ORDER BY pj.createdAt DESC")
+    List<ProcessingJob> findActiveByBlob(@Param("blobId") Long blobId, @Param("userId") Long userId, @Param("jobType") ProcessingJob.JobType jobType, Pageable pageable);
+    
+    // Oldest runnable jobs: pending ones, and running ones whose node stopped renewing the lease.
+    // Rows another node is claiming are skipped rather than waited for (lock timeout -2 is
+    // SKIP LOCKED).
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT pj FROM ProcessingJob pj WHERE pj.jobType IN :jobTypes AND (pj.status = 'PENDING' OR (pj.status = 'RUNNING' AND (pj.leaseExpiresAt IS NULL OR pj.leaseExpiresAt < :now))) ORDER BY pj.createdAt ASC")
+    List<ProcessingJob> findClaimable(@Param("jobTypes") Collection<ProcessingJob.JobType> jobTypes, @Param("now") LocalDateTime now, Pageable pageable);
+    
+    @Modifying
+    @Query("UPDATE ProcessingJob pj SET pj.leaseExpiresAt = :leaseExpiresAt, pj.heartbeatAt = :now WHERE pj.id IN :ids AND pj.claimedBy = :node AND pj.status = 'RUNNING'")
+    int renewLeases(@Param("ids") Collection<Long> ids, @Param("node") String node, @Param("now") LocalDateTime now, @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt);
+    
+    long countByStatus(ProcessingJob.Status status);
 }
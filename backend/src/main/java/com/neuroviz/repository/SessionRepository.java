@@ -1,9 +1,12 @@
 package com.neuroviz.repository;
 
 import com.neuroviz.entity.Session;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -23,6 +26,22 @@ public interface SessionRepository extends JpaRepository<Session, Long> {
     @Query("SELECT s FROM Session s WHERE s.user.id = :userId AND s.id = :sessionId")
     Optional<Session> findByUserIdAndId(@Param("userId") Long userId, @Param("sessionId") Long sessionId);
     
+    // Serialises job submissions for the session, so identical ones coalesce across nodes
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM Session s WHERE s.id = :id")
+    Optional<Session> findByIdForUpdate(@Param("id") Long id);
+    
     @Query("SELECT s FROM Session s WHERE s.user.id = :userId AND s.name ILIKE %:name%")
     List<Session> findByUserIdAndNameContainingIgnoreCase(@Param("userId") Long userId, @Param("name") String name);
+    
+    // Another session of the same stored recording, to copy its channels and results from;
+    // sessions of the given user first, since only their results may be copied
+    @Query("SELECT s FROM Session s WHERE s.blob.id = :blobId AND s.id <> :excludedId " +
+           "ORDER BY CASE WHEN s.user.id = :userId THEN 0 ELSE 1 END, s.id ASC")
+    List<Session> findByBlobIdExcluding(@Param("blobId") Long blobId, @Param("excludedId") Long excludedId,
+                                        @Param("userId") Long userId, Pageable pageable);
+    
+    @Modifying
+    @Query("UPDATE Session s SET s.filePath = :filePath WHERE s.blob.id = :blobId")
+    int updateFilePathByBlobId(@Param("blobId") Long blobId, @Param("filePath") String filePath);
 }
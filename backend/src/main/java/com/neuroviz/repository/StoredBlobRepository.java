@@ -0,0 +1,50 @@
+package com.neuroviz.repository;
+
+import com.neuroviz.entity.StoredBlob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, Long> {
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM StoredBlob b WHERE b.sha256 = :sha256")
+    Optional<StoredBlob> findBySha256ForUpdate(@Param("sha256") String sha256);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM StoredBlob b WHERE b.id = :id")
+    Optional<StoredBlob> findByIdForUpdate(@Param("id") Long id);
+    
+    // Postgres advisory lock on a key, held until the current transaction ends
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(:key)", nativeQuery = true)
+    Integer lockKey(@Param("key") long key);
+    
+    // Only writes when the stored access time is older than the threshold, so reads stay cheap
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.lastAccessedAt = :now WHERE b.id = :id AND (b.lastAccessedAt IS NULL OR b.lastAccessedAt < :threshold)")
+    int touch(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("threshold") LocalDateTime threshold);
+    
+    // Blobs claimed by another node are left out until the claim lapses
+    @Query("SELECT b FROM StoredBlob b WHERE b.compactedAt IS NULL AND COALESCE(b.lastAccessedAt, b.createdAt) < :cutoff " +
+           "AND (b.compactionClaimExpiresAt IS NULL OR b.compactionClaimExpiresAt < :now) ORDER BY b.id ASC")
+    List<StoredBlob> findCompactionCandidates(@Param("cutoff") LocalDateTime cutoff, @Param("now") LocalDateTime now, Pageable pageable);
+    
+    // Extends a compaction claim, only while it is still held by the given claimant
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.compactionClaimExpiresAt = :expiresAt WHERE b.id = :id AND b.compactionClaimedBy = :claimant")
+    int renewCompactionClaim(@Param("id") Long id, @Param("claimant") String claimant, @Param("expiresAt") LocalDateTime expiresAt);
+    
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.compactionClaimedBy = NULL, b.compactionClaimExpiresAt = NULL WHERE b.id = :id AND b.compactionClaimedBy = :claimant")
+    int releaseCompactionClaim(@Param("id") Long id, @Param("claimant") String claimant);
+}
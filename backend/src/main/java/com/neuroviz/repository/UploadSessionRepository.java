@@ -0,0 +1,34 @@
+package com.neuroviz.repository;
+
+import com.neuroviz.entity.UploadSession;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+    
+    @Query("SELECT u FROM UploadSession u WHERE u.user.id = :userId AND u.id = :uploadId")
+    Optional<UploadSession> findByUserIdAndId(@Param("userId") Long userId, @Param("uploadId") String uploadId);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM UploadSession u WHERE u.user.id = :userId AND u.id = :uploadId")
+    Optional<UploadSession> findByUserIdAndIdForUpdate(@Param("userId") Long userId, @Param("uploadId") String uploadId);
+    
+    @Query("SELECT u FROM UploadSession u WHERE u.status = :status AND u.updatedAt < :cutoff")
+    List<UploadSession> findByStatusAndUpdatedAtBefore(@Param("status") UploadSession.Status status, @Param("cutoff") LocalDateTime cutoff);
+    
+    // Records the session of an ingested upload, only while the upload still waits for that job
+    @Modifying
+    @Query("UPDATE UploadSession u SET u.status = 'COMPLETED', u.sessionId = :sessionId, u.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE u.id = :uploadId AND u.status = 'INGESTING' AND u.jobId = :jobId")
+    int completeIngest(@Param("uploadId") String uploadId, @Param("jobId") Long jobId, @Param("sessionId") Long sessionId);
+}
@@ -14,10 +14,14 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    private static final Pattern JOB_EVENTS_PATH = Pattern.compile("/api/jobs/(\\d{1,18})/events");
+
     @Autowired
     private JwtTokenProvider jwtTokenProvider;
 
@@ -30,8 +34,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         try {
             String jwt = getJwtFromRequest(request);
+            boolean valid = jwt != null && jwtTokenProvider.validateToken(jwt);
+            if (jwt == null) {
+                jwt = getJobEventsTokenFromRequest(request);
+                valid = jwt != null;
+            }
             
-            if (jwt != null && jwtTokenProvider.validateToken(jwt)) {
+            if (valid) {
                 String email = jwtTokenProvider.getEmailFromToken(jwt);
                 UserDetails userDetails = userService.loadUserByUsername(email);
                 
@@ -57,4 +66,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         return null;
     }
+
+    // The job event stream is opened by EventSource, which cannot set headers, so it also
+    // takes an access_token parameter holding a token scoped to that one job
+    private String getJobEventsTokenFromRequest(HttpServletRequest request) {
+        if (!"GET".equals(request.getMethod())) {
+            return null;
+        }
+        Matcher path = JOB_EVENTS_PATH.matcher(request.getRequestURI().substring(request.getContextPath().length()));
+        String token = request.getParameter("access_token");
+        if (path.matches() && token != null && jwtTokenProvider.validateJobEventsToken(token, Long.valueOf(path.group(1)))) {
+            return token;
+        }
+        return null;
+    }
 }
\ No newline at end of file
@@ -23,6 +23,13 @@ public class JwtTokenProvider {
     @Value("${app.jwt.expiration:86400000}")
     private int jwtExpiration;
 
+    @Value("${app.jwt.job-events-expiration-ms:60000}")
+    private long jobEventsExpirationMs;
+
+    private static final String SCOPE_CLAIM = "scope";
+    private static final String JOB_EVENTS_SCOPE = "job-events";
+    private static final String JOB_ID_CLAIM = "jobId";
+
     private SecretKey getSigningKey() {
         return Keys.hmacShaKeyFor(jwtSecret.getBytes());
     }
@@ -55,15 +62,28 @@ public class JwtTokenProvider {
 
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
-        return createToken(claims, userDetails.getUsername());
+        return createToken(claims, userDetails.getUsername(), jwtExpiration);
+    }
+
+    // Short-lived token that opens only the event stream of one job. EventSource cannot send
+    // an Authorization header, so it travels in the URL, where a login token must never go.
+    public String generateJobEventsToken(String email, Long jobId) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(SCOPE_CLAIM, JOB_EVENTS_SCOPE);
+        claims.put(JOB_ID_CLAIM, jobId);
+        return createToken(claims, email, jobEventsExpirationMs);
+    }
+
+    public long getJobEventsExpirationMs() {
+        return jobEventsExpirationMs;
     }
 
-    private String createToken(Map<String, Object> claims, String subject) {
+    private String createToken(Map<String, Object> claims, String subject, long expirationMs) {
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + jwtExpiration))
+                .setExpiration(new Date(System.currentTimeMillis() + expirationMs))
                 .signWith(getSigningKey(), SignatureAlgorithm.HS512)
                 .compact();
     }
@@ -73,9 +93,22 @@ public class JwtTokenProvider {
         return (email.equals(userDetails.getUsername()) && !isTokenExpired(token));
     }
 
+    // Login tokens only; a job events token is not accepted in their place
     public Boolean validateToken(String token) {
         try {
-            return !isTokenExpired(token);
+            return !isTokenExpired(token) && getClaimFromToken(token, c -> c.get(SCOPE_CLAIM)) == null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    public boolean validateJobEventsToken(String token, Long jobId) {
+        try {
+            Claims claims = getAllClaimsFromToken(token);
+            Object tokenJobId = claims.get(JOB_ID_CLAIM);
+            return JOB_EVENTS_SCOPE.equals(claims.get(SCOPE_CLAIM))
+                    && tokenJobId instanceof Number number && number.longValue() == jobId
+                    && claims.getExpiration().after(new Date());
         } catch (Exception e) {
             return false;
         }
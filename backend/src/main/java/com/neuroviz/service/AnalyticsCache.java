@@ -0,0 +1,256 @@
+package com.neuroviz.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+// In-memory LRU of analytics responses, bounded by entry count and by estimated size.
+// Stored channels do not change after upload, so an entry stays valid until the session's
+// data version moves on, which invalidateSession does when a preprocess job completes.
+// removeSession forgets a deleted session entirely. Cached maps are shared between requests
+// and read-only.
+@Component
+public class AnalyticsCache {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.analytics.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.analytics.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${app.analytics.cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    // Access order, so the eldest entry is the least recently used; guarded by this
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<Long, Long> sessionVersions = new HashMap<>();
+    private final Map<Key, CompletableFuture<Map<String, Object>>> inFlight = new HashMap<>();
+    private long bytes;
+
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter evictionCounter;
+
+    public AnalyticsCache() {}
+
+    // Without Spring, as in tests
+    AnalyticsCache(MeterRegistry meterRegistry, int maxEntries, long maxBytes) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = true;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        hitCounter = Counter.builder("neuroviz.analytics.cache.requests").tag("result", "hit").register(meterRegistry);
+        missCounter = Counter.builder("neuroviz.analytics.cache.requests").tag("result", "miss").register(meterRegistry);
+        evictionCounter = Counter.builder("neuroviz.analytics.cache.evictions").register(meterRegistry);
+        Gauge.builder("neuroviz.analytics.cache.entries", this, AnalyticsCache::getEntryCount).register(meterRegistry);
+        Gauge.builder("neuroviz.analytics.cache.size", this, AnalyticsCache::getSizeBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    // The cached result of one analysis, computed on a miss. Concurrent misses for the same
+    // key wait for the first one to compute instead of each computing it. Failures are not
+    // cached; they are passed on to the requests that waited.
+    public Map<String, Object> get(Long sessionId, String analysis, String channel, String parameters,
+                                   Supplier<Map<String, Object>> compute) {
+        if (!enabled) {
+            return compute.get();
+        }
+
+        Key key;
+        CompletableFuture<Map<String, Object>> pending;
+        boolean computing = false;
+        synchronized (this) {
+            key = new Key(sessionId, analysis, channel, parameters, sessionVersions.getOrDefault(sessionId, 0L));
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hitCounter.increment();
+                return entry.value;
+            }
+            pending = inFlight.get(key);
+            if (pending == null) {
+                pending = new CompletableFuture<>();
+                inFlight.put(key, pending);
+                computing = true;
+            }
+        }
+        if (!computing) {
+            hitCounter.increment();
+            return await(pending);
+        }
+        missCounter.increment();
+
+        Map<String, Object> value;
+        try {
+            value = Collections.unmodifiableMap(compute.get());
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                inFlight.remove(key, pending);
+            }
+            pending.completeExceptionally(e);
+            throw e;
+        }
+        long size = estimateBytes(value);
+        synchronized (this) {
+            // Too large to keep, the data changed while it was computed, or the session is gone
+            boolean current = inFlight.remove(key, pending);
+            if (current && size <= maxBytes && sessionVersions.getOrDefault(sessionId, 0L) == key.version) {
+                Entry previous = entries.put(key, new Entry(value, size));
+                if (previous != null) {
+                    bytes -= previous.size;
+                }
+                bytes += size;
+                evict();
+            }
+        }
+        pending.complete(value);
+        return value;
+    }
+
+    // Moves the session to a new data version and drops what was cached for it
+    public synchronized void invalidateSession(Long sessionId) {
+        sessionVersions.merge(sessionId, 1L, Long::sum);
+        removeEntries(sessionId);
+    }
+
+    // Drops everything kept for a deleted session, its version included, so the cache does not
+    // grow with every session ever analysed. Results still being computed for it are not kept.
+    public synchronized void removeSession(Long sessionId) {
+        sessionVersions.remove(sessionId);
+        inFlight.keySet().removeIf(key -> key.sessionId.equals(sessionId));
+        removeEntries(sessionId);
+    }
+
+    private void removeEntries(Long sessionId) {
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> entry = iterator.next();
+            if (entry.getKey().sessionId.equals(sessionId)) {
+                bytes -= entry.getValue().size;
+                iterator.remove();
+            }
+        }
+    }
+
+    private static Map<String, Object> await(CompletableFuture<Map<String, Object>> pending) {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getSizeBytes() {
+        return bytes;
+    }
+
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+            bytes -= eldest.next().size;
+            eldest.remove();
+            evictionCounter.increment();
+        }
+    }
+
+    // Rough heap footprint of a response: arrays, strings, boxed numbers and the maps and
+    // lists holding them, with 64-bit object headers
+    static long estimateBytes(Object value) {
+        if (value == null) return 0;
+        if (value instanceof double[] array) return 16 + 8L * array.length;
+        if (value instanceof long[] array) return 16 + 8L * array.length;
+        if (value instanceof int[] array) return 16 + 4L * array.length;
+        if (value instanceof String string) return 40 + 2L * string.length();
+        if (value instanceof Number || value instanceof Boolean) return 16;
+        if (value instanceof Map<?, ?> map) {
+            long size = 48;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += 32 + estimateBytes(entry.getKey()) + estimateBytes(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection<?> collection) {
+            long size = 40;
+            for (Object element : collection) {
+                size += 8 + estimateBytes(element);
+            }
+            return size;
+        }
+        if (value instanceof Object[] array) {
+            long size = 16 + 8L * array.length;
+            for (Object element : array) {
+                size += estimateBytes(element);
+            }
+            return size;
+        }
+        return 64;
+    }
+
+    private static final class Key {
+        private final Long sessionId;
+        private final String analysis;
+        private final String channel;
+        private final String parameters;
+        private final long version;
+
+        Key(Long sessionId, String analysis, String channel, String parameters, long version) {
+            this.sessionId = sessionId;
+            this.analysis = analysis;
+            this.channel = channel;
+            this.parameters = parameters;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key other)) return false;
+            return version == other.version && sessionId.equals(other.sessionId) && analysis.equals(other.analysis)
+                    && Objects.equals(channel, other.channel) && Objects.equals(parameters, other.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sessionId, analysis, channel, parameters, version);
+        }
+    }
+
+    private static final class Entry {
+        private final Map<String, Object> value;
+        private final long size;
+
+        Entry(Map<String, Object> value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.neuroviz.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neuroviz.dsp.BandPower;
+import com.neuroviz.dsp.PowerSpectrum;
+import com.neuroviz.dsp.WelchPsd;
+import com.neuroviz.dto.request.BatchAnalyticsRequest;
+import com.neuroviz.entity.ChannelData;
+import com.neuroviz.entity.ProcessingJob;
+import com.neuroviz.repository.SessionRepository;
+import com.neuroviz.storage.ChannelReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+// Band powers, and optionally Welch spectra, of many channels across many sessions as one
+// job. Every (session, channel) pair is a task on the processing pool, whose workers steal
+// from each other so a few long recordings do not leave cores idle. The job thread writes
+// each result as it completes, one JSON line per channel, to a gzipped file next to the
+// other stored data, so memory does not grow with the cohort.
+@Service
+public class BatchAnalyticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchAnalyticsService.class);
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private ChannelStoreService channelStoreService;
+
+    @Autowired
+    private ForkJoinPool processingPool;
+
+    @Autowired
+    private JobProgressTracker progressTracker;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.storage.path}")
+    private String storagePath;
+
+    // A channel of a session, or a requested channel the session does not have
+    private record Item(Long sessionId, String channelName, ChannelData channel) {}
+
+    public Path getResultPath(Long jobId) {
+        return Paths.get(storagePath, "batch", "job-" + jobId + ".ndjson.gz");
+    }
+
+    public Map<String, Object> run(ProcessingJob job, BatchAnalyticsRequest request) throws IOException {
+        List<Item> items = resolveItems(job.getUserId(), request);
+        boolean includePsd = Boolean.TRUE.equals(request.getIncludePsd());
+
+        Path result = getResultPath(job.getId());
+        Files.createDirectories(result.getParent());
+        Path temporary = result.resolveSibling(result.getFileName() + ".tmp");
+
+        long started = System.nanoTime();
+        JobProgressTracker.Progress progress = progressTracker.start(job.getId(), items.size());
+        ExecutorCompletionService<String> completion = new ExecutorCompletionService<>(processingPool);
+        List<Future<String>> futures = new ArrayList<>(items.size());
+        boolean written = false;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(temporary), 1 << 16), StandardCharsets.UTF_8))) {
+            for (Item item : items) {
+                futures.add(completion.submit(() -> analyze(item, includePsd, progress)));
+            }
+            for (int i = 0; i < items.size(); i++) {
+                out.write(completion.take().get());
+                out.write('\n');
+            }
+            written = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Batch analytics was interrupted");
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause().getMessage());
+        } finally {
+            progressTracker.finish(job.getId());
+            if (!written) {
+                futures.forEach(future -> future.cancel(false));
+                Files.deleteIfExists(temporary);
+            }
+        }
+        Files.move(temporary, result, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        logger.info("Batch analytics job {} analyzed {} channels in {} ms", job.getId(), items.size(), elapsedMs);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("success", true);
+        summary.put("sessions", new LinkedHashSet<>(request.getSessionIds()).size());
+        summary.put("channels", items.size());
+        summary.put("failed", progress.getFailed());
+        summary.put("result_path", result.toString());
+        summary.put("result_bytes", Files.size(result));
+        summary.put("elapsed_ms", elapsedMs);
+        summary.put("message", "Analyzed " + items.size() + " channels");
+        return summary;
+    }
+
+    // Sessions are checked against the job's owner up front, so a job never reads another
+    // user's recordings
+    private List<Item> resolveItems(Long userId, BatchAnalyticsRequest request) {
+        List<String> channelNames = request.getChannels();
+        List<Item> items = new ArrayList<>();
+        for (Long sessionId : new LinkedHashSet<>(request.getSessionIds())) {
+            if (sessionRepository.findByUserIdAndId(userId, sessionId).isEmpty()) {
+                throw new RuntimeException("Session not found: " + sessionId);
+            }
+            List<ChannelData> channels = channelStoreService.getChannels(sessionId);
+            if (channelNames == null || channelNames.isEmpty()) {
+                for (ChannelData channel : channels) {
+                    items.add(new Item(sessionId, channel.getChannelName(), channel));
+                }
+                continue;
+            }
+            Map<String, ChannelData> byName = new HashMap<>();
+            for (ChannelData channel : channels) {
+                byName.put(channel.getChannelName(), channel);
+            }
+            for (String name : new LinkedHashSet<>(channelNames)) {
+                items.add(new Item(sessionId, name, byName.get(name)));
+            }
+        }
+        return items;
+    }
+
+    // A failed channel becomes an error line rather than failing the whole cohort
+    private String analyze(Item item, boolean includePsd, JobProgressTracker.Progress progress) throws IOException {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("session_id", item.sessionId());
+        line.put("channel", item.channelName());
+        boolean success = false;
+        try {
+            if (item.channel() == null) {
+                throw new IllegalArgumentException("Channel not found");
+            }
+            PowerSpectrum spectrum;
+            try (ChannelReader reader = channelStoreService.openReader(item.channel())) {
+                spectrum = WelchPsd.estimate(reader, item.channel().getSampleRate());
+            }
+            line.put("sample_rate", item.channel().getSampleRate());
+            line.put("sample_count", item.channel().getSampleCount());
+            line.put("band_powers", BandPower.of(spectrum));
+            if (includePsd) {
+                line.put("frequencies", spectrum.getFrequencies());
+                line.put("psd_values", spectrum.getDensity());
+            }
+            success = true;
+        } catch (IOException | IllegalArgumentException e) {
+            line.put("error", e.getMessage());
+        } finally {
+            progress.completed(success);
+        }
+        return objectMapper.writeValueAsString(line);
+    }
+}
@@ -0,0 +1,296 @@
+package com.neuroviz.service;
+
+import com.neuroviz.entity.StoredBlob;
+import com.neuroviz.repository.StoredBlobRepository;
+import jakarta.annotation.PostConstruct;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Content-addressed store for uploaded recordings. Uploads are hashed with SHA-256 while they
+// are written, identical content maps to one blob, and blobs are reference counted by the
+// sessions that use them.
+@Service
+@Transactional
+public class BlobStoreService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobStoreService.class);
+
+    private static final int LOCK_STRIPES = 64;
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private ChannelStoreService channelStoreService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.storage.raw-path}")
+    private String rawDataPath;
+
+    private boolean advisoryLocks;
+
+    public BlobStoreService() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        try (Connection connection = dataSource.getConnection()) {
+            advisoryLocks = connection.isWrapperFor(PGConnection.class);
+        } catch (SQLException e) {
+            logger.warn("Could not check for Postgres advisory locks: {}", e.getMessage());
+        }
+        if (!advisoryLocks) {
+            logger.info("Uploads of the same content are serialised on this instance only");
+        }
+    }
+
+    // Writes the stream to a temporary file in the raw store, hashing it on the way
+    public StagedFile stage(InputStream in) throws IOException {
+        Path raw = Paths.get(rawDataPath);
+        Files.createDirectories(raw);
+        Path temp = raw.resolve("upload-" + UUID.randomUUID() + ".tmp");
+        try (DigestInputStream digestIn = new DigestInputStream(in, newDigest())) {
+            long size = Files.copy(digestIn, temp);
+            return new StagedFile(temp, HexFormat.of().formatHex(digestIn.getMessageDigest().digest()), size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    // Hashes a file that is already on disk, e.g. an assembled chunked upload. The staged file is
+    // a hard link to it, or a copy where links are not supported, so the blob store can move or
+    // delete it while the original stays in place until the caller is done with it.
+    public StagedFile stage(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        long size = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+                size += n;
+            }
+        }
+
+        Path raw = Paths.get(rawDataPath);
+        Files.createDirectories(raw);
+        Path temp = raw.resolve("upload-" + UUID.randomUUID() + ".tmp");
+        try {
+            Files.createLink(temp, file);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Different file systems, or no hard links there
+            Files.copy(file, temp);
+        }
+        return new StagedFile(temp, HexFormat.of().formatHex(digest.digest()), size);
+    }
+
+    // Serialises uploads of the same content until the current transaction ends, so a second
+    // identical upload sees the blob created by the first one. With Postgres this is an advisory
+    // lock, which holds across instances; without it, as in the test profile, a lock in this JVM.
+    public void lock(String sha256) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Blob locks require an active transaction");
+        }
+        if (advisoryLocks) {
+            // The leading 64 bits of the hash, which are already uniformly distributed
+            storedBlobRepository.lockKey(Long.parseUnsignedLong(sha256.substring(0, 16), 16));
+            return;
+        }
+        ReentrantLock lock = locks[Math.floorMod(sha256.hashCode(), LOCK_STRIPES)];
+        lock.lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+
+    public Optional<StoredBlob> findBlob(String sha256) {
+        return storedBlobRepository.findBySha256ForUpdate(sha256);
+    }
+
+    // Moves the staged file to its content-addressed location and registers it with one reference
+    public StoredBlob createBlob(StagedFile staged, String originalFilename) throws IOException {
+        Path target = Paths.get(rawDataPath, staged.getSha256() + extensionOf(originalFilename));
+        Files.createDirectories(target.getParent());
+        Files.move(staged.getPath(), target, StandardCopyOption.REPLACE_EXISTING);
+        deleteOnRollback(target);
+
+        StoredBlob blob = new StoredBlob(staged.getSha256(), staged.getSizeBytes(), target.toString());
+        blob.setRefCount(1);
+        return storedBlobRepository.save(blob);
+    }
+
+    // Takes over a blob that no session references any more, replacing its files
+    public StoredBlob reclaim(StoredBlob blob, StagedFile staged, String originalFilename) throws IOException {
+        channelStoreService.deleteBlobFiles(blob.getSha256());
+        Path previous = Paths.get(blob.getFilePath());
+        Path target = Paths.get(rawDataPath, staged.getSha256() + extensionOf(originalFilename));
+        Files.createDirectories(target.getParent());
+        Files.move(staged.getPath(), target, StandardCopyOption.REPLACE_EXISTING);
+        if (!previous.equals(target)) Files.deleteIfExists(previous);
+        
+        blob.setFilePath(target.toString());
+        blob.setSizeBytes(staged.getSizeBytes());
+        blob.setRefCount(1);
+        blob.setCompactedAt(null);
+        return storedBlobRepository.save(blob);
+    }
+    
+    // Recorded at most once per hour, for compaction of recordings nobody looks at
+    public void touch(StoredBlob blob) {
+        LocalDateTime now = LocalDateTime.now();
+        storedBlobRepository.touch(blob.getId(), now, now.minusHours(1));
+    }
+    
+    public void retain(StoredBlob blob) {
+        blob.setRefCount(blob.getRefCount() + 1);
+        storedBlobRepository.save(blob);
+    }
+
+    // Drops one reference; the last one removes the blob and, after commit, its files
+    public void release(StoredBlob blob) {
+        lock(blob.getSha256());
+        StoredBlob current = storedBlobRepository.findByIdForUpdate(blob.getId()).orElse(null);
+        if (current == null) return;
+
+        if (current.getRefCount() > 1) {
+            current.setRefCount(current.getRefCount() - 1);
+            storedBlobRepository.save(current);
+            return;
+        }
+
+        storedBlobRepository.delete(current);
+        String sha256 = current.getSha256();
+        Path file = Paths.get(current.getFilePath());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deleteUnlessStoredAgain(sha256, file);
+            }
+        });
+    }
+
+    boolean usesAdvisoryLocks() {
+        return advisoryLocks;
+    }
+
+    // An advisory lock ends with the commit that removed the blob, so an upload of the same
+    // content may have stored it again by the time its files are deleted. The files are checked
+    // under the lock again, and those of a new blob stay.
+    private void deleteUnlessStoredAgain(String sha256, Path file) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transaction.executeWithoutResult(status -> {
+            lock(sha256);
+            Optional<StoredBlob> storedAgain = storedBlobRepository.findBySha256ForUpdate(sha256);
+            if (storedAgain.isEmpty() || !Paths.get(storedAgain.get().getFilePath()).equals(file)) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    logger.warn("Could not delete {}: {}", file, e.getMessage());
+                }
+            }
+            if (storedAgain.isEmpty()) {
+                channelStoreService.deleteBlobFiles(sha256);
+            }
+        });
+    }
+
+    private void deleteOnRollback(Path file) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) return;
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    logger.warn("Could not delete {}: {}", file, e.getMessage());
+                }
+            }
+        });
+    }
+
+    // The extension is kept so the format can still be told from the stored file
+    private static String extensionOf(String filename) {
+        String name = Paths.get(String.valueOf(filename)).getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) return "";
+        String extension = name.substring(dot).toLowerCase(Locale.ROOT);
+        return extension.matches("\\.[a-z0-9]{1,10}") ? extension : "";
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static class StagedFile {
+        private final Path path;
+        private final String sha256;
+        private final long sizeBytes;
+
+        public StagedFile(Path path, String sha256, long sizeBytes) {
+            this.path = path;
+            this.sha256 = sha256;
+            this.sizeBytes = sizeBytes;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public long getSizeBytes() {
+            return sizeBytes;
+        }
+    }
+}
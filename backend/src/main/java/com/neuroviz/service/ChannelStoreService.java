@@ -0,0 +1,209 @@
+package com.neuroviz.service;
+
+import com.neuroviz.entity.ChannelData;
+import com.neuroviz.entity.Session;
+import com.neuroviz.repository.ChannelDataRepository;
+import com.neuroviz.storage.ChannelCodec;
+import com.neuroviz.storage.ChannelReader;
+import com.neuroviz.storage.ChannelStoreWriter;
+import com.neuroviz.storage.CompressedChannelReader;
+import com.neuroviz.storage.LodPyramid;
+import com.neuroviz.storage.LodPyramidBuilder;
+import com.neuroviz.storage.LodWindow;
+import com.neuroviz.storage.MappedChannelReader;
+import com.neuroviz.storage.SampleFormat;
+import com.neuroviz.storage.SampleWindow;
+import com.neuroviz.storage.StoredChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Service
+@Transactional
+public class ChannelStoreService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ChannelStoreService.class);
+    
+    private static final int MAX_CHANNEL_NAME_LENGTH = 50;
+    
+    @Autowired
+    private ChannelDataRepository channelDataRepository;
+    
+    @Value("${app.storage.processed-path}")
+    private String processedDataPath;
+    
+    @Value("${app.storage.channel-format:float32}")
+    private SampleFormat channelFormat;
+    
+    @Value("${app.storage.channel-codec:none}")
+    private ChannelCodec channelCodec;
+    
+    // Channel files belong to the stored recording, so sessions of identical uploads share them
+    public ChannelStoreWriter openWriter(String blobSha256) {
+        return new ChannelStoreWriter(getBlobDirectory(blobSha256).resolve("channels"), channelFormat, channelCodec);
+    }
+    
+    public List<ChannelData> saveChannels(Session session, List<StoredChannel> storedChannels, int sampleRate) {
+        int[] sampleRates = new int[storedChannels.size()];
+        Arrays.fill(sampleRates, sampleRate);
+        return saveChannels(session, storedChannels, sampleRates);
+    }
+    
+    // Sample rates per stored channel, for formats such as EDF where signals differ in rate
+    public List<ChannelData> saveChannels(Session session, List<StoredChannel> storedChannels, int[] sampleRates) {
+        List<ChannelData> channels = new ArrayList<>(storedChannels.size());
+        Set<String> usedNames = new HashSet<>();
+        
+        for (int i = 0; i < storedChannels.size(); i++) {
+            StoredChannel stored = storedChannels.get(i);
+            
+            ChannelData channel = new ChannelData();
+            channel.setSession(session);
+            channel.setChannelName(uniqueChannelName(stored.getChannelName(), i, usedNames));
+            channel.setSampleRate(sampleRates[i]);
+            channel.setDataLocation(stored.getPath().toString());
+            channel.setDataSizeBytes(stored.getSizeBytes());
+            channel.setSampleFormat(stored.getFormat());
+            channel.setSampleCount(stored.getSampleCount());
+            channel.setCodec(stored.getCodec());
+            channel.setCompressionRatio(stored.getCompressionRatio());
+            channel.setDecodeMbPerSecond(stored.getDecodeMbPerSecond());
+            channels.add(channel);
+        }
+        
+        return channelDataRepository.saveAll(channels);
+    }
+    
+    // Level-of-detail pyramids are built once, right after the channel files are written.
+    // This pass decodes every block of a compressed channel, which gives its decode throughput.
+    public void buildOverviews(List<StoredChannel> storedChannels) throws IOException {
+        for (StoredChannel stored : storedChannels) {
+            try (ChannelReader reader = ChannelReader.open(stored.getPath(), stored.getFormat(), stored.getCodec())) {
+                LodPyramidBuilder.build(reader, LodPyramid.pathFor(stored.getPath()));
+                if (reader instanceof CompressedChannelReader compressed && compressed.getDecodeNanos() > 0) {
+                    double megabytes = compressed.getDecodedSamples() * stored.getFormat().getBytesPerSample() / 1e6;
+                    stored.setDecodeMbPerSecond(megabytes / (compressed.getDecodeNanos() / 1e9));
+                }
+            }
+        }
+    }
+    
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public LodWindow getOverview(ChannelData channel, SampleWindow window, int maxBuckets) throws IOException {
+        return LodPyramid.query(Paths.get(channel.getDataLocation()), channel.getSampleFormat(), codecOf(channel),
+                channel.getSampleRate(), window, maxBuckets);
+    }
+    
+    // Points a new session at the channel files of another session of the same recording
+    public List<ChannelData> copyChannels(Long sourceSessionId, Session target) {
+        List<ChannelData> copies = new ArrayList<>();
+        for (ChannelData source : channelDataRepository.findBySessionId(sourceSessionId)) {
+            ChannelData channel = new ChannelData();
+            channel.setSession(target);
+            channel.setChannelName(source.getChannelName());
+            channel.setSampleRate(source.getSampleRate());
+            channel.setDataLocation(source.getDataLocation());
+            channel.setDataSizeBytes(source.getDataSizeBytes());
+            channel.setSampleFormat(source.getSampleFormat());
+            channel.setSampleCount(source.getSampleCount());
+            channel.setCodec(source.getCodec());
+            channel.setCompressionRatio(source.getCompressionRatio());
+            channel.setDecodeMbPerSecond(source.getDecodeMbPerSecond());
+            copies.add(channel);
+        }
+        return channelDataRepository.saveAll(copies);
+    }
+    
+    public List<ChannelData> getChannels(Long sessionId) {
+        return channelDataRepository.findBySessionId(sessionId);
+    }
+    
+    public ChannelData getChannel(Long sessionId, String channelName) {
+        ChannelData channel = channelDataRepository.findBySessionIdAndChannelName(sessionId, channelName);
+        if (channel == null) {
+            throw new RuntimeException("Channel not found: " + channelName);
+        }
+        return channel;
+    }
+    
+    public ChannelReader openReader(ChannelData channel) throws IOException {
+        return ChannelReader.open(Paths.get(channel.getDataLocation()), channel.getSampleFormat(), codecOf(channel));
+    }
+    
+    // No transaction while streaming: the response can take far longer than the lookup
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long writeWindow(ChannelData channel, SampleWindow window, WritableByteChannel target) throws IOException {
+        Path path = Paths.get(channel.getDataLocation());
+        if (!codecOf(channel).isCompressed()) {
+            return MappedChannelReader.transferWindow(path, channel.getSampleFormat(), window, target);
+        }
+        try (CompressedChannelReader reader = new CompressedChannelReader(path)) {
+            return reader.transferWindow(window, target);
+        }
+    }
+    
+    // Channels stored before codecs existed have no codec recorded
+    private ChannelCodec codecOf(ChannelData channel) {
+        return channel.getCodec() != null ? channel.getCodec() : ChannelCodec.NONE;
+    }
+    
+    // Output of a preprocessing job sits next to the channels it was computed from, in a
+    // directory per attempt, so an attempt never meets files of one that died or lost its lease
+    public Path getPreprocessedDirectory(Session session, Long jobId, int attempt) {
+        Path base = session.getBlob() != null
+                ? getBlobDirectory(session.getBlob().getSha256())
+                : Paths.get(processedDataPath, "sessions", String.valueOf(session.getId()));
+        return base.resolve("preprocessed").resolve("job-" + jobId).resolve("attempt-" + attempt);
+    }
+    
+    public void deleteBlobFiles(String blobSha256) {
+        deleteDirectory(getBlobDirectory(blobSha256));
+    }
+    
+    // Sessions stored before deduplication keep their channel files per session
+    public void deleteSessionFiles(Long sessionId) {
+        deleteDirectory(Paths.get(processedDataPath, "sessions", String.valueOf(sessionId)));
+    }
+    
+    private void deleteDirectory(Path directory) {
+        try {
+            FileSystemUtils.deleteRecursively(directory);
+        } catch (IOException e) {
+            logger.warn("Could not delete channel files in {}: {}", directory, e.getMessage());
+        }
+    }
+    
+    private Path getBlobDirectory(String blobSha256) {
+        return Paths.get(processedDataPath, "blobs", blobSha256);
+    }
+    
+    // Channel names are unique per session and limited by the channel_name column
+    private String uniqueChannelName(String name, int index, Set<String> usedNames) {
+        String base = name == null || name.isBlank() ? "ch" + (index + 1) : name;
+        if (base.length() > MAX_CHANNEL_NAME_LENGTH) {
+            base = base.substring(0, MAX_CHANNEL_NAME_LENGTH);
+        }
+        String candidate = base;
+        int suffix = 2;
+        while (!usedNames.add(candidate)) {
+            String tag = "_" + suffix++;
+            candidate = base.substring(0, Math.min(base.length(), MAX_CHANNEL_NAME_LENGTH - tag.length())) + tag;
+        }
+        return candidate;
+    }
+}
@@ -0,0 +1,116 @@
+package com.neuroviz.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Files of one chunked upload of UploadService, apart from JPA: the part file, preallocated to the
+// full size so every chunk is written straight into its offset, and the marker file with one byte
+// per chunk that is set once the chunk is on disk.
+class ChunkedUploadFiles {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final Path partFile;
+    private final Path markerFile;
+    private final long totalSize;
+    private final int chunkSize;
+    private final int chunkCount;
+
+    ChunkedUploadFiles(Path directory, String uploadId, long totalSize, int chunkSize, int chunkCount) {
+        this.partFile = directory.resolve(uploadId + ".part");
+        this.markerFile = directory.resolve(uploadId + ".chunks");
+        this.totalSize = totalSize;
+        this.chunkSize = chunkSize;
+        this.chunkCount = chunkCount;
+    }
+
+    // Creates both files at their full size; nothing is left behind if that fails
+    void allocate() throws IOException {
+        try {
+            Files.createDirectories(partFile.getParent());
+            try (RandomAccessFile part = new RandomAccessFile(partFile.toFile(), "rw");
+                 RandomAccessFile marker = new RandomAccessFile(markerFile.toFile(), "rw")) {
+                part.setLength(totalSize);
+                marker.setLength(chunkCount);
+            }
+        } catch (IOException e) {
+            delete();
+            throw e;
+        }
+    }
+
+    // Writes a chunk at its offset. Chunks may be written in any order and at the same time; one
+    // written again replaces the earlier copy. contentLength is -1 when not known in advance.
+    void writeChunk(int index, InputStream body, long contentLength) throws IOException {
+        if (index < 0 || index >= chunkCount) {
+            throw new RuntimeException("Chunk index must be between 0 and " + (chunkCount - 1));
+        }
+        long offset = (long) index * chunkSize;
+        long expected = Math.min(chunkSize, totalSize - offset);
+        if (contentLength >= 0 && contentLength != expected) {
+            throw new RuntimeException("Chunk " + index + " must be " + expected + " bytes, got " + contentLength);
+        }
+
+        try (FileChannel part = FileChannel.open(partFile, StandardOpenOption.WRITE)) {
+            ReadableByteChannel source = Channels.newChannel(body);
+            ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+            long written = 0;
+            while (written < expected) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), expected - written));
+                if (source.read(buffer) < 0) break;
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    written += part.write(buffer, offset + written);
+                }
+            }
+            if (written != expected || body.read() != -1) {
+                throw new RuntimeException("Chunk " + index + " must be " + expected + " bytes");
+            }
+            // Data must be durable before the chunk is marked as received
+            part.force(false);
+
+            try (FileChannel marker = FileChannel.open(markerFile, StandardOpenOption.WRITE)) {
+                marker.write(ByteBuffer.wrap(new byte[] {1}), index);
+            }
+        }
+    }
+
+    // Indexes of the chunks not received yet, which a client resuming the upload sends again
+    List<Integer> missingChunks() throws IOException {
+        byte[] received = Files.readAllBytes(markerFile);
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < chunkCount; i++) {
+            if (i >= received.length || received[i] == 0) missing.add(i);
+        }
+        return missing;
+    }
+
+    // Whether no chunk arrived within the given time. Chunks are written outside a transaction and
+    // do not touch the upload row, so the marker file tells when the last one came in.
+    boolean isIdle(Duration expiry) throws IOException {
+        if (!Files.exists(markerFile)) return true;
+        long idle = System.currentTimeMillis() - Files.getLastModifiedTime(markerFile).toMillis();
+        return idle >= expiry.toMillis();
+    }
+
+    Path getPartFile() {
+        return partFile;
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(partFile);
+        Files.deleteIfExists(markerFile);
+    }
+}
@@ -0,0 +1,202 @@
+package com.neuroviz.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neuroviz.classify.PortableClassifier;
+import com.neuroviz.dsp.WindowFeatures;
+import com.neuroviz.entity.ChannelData;
+import com.neuroviz.storage.ChannelReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Classifies the first stored channel of a session with the model the processing service
+// exports, without sending the recording there. The channel is cut into consecutive windows
+// of the model's length; runs of windows are spread over the analytics pool, and each run
+// reuses one feature workspace and one probability buffer for all its windows. The window
+// probabilities are averaged into the session's prediction.
+@Service
+public class ClassifierService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassifierService.class);
+
+    @Autowired
+    private ChannelStoreService channelStoreService;
+
+    @Autowired
+    private ForkJoinPool analyticsPool;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.classifier.model-path:}")
+    private String modelPath;
+
+    @Value("${app.classifier.windows-per-task:64}")
+    private int windowsPerTask;
+
+    // The model and the modification time it was read at; reloaded when the file changes
+    private volatile LoadedModel loaded;
+
+    private record LoadedModel(PortableClassifier classifier, FileTime modified) {}
+
+    private record RunResult(double[] probabilitySums, int[] classCounts) {}
+
+    public boolean isAvailable() {
+        return model() != null;
+    }
+
+    public Map<String, Object> classify(Long sessionId) {
+        PortableClassifier classifier = model();
+        if (classifier == null) {
+            throw new RuntimeException("No classifier model at " + modelPath);
+        }
+        if (!classifier.getFeatures().equals(WindowFeatures.NAMES)) {
+            throw new RuntimeException("Classifier expects features " + classifier.getFeatures());
+        }
+
+        // The first channel, as the processing service classifies
+        ChannelData channel = channelStoreService.getChannels(sessionId).stream()
+                .min(Comparator.comparing(ChannelData::getId))
+                .orElseThrow(() -> new RuntimeException("Session has no stored channels"));
+        double sampleRate = channel.getSampleRate();
+        long sampleCount = channel.getSampleCount();
+
+        // A recording shorter than one window is classified whole
+        int windowSamples = (int) Math.min(sampleCount, Math.round(classifier.getWindowSeconds() * sampleRate));
+        long windows = sampleCount / Math.max(1, windowSamples);
+        if (windowSamples < 8 || windows == 0) {
+            throw new RuntimeException("Channel is too short to classify: " + sampleCount + " samples");
+        }
+
+        long started = System.nanoTime();
+        int run = Math.max(1, windowsPerTask);
+        List<Callable<RunResult>> tasks = new ArrayList<>();
+        for (long first = 0; first < windows; first += run) {
+            long from = first;
+            int count = (int) Math.min(run, windows - first);
+            tasks.add(() -> classifyRun(classifier, channel, sampleRate, windowSamples, from, count));
+        }
+
+        int classCount = classifier.getClasses().size();
+        double[] probabilitySums = new double[classCount];
+        int[] classCounts = new int[classCount];
+        try {
+            for (Future<RunResult> future : analyticsPool.invokeAll(tasks)) {
+                RunResult result = future.get();
+                for (int c = 0; c < classCount; c++) {
+                    probabilitySums[c] += result.probabilitySums()[c];
+                    classCounts[c] += result.classCounts()[c];
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Classification was interrupted");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error classifying session: " + e.getCause().getMessage());
+        }
+
+        int predicted = 0;
+        Map<String, Object> probabilities = new LinkedHashMap<>();
+        Map<String, Object> windowCounts = new LinkedHashMap<>();
+        for (int c = 0; c < classCount; c++) {
+            probabilitySums[c] /= windows;
+            if (probabilitySums[c] > probabilitySums[predicted]) predicted = c;
+            probabilities.put(classifier.getClasses().get(c), probabilitySums[c]);
+            windowCounts.put(classifier.getClasses().get(c), classCounts[c]);
+        }
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        logger.debug("Classified {} windows of session {} in {} ms", windows, sessionId, elapsedMs);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("predicted_class", classifier.getClasses().get(predicted));
+        result.put("probabilities", probabilities);
+        result.put("confidence", probabilitySums[predicted]);
+        result.put("classes", classifier.getClasses());
+        result.put("features_used", WindowFeatures.COUNT);
+        result.put("channel", channel.getChannelName());
+        result.put("window_seconds", windowSamples / sampleRate);
+        result.put("windows", windows);
+        result.put("window_predictions", windowCounts);
+        result.put("elapsed_ms", elapsedMs);
+        return result;
+    }
+
+    private RunResult classifyRun(PortableClassifier classifier, ChannelData channel, double sampleRate,
+                                  int windowSamples, long firstWindow, int count) throws IOException {
+        int classCount = classifier.getClasses().size();
+        double[] samples = new double[count * windowSamples];
+        try (ChannelReader reader = channelStoreService.openReader(channel)) {
+            int done = 0;
+            while (done < samples.length) {
+                int n = reader.read(firstWindow * windowSamples + done, samples, done, samples.length - done);
+                if (n <= 0) throw new IOException("Unexpected end of channel " + channel.getChannelName());
+                done += n;
+            }
+        }
+
+        WindowFeatures extractor = new WindowFeatures(windowSamples);
+        double[] features = new double[WindowFeatures.COUNT];
+        double[] probabilities = new double[classCount];
+        double[] sums = new double[classCount];
+        int[] counts = new int[classCount];
+        for (int w = 0; w < count; w++) {
+            extractor.extract(samples, w * windowSamples, sampleRate, features);
+            classifier.predictProba(features, probabilities);
+            int best = 0;
+            for (int c = 0; c < classCount; c++) {
+                sums[c] += probabilities[c];
+                if (probabilities[c] > probabilities[best]) best = c;
+            }
+            counts[best]++;
+        }
+        return new RunResult(sums, counts);
+    }
+
+    // Null when no model has been exported yet
+    private PortableClassifier model() {
+        if (modelPath == null || modelPath.isBlank()) {
+            return null;
+        }
+        Path file = Paths.get(modelPath);
+        try {
+            if (!Files.isRegularFile(file)) {
+                return null;
+            }
+            FileTime modified = Files.getLastModifiedTime(file);
+            LoadedModel current = loaded;
+            if (current != null && current.modified().equals(modified)) {
+                return current.classifier();
+            }
+            synchronized (this) {
+                current = loaded;
+                if (current == null || !current.modified().equals(modified)) {
+                    current = new LoadedModel(PortableClassifier.load(file, objectMapper), modified);
+                    loaded = current;
+                    logger.info("Loaded classifier model {} with classes {}", file, current.classifier().getClasses());
+                }
+                return current.classifier();
+            }
+        } catch (IOException e) {
+            logger.warn("Could not load classifier model {}: {}", file, e.getMessage());
+            LoadedModel current = loaded;
+            return current == null ? null : current.classifier();
+        }
+    }
+}
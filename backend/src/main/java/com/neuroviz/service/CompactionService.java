@@ -0,0 +1,309 @@
+package com.neuroviz.service;
+
+import com.neuroviz.entity.ChannelData;
+import com.neuroviz.entity.StoredBlob;
+import com.neuroviz.repository.ChannelDataRepository;
+import com.neuroviz.repository.SessionRepository;
+import com.neuroviz.repository.StoredBlobRepository;
+import com.neuroviz.storage.BlobCompaction;
+import com.neuroviz.storage.ChannelCodec;
+import com.neuroviz.storage.IoThrottle;
+import com.neuroviz.storage.SampleFormat;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Moves recordings nobody has opened for a while to compressed storage: the raw upload is
+// gzipped and packed channel files are rewritten as block-compressed channels. New files are
+// verified against the originals (SHA-256 of the raw content, CRC32 of the channel samples)
+// before the rows are switched over, and the originals are only deleted after that commits.
+// Every node runs compaction, so a node first claims a blob in the database and only then
+// writes anything; the claim is renewed after every file and checked again at the switch-over.
+// All file I/O goes through one throttle so compaction never competes with live requests.
+@Service
+public class CompactionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompactionService.class);
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private ChannelDataRepository channelDataRepository;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private JobExecutor jobExecutor;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.compaction.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.compaction.idle-days:30}")
+    private int idleDays;
+
+    @Value("${app.compaction.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.compaction.max-bytes-per-second:20971520}")
+    private long maxBytesPerSecond;
+
+    @Value("${app.compaction.claim-ms:1800000}")
+    private long claimMs;
+
+    private IoThrottle throttle;
+    private Counter reclaimedCounter;
+    private Counter compactedCounter;
+    private Counter failedCounter;
+
+    // Progress, read by the actuator endpoint while a run is going on
+    private volatile boolean running;
+    private volatile String currentBlob;
+    private volatile LocalDateTime lastRunStartedAt;
+    private volatile LocalDateTime lastRunFinishedAt;
+    private volatile int runCandidates;
+    private final AtomicLong runCompacted = new AtomicLong();
+    private final AtomicLong runFailed = new AtomicLong();
+    private final AtomicLong runBytesProcessed = new AtomicLong();
+    private final AtomicLong runBytesReclaimed = new AtomicLong();
+    private final AtomicLong totalCompacted = new AtomicLong();
+    private final AtomicLong totalBytesReclaimed = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        throttle = new IoThrottle(maxBytesPerSecond);
+        reclaimedCounter = Counter.builder("neuroviz.compaction.bytes.reclaimed")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        compactedCounter = Counter.builder("neuroviz.compaction.blobs").tag("result", "compacted").register(meterRegistry);
+        failedCounter = Counter.builder("neuroviz.compaction.blobs").tag("result", "failed").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.compaction.interval-ms:3600000}",
+               initialDelayString = "${app.compaction.initial-delay-ms:600000}")
+    public void compactIdleBlobs() {
+        if (!enabled) return;
+        run();
+    }
+
+    public synchronized void run() {
+        running = true;
+        lastRunStartedAt = LocalDateTime.now();
+        runCompacted.set(0);
+        runFailed.set(0);
+        runBytesProcessed.set(0);
+        runBytesReclaimed.set(0);
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(idleDays);
+            List<StoredBlob> candidates = storedBlobRepository.findCompactionCandidates(cutoff, LocalDateTime.now(),
+                    PageRequest.of(0, batchSize));
+            runCandidates = candidates.size();
+
+            for (StoredBlob blob : candidates) {
+                currentBlob = blob.getSha256();
+                try {
+                    if (!compact(blob)) continue;
+                    runCompacted.incrementAndGet();
+                    totalCompacted.incrementAndGet();
+                    compactedCounter.increment();
+                } catch (Exception e) {
+                    runFailed.incrementAndGet();
+                    failedCounter.increment();
+                    logger.warn("Could not compact blob {}: {}", blob.getSha256(), e.getMessage());
+                }
+            }
+            if (!candidates.isEmpty()) {
+                logger.info("Compacted {} of {} idle recordings, reclaimed {} bytes",
+                        runCompacted.get(), candidates.size(), runBytesReclaimed.get());
+            }
+        } finally {
+            currentBlob = null;
+            running = false;
+            lastRunFinishedAt = LocalDateTime.now();
+        }
+    }
+
+    public Map<String, Object> getProgress() {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("enabled", enabled);
+        progress.put("running", running);
+        progress.put("currentBlob", currentBlob);
+        progress.put("lastRunStartedAt", lastRunStartedAt);
+        progress.put("lastRunFinishedAt", lastRunFinishedAt);
+        progress.put("candidates", runCandidates);
+        progress.put("compacted", runCompacted.get());
+        progress.put("failed", runFailed.get());
+        progress.put("bytesProcessed", runBytesProcessed.get());
+        progress.put("bytesReclaimed", runBytesReclaimed.get());
+        progress.put("totalCompacted", totalCompacted.get());
+        progress.put("totalBytesReclaimed", totalBytesReclaimed.get());
+        progress.put("maxBytesPerSecond", maxBytesPerSecond);
+        return progress;
+    }
+
+    // Returns false when the blob was compacted or claimed elsewhere in the meantime
+    private boolean compact(StoredBlob candidate) throws IOException {
+        String claimant = jobExecutor.getNodeId() + "/" + UUID.randomUUID().toString().substring(0, 8);
+        StoredBlob blob = new TransactionTemplate(transactionManager).execute(status -> claim(candidate, claimant));
+        if (blob == null) {
+            return false;
+        }
+
+        boolean swapped = false;
+        try (BlobCompaction compaction = new BlobCompaction(throttle, runBytesProcessed::addAndGet)) {
+            String originalRaw = blob.getFilePath();
+            // Already compressed uploads are left as they are
+            if (!originalRaw.endsWith(".gz")) {
+                compaction.compressRaw(Paths.get(originalRaw), blob.getSha256());
+                renewClaim(blob, claimant);
+            }
+
+            for (ChannelData channel : uniqueLocations(channelDataRepository.findByBlobId(blob.getId()))) {
+                if (channel.getCodec() != null && channel.getCodec() != ChannelCodec.NONE) continue;
+                Path source = Paths.get(channel.getDataLocation());
+                if (!Files.exists(source)) {
+                    logger.warn("Channel file {} is missing, leaving it as it is", source);
+                    continue;
+                }
+                SampleFormat format = channel.getSampleFormat() != null ? channel.getSampleFormat() : SampleFormat.FLOAT32;
+                compaction.compressChannel(source, format);
+                renewClaim(blob, claimant);
+            }
+
+            swapped = Boolean.TRUE.equals(new TransactionTemplate(transactionManager)
+                    .execute(status -> swap(blob, originalRaw, claimant, compaction)));
+            if (!swapped) {
+                throw new IllegalStateException("Blob changed or was claimed by another node while it was compacted");
+            }
+            return true;
+        } finally {
+            if (!swapped) releaseClaim(blob, claimant);
+        }
+    }
+
+    // Claims the blob before any file is written. Only one node at a time holds the claim; one
+    // that is not renewed lapses and can be taken over, and the swap checks it is still held.
+    private StoredBlob claim(StoredBlob candidate, String claimant) {
+        blobStoreService.lock(candidate.getSha256());
+        StoredBlob current = storedBlobRepository.findByIdForUpdate(candidate.getId()).orElse(null);
+        LocalDateTime now = LocalDateTime.now();
+        if (current == null || current.getCompactedAt() != null) {
+            return null;
+        }
+        if (current.getCompactionClaimedBy() != null) {
+            if (current.getCompactionClaimExpiresAt() != null && current.getCompactionClaimExpiresAt().isAfter(now)) {
+                return null;
+            }
+            logger.warn("Compaction claim of {} on blob {} lapsed, taking it over", current.getCompactionClaimedBy(),
+                    current.getSha256());
+        }
+        current.setCompactionClaimedBy(claimant);
+        current.setCompactionClaimExpiresAt(now.plus(Duration.ofMillis(claimMs)));
+        return storedBlobRepository.save(current);
+    }
+
+    private void renewClaim(StoredBlob blob, String claimant) {
+        Integer renewed = new TransactionTemplate(transactionManager).execute(status -> storedBlobRepository
+                .renewCompactionClaim(blob.getId(), claimant, LocalDateTime.now().plus(Duration.ofMillis(claimMs))));
+        if (renewed == null || renewed == 0) {
+            throw new IllegalStateException("Lost the compaction claim to another node");
+        }
+    }
+
+    private void releaseClaim(StoredBlob blob, String claimant) {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                    storedBlobRepository.releaseCompactionClaim(blob.getId(), claimant));
+        } catch (RuntimeException e) {
+            // It lapses on its own
+            logger.warn("Could not release the compaction claim on blob {}: {}", blob.getSha256(), e.getMessage());
+        }
+    }
+
+    // Switches the rows to the new files under the blob lock, if this node still holds the claim.
+    // The copies take their final names here; originals go after commit, and after a rollback
+    // closing the compaction removes the copies again.
+    private boolean swap(StoredBlob blob, String originalRaw, String claimant, BlobCompaction compaction) {
+        blobStoreService.lock(blob.getSha256());
+        StoredBlob current = storedBlobRepository.findByIdForUpdate(blob.getId()).orElse(null);
+        if (current == null || current.getCompactedAt() != null || !claimant.equals(current.getCompactionClaimedBy())
+                || !originalRaw.equals(current.getFilePath())) {
+            return false;
+        }
+
+        try {
+            compaction.install();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Path newRaw = compaction.getRawTarget();
+        if (newRaw != null) {
+            current.setFilePath(newRaw.toString());
+            sessionRepository.updateFilePathByBlobId(current.getId(), newRaw.toString());
+        }
+        current.setCompactedAt(LocalDateTime.now());
+        current.setCompactionClaimedBy(null);
+        current.setCompactionClaimExpiresAt(null);
+        storedBlobRepository.save(current);
+
+        for (BlobCompaction.Channel channel : compaction.getChannels()) {
+            channelDataRepository.relocate(channel.getSource().toString(), channel.getTarget().toString(),
+                    channel.getSizeBytes(), ChannelCodec.AUTO, channel.getCompressionRatio(), channel.getDecodeMbPerSecond());
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                long reclaimed = compaction.commit();
+                runBytesReclaimed.addAndGet(reclaimed);
+                totalBytesReclaimed.addAndGet(reclaimed);
+                reclaimedCounter.increment(reclaimed);
+            }
+        });
+        return true;
+    }
+
+    // Sessions of one recording share channel files; each file is compacted once
+    private static List<ChannelData> uniqueLocations(List<ChannelData> channels) {
+        Map<String, ChannelData> byLocation = new LinkedHashMap<>();
+        for (ChannelData channel : channels) {
+            byLocation.putIfAbsent(channel.getDataLocation(), channel);
+        }
+        return new ArrayList<>(byLocation.values());
+    }
+}
@@ -0,0 +1,119 @@
+package com.neuroviz.service;
+
+import com.neuroviz.dsp.Connectivity;
+import com.neuroviz.entity.ChannelData;
+import com.neuroviz.storage.ChannelMatrix;
+import com.neuroviz.storage.ChannelReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+// Coherence and correlation matrices over all stored channels of a session. A computed
+// matrix is written next to the channel files, so later requests and other sessions of the
+// same recording read it back instead of scanning every channel again, and responses are
+// kept in the analytics cache on top of that.
+@Service
+@Transactional(readOnly = true)
+public class ConnectivityService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectivityService.class);
+
+    @Autowired
+    private ChannelStoreService channelStoreService;
+
+    @Autowired
+    private AnalyticsCache analyticsCache;
+
+    @Autowired
+    private ForkJoinPool analyticsPool;
+
+    public Map<String, Object> getMatrix(Long sessionId, Connectivity.Measure measure, double lowHz, double highHz) {
+        String name = String.format(Locale.ROOT, "%s-%s-%s", measure.name().toLowerCase(Locale.ROOT), lowHz, highHz);
+        return analyticsCache.get(sessionId, "connectivity", null, name, () -> {
+            try {
+                return computeMatrix(sessionId, measure, lowHz, highHz);
+            } catch (IOException | IllegalArgumentException e) {
+                throw new RuntimeException("Error computing " + measure.name().toLowerCase(Locale.ROOT)
+                        + " matrix: " + e.getMessage());
+            }
+        });
+    }
+
+    private Map<String, Object> computeMatrix(Long sessionId, Connectivity.Measure measure, double lowHz,
+                                              double highHz) throws IOException {
+        List<ChannelData> channels = new ArrayList<>(channelStoreService.getChannels(sessionId));
+        if (channels.isEmpty()) {
+            throw new IllegalArgumentException("Session has no stored channels");
+        }
+        channels.sort(Comparator.comparing(ChannelData::getId));
+
+        int sampleRate = channels.get(0).getSampleRate();
+        long sampleCount = Long.MAX_VALUE;
+        List<String> names = new ArrayList<>(channels.size());
+        for (ChannelData channel : channels) {
+            if (channel.getSampleRate() != sampleRate) {
+                throw new IllegalArgumentException("Channels have different sample rates");
+            }
+            sampleCount = Math.min(sampleCount, channel.getSampleCount());
+            names.add(channel.getChannelName());
+        }
+        int segmentLength = Connectivity.defaultSegmentLength(sampleCount);
+
+        Path file = ChannelMatrix.pathFor(Paths.get(channels.get(0).getDataLocation()), String.format(Locale.ROOT,
+                "%s-%s-%s-%d", measure.name().toLowerCase(Locale.ROOT), lowHz, highHz, segmentLength));
+        ChannelMatrix matrix = null;
+        boolean stored = false;
+        if (Files.isRegularFile(file)) {
+            matrix = ChannelMatrix.read(file);
+            stored = matrix.getChannels().equals(names);
+        }
+
+        long started = System.nanoTime();
+        if (!stored) {
+            ChannelReader[] readers = new ChannelReader[channels.size()];
+            try {
+                for (int c = 0; c < readers.length; c++) {
+                    readers[c] = channelStoreService.openReader(channels.get(c));
+                }
+                matrix = new ChannelMatrix(names, Connectivity.compute(readers, sampleCount, sampleRate,
+                        segmentLength, lowHz, highHz, measure, analyticsPool));
+            } finally {
+                for (ChannelReader reader : readers) {
+                    if (reader != null) reader.close();
+                }
+            }
+            try {
+                matrix.write(file);
+            } catch (IOException e) {
+                logger.warn("Could not store matrix {}: {}", file, e.getMessage());
+            }
+            logger.info("Computed {} matrix of {} channels for session {} in {} ms", measure, names.size(),
+                    sessionId, (System.nanoTime() - started) / 1_000_000);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("measure", measure.name().toLowerCase(Locale.ROOT));
+        result.put("band", new double[] {lowHz, highHz});
+        result.put("channels", names);
+        result.put("matrix", matrix.toRows());
+        result.put("sample_rate", sampleRate);
+        result.put("segment_length", segmentLength);
+        result.put("segments", Connectivity.segmentCount(sampleCount, segmentLength));
+        result.put("stored", stored);
+        return result;
+    }
+}
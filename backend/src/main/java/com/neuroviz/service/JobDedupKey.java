@@ -0,0 +1,38 @@
+package com.neuroviz.service;
+
+import com.neuroviz.dto.request.PreprocessRequest;
+import com.neuroviz.entity.ProcessingJob;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Keys under which ProcessingService coalesces identical job submissions for a session
+final class JobDedupKey {
+
+    private JobDedupKey() {
+    }
+
+    // Defaults resolved the way PreprocessingService reads the request, and numbers in one
+    // format, so requests that filter identically share a key
+    static String canonicalParams(PreprocessRequest request) {
+        List<Double> band = request.getBandpass();
+        return "bandpass=" + (band == null ? "none" : band.stream().map(String::valueOf).collect(Collectors.joining(",")))
+                + ";notch=" + (request.getNotch() == null ? "none" : request.getNotch())
+                + ";artifact=" + !Boolean.FALSE.equals(request.getArtifact())
+                + ";zeroPhase=" + !Boolean.FALSE.equals(request.getZeroPhase());
+    }
+
+    static String of(ProcessingJob.JobType jobType, String canonicalParams) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((jobType.name() + "|" + canonicalParams).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.neuroviz.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neuroviz.entity.ProcessingJob;
+import com.neuroviz.repository.ProcessingJobRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Job lifecycle and progress events, pushed to the owner's STOMP queue /user/queue/jobs and to
+// SSE streams of the job, so clients no longer poll the job row. Events travel between backend
+// instances through Postgres NOTIFY, and every instance delivers them to the clients connected
+// to it, whichever instance ran the job. Without Postgres, as in the test profile, events are
+// delivered on the publishing instance only. Delivery is best effort: a client that reconnects
+// reads the job once and then follows its events.
+@Component
+public class JobEvents {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobEvents.class);
+
+    private static final String CHANNEL = "job_events";
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    public enum Type {
+        QUEUED, STARTED, PROGRESS, COMPLETED, FAILED;
+
+        boolean isTerminal() {
+            return this == COMPLETED || this == FAILED;
+        }
+    }
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ProcessingJobRepository processingJobRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final ConcurrentHashMap<Long, Long> owners = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, String> emails = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<SseEmitter>> streams = new ConcurrentHashMap<>();
+    private volatile boolean notifyAvailable;
+    private volatile boolean stopped;
+    private Thread listener;
+
+    @PostConstruct
+    void init() {
+        try (Connection connection = dataSource.getConnection()) {
+            notifyAvailable = connection.isWrapperFor(PGConnection.class);
+        } catch (SQLException e) {
+            logger.warn("Could not check for Postgres notifications: {}", e.getMessage());
+        }
+        if (notifyAvailable) {
+            listener = new Thread(this::listen, "job-events-listener");
+            listener.setDaemon(true);
+            listener.start();
+        } else {
+            logger.info("Job events are delivered on this instance only");
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        stopped = true;
+        if (listener != null) {
+            listener.interrupt();
+        }
+        streams.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+    }
+
+    public void publish(Long jobId, Type type) {
+        publish(jobId, type, Map.of());
+    }
+
+    public void publish(Long jobId, Type type, Map<String, Object> detail) {
+        Long userId = ownerOf(jobId);
+        if (type.isTerminal()) {
+            owners.remove(jobId);
+        }
+        if (userId == null) {
+            return;
+        }
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("jobId", jobId);
+        event.put("type", type);
+        event.put("status", statusOf(type));
+        event.putAll(detail);
+        event.put("at", LocalDateTime.now().toString());
+
+        if (notifyAvailable) {
+            try {
+                Map<String, Object> message = new LinkedHashMap<>();
+                message.put("userId", userId);
+                message.put("event", event);
+                notifyInstances(objectMapper.writeValueAsString(message));
+                return;
+            } catch (IOException | SQLException e) {
+                logger.debug("Could not notify other instances of job {}: {}", jobId, e.getMessage());
+            }
+        }
+        deliver(userId, event);
+    }
+
+    // Once the surrounding transaction commits, so clients reading the job see the new state
+    public void publishAfterCommit(Long jobId, Type type, Map<String, Object> detail) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(jobId, type, detail);
+                }
+            });
+        } else {
+            publish(jobId, type, detail);
+        }
+    }
+
+    // Events of one job until it completes or fails; the caller sends the current state first
+    public SseEmitter openStream(Long jobId, long timeoutMs) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Set<SseEmitter> emitters = streams.computeIfAbsent(jobId, id -> ConcurrentHashMap.newKeySet());
+        emitters.add(emitter);
+        Runnable remove = () -> streams.computeIfPresent(jobId, (id, set) -> {
+            set.remove(emitter);
+            return set.isEmpty() ? null : set;
+        });
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+        return emitter;
+    }
+
+    private Long ownerOf(Long jobId) {
+        Long userId = owners.get(jobId);
+        if (userId == null) {
+            userId = processingJobRepository.findOwnerId(jobId).orElse(null);
+            if (userId != null) {
+                owners.put(jobId, userId);
+            }
+        }
+        return userId;
+    }
+
+    private static ProcessingJob.Status statusOf(Type type) {
+        switch (type) {
+            case QUEUED:
+                return ProcessingJob.Status.PENDING;
+            case COMPLETED:
+                return ProcessingJob.Status.COMPLETED;
+            case FAILED:
+                return ProcessingJob.Status.FAILED;
+            default:
+                return ProcessingJob.Status.RUNNING;
+        }
+    }
+
+    private void deliver(Long userId, Map<String, Object> event) {
+        Long jobId = ((Number) event.get("jobId")).longValue();
+        boolean terminal = Type.valueOf(String.valueOf(event.get("type"))).isTerminal();
+        try {
+            String email = emails.computeIfAbsent(userId, id -> userService.getUserById(id).getEmail());
+            messagingTemplate.convertAndSendToUser(email, "/queue/jobs", event);
+        } catch (RuntimeException e) {
+            logger.debug("Could not push event of job {}: {}", jobId, e.getMessage());
+        }
+        Set<SseEmitter> emitters = streams.get(jobId);
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name("job").data(event));
+                if (terminal) {
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    // Autocommitted on a connection of its own, so the event goes out even while the publisher
+    // is inside a long transaction
+    private void notifyInstances(String payload) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            connection.setAutoCommit(true);
+            statement.setString(1, CHANNEL);
+            statement.setString(2, payload);
+            statement.execute();
+        }
+    }
+
+    private void listen() {
+        while (!stopped) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection postgres = connection.unwrap(PGConnection.class);
+                while (!stopped) {
+                    PGNotification[] notifications = postgres.getNotifications(1000);
+                    if (notifications == null) continue;
+                    for (PGNotification notification : notifications) {
+                        receive(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (stopped) return;
+                logger.warn("Job event listener lost its connection, reconnecting: {}", e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void receive(String payload) {
+        try {
+            Map<String, Object> message = objectMapper.readValue(payload, new TypeReference<Map<String, Object>>() {});
+            @SuppressWarnings("unchecked")
+            Map<String, Object> event = (Map<String, Object>) message.get("event");
+            deliver(((Number) message.get("userId")).longValue(), event);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Dropping malformed job event: {}", e.getMessage());
+        }
+    }
+}
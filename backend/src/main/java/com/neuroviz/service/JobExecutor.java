@@ -0,0 +1,300 @@
+package com.neuroviz.service;
+
+import com.neuroviz.entity.ProcessingJob;
+import com.neuroviz.repository.ProcessingJobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs processing jobs from the processing_jobs table on a fixed number of workers. A node
+// claims the oldest runnable jobs with FOR UPDATE SKIP LOCKED, so any number of backend
+// instances drain the same table without two of them taking one job, and keeps renewing a
+// lease on the jobs it runs; jobs of a node that died are claimed again once their lease
+// lapses. The table is polled, and a node also looks for work as soon as it creates or
+// finishes a job. Jobs fan out over the fork-join pools themselves, and each holds a database
+// connection while it runs, so a few workers per node are enough.
+@Component
+public class JobExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobExecutor.class);
+
+    // Job types run by workers; the others are only recorded once completed
+    private static final Set<ProcessingJob.JobType> QUEUED_TYPES = EnumSet.of(ProcessingJob.JobType.PREPROCESS,
+            ProcessingJob.JobType.SPECTROGRAM, ProcessingJob.JobType.BATCH_ANALYTICS, ProcessingJob.JobType.UPLOAD_INGEST);
+
+    @Autowired
+    private ProcessingJobRepository processingJobRepository;
+
+    @Autowired
+    private ProcessingService processingService;
+
+    @Autowired
+    private JobEvents jobEvents;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.jobs.workers:2}")
+    private int workers;
+
+    @Value("${app.jobs.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${app.jobs.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    @Value("${app.jobs.node-id:}")
+    private String nodeId;
+
+    @Value("${app.jobs.poll-interval-ms:2000}")
+    private long pollIntervalMs;
+
+    @Value("${app.jobs.lease-ms:60000}")
+    private long leaseMs;
+
+    @Value("${app.jobs.heartbeat-ms:15000}")
+    private long heartbeatMs;
+
+    @Value("${app.jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService dispatcher;
+    private Semaphore idleWorkers;
+    private JobLease lease;
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean wakePending = new AtomicBoolean();
+    private final AtomicLong queueDepth = new AtomicLong();
+    private volatile boolean stopped;
+    private Counter rejectedCounter;
+    private Counter reclaimedCounter;
+
+    private record ClaimedJob(Long id, ProcessingJob.JobType type, LocalDateTime createdAt) {}
+
+    @PostConstruct
+    void init() {
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = hostName() + "-" + ProcessHandle.current().pid();
+        }
+        lease = new JobLease(nodeId, leaseMs, maxAttempts);
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), threadFactory());
+        idleWorkers = new Semaphore(workers);
+        dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "job-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rejectedCounter = Counter.builder("neuroviz.jobs.rejected").register(meterRegistry);
+        reclaimedCounter = Counter.builder("neuroviz.jobs.reclaimed").register(meterRegistry);
+        Gauge.builder("neuroviz.jobs.queue.depth", queueDepth, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("neuroviz.jobs.active", running, Set::size).register(meterRegistry);
+    }
+
+    // Once the context is up, so jobs left pending or orphaned by a restart are picked up right away
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        logger.info("Job workers of node {} polling for work ({} workers)", nodeId, workers);
+        dispatcher.scheduleWithFixedDelay(this::dispatch, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+        dispatcher.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        stopped = true;
+        dispatcher.shutdownNow();
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            logger.warn("{} jobs were still running at shutdown; interrupting them hands them back to the queue",
+                    running.size());
+            executor.shutdownNow();
+        }
+    }
+
+    // Set once shutdown has begun; jobs cut short from then on are handed back, not failed
+    public boolean isStopping() {
+        return stopped;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    JobLease getLease() {
+        return lease;
+    }
+
+    public long getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    // Rejects a new job while too many are waiting across all nodes
+    public void checkCapacity() {
+        long pending = processingJobRepository.countByStatus(ProcessingJob.Status.PENDING);
+        queueDepth.set(pending);
+        if (pending >= queueCapacity) {
+            rejectedCounter.increment();
+            throw new JobQueueFullException(queueCapacity);
+        }
+    }
+
+    // Looks for work without waiting for the next poll; wakes that arrive together share one claim
+    public void wake() {
+        if (stopped || !wakePending.compareAndSet(false, true)) return;
+        dispatcher.execute(() -> {
+            wakePending.set(false);
+            dispatch();
+        });
+    }
+
+    // Claims as many jobs as there are idle workers and hands them over. Runs on the dispatcher
+    // thread only, so the idle count can only grow while it claims.
+    private void dispatch() {
+        if (stopped) return;
+        try {
+            int idle = idleWorkers.availablePermits();
+            if (idle == 0) return;
+            for (ClaimedJob job : claim(idle)) {
+                idleWorkers.acquireUninterruptibly();
+                running.add(job.id());
+                if (job.createdAt() != null) {
+                    timer("neuroviz.jobs.wait", job.type()).record(Duration.between(job.createdAt(), LocalDateTime.now()));
+                }
+                executor.execute(() -> run(job));
+            }
+        } catch (RuntimeException e) {
+            // A failed poll must not cancel the schedule; the next one tries again
+            logger.warn("Could not claim jobs: {}", e.getMessage());
+        }
+    }
+
+    private List<ClaimedJob> claim(int limit) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            LocalDateTime now = lease.now();
+            List<ProcessingJob> jobs = processingJobRepository.findClaimable(QUEUED_TYPES, now, PageRequest.of(0, limit));
+            List<ClaimedJob> claimed = new ArrayList<>(jobs.size());
+            for (ProcessingJob job : jobs) {
+                boolean reclaimed = job.getStatus() == ProcessingJob.Status.RUNNING;
+                String previousNode = job.getClaimedBy();
+                JobLease.Claim claim = lease.claim(job, now);
+                if (claim == JobLease.Claim.NOT_CLAIMABLE) continue;
+                if (reclaimed) {
+                    logger.warn("Job {} lost its lease on node {}, claiming it again", job.getId(), previousNode);
+                    reclaimedCounter.increment();
+                }
+                if (claim == JobLease.Claim.ABANDONED) {
+                    jobEvents.publishAfterCommit(job.getId(), JobEvents.Type.FAILED,
+                            Map.of("error", job.getErrorMessage()));
+                    continue;
+                }
+                claimed.add(new ClaimedJob(job.getId(), job.getJobType(), job.getCreatedAt()));
+                jobEvents.publishAfterCommit(job.getId(), JobEvents.Type.STARTED, Map.of("attempt", job.getAttempts()));
+            }
+            processingJobRepository.saveAll(jobs);
+            return claimed;
+        });
+    }
+
+    private void run(ClaimedJob job) {
+        long startedAt = System.nanoTime();
+        try {
+            processingService.runJob(job.id());
+        } catch (RuntimeException e) {
+            logger.error("Job {} could not be recorded: {}", job.id(), e.getMessage());
+        } finally {
+            timer("neuroviz.jobs.run", job.type()).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            running.remove(job.id());
+            idleWorkers.release();
+        }
+        wake();
+    }
+
+    // Extends the leases of the jobs running here; a job whose lease could not be renewed has
+    // been claimed by another node and its result will not be recorded here
+    private void heartbeat() {
+        try {
+            if (!running.isEmpty()) {
+                List<Long> ids = List.copyOf(running);
+                LocalDateTime now = lease.now();
+                Integer renewed = new TransactionTemplate(transactionManager).execute(status ->
+                        processingJobRepository.renewLeases(ids, nodeId, now, lease.expiresAt(now)));
+                if (renewed != null && renewed < ids.size()) {
+                    logger.warn("{} of {} running jobs on node {} lost their lease", ids.size() - renewed, ids.size(), nodeId);
+                }
+            }
+            queueDepth.set(processingJobRepository.countByStatus(ProcessingJob.Status.PENDING));
+        } catch (RuntimeException e) {
+            logger.warn("Could not renew job leases: {}", e.getMessage());
+        }
+    }
+
+    private Timer timer(String name, ProcessingJob.JobType type) {
+        return Timer.builder(name).tag("type", type.name()).register(meterRegistry);
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "node";
+        }
+    }
+
+    // Virtual threads need Java 21; on older runtimes the workers are platform threads
+    private ThreadFactory threadFactory() {
+        if (virtualThreads) {
+            try {
+                Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "job-worker-", 0L);
+                return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                logger.warn("Virtual threads are not available on this runtime, using platform threads");
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory defaults = Executors.defaultThreadFactory();
+        return runnable -> {
+            Thread thread = defaults.newThread(runnable);
+            thread.setName("job-worker-" + counter.getAndIncrement());
+            return thread;
+        };
+    }
+}
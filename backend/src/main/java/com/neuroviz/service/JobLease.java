@@ -0,0 +1,101 @@
+package com.neuroviz.service;
+
+import com.neuroviz.entity.ProcessingJob;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Claims and leases of the jobs a node runs, as applied by JobExecutor and ProcessingService to
+// rows they have locked, apart from JPA. A node holds a job while it is RUNNING and claimed by
+// that node; only then is its outcome recorded or the job handed back to the queue.
+class JobLease {
+
+    enum Claim {
+        // Running on this node from now on
+        CLAIMED,
+        // Tried too often; failed instead of run once more
+        ABANDONED,
+        // Neither pending nor running under a lapsed lease
+        NOT_CLAIMABLE
+    }
+
+    private final String nodeId;
+    private final long leaseMs;
+    private final int maxAttempts;
+    private final Supplier<LocalDateTime> clock;
+
+    JobLease(String nodeId, long leaseMs, int maxAttempts) {
+        this(nodeId, leaseMs, maxAttempts, LocalDateTime::now);
+    }
+
+    JobLease(String nodeId, long leaseMs, int maxAttempts, Supplier<LocalDateTime> clock) {
+        this.nodeId = nodeId;
+        this.leaseMs = leaseMs;
+        this.maxAttempts = maxAttempts;
+        this.clock = clock;
+    }
+
+    String getNodeId() {
+        return nodeId;
+    }
+
+    LocalDateTime now() {
+        return clock.get();
+    }
+
+    // When a lease taken or renewed at the given time lapses
+    LocalDateTime expiresAt(LocalDateTime now) {
+        return now.plus(Duration.ofMillis(leaseMs));
+    }
+
+    // Pending, or running on a node that stopped renewing its lease
+    static boolean isClaimable(ProcessingJob job, LocalDateTime now) {
+        if (job.getStatus() == ProcessingJob.Status.PENDING) return true;
+        return job.getStatus() == ProcessingJob.Status.RUNNING
+                && (job.getLeaseExpiresAt() == null || job.getLeaseExpiresAt().isBefore(now));
+    }
+
+    Claim claim(ProcessingJob job, LocalDateTime now) {
+        if (!isClaimable(job, now)) return Claim.NOT_CLAIMABLE;
+        if (job.getAttempts() >= maxAttempts) {
+            job.setStatus(ProcessingJob.Status.FAILED);
+            job.setErrorMessage("Abandoned after " + job.getAttempts() + " attempts");
+            job.setLeaseExpiresAt(null);
+            job.setCompletedAt(now);
+            return Claim.ABANDONED;
+        }
+        job.setStatus(ProcessingJob.Status.RUNNING);
+        job.setClaimedBy(nodeId);
+        job.setAttempts(job.getAttempts() + 1);
+        job.setStartedAt(now);
+        job.setHeartbeatAt(now);
+        job.setLeaseExpiresAt(expiresAt(now));
+        return Claim.CLAIMED;
+    }
+
+    boolean holds(ProcessingJob job) {
+        return job.getStatus() == ProcessingJob.Status.RUNNING && nodeId.equals(job.getClaimedBy());
+    }
+
+    // Records the outcome while this node holds the job. Returns whether it did; a job whose
+    // lease lapsed belongs to whichever node claimed it again.
+    boolean finish(ProcessingJob job, Consumer<ProcessingJob> outcome) {
+        if (!holds(job)) return false;
+        outcome.accept(job);
+        job.setLeaseExpiresAt(null);
+        job.setCompletedAt(now());
+        return true;
+    }
+
+    // Hands a job this node holds back to the queue, for any node to claim
+    boolean requeue(ProcessingJob job) {
+        if (!holds(job)) return false;
+        job.setStatus(ProcessingJob.Status.PENDING);
+        job.setClaimedBy(null);
+        job.setLeaseExpiresAt(null);
+        job.setHeartbeatAt(null);
+        return true;
+    }
+}
@@ -0,0 +1,99 @@
+package com.neuroviz.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Progress of the jobs running on this instance, counted in work items. Kept in memory so
+// workers can report every item without writing the job row; the final counts go into the
+// job's results. Clients are sent a progress event at most once per interval, and once all
+// items are done.
+@Component
+public class JobProgressTracker {
+
+    @Autowired
+    private JobEvents jobEvents;
+
+    @Value("${app.jobs.progress-interval-ms:500}")
+    private long progressIntervalMs;
+
+    private final ConcurrentHashMap<Long, Progress> running = new ConcurrentHashMap<>();
+
+    public final class Progress {
+        private final Long jobId;
+        private final long total;
+        private final AtomicLong done = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong reportedAt = new AtomicLong(System.nanoTime());
+
+        private Progress(Long jobId, long total) {
+            this.jobId = jobId;
+            this.total = total;
+        }
+
+        public void completed(boolean success) {
+            long count = done.incrementAndGet();
+            if (!success) {
+                failed.incrementAndGet();
+            }
+            report(this, count);
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getDone() {
+            return done.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+    }
+
+    public Progress start(Long jobId, long total) {
+        Progress progress = new Progress(jobId, total);
+        running.put(jobId, progress);
+        return progress;
+    }
+
+    public void finish(Long jobId) {
+        running.remove(jobId);
+    }
+
+    // Null when the job is not running here
+    public Map<String, Object> get(Long jobId) {
+        Progress progress = running.get(jobId);
+        if (progress == null) {
+            return null;
+        }
+        return snapshot(progress, progress.getDone());
+    }
+
+    private void report(Progress progress, long done) {
+        if (done < progress.total) {
+            long now = System.nanoTime();
+            long last = progress.reportedAt.get();
+            // One of the workers finishing items in the same interval reports them
+            if (now - last < progressIntervalMs * 1_000_000 || !progress.reportedAt.compareAndSet(last, now)) {
+                return;
+            }
+        }
+        jobEvents.publish(progress.jobId, JobEvents.Type.PROGRESS, snapshot(progress, done));
+    }
+
+    private static Map<String, Object> snapshot(Progress progress, long done) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("done", done);
+        result.put("total", progress.getTotal());
+        result.put("failed", progress.getFailed());
+        result.put("fraction", progress.getTotal() == 0 ? 1.0 : (double) done / progress.getTotal());
+        return result;
+    }
+}
@@ -0,0 +1,9 @@
+package com.neuroviz.service;
+
+// The job queue is at capacity; the caller should retry later
+public class JobQueueFullException extends RuntimeException {
+
+    public JobQueueFullException(int capacity) {
+        super("Job queue is full (" + capacity + " jobs waiting), retry later");
+    }
+}
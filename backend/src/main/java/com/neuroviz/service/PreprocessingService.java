@@ -0,0 +1,210 @@
+package com.neuroviz.service;
+
+import com.neuroviz.dsp.ArtifactDetector;
+import com.neuroviz.dsp.ChannelPreprocessor;
+import com.neuroviz.dsp.IirDesign;
+import com.neuroviz.dsp.RunningStats;
+import com.neuroviz.dto.request.PreprocessRequest;
+import com.neuroviz.entity.ChannelData;
+import com.neuroviz.entity.Session;
+import com.neuroviz.storage.ArtifactIntervals;
+import com.neuroviz.storage.ChannelCodec;
+import com.neuroviz.storage.ChannelReader;
+import com.neuroviz.storage.ChannelStoreWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Runs PreprocessRequest filters over the stored channels of a session, one channel per task
+// on the processing pool. Each channel is streamed block by block from its file into a new
+// one, so memory stays bounded however long the recording is. Not transactional itself, so a
+// failed run does not roll back the job that records the failure.
+@Service
+public class PreprocessingService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PreprocessingService.class);
+    
+    // Same filters as the processing service: butter(4) bandpass and iirnotch(Q = 30).
+    // Artifacts are samples with |z| > 3 as there, jumps beyond 8 standard deviations of the
+    // sample-to-sample differences, and half-second stretches flatter than 1% of the channel's
+    // standard deviation.
+    private static final int BANDPASS_ORDER = 4;
+    private static final double NOTCH_Q = 30.0;
+    private static final double ARTIFACT_AMPLITUDE_Z = 3.0;
+    private static final double ARTIFACT_GRADIENT_Z = 8.0;
+    private static final double ARTIFACT_FLATLINE_RATIO = 0.01;
+    private static final double ARTIFACT_WINDOW_SECONDS = 0.5;
+    
+    @Autowired
+    private ChannelStoreService channelStoreService;
+    
+    @Autowired
+    private ForkJoinPool processingPool;
+    
+    @Autowired
+    private JobProgressTracker progressTracker;
+    
+    // attempt is the job's attempt count; the output goes to a directory of that attempt alone
+    public Map<String, Object> preprocess(Session session, Long jobId, int attempt, PreprocessRequest request) {
+        List<ChannelData> channels = channelStoreService.getChannels(session.getId());
+        if (channels.isEmpty()) {
+            throw new RuntimeException("Session has no stored channels");
+        }
+    
+        boolean zeroPhase = !Boolean.FALSE.equals(request.getZeroPhase());
+        boolean artifacts = !Boolean.FALSE.equals(request.getArtifact());
+        Path directory = channelStoreService.getPreprocessedDirectory(session, jobId, attempt);
+    
+        // Filters are designed up front so invalid parameters fail before any file is written
+        List<Callable<Map<String, Object>>> tasks = new ArrayList<>();
+        for (int i = 0; i < channels.size(); i++) {
+            ChannelData channel = channels.get(i);
+            ChannelPreprocessor preprocessor = new ChannelPreprocessor(designFilter(request, channel.getSampleRate()),
+                    zeroPhase, artifacts ? artifactSettings(channel.getSampleRate()) : null);
+            Path output = directory.resolve(ChannelStoreWriter.fileName(
+                    i, channel.getChannelName(), channel.getSampleFormat(), ChannelCodec.NONE));
+            tasks.add(() -> preprocessChannel(preprocessor, channel, output));
+        }
+    
+        // Created here and nowhere else, so the error paths below only ever delete this attempt's files
+        try {
+            Files.createDirectories(directory.getParent());
+            Files.createDirectory(directory);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create " + directory + ": " + e.getMessage());
+        }
+    
+        JobProgressTracker.Progress progress = progressTracker.start(jobId, tasks.size());
+        List<Callable<Map<String, Object>>> tracked = new ArrayList<>(tasks.size());
+        for (Callable<Map<String, Object>> task : tasks) {
+            tracked.add(() -> {
+                Map<String, Object> channelResult = task.call();
+                progress.completed(true);
+                return channelResult;
+            });
+        }
+    
+        List<Map<String, Object>> channelResults = new ArrayList<>();
+        try {
+            for (Future<Map<String, Object>> future : processingPool.invokeAll(tracked)) {
+                channelResults.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            deleteOutput(directory);
+            throw new RuntimeException("Preprocessing was interrupted");
+        } catch (ExecutionException e) {
+            deleteOutput(directory);
+            throw new RuntimeException("Error preprocessing channel: " + e.getCause().getMessage());
+        } finally {
+            progressTracker.finish(jobId);
+        }
+    
+        Map<String, Object> summaryStats = new LinkedHashMap<>();
+        long artifactsRemoved = 0;
+        for (Map<String, Object> channelResult : channelResults) {
+            summaryStats.put((String) channelResult.get("channel"), channelResult.remove("stats"));
+            artifactsRemoved += (Long) channelResult.get("artifact_samples");
+        }
+    
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("success", true);
+        result.put("processed_path", directory.toString());
+        result.put("zero_phase", zeroPhase);
+        result.put("channels", channelResults);
+        result.put("summary_stats", summaryStats);
+        result.put("artifacts_removed", artifactsRemoved);
+        result.put("message", "Preprocessed " + channelResults.size() + " channels");
+        return result;
+    }
+    
+    private static ArtifactDetector.Settings artifactSettings(int sampleRate) {
+        int window = (int) Math.max(1, Math.round(ARTIFACT_WINDOW_SECONDS * sampleRate));
+        return new ArtifactDetector.Settings(ARTIFACT_AMPLITUDE_Z, ARTIFACT_GRADIENT_Z, ARTIFACT_FLATLINE_RATIO, window);
+    }
+    
+    // Bandpass and notch as one cascade at the channel's own sample rate; either may be left out
+    private double[] designFilter(PreprocessRequest request, int sampleRate) {
+        double[] bandpass = new double[0];
+        double[] notch = new double[0];
+        try {
+            List<Double> band = request.getBandpass();
+            if (band != null) {
+                if (band.size() != 2 || band.get(0) == null || band.get(1) == null) {
+                    throw new IllegalArgumentException("Bandpass needs a low and a high frequency");
+                }
+                bandpass = IirDesign.butterworthBandpass(BANDPASS_ORDER, band.get(0), band.get(1), sampleRate);
+            }
+            if (request.getNotch() != null) {
+                notch = IirDesign.notch(request.getNotch(), NOTCH_Q, sampleRate);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid preprocessing parameters: " + e.getMessage());
+        }
+        return IirDesign.cascade(bandpass, notch);
+    }
+    
+    private Map<String, Object> preprocessChannel(ChannelPreprocessor preprocessor, ChannelData channel, Path output)
+            throws IOException {
+        long started = System.nanoTime();
+        ChannelPreprocessor.Result processed;
+        try (ChannelReader reader = channelStoreService.openReader(channel)) {
+            processed = preprocessor.process(reader, output, channel.getSampleFormat());
+        }
+        logger.debug("Preprocessed channel {} ({} samples) in {} ms", channel.getChannelName(),
+                processed.getSampleCount(), (System.nanoTime() - started) / 1_000_000);
+        
+        // Kept as an interval list next to the output rather than as a per-sample mask
+        Path artifactsPath = ArtifactIntervals.pathFor(output);
+        processed.getArtifacts().write(artifactsPath);
+    
+        RunningStats stats = processed.getStats();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("mean", stats.getMean());
+        summary.put("std", stats.getStd());
+        summary.put("min", stats.getMin());
+        summary.put("max", stats.getMax());
+        summary.put("rms", stats.getRms());
+    
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("channel", channel.getChannelName());
+        result.put("path", output.toString());
+        result.put("sample_format", channel.getSampleFormat().name().toLowerCase());
+        result.put("sample_count", processed.getSampleCount());
+        result.put("artifact_samples", processed.getArtifactSamples());
+        result.put("artifact_intervals", processed.getArtifacts().size());
+        result.put("artifacts_path", artifactsPath.toString());
+        result.put("stats", summary);
+        return result;
+    }
+    
+    // Output of an attempt whose outcome was not recorded, because another node holds the job now
+    public void discardOutput(Map<String, Object> results) {
+        Object directory = results != null ? results.get("processed_path") : null;
+        if (directory != null) {
+            deleteOutput(Path.of(directory.toString()));
+        }
+    }
+    
+    private void deleteOutput(Path directory) {
+        try {
+            FileSystemUtils.deleteRecursively(directory);
+        } catch (IOException e) {
+            logger.warn("Could not delete preprocessing output in {}: {}", directory, e.getMessage());
+        }
+    }
+}
@@ -1,29 +1,64 @@
 package com.neuroviz.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neuroviz.dsp.ArtifactDetector;
+import com.neuroviz.dsp.BandPower;
+import com.neuroviz.dsp.FrequencyBand;
+import com.neuroviz.dsp.PowerSpectrum;
+import com.neuroviz.dsp.WelchPsd;
+import com.neuroviz.dto.request.BatchAnalyticsRequest;
 import com.neuroviz.dto.request.PreprocessRequest;
+import com.neuroviz.entity.ChannelData;
 import com.neuroviz.entity.ProcessingJob;
 import com.neuroviz.entity.Session;
 import com.neuroviz.repository.ProcessingJobRepository;
 import com.neuroviz.repository.SessionRepository;
+import com.neuroviz.repository.StoredBlobRepository;
+import com.neuroviz.storage.ArtifactIntervals;
+import com.neuroviz.storage.ChannelReader;
+import com.neuroviz.storage.SampleWindow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 @Service
 @Transactional
 public class ProcessingService {
     
+    private static final Logger logger = LoggerFactory.getLogger(ProcessingService.class);
+    
     @Autowired
     private ProcessingJobRepository processingJobRepository;
     
@@ -31,124 +66,505 @@ public class ProcessingService {
     private SessionRepository sessionRepository;
     
     @Autowired
-    private RestTemplate restTemplate;
+    private StoredBlobRepository storedBlobRepository;
+    
+    @Autowired
+    private ChannelStoreService channelStoreService;
+    
+    @Autowired
+    private PreprocessingService preprocessingService;
+    
+    @Autowired
+    private SpectrogramService spectrogramService;
+    
+    @Autowired
+    private ClassifierService classifierService;
+    
+    @Autowired
+    private BatchAnalyticsService batchAnalyticsService;
+    
+    @Autowired
+    private UploadService uploadService;
+    
+    @Autowired
+    private AnalyticsCache analyticsCache;
+    
+    @Autowired
+    private ForkJoinPool analyticsPool;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private ProcessingServiceClient processingServiceClient;
     
-    @Value("${app.processing.service-url}")
-    private String processingServiceUrl;
+    @Autowired
+    private JobExecutor jobExecutor;
+    
+    @Autowired
+    private JobEvents jobEvents;
     
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    // A submission identical to a pending, running or completed job of the session gets that
+    // job back. The session row is locked first, so concurrent submitters on any node find each
+    // other's job instead of both inserting one.
     public ProcessingJob startPreprocessingJob(Long sessionId, PreprocessRequest request) {
-        Session session = sessionRepository.findById(sessionId)
+        Session session = sessionRepository.findByIdForUpdate(sessionId)
                 .orElseThrow(() -> new RuntimeException("Session not found"));
         
+        String dedupKey = JobDedupKey.of(ProcessingJob.JobType.PREPROCESS, JobDedupKey.canonicalParams(request));
+        List<ProcessingJob> identical = processingJobRepository.findCoalescable(sessionId,
+                ProcessingJob.JobType.PREPROCESS, dedupKey, PageRequest.of(0, 1));
+        if (!identical.isEmpty()) {
+            logger.debug("Preprocessing request for session {} coalesced into job {}", sessionId,
+                    identical.get(0).getId());
+            return identical.get(0);
+        }
+        
+        jobExecutor.checkCapacity();
+        
         ProcessingJob job = new ProcessingJob();
         job.setSession(session);
         job.setJobType(ProcessingJob.JobType.PREPROCESS);
         job.setStatus(ProcessingJob.Status.PENDING);
         job.setParamsJson(convertToJson(request));
+        job.setDedupKey(dedupKey);
         job.setCreatedAt(LocalDateTime.now());
         
         ProcessingJob savedJob = processingJobRepository.save(job);
         
-        // Start async processing
-        processAsync(savedJob.getId());
+        queueAfterCommit(savedJob.getId());
         
         return savedJob;
     }
     
-    @Async
-    public void processAsync(Long jobId) {
-        ProcessingJob job = processingJobRepository.findById(jobId)
-                .orElseThrow(() -> new RuntimeException("Job not found"));
+    // Tiles are computed from the stored channels, so the job takes no parameters. They sit next
+    // to the channel files, which sessions sharing a recording share, so a submission while the
+    // user has a spectrogram job of the same recording pending or running gets that job back.
+    // The recording row is locked first, so concurrent submitters find each other's job.
+    public ProcessingJob startSpectrogramJob(Long sessionId) {
+        Session session = sessionRepository.findByIdForUpdate(sessionId)
+                .orElseThrow(() -> new RuntimeException("Session not found"));
+        
+        List<ProcessingJob> active;
+        if (session.getBlob() != null) {
+            storedBlobRepository.findByIdForUpdate(session.getBlob().getId());
+            active = processingJobRepository.findActiveByBlob(session.getBlob().getId(), session.getUser().getId(),
+                    ProcessingJob.JobType.SPECTROGRAM, PageRequest.of(0, 1));
+        } else {
+            active = processingJobRepository.findActiveBySession(sessionId, ProcessingJob.JobType.SPECTROGRAM,
+                    PageRequest.of(0, 1));
+        }
+        if (!active.isEmpty()) {
+            logger.debug("Spectrogram request for session {} coalesced into job {}", sessionId, active.get(0).getId());
+            return active.get(0);
+        }
+        
+        jobExecutor.checkCapacity();
+        
+        ProcessingJob job = new ProcessingJob();
+        job.setSession(session);
+        job.setJobType(ProcessingJob.JobType.SPECTROGRAM);
+        job.setStatus(ProcessingJob.Status.PENDING);
+        job.setCreatedAt(LocalDateTime.now());
         
+        ProcessingJob savedJob = processingJobRepository.save(job);
+        
+        queueAfterCommit(savedJob.getId());
+        
+        return savedJob;
+    }
+    
+    // Spans sessions, so the job belongs to the user; sessions are checked when it runs
+    public ProcessingJob startBatchAnalyticsJob(Long userId, BatchAnalyticsRequest request) {
+        jobExecutor.checkCapacity();
+        
+        ProcessingJob job = new ProcessingJob();
+        job.setUserId(userId);
+        job.setJobType(ProcessingJob.JobType.BATCH_ANALYTICS);
+        job.setStatus(ProcessingJob.Status.PENDING);
+        job.setParamsJson(convertToJson(request));
+        job.setCreatedAt(LocalDateTime.now());
+        
+        ProcessingJob savedJob = processingJobRepository.save(job);
+        
+        queueAfterCommit(savedJob.getId());
+        
+        return savedJob;
+    }
+    
+    // Reads a completed upload in as a session of its user, see UploadService.completeUpload
+    public ProcessingJob startUploadIngestJob(Long userId, String uploadId) {
+        jobExecutor.checkCapacity();
+        
+        ProcessingJob job = new ProcessingJob();
+        job.setUserId(userId);
+        job.setJobType(ProcessingJob.JobType.UPLOAD_INGEST);
+        job.setStatus(ProcessingJob.Status.PENDING);
+        job.setParamsJson(convertToJson(Map.of("upload_id", uploadId)));
+        job.setCreatedAt(LocalDateTime.now());
+        
+        ProcessingJob savedJob = processingJobRepository.save(job);
+        
+        queueAfterCommit(savedJob.getId());
+        
+        return savedJob;
+    }
+    
+    // Workers on any node poll for new jobs; this one looks right away once the job is committed
+    private void queueAfterCommit(Long jobId) {
+        Runnable queued = () -> {
+            jobEvents.publish(jobId, JobEvents.Type.QUEUED);
+            jobExecutor.wake();
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    queued.run();
+                }
+            });
+        } else {
+            queued.run();
+        }
+    }
+    
+    // On a job worker, once JobExecutor has claimed the job for this node. The work has a
+    // transaction of its own, and the outcome is only recorded while the claim still holds:
+    // a job whose lease lapsed belongs to whichever node claimed it again.
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void runJob(Long jobId) {
         try {
-            // Update status to running
-            job.setStatus(ProcessingJob.Status.RUNNING);
-            job.setStartedAt(LocalDateTime.now());
-            processingJobRepository.save(job);
-            
-            // Call Python processing service
-            String url = processingServiceUrl + "/preprocess";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("file_path", job.getSession().getFilePath());
-            requestBody.put("params", job.getParamsJson());
-            
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, entity, Map.class);
-            
-            if (response.getStatusCode().is2xxSuccessful()) {
+            Map<String, Object> results = new TransactionTemplate(transactionManager).execute(status -> execute(jobId));
+            String resultsJson = convertToJson(results);
+            boolean recorded = finishJob(jobId, job -> {
                 job.setStatus(ProcessingJob.Status.COMPLETED);
-                job.setResultsJson(convertToJson(response.getBody()));
-            } else {
-                job.setStatus(ProcessingJob.Status.FAILED);
-                job.setErrorMessage("Processing service returned error: " + response.getStatusCode());
+                job.setResultsJson(resultsJson);
+            });
+            if (!recorded) {
+                // The node that holds the job now writes output of its own
+                preprocessingService.discardOutput(results);
             }
-            
         } catch (Exception e) {
-            job.setStatus(ProcessingJob.Status.FAILED);
-            job.setErrorMessage("Error during processing: " + e.getMessage());
+            if (jobExecutor.isStopping() || Thread.currentThread().isInterrupted() || isInterruption(e)) {
+                requeueJob(jobId);
+                return;
+            }
+            finishJob(jobId, job -> {
+                job.setStatus(ProcessingJob.Status.FAILED);
+                job.setErrorMessage("Error during processing: " + e.getMessage());
+            });
+        }
+    }
+    
+    // A job interrupted by shutdown did not fail; it goes back to the queue for any node to claim
+    private void requeueJob(Long jobId) {
+        // Cleared so the connection is not refused for it, and restored for the worker to exit on
+        boolean interrupted = Thread.interrupted();
+        try {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            transaction.executeWithoutResult(status -> {
+                ProcessingJob job = processingJobRepository.findById(jobId).orElse(null);
+                if (job == null || !jobExecutor.getLease().requeue(job)) {
+                    return;
+                }
+                processingJobRepository.save(job);
+                jobEvents.publishAfterCommit(jobId, JobEvents.Type.QUEUED, Map.of());
+            });
+            logger.info("Job {} was interrupted by shutdown and is queued again", jobId);
+        } catch (RuntimeException e) {
+            logger.warn("Could not queue interrupted job {} again, it is claimed once its lease lapses: {}",
+                    jobId, e.getMessage());
         } finally {
-            job.setCompletedAt(LocalDateTime.now());
-            processingJobRepository.save(job);
+            if (interrupted) Thread.currentThread().interrupt();
         }
     }
     
-    public Map<String, Object> getPSDAnalysis(Long sessionId, String channel) {
-        Session session = sessionRepository.findById(sessionId)
-                .orElseThrow(() -> new RuntimeException("Session not found"));
-        
-        String url = processingServiceUrl + "/analytics/psd?file=" + session.getFilePath() + "&channel=" + channel;
+    private static boolean isInterruption(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException || cause instanceof ClosedByInterruptException) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private Map<String, Object> execute(Long jobId) {
+        ProcessingJob job = processingJobRepository.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("Job not found"));
         
         try {
-            ResponseEntity<Map> response = restTemplate.getForEntity(url, Map.class);
-            return response.getBody();
-        } catch (Exception e) {
-            throw new RuntimeException("Error getting PSD analysis: " + e.getMessage());
+            Map<String, Object> results;
+            if (job.getJobType() == ProcessingJob.JobType.SPECTROGRAM) {
+                results = spectrogramService.computeTiles(job.getSession());
+            } else if (job.getJobType() == ProcessingJob.JobType.BATCH_ANALYTICS) {
+                BatchAnalyticsRequest request = objectMapper.readValue(job.getParamsJson(), BatchAnalyticsRequest.class);
+                results = batchAnalyticsService.run(job, request);
+            } else if (job.getJobType() == ProcessingJob.JobType.UPLOAD_INGEST) {
+                String uploadId = objectMapper.readTree(job.getParamsJson()).path("upload_id").asText();
+                results = uploadService.ingestUpload(job.getId(), uploadId);
+            } else {
+                // Filters run here on the stored channel files instead of in the processing service
+                PreprocessRequest request = objectMapper.readValue(job.getParamsJson(), PreprocessRequest.class);
+                results = preprocessingService.preprocess(job.getSession(), job.getId(), job.getAttempts(), request);
+            }
+            return results;
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
         }
     }
     
+    // Returns whether the outcome was recorded
+    private boolean finishJob(Long jobId, Consumer<ProcessingJob> outcome) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return Boolean.TRUE.equals(transaction.execute(status -> {
+            ProcessingJob job = processingJobRepository.findById(jobId)
+                    .orElseThrow(() -> new RuntimeException("Job not found"));
+            if (!jobExecutor.getLease().finish(job, outcome)) {
+                logger.warn("Job {} is no longer claimed by this node, dropping its outcome", jobId);
+                return false;
+            }
+            processingJobRepository.save(job);
+            if (job.getStatus() == ProcessingJob.Status.COMPLETED) {
+                if (job.getJobType() == ProcessingJob.JobType.PREPROCESS) {
+                    // Once the outcome is committed, and before clients hear of it
+                    Long sessionId = job.getSession().getId();
+                    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            analyticsCache.invalidateSession(sessionId);
+                        }
+                    });
+                }
+                jobEvents.publishAfterCommit(jobId, JobEvents.Type.COMPLETED, Map.of());
+            } else {
+                jobEvents.publishAfterCommit(jobId, JobEvents.Type.FAILED, Map.of("error", job.getErrorMessage()));
+            }
+            return true;
+        }));
+    }
+    
+    // Computed here from the stored channel, so the interactive path no longer reloads the
+    // whole recording in the processing service. The response keeps that service's shape.
+    @Transactional(readOnly = true)
+    public Map<String, Object> getPSDAnalysis(Long sessionId, String channel) {
+        return analyticsCache.get(sessionId, "psd", channel, "welch", () -> {
+            ChannelData channelData = channelStoreService.getChannel(sessionId, channel);
+            
+            try {
+                PowerSpectrum spectrum = spectrumOf(channelData);
+                
+                Map<String, Object> result = new HashMap<>();
+                result.put("frequencies", spectrum.getFrequencies());
+                result.put("psd_values", spectrum.getDensity());
+                result.put("channel", channel);
+                result.put("sample_rate", channelData.getSampleRate());
+                return result;
+            } catch (IOException | IllegalArgumentException e) {
+                throw new RuntimeException("Error getting PSD analysis: " + e.getMessage());
+            }
+        });
+    }
+    
+    @Transactional(readOnly = true)
     public Map<String, Object> getBandPowerAnalysis(Long sessionId, String channel) {
-        Session session = sessionRepository.findById(sessionId)
-                .orElseThrow(() -> new RuntimeException("Session not found"));
+        return analyticsCache.get(sessionId, "bandpower", channel, "welch", () -> {
+            ChannelData channelData = channelStoreService.getChannel(sessionId, channel);
+            
+            try {
+                return bandPowerOf(channelData);
+            } catch (IOException | IllegalArgumentException e) {
+                throw new RuntimeException("Error getting band power analysis: " + e.getMessage());
+            }
+        });
+    }
+    
+    // Band powers of all channels, or of the named ones in the given order. Every channel file
+    // is scanned once, and channels are spread over the analytics pool.
+    @Transactional(readOnly = true)
+    public Map<String, Object> getBandPowers(Long sessionId, List<String> channelNames) {
+        String channelKey = channelNames == null || channelNames.isEmpty()
+                ? null
+                : String.join(",", new LinkedHashSet<>(channelNames));
+        return analyticsCache.get(sessionId, "bandpowers", channelKey, "welch",
+                () -> computeBandPowers(sessionId, channelNames));
+    }
+    
+    private Map<String, Object> computeBandPowers(Long sessionId, List<String> channelNames) {
+        List<ChannelData> channels = channelStoreService.getChannels(sessionId);
+        if (channelNames != null && !channelNames.isEmpty()) {
+            Map<String, ChannelData> byName = new HashMap<>();
+            for (ChannelData channel : channels) {
+                byName.put(channel.getChannelName(), channel);
+            }
+            channels = new ArrayList<>();
+            for (String name : new LinkedHashSet<>(channelNames)) {
+                ChannelData channel = byName.get(name);
+                if (channel == null) {
+                    throw new RuntimeException("Channel not found: " + name);
+                }
+                channels.add(channel);
+            }
+        }
         
-        String url = processingServiceUrl + "/analytics/bandpower?file=" + session.getFilePath() + "&channel=" + channel;
+        List<Callable<Map<String, Object>>> tasks = new ArrayList<>();
+        for (ChannelData channel : channels) {
+            tasks.add(() -> bandPowerOf(channel));
+        }
         
+        List<Map<String, Object>> channelPowers = new ArrayList<>();
         try {
-            ResponseEntity<Map> response = restTemplate.getForEntity(url, Map.class);
-            return response.getBody();
-        } catch (Exception e) {
-            throw new RuntimeException("Error getting band power analysis: " + e.getMessage());
+            for (Future<Map<String, Object>> future : analyticsPool.invokeAll(tasks)) {
+                channelPowers.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Band power analysis was interrupted");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error getting band power analysis: " + e.getCause().getMessage());
+        }
+        
+        Map<String, Object> bands = new LinkedHashMap<>();
+        for (FrequencyBand band : FrequencyBand.values()) {
+            bands.put(band.getKey(), new double[] {band.getLowHz(), band.getHighHz()});
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("bands", bands);
+        result.put("channels", channelPowers);
+        return result;
+    }
+    
+    private PowerSpectrum spectrumOf(ChannelData channel) throws IOException {
+        try (ChannelReader reader = channelStoreService.openReader(channel)) {
+            return WelchPsd.estimate(reader, channel.getSampleRate());
         }
     }
     
+    private Map<String, Object> bandPowerOf(ChannelData channel) throws IOException {
+        Map<String, Object> result = new LinkedHashMap<>(BandPower.of(spectrumOf(channel)));
+        result.put("channel", channel.getChannelName());
+        return result;
+    }
+    
+    // Artifact intervals a completed preprocess job found in one channel, within from/to seconds
+    @Transactional(readOnly = true)
+    public Map<String, Object> getArtifacts(Long sessionId, Long jobId, String channel, double from, Double to) {
+        ProcessingJob job = processingJobRepository.findById(jobId)
+                .filter(j -> j.getJobType() == ProcessingJob.JobType.PREPROCESS
+                        && j.getSession().getId().equals(sessionId))
+                .orElseThrow(() -> new RuntimeException("Job not found"));
+        if (job.getStatus() != ProcessingJob.Status.COMPLETED) {
+            throw new RuntimeException("Job has not completed");
+        }
+        ChannelData channelData = channelStoreService.getChannel(sessionId, channel);
+        
+        try {
+            Map<String, Object> results = objectMapper.readValue(job.getResultsJson(),
+                    new TypeReference<Map<String, Object>>() {});
+            Object artifactsPath = null;
+            if (results.get("channels") instanceof List<?> channels) {
+                for (Object entry : channels) {
+                    if (entry instanceof Map<?, ?> channelResult && channel.equals(channelResult.get("channel"))) {
+                        artifactsPath = channelResult.get("artifacts_path");
+                    }
+                }
+            }
+            if (artifactsPath == null) {
+                throw new RuntimeException("No artifact intervals for channel " + channel);
+            }
+            
+            SampleWindow window = SampleWindow.forTimeRange(from, to, channelData.getSampleRate(),
+                    channelData.getSampleCount());
+            ArtifactIntervals intervals = ArtifactIntervals.read(Paths.get(artifactsPath.toString()))
+                    .between(window.getStartSample(), window.getEndSample());
+            
+            List<Map<String, Object>> list = new ArrayList<>(intervals.size());
+            for (int i = 0; i < intervals.size(); i++) {
+                Map<String, Object> interval = new LinkedHashMap<>();
+                interval.put("start", intervals.getStart(i));
+                interval.put("end", intervals.getEnd(i));
+                interval.put("flags", ArtifactDetector.flagNames(intervals.getFlags(i)));
+                list.add(interval);
+            }
+            
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("channel", channel);
+            result.put("sample_rate", channelData.getSampleRate());
+            result.put("intervals", list);
+            return result;
+        } catch (IOException | IllegalArgumentException e) {
+            throw new RuntimeException("Error reading artifact intervals: " + e.getMessage());
+        }
+    }
+    
+    // Evaluated here from the stored channel once the processing service has exported its
+    // model; until then the recording is still sent there. Outside a transaction, so neither
+    // the classification nor the HTTP call holds a database connection; the session is read
+    // in the repository's own.
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Map<String, Object> classifySession(Long sessionId) {
         Session session = sessionRepository.findById(sessionId)
                 .orElseThrow(() -> new RuntimeException("Session not found"));
         
-        String url = processingServiceUrl + "/classify";
-        
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("file_path", session.getFilePath());
-        
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
+        if (classifierService.isAvailable()) {
+            return classifierService.classify(sessionId);
+        }
         
+        Path recording = Paths.get(session.getFilePath());
+        Path copy = null;
         try {
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, entity, Map.class);
-            return response.getBody();
+            // Compacted recordings are stored gzipped, which the service cannot read; it is sent
+            // a decompressed copy that only lives for the call
+            if (recording.getFileName().toString().endsWith(".gz")) {
+                copy = decompressedCopy(recording);
+            }
+            Map<String, Object> requestBody = new HashMap<>();
+            requestBody.put("file_path", (copy != null ? copy : recording).toString());
+            
+            // Classification only reads the recording, so a failed attempt is safe to repeat
+            return processingServiceClient.post("/classify", requestBody, Map.class, true);
+        } catch (ProcessingServiceUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Error classifying session: " + e.getMessage());
+        } finally {
+            if (copy != null) {
+                try {
+                    Files.deleteIfExists(copy);
+                } catch (IOException e) {
+                    logger.warn("Could not delete {}: {}", copy, e.getMessage());
+                }
+            }
         }
     }
     
+    // Next to the stored file, where the service can read it, under a name of its own that keeps
+    // the original extension the service goes by
+    private static Path decompressedCopy(Path compressed) throws IOException {
+        String name = compressed.getFileName().toString();
+        String original = name.substring(0, name.length() - ".gz".length());
+        int dot = original.lastIndexOf('.');
+        Path copy = Files.createTempFile(compressed.toAbsolutePath().getParent(), original + ".",
+                dot < 0 ? "" : original.substring(dot));
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(compressed))) {
+            Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(copy);
+            throw e;
+        }
+        return copy;
+    }
+    
     private String convertToJson(Object object) {
-        // Simple JSON conversion - in production, use Jackson ObjectMapper
-        return object.toString();
+        try {
+            return objectMapper.writeValueAsString(object);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error converting to JSON: " + e.getMessage());
+        }
     }
 }
@@ -0,0 +1,97 @@
+package com.neuroviz.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+// Calls to the Python processing service. A bulkhead caps the calls in flight, so a slow
+// service holds a bounded number of request threads; idempotent calls are retried with
+// jittered exponential backoff; and after consecutive failures a circuit breaker fails calls
+// at once until the cool-down has passed and a single trial call gets through. Client errors
+// (4xx) are the caller's and neither retried nor counted against the service.
+@Component
+public class ProcessingServiceClient {
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.processing.service-url}")
+    private String serviceUrl;
+
+    @Value("${app.processing.max-concurrent-requests:8}")
+    private int maxConcurrentRequests;
+
+    @Value("${app.processing.bulkhead-wait-ms:500}")
+    private long bulkheadWaitMs;
+
+    @Value("${app.processing.retries:2}")
+    private int retries;
+
+    @Value("${app.processing.retry-backoff-ms:200}")
+    private long retryBackoffMs;
+
+    @Value("${app.processing.circuit-failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${app.processing.circuit-open-ms:30000}")
+    private long openMs;
+
+    private ServiceCallGuard guard;
+
+    @PostConstruct
+    void init() {
+        Counter bulkheadRejected = Counter.builder("neuroviz.processing.rejected").tag("reason", "bulkhead").register(meterRegistry);
+        Counter circuitRejected = Counter.builder("neuroviz.processing.rejected").tag("reason", "circuit_open").register(meterRegistry);
+        guard = new ServiceCallGuard(maxConcurrentRequests, bulkheadWaitMs, retries, retryBackoffMs, failureThreshold, openMs,
+                ProcessingServiceClient::classify, new ServiceCallGuard.Listener() {
+                    @Override
+                    public void rejected(String reason) {
+                        (reason.equals("bulkhead") ? bulkheadRejected : circuitRejected).increment();
+                    }
+
+                    @Override
+                    public void attempted(String endpoint, ServiceCallGuard.Outcome outcome, long elapsedNanos) {
+                        Timer.builder("neuroviz.processing.requests")
+                                .tag("endpoint", endpoint)
+                                .tag("outcome", outcome.tag())
+                                .register(meterRegistry)
+                                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+                    }
+                });
+        Gauge.builder("neuroviz.processing.circuit.open", guard, g -> g.isOpen() ? 1 : 0).register(meterRegistry);
+        Gauge.builder("neuroviz.processing.in_flight", guard, ServiceCallGuard::inFlight).register(meterRegistry);
+    }
+
+    // JSON POST to an endpoint of the service, e.g. "/classify". Only calls without side effects
+    // there may be marked idempotent, since a timed-out attempt may still have been carried out.
+    public <T> T post(String endpoint, Object body, Class<T> responseType, boolean idempotent) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<Object> entity = new HttpEntity<>(body, headers);
+        return guard.call(endpoint, idempotent, () -> restTemplate.postForObject(serviceUrl + endpoint, entity, responseType));
+    }
+
+    private static ServiceCallGuard.Outcome classify(RuntimeException e) {
+        if (e instanceof HttpClientErrorException) return ServiceCallGuard.Outcome.CLIENT_ERROR;
+        if (e instanceof HttpServerErrorException) return ServiceCallGuard.Outcome.SERVER_ERROR;
+        if (e instanceof ResourceAccessException) return ServiceCallGuard.Outcome.IO_ERROR;
+        return ServiceCallGuard.Outcome.OTHER;
+    }
+}
@@ -0,0 +1,10 @@
+package com.neuroviz.service;
+
+// The processing service is failing or saturated, and the call was not attempted; the caller
+// should retry later
+public class ProcessingServiceUnavailableException extends RuntimeException {
+
+    public ProcessingServiceUnavailableException(String message) {
+        super(message);
+    }
+}
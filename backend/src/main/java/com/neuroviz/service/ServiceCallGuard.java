@@ -0,0 +1,193 @@
+package com.neuroviz.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+// Bulkhead, retries and circuit breaker of ProcessingServiceClient, apart from HTTP and metrics.
+// A bulkhead caps the calls in flight; idempotent calls are retried with jittered exponential
+// backoff; and after consecutive failures the circuit fails calls at once until the cool-down
+// has passed and a single trial call gets through.
+class ServiceCallGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceCallGuard.class);
+
+    // How an attempt ended. Only failures of the service count against the circuit and are
+    // retried; client errors (4xx) are the caller's.
+    enum Outcome {
+        SUCCESS, CLIENT_ERROR, SERVER_ERROR, IO_ERROR, OTHER;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    interface Listener {
+        void rejected(String reason);
+
+        void attempted(String endpoint, Outcome outcome, long elapsedNanos);
+    }
+
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    private final int maxConcurrent;
+    private final long bulkheadWaitMs;
+    private final int retries;
+    private final long retryBackoffMs;
+    private final int failureThreshold;
+    private final long openMs;
+    private final Function<RuntimeException, Outcome> classifier;
+    private final Listener listener;
+    private final LongSupplier nanoClock;
+    private final Sleeper sleeper;
+    private final Semaphore bulkhead;
+
+    // Circuit state, guarded by this
+    private int consecutiveFailures;
+    private long openUntil;
+    private boolean open;
+    private boolean trialInFlight;
+
+    ServiceCallGuard(int maxConcurrent, long bulkheadWaitMs, int retries, long retryBackoffMs, int failureThreshold,
+                     long openMs, Function<RuntimeException, Outcome> classifier, Listener listener) {
+        this(maxConcurrent, bulkheadWaitMs, retries, retryBackoffMs, failureThreshold, openMs, classifier, listener,
+                System::nanoTime, Thread::sleep);
+    }
+
+    ServiceCallGuard(int maxConcurrent, long bulkheadWaitMs, int retries, long retryBackoffMs, int failureThreshold,
+                     long openMs, Function<RuntimeException, Outcome> classifier, Listener listener,
+                     LongSupplier nanoClock, Sleeper sleeper) {
+        this.maxConcurrent = maxConcurrent;
+        this.bulkheadWaitMs = bulkheadWaitMs;
+        this.retries = retries;
+        this.retryBackoffMs = retryBackoffMs;
+        this.failureThreshold = failureThreshold;
+        this.openMs = openMs;
+        this.classifier = classifier;
+        this.listener = listener;
+        this.nanoClock = nanoClock;
+        this.sleeper = sleeper;
+        this.bulkhead = new Semaphore(maxConcurrent);
+    }
+
+    // Runs the request, retried only if idempotent, since a timed-out attempt may still have
+    // been carried out by the service
+    <T> T call(String endpoint, boolean idempotent, Supplier<T> request) {
+        boolean trial = beforeCall();
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(bulkheadWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (trial) releaseTrial();
+            throw new ProcessingServiceUnavailableException("Interrupted waiting for the processing service");
+        }
+        if (!acquired) {
+            if (trial) releaseTrial();
+            listener.rejected("bulkhead");
+            throw new ProcessingServiceUnavailableException("Processing service is busy, retry later");
+        }
+
+        try {
+            for (int attempt = 0; ; attempt++) {
+                long started = nanoClock.getAsLong();
+                Outcome outcome = Outcome.SUCCESS;
+                try {
+                    T response = request.get();
+                    onSuccess();
+                    return response;
+                } catch (RuntimeException e) {
+                    outcome = classifier.apply(e);
+                    if (outcome == Outcome.CLIENT_ERROR) {
+                        // The service answered, so it counts as up
+                        onSuccess();
+                        throw e;
+                    }
+                    if (outcome != Outcome.SERVER_ERROR && outcome != Outcome.IO_ERROR) {
+                        throw e;
+                    }
+                    boolean open = onFailure();
+                    if (!idempotent || attempt >= retries || open) {
+                        throw e;
+                    }
+                    logger.debug("Retrying {} after attempt {} failed: {}", endpoint, attempt + 1, e.getMessage());
+                    backoff(attempt);
+                } finally {
+                    listener.attempted(endpoint, outcome, nanoClock.getAsLong() - started);
+                }
+            }
+        } finally {
+            // A trial that ended in anything else leaves the next call after it to try again
+            if (trial) releaseTrial();
+            bulkhead.release();
+        }
+    }
+
+    int inFlight() {
+        return maxConcurrent - bulkhead.availablePermits();
+    }
+
+    synchronized boolean isOpen() {
+        return open;
+    }
+
+    // Full jitter: a random wait up to the exponential step, so callers retrying together spread out
+    private void backoff(int attempt) {
+        long ceiling = retryBackoffMs << Math.min(attempt, 10);
+        try {
+            sleeper.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessingServiceUnavailableException("Interrupted retrying the processing service");
+        }
+    }
+
+    // While open, calls fail at once; once the cool-down has passed one trial call goes through.
+    // Returns whether this call is that trial.
+    private synchronized boolean beforeCall() {
+        if (!open) return false;
+        if (nanoClock.getAsLong() - openUntil < 0 || trialInFlight) {
+            listener.rejected("circuit_open");
+            throw new ProcessingServiceUnavailableException("Processing service is unavailable, retry later");
+        }
+        trialInFlight = true;
+        return true;
+    }
+
+    private synchronized void releaseTrial() {
+        trialInFlight = false;
+    }
+
+    private synchronized void onSuccess() {
+        if (open) {
+            logger.info("Processing service recovered, closing the circuit");
+        }
+        consecutiveFailures = 0;
+        open = false;
+        trialInFlight = false;
+    }
+
+    // Counts a failed attempt and returns whether the circuit is open, so no retry should follow
+    private synchronized boolean onFailure() {
+        consecutiveFailures++;
+        if (trialInFlight || consecutiveFailures >= failureThreshold) {
+            if (!open || trialInFlight) {
+                logger.warn("Processing service failed {} times in a row, opening the circuit for {} ms",
+                        consecutiveFailures, openMs);
+            }
+            open = true;
+            trialInFlight = false;
+            openUntil = nanoClock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(openMs);
+        }
+        return open;
+    }
+}
@@ -1,37 +1,119 @@
 package com.neuroviz.service;
 
+import com.neuroviz.dto.ChannelDataDto;
 import com.neuroviz.dto.SessionDto;
 import com.neuroviz.dto.request.CreateSessionRequest;
+import com.neuroviz.entity.ChannelData;
+import com.neuroviz.entity.ProcessingJob;
 import com.neuroviz.entity.Session;
+import com.neuroviz.entity.StoredBlob;
 import com.neuroviz.entity.User;
+import com.neuroviz.ingest.CsvScanResult;
+import com.neuroviz.ingest.CsvStreamScanner;
+import com.neuroviz.ingest.EdfScanResult;
+import com.neuroviz.ingest.EdfSignal;
+import com.neuroviz.ingest.EdfStreamReader;
+import com.neuroviz.ingest.ParallelCsvParser;
+import com.neuroviz.ingest.SampleSink;
+import com.neuroviz.repository.ProcessingJobRepository;
 import com.neuroviz.repository.SessionRepository;
+import com.neuroviz.storage.ChannelStoreWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 
 @Service
 @Transactional
 public class SessionService {
     
+    private static final Logger logger = LoggerFactory.getLogger(SessionService.class);
+    
+    private static final int DEFAULT_SAMPLE_RATE = 250;
+    
     @Autowired
     private SessionRepository sessionRepository;
     
     @Autowired
     private com.neuroviz.service.UserService userService;
     
+    @Autowired
+    private ChannelStoreService channelStoreService;
+    
+    @Autowired
+    private BlobStoreService blobStoreService;
+    
+    @Autowired
+    private ProcessingJobRepository processingJobRepository;
+    
+    @Autowired
+    private AnalyticsCache analyticsCache;
+    
+    @Autowired
+    private ForkJoinPool ingestPool;
+    
+    @Value("${app.ingest.parallel-threshold-bytes:16777216}")
+    private long parallelThresholdBytes;
+    
     public SessionDto createSession(CreateSessionRequest request, MultipartFile file, Long userId) {
+        Session savedSession = sessionRepository.save(newUploadSession(request, userId));
+        if (file == null || file.isEmpty()) {
+            return mapToDto(savedSession);
+        }
+        
+        BlobStoreService.StagedFile staged = null;
+        try (InputStream in = file.getInputStream()) {
+            // Hashed while it is written; stored before parsing so large CSV files can be parsed in parallel
+            staged = blobStoreService.stage(in);
+            return ingestUpload(savedSession, staged, file.getOriginalFilename());
+        } catch (IOException e) {
+            if (staged != null) deleteQuietly(staged.getPath());
+            throw new RuntimeException("Failed to save uploaded file: " + e.getMessage());
+        }
+    }
+    
+    // Creates a session from a file that is already on local disk, e.g. an assembled chunked upload
+    public SessionDto createSessionFromFile(CreateSessionRequest request, Path uploadedFile, String originalFilename, Long userId) {
+        Session savedSession = sessionRepository.save(newUploadSession(request, userId));
+        BlobStoreService.StagedFile staged = null;
+        try {
+            // Staged as a link or copy, so the uploaded file survives a failed ingest and can be retried
+            staged = blobStoreService.stage(uploadedFile);
+            return ingestUpload(savedSession, staged, originalFilename);
+        } catch (IOException e) {
+            if (staged != null) deleteQuietly(staged.getPath());
+            throw new RuntimeException("Failed to ingest uploaded file: " + e.getMessage());
+        } catch (RuntimeException e) {
+            if (staged != null) deleteQuietly(staged.getPath());
+            throw e;
+        }
+    }
+    
+    private Session newUploadSession(CreateSessionRequest request, Long userId) {
         User user = userService.getUserEntityById(userId);
         
         Session session = new Session();
@@ -41,26 +123,114 @@ public class SessionService {
         session.setNotes(request.getNotes());
         session.setSourceType(Session.SourceType.UPLOAD);
         session.setCreatedAt(LocalDateTime.now());
+        return session;
+    }
+    
+    // Content already stored for another session is reused instead of being parsed again
+    private SessionDto ingestUpload(Session session, BlobStoreService.StagedFile staged, String originalFilename) throws IOException {
+        blobStoreService.lock(staged.getSha256());
+        Optional<StoredBlob> existing = blobStoreService.findBlob(staged.getSha256());
+        if (existing.isPresent()) {
+            List<Session> sources = sessionRepository.findByBlobIdExcluding(existing.get().getId(), session.getId(),
+                    session.getUser().getId(), PageRequest.of(0, 1));
+            if (!sources.isEmpty()) {
+                deleteQuietly(staged.getPath());
+                blobStoreService.retain(existing.get());
+                return attachBlob(session, existing.get(), sources.get(0));
+            }
+            // Orphaned, e.g. its sessions were removed together with their user
+            logger.warn("Stored recording {} has no sessions, ingesting it again", staged.getSha256());
+            StoredBlob blob = blobStoreService.reclaim(existing.get(), staged, originalFilename);
+            session.setBlob(blob);
+            return ingest(session, blob);
+        }
+        
+        StoredBlob blob = blobStoreService.createBlob(staged, originalFilename);
+        session.setBlob(blob);
+        return ingest(session, blob);
+    }
+    
+    private SessionDto attachBlob(Session session, StoredBlob blob, Session source) {
+        session.setBlob(blob);
+        session.setFilePath(blob.getFilePath());
+        session.setSampleRate(source.getSampleRate());
+        session.setDurationSeconds(source.getDurationSeconds());
+        session.setChannelCount(source.getChannelCount());
+        
+        List<ChannelData> channels = channelStoreService.copyChannels(source.getId(), session);
+        copyCompletedJobs(source, session);
         
-        if (file != null && !file.isEmpty()) {
-            try {
-                String fileName = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
-                Path filePath = Paths.get("/app/storage/raw/" + fileName);
-                Files.createDirectories(filePath.getParent());
-                Files.copy(file.getInputStream(), filePath);
-                
-                session.setFilePath(filePath.toString());
-                
-                // Parse CSV to get basic info (sample rate, channels, duration)
-                parseAndSetSessionInfo(session, filePath);
-                
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to save uploaded file: " + e.getMessage());
+        SessionDto dto = mapToDto(session);
+        dto.setChannelData(channels.stream().map(this::mapToDto).toList());
+        return dto;
+    }
+    
+    // Results computed for identical content are valid for the new session as well, but only
+    // those of the same user are copied: jobs carry the parameters and results that user chose.
+    // Other users' sessions only lend their content-derived channels.
+    private void copyCompletedJobs(Session source, Session target) {
+        if (!source.getUser().getId().equals(target.getUser().getId())) {
+            return;
+        }
+        List<ProcessingJob> copies = new ArrayList<>();
+        for (ProcessingJob job : processingJobRepository.findBySessionIdAndStatus(source.getId(), ProcessingJob.Status.COMPLETED)) {
+            ProcessingJob copy = new ProcessingJob();
+            copy.setSession(target);
+            copy.setJobType(job.getJobType());
+            copy.setStatus(ProcessingJob.Status.COMPLETED);
+            copy.setParamsJson(job.getParamsJson());
+            copy.setDedupKey(job.getDedupKey());
+            copy.setResultsJson(job.getResultsJson());
+            copy.setStartedAt(job.getStartedAt());
+            copy.setCompletedAt(job.getCompletedAt());
+            copies.add(copy);
+        }
+        processingJobRepository.saveAll(copies);
+    }
+    
+    private SessionDto ingest(Session session, StoredBlob blob) throws IOException {
+        Path filePath = Paths.get(blob.getFilePath());
+        Map<String, Long> parseErrors = Map.of();
+        List<ChannelData> channels;
+        try (ChannelStoreWriter channelWriter = channelStoreService.openWriter(blob.getSha256())) {
+            session.setFilePath(filePath.toString());
+            int[] sampleRates;
+            if (EdfStreamReader.isEdfFile(filePath)) {
+                EdfScanResult edfResult;
+                try (FileChannel in = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                    edfResult = new EdfStreamReader().read(in, null, channelWriter);
+                }
+                sampleRates = applyEdfResult(session, edfResult);
+            } else {
+                CsvScanResult scanResult = scanCsv(filePath, channelWriter);
+                applyScanResult(session, scanResult);
+                sampleRates = null;
+                parseErrors = scanResult.getParseErrorsByChannel();
             }
+            channelWriter.close();
+            channelStoreService.buildOverviews(channelWriter.getStoredChannels());
+            channels = sampleRates != null
+                    ? channelStoreService.saveChannels(session, channelWriter.getStoredChannels(), sampleRates)
+                    : channelStoreService.saveChannels(session, channelWriter.getStoredChannels(), session.getSampleRate());
+        } catch (IOException | RuntimeException e) {
+            channelStoreService.deleteBlobFiles(blob.getSha256());
+            throw e;
         }
         
-        Session savedSession = sessionRepository.save(session);
-        return mapToDto(savedSession);
+        SessionDto dto = mapToDto(session);
+        dto.setChannelData(channels.stream().map(this::mapToDto).toList());
+        dto.setParseErrors(parseErrors);
+        return dto;
+    }
+    
+    // Large files are split into newline-aligned ranges and parsed on all cores
+    private CsvScanResult scanCsv(Path filePath, SampleSink sink) throws IOException {
+        if (Files.size(filePath) >= parallelThresholdBytes && ingestPool.getParallelism() > 1) {
+            return new ParallelCsvParser(ingestPool).parse(filePath, sink);
+        }
+        try (InputStream in = Files.newInputStream(filePath)) {
+            return new CsvStreamScanner().scan(in, null, sink);
+        }
     }
     
     public Page<SessionDto> getUserSessions(Long userId, Pageable pageable) {
@@ -71,7 +241,44 @@ public class SessionService {
     public SessionDto getSessionById(Long sessionId, Long userId) {
         Session session = sessionRepository.findByUserIdAndId(userId, sessionId)
                 .orElseThrow(() -> new RuntimeException("Session not found"));
-        return mapToDto(session);
+        if (session.getBlob() != null) blobStoreService.touch(session.getBlob());
+        SessionDto dto = mapToDto(session);
+        dto.setChannelData(channelStoreService.getChannels(sessionId).stream().map(this::mapToDto).toList());
+        return dto;
+    }
+    
+    public ChannelData getSessionChannel(Long sessionId, Long userId, String channelName) {
+        Session session = sessionRepository.findByUserIdAndId(userId, sessionId)
+                .orElseThrow(() -> new RuntimeException("Session not found"));
+        if (session.getBlob() != null) blobStoreService.touch(session.getBlob());
+        return channelStoreService.getChannel(sessionId, channelName);
+    }
+    
+    // Channel files and the raw upload go away with the last session that uses them
+    public void deleteSession(Long sessionId, Long userId) {
+        Session session = sessionRepository.findByUserIdAndId(userId, sessionId)
+                .orElseThrow(() -> new RuntimeException("Session not found"));
+        StoredBlob blob = session.getBlob();
+        String legacyFile = session.getFilePath();
+        sessionRepository.delete(session);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                analyticsCache.removeSession(sessionId);
+            }
+        });
+        
+        if (blob != null) {
+            blobStoreService.release(blob);
+        } else {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    channelStoreService.deleteSessionFiles(sessionId);
+                    if (legacyFile != null) deleteQuietly(Paths.get(legacyFile));
+                }
+            });
+        }
     }
     
     public List<SessionDto> searchSessions(Long userId, String name) {
@@ -79,29 +286,47 @@ public class SessionService {
         return sessions.stream().map(this::mapToDto).toList();
     }
     
-    private void parseAndSetSessionInfo(Session session, Path filePath) {
+    private void applyScanResult(Session session, CsvScanResult scanResult) {
+        session.setChannelCount(scanResult.getChannelCount());
+        
+        // CSV carries no sample rate, so assume the acquisition default
+        session.setSampleRate(DEFAULT_SAMPLE_RATE);
+        
+        BigDecimal duration = BigDecimal.valueOf(scanResult.getSampleCount())
+                .divide(BigDecimal.valueOf(session.getSampleRate()), 2, RoundingMode.HALF_UP);
+        session.setDurationSeconds(duration);
+        
+        if (scanResult.hasParseErrors()) {
+            logger.warn("Upload {} has unparseable cells per channel: {}", session.getFilePath(), scanResult.getParseErrorsByChannel());
+        }
+    }
+    
+    // Returns the sample rate of every stored channel; the session reports the highest one
+    private int[] applyEdfResult(Session session, EdfScanResult edfResult) {
+        List<EdfSignal> signals = edfResult.getDataSignals();
+        int[] sampleRates = new int[signals.size()];
+        int sessionRate = 0;
+        for (int i = 0; i < signals.size(); i++) {
+            sampleRates[i] = (int) Math.round(edfResult.getHeader().getSampleRate(signals.get(i)));
+            sessionRate = Math.max(sessionRate, sampleRates[i]);
+        }
+        
+        session.setChannelCount(signals.size());
+        session.setSampleRate(sessionRate > 0 ? sessionRate : DEFAULT_SAMPLE_RATE);
+        session.setDurationSeconds(BigDecimal.valueOf(edfResult.getDurationSeconds()).setScale(2, RoundingMode.HALF_UP));
+        
+        long declared = edfResult.getHeader().getRecordCount();
+        if (declared >= 0 && declared != edfResult.getRecordsRead()) {
+            logger.warn("Upload {} declares {} data records but contains {}", session.getFilePath(), declared, edfResult.getRecordsRead());
+        }
+        return sampleRates;
+    }
+    
+    private void deleteQuietly(Path path) {
         try {
-            List<String> lines = Files.readAllLines(filePath);
-            if (lines.isEmpty()) return;
-            
-            String header = lines.get(0);
-            String[] channels = header.split(",");
-            session.setChannelCount(channels.length);
-            
-            // Estimate sample rate (this is a simplified approach)
-            // In a real implementation, you'd parse metadata or use a proper EEG library
-            session.setSampleRate(250); // Default sample rate
-            
-            // Calculate duration based on number of samples
-            long sampleCount = lines.size() - 1; // Subtract header
-            BigDecimal duration = BigDecimal.valueOf(sampleCount).divide(BigDecimal.valueOf(session.getSampleRate()), 2, BigDecimal.ROUND_HALF_UP);
-            session.setDurationSeconds(duration);
-            
+            Files.deleteIfExists(path);
         } catch (IOException e) {
-            // Set defaults if parsing fails
-            session.setChannelCount(0);
-            session.setSampleRate(250);
-            session.setDurationSeconds(BigDecimal.ZERO);
+            logger.warn("Could not delete {}: {}", path, e.getMessage());
         }
     }
     
@@ -112,6 +337,7 @@ public class SessionService {
         dto.setDescription(session.getDescription());
         dto.setSourceType(session.getSourceType());
         dto.setFilePath(session.getFilePath());
+        dto.setContentHash(session.getBlob() != null ? session.getBlob().getSha256() : null);
         dto.setSampleRate(session.getSampleRate());
         dto.setDurationSeconds(session.getDurationSeconds());
         dto.setChannelCount(session.getChannelCount());
@@ -120,4 +346,20 @@ public class SessionService {
         dto.setUpdatedAt(session.getUpdatedAt());
         return dto;
     }
+    
+    private ChannelDataDto mapToDto(ChannelData channel) {
+        ChannelDataDto dto = new ChannelDataDto();
+        dto.setId(channel.getId());
+        dto.setChannelName(channel.getChannelName());
+        dto.setSampleRate(channel.getSampleRate());
+        dto.setDataLocation(channel.getDataLocation());
+        dto.setDataSizeBytes(channel.getDataSizeBytes());
+        dto.setSampleFormat(channel.getSampleFormat());
+        dto.setSampleCount(channel.getSampleCount());
+        dto.setCodec(channel.getCodec());
+        dto.setCompressionRatio(channel.getCompressionRatio());
+        dto.setDecodeMbPerSecond(channel.getDecodeMbPerSecond());
+        dto.setCreatedAt(channel.getCreatedAt());
+        return dto;
+    }
 }
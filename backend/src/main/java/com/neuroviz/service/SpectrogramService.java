@@ -0,0 +1,119 @@
+package com.neuroviz.service;
+
+import com.neuroviz.dsp.Stft;
+import com.neuroviz.entity.ChannelData;
+import com.neuroviz.entity.Session;
+import com.neuroviz.storage.ChannelReader;
+import com.neuroviz.storage.SpectrogramTiles;
+import com.neuroviz.storage.SpectrogramView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Precomputes spectrogram tiles for the stored channels of a session, one channel per task on
+// the processing pool, and serves the tiles of a viewport from them. Tiles sit next to the
+// channel files, so sessions sharing a recording share them too.
+@Service
+public class SpectrogramService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SpectrogramService.class);
+    
+    @Autowired
+    private ChannelStoreService channelStoreService;
+    
+    @Autowired
+    private ForkJoinPool processingPool;
+    
+    @Value("${app.spectrogram.segment-length:256}")
+    private int segmentLength;
+    
+    @Value("${app.spectrogram.hop:128}")
+    private int hop;
+    
+    public Map<String, Object> computeTiles(Session session) {
+        List<ChannelData> channels = channelStoreService.getChannels(session.getId());
+        if (channels.isEmpty()) {
+            throw new RuntimeException("Session has no stored channels");
+        }
+        
+        List<Callable<Map<String, Object>>> tasks = new ArrayList<>();
+        for (ChannelData channel : channels) {
+            tasks.add(() -> computeChannel(channel));
+        }
+        
+        List<Map<String, Object>> channelResults = new ArrayList<>();
+        try {
+            for (Future<Map<String, Object>> future : processingPool.invokeAll(tasks)) {
+                channelResults.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Spectrogram computation was interrupted");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error computing spectrogram: " + e.getCause().getMessage());
+        }
+        
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("success", true);
+        result.put("segment_length", segmentLength);
+        result.put("hop", hop);
+        result.put("channels", channelResults);
+        result.put("message", "Computed spectrogram tiles for " + channelResults.size() + " channels");
+        return result;
+    }
+    
+    public SpectrogramView getTiles(ChannelData channel, double fromSeconds, Double toSeconds, double fromHz,
+                                    Double toHz, int maxFrames) throws IOException {
+        if (fromSeconds < 0 || fromHz < 0) {
+            throw new IllegalArgumentException("'from' and 'fmin' must not be negative");
+        }
+        if ((toSeconds != null && toSeconds <= fromSeconds) || (toHz != null && toHz <= fromHz)) {
+            throw new IllegalArgumentException("Viewport ranges must not be empty");
+        }
+        Path channelFile = Paths.get(channel.getDataLocation());
+        if (!Files.exists(SpectrogramTiles.pathFor(channelFile))) {
+            throw new RuntimeException("No spectrogram for channel " + channel.getChannelName()
+                    + "; start a spectrogram job first");
+        }
+        return SpectrogramTiles.query(channelFile, fromSeconds, toSeconds, fromHz, toHz, maxFrames);
+    }
+    
+    private Map<String, Object> computeChannel(ChannelData channel) throws IOException {
+        long started = System.nanoTime();
+        Path output = SpectrogramTiles.pathFor(Paths.get(channel.getDataLocation()));
+        long frames;
+        try (ChannelReader reader = channelStoreService.openReader(channel)) {
+            frames = Stft.frameCount(reader.getSampleCount(), segmentLength, hop);
+            try (SpectrogramTiles.Writer writer = SpectrogramTiles.create(output, channel.getSampleRate(),
+                    segmentLength, hop, Stft.binCount(segmentLength), frames)) {
+                Stft.compute(reader, channel.getSampleRate(), segmentLength, hop,
+                        (frame, density) -> writer.addFrame(density));
+                writer.finish();
+            }
+        }
+        logger.debug("Computed spectrogram of channel {} ({} frames) in {} ms", channel.getChannelName(),
+                frames, (System.nanoTime() - started) / 1_000_000);
+        
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("channel", channel.getChannelName());
+        result.put("path", output.toString());
+        result.put("frame_count", frames);
+        result.put("size_bytes", Files.size(output));
+        return result;
+    }
+}
@@ -0,0 +1,18 @@
+package com.neuroviz.service;
+
+// What completing an upload does, apart from JPA. Clients may call complete again at any time,
+// e.g. after a timeout, and only the first call on a fully received upload reads it in.
+enum UploadCompletion {
+    // Completed already, or the ingest job is queued or running: its status is returned as it is
+    UNCHANGED,
+    // Chunks are still missing
+    INCOMPLETE,
+    // A new ingest job is queued, also when the previous one failed
+    START_INGEST;
+
+    static UploadCompletion of(boolean completed, boolean ingestActive, int missingChunks) {
+        if (completed || ingestActive) return UNCHANGED;
+        if (missingChunks > 0) return INCOMPLETE;
+        return START_INGEST;
+    }
+}
@@ -0,0 +1,285 @@
+package com.neuroviz.service;
+
+import com.neuroviz.dto.SessionDto;
+import com.neuroviz.dto.UploadSessionDto;
+import com.neuroviz.dto.request.CreateSessionRequest;
+import com.neuroviz.dto.request.InitUploadRequest;
+import com.neuroviz.entity.ProcessingJob;
+import com.neuroviz.entity.UploadSession;
+import com.neuroviz.repository.ProcessingJobRepository;
+import com.neuroviz.repository.UploadSessionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Chunked uploads: the target file is preallocated at init and every chunk is written
+// straight into its offset, so chunks can arrive in parallel and in any order. Received
+// chunks are recorded in a one-byte-per-chunk marker file, which makes uploads resumable
+// across client disconnects and backend restarts.
+@Service
+@Transactional
+public class UploadService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(UploadService.class);
+    
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+    
+    @Autowired
+    private SessionService sessionService;
+    
+    @Autowired
+    private ProcessingService processingService;
+    
+    @Autowired
+    private ProcessingJobRepository processingJobRepository;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Value("${app.storage.path}")
+    private String storagePath;
+    
+    @Value("${app.upload.default-chunk-size:8388608}")
+    private int defaultChunkSize;
+    
+    @Value("${app.upload.max-chunk-size:67108864}")
+    private int maxChunkSize;
+    
+    @Value("${app.upload.max-file-size:53687091200}")
+    private long maxFileSize;
+    
+    @Value("${app.upload.expiry-hours:48}")
+    private long expiryHours;
+    
+    public UploadSessionDto initUpload(InitUploadRequest request, Long userId) {
+        int chunkSize = request.getChunkSize() != null ? request.getChunkSize() : defaultChunkSize;
+        if (chunkSize < 1 || chunkSize > maxChunkSize) {
+            throw new RuntimeException("Chunk size must be between 1 and " + maxChunkSize + " bytes");
+        }
+        if (request.getTotalSize() > maxFileSize) {
+            throw new RuntimeException("File exceeds the maximum upload size of " + maxFileSize + " bytes");
+        }
+        long chunkCount = (request.getTotalSize() + chunkSize - 1) / chunkSize;
+        if (chunkCount > Integer.MAX_VALUE) {
+            throw new RuntimeException("Chunk size is too small for this file");
+        }
+        
+        UploadSession upload = new UploadSession();
+        upload.setId(UUID.randomUUID().toString());
+        upload.setUser(userService.getUserEntityById(userId));
+        upload.setFileName(request.getFileName());
+        upload.setTotalSize(request.getTotalSize());
+        upload.setChunkSize(chunkSize);
+        upload.setChunkCount((int) chunkCount);
+        upload.setSessionName(request.getName());
+        upload.setSessionDescription(request.getDescription());
+        upload.setSessionNotes(request.getNotes());
+        upload.setStatus(UploadSession.Status.UPLOADING);
+        
+        try {
+            getFiles(upload).allocate();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to allocate upload: " + e.getMessage());
+        }
+        
+        return mapToDto(uploadSessionRepository.save(upload));
+    }
+    
+    // Runs outside a transaction: the body of a chunk can take a long time to arrive
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public UploadSessionDto writeChunk(String uploadId, int index, InputStream body, long contentLength, Long userId) {
+        UploadSession upload = getUpload(uploadId, userId);
+        if (upload.getStatus() != UploadSession.Status.UPLOADING) {
+            throw new RuntimeException("Upload no longer accepts chunks");
+        }
+        
+        try {
+            getFiles(upload).writeChunk(index, body, contentLength);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write chunk " + index + ": " + e.getMessage());
+        }
+        
+        return mapToDto(upload);
+    }
+    
+    @Transactional(readOnly = true)
+    public UploadSessionDto getUploadStatus(String uploadId, Long userId) {
+        return mapToDto(getUpload(uploadId, userId));
+    }
+    
+    // Only checks the chunks and queues the job that reads the recording in, so the upload row is
+    // locked briefly and a repeated complete returns the same status. Clients poll the upload
+    // until it is COMPLETED; if the job failed, completing again starts a new one.
+    public UploadSessionDto completeUpload(String uploadId, Long userId) {
+        UploadSession upload = uploadSessionRepository.findByUserIdAndIdForUpdate(userId, uploadId)
+                .orElseThrow(() -> new RuntimeException("Upload not found"));
+        List<Integer> missing = findMissingChunks(upload);
+        UploadCompletion completion = UploadCompletion.of(
+                upload.getStatus() == UploadSession.Status.COMPLETED, isIngesting(upload), missing.size());
+        if (completion == UploadCompletion.UNCHANGED) {
+            return mapToDto(upload);
+        }
+        if (completion == UploadCompletion.INCOMPLETE) {
+            throw new RuntimeException(missing.size() + " of " + upload.getChunkCount() + " chunks are still missing");
+        }
+        
+        ProcessingJob job = processingService.startUploadIngestJob(userId, uploadId);
+        upload.setStatus(UploadSession.Status.INGESTING);
+        upload.setJobId(job.getId());
+        return mapToDto(uploadSessionRepository.save(upload));
+    }
+    
+    // Runs in the transaction of the ingest job. The upload row stays unlocked while the recording
+    // is read in; the session is recorded only if the upload still waits for this job, so of two
+    // attempts of a job whose lease lapsed only one creates a session.
+    public Map<String, Object> ingestUpload(Long jobId, String uploadId) {
+        UploadSession upload = uploadSessionRepository.findById(uploadId)
+                .orElseThrow(() -> new RuntimeException("Upload not found"));
+        if (upload.getStatus() == UploadSession.Status.COMPLETED && jobId.equals(upload.getJobId())) {
+            // An earlier attempt of this job committed the session already
+            return ingestResults(upload.getId(), upload.getSessionId());
+        }
+        if (upload.getStatus() != UploadSession.Status.INGESTING || !jobId.equals(upload.getJobId())) {
+            throw new RuntimeException("Upload is no longer waiting for this job");
+        }
+        
+        CreateSessionRequest sessionRequest = new CreateSessionRequest(
+                upload.getSessionName(), upload.getSessionDescription(), upload.getSessionNotes());
+        SessionDto session = sessionService.createSessionFromFile(
+                sessionRequest, getFiles(upload).getPartFile(), upload.getFileName(), upload.getUser().getId());
+        
+        if (uploadSessionRepository.completeIngest(uploadId, jobId, session.getId()) == 0) {
+            throw new RuntimeException("Upload was completed or removed while it was read in");
+        }
+        // Kept until the session is committed, so a failed ingest can be retried
+        deleteFilesAfterCommit(upload);
+        return ingestResults(uploadId, session.getId());
+    }
+    
+    public void abortUpload(String uploadId, Long userId) {
+        UploadSession upload = getUpload(uploadId, userId);
+        if (isIngesting(upload)) {
+            throw new RuntimeException("Upload is being read in");
+        }
+        uploadSessionRepository.delete(upload);
+        deleteFiles(upload);
+    }
+    
+    // Drops uploads that have not received a chunk within the expiry period, and those whose
+    // ingest failed and was not retried within it
+    @Scheduled(fixedDelayString = "${app.upload.cleanup-interval-ms:3600000}")
+    public void cleanupExpiredUploads() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(expiryHours);
+        List<UploadSession> expired = new ArrayList<>(
+                uploadSessionRepository.findByStatusAndUpdatedAtBefore(UploadSession.Status.UPLOADING, cutoff));
+        for (UploadSession upload : uploadSessionRepository.findByStatusAndUpdatedAtBefore(UploadSession.Status.INGESTING, cutoff)) {
+            if (!isIngesting(upload)) expired.add(upload);
+        }
+        for (UploadSession upload : expired) {
+            try {
+                if (!getFiles(upload).isIdle(Duration.ofHours(expiryHours))) continue;
+                uploadSessionRepository.delete(upload);
+                deleteFiles(upload);
+                logger.info("Removed expired upload {}", upload.getId());
+            } catch (IOException e) {
+                logger.warn("Could not clean up upload {}: {}", upload.getId(), e.getMessage());
+            }
+        }
+    }
+    
+    private UploadSession getUpload(String uploadId, Long userId) {
+        return uploadSessionRepository.findByUserIdAndId(userId, uploadId)
+                .orElseThrow(() -> new RuntimeException("Upload not found"));
+    }
+    
+    // Whether the ingest job of the upload is still queued or running
+    private boolean isIngesting(UploadSession upload) {
+        if (upload.getStatus() != UploadSession.Status.INGESTING || upload.getJobId() == null) {
+            return false;
+        }
+        return processingJobRepository.findById(upload.getJobId())
+                .map(job -> job.getStatus() != ProcessingJob.Status.FAILED)
+                .orElse(false);
+    }
+    
+    private static Map<String, Object> ingestResults(String uploadId, Long sessionId) {
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("upload_id", uploadId);
+        results.put("session_id", sessionId);
+        return results;
+    }
+    
+    private List<Integer> findMissingChunks(UploadSession upload) {
+        if (upload.getStatus() == UploadSession.Status.COMPLETED) {
+            return List.of();
+        }
+        try {
+            return getFiles(upload).missingChunks();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read upload state: " + e.getMessage());
+        }
+    }
+    
+    private ChunkedUploadFiles getFiles(UploadSession upload) {
+        return new ChunkedUploadFiles(Paths.get(storagePath, "uploads"), upload.getId(),
+                upload.getTotalSize(), upload.getChunkSize(), upload.getChunkCount());
+    }
+    
+    private void deleteFiles(UploadSession upload) {
+        try {
+            getFiles(upload).delete();
+        } catch (IOException e) {
+            logger.warn("Could not delete files of upload {}: {}", upload.getId(), e.getMessage());
+        }
+    }
+    
+    private void deleteFilesAfterCommit(UploadSession upload) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deleteFiles(upload);
+            }
+        });
+    }
+    
+    private UploadSessionDto mapToDto(UploadSession upload) {
+        List<Integer> missing = findMissingChunks(upload);
+        
+        UploadSessionDto dto = new UploadSessionDto();
+        dto.setUploadId(upload.getId());
+        dto.setFileName(upload.getFileName());
+        dto.setTotalSize(upload.getTotalSize());
+        dto.setChunkSize(upload.getChunkSize());
+        dto.setChunkCount(upload.getChunkCount());
+        dto.setReceivedChunks(upload.getChunkCount() - missing.size());
+        dto.setMissingChunks(missing);
+        dto.setStatus(upload.getStatus());
+        dto.setSessionId(upload.getSessionId());
+        dto.setJobId(upload.getJobId());
+        if (upload.getStatus() == UploadSession.Status.INGESTING && upload.getJobId() != null) {
+            processingJobRepository.findById(upload.getJobId())
+                    .filter(job -> job.getStatus() == ProcessingJob.Status.FAILED)
+                    .ifPresent(job -> dto.setError(job.getErrorMessage()));
+        }
+        return dto;
+    }
+}
@@ -0,0 +1,129 @@
+package com.neuroviz.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Artifact intervals of one channel, in sample order and not overlapping. Stored next to the
+// channel they were detected in, so the size depends on the number of artifacts rather than
+// on the recording length.
+//
+// Layout (little-endian): magic, version, interval count, then per interval start sample,
+// end sample (exclusive) and detector flags.
+public class ArtifactIntervals {
+
+    static final int MAGIC = 0x5441564E; // "NVAT"
+    static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 4 + 4 + 4;
+    private static final int INTERVAL_BYTES = 8 + 8 + 4;
+
+    private long[] starts = new long[16];
+    private long[] ends = new long[16];
+    private int[] flags = new int[16];
+    private int count;
+
+    public static Path pathFor(Path channelFile) {
+        String name = channelFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return channelFile.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".art");
+    }
+
+    // Intervals must come in order; one that touches the previous interval extends it
+    public void add(long start, long end, int intervalFlags) {
+        if (count > 0 && start < ends[count - 1]) {
+            throw new IllegalArgumentException("Artifact intervals must be added in order");
+        }
+        if (count > 0 && start == ends[count - 1]) {
+            ends[count - 1] = end;
+            flags[count - 1] |= intervalFlags;
+            return;
+        }
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+            flags = Arrays.copyOf(flags, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        flags[count] = intervalFlags;
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long getStart(int i) {
+        return starts[i];
+    }
+
+    public long getEnd(int i) {
+        return ends[i];
+    }
+
+    public int getFlags(int i) {
+        return flags[i];
+    }
+
+    public long getSampleCount() {
+        long samples = 0;
+        for (int i = 0; i < count; i++) {
+            samples += ends[i] - starts[i];
+        }
+        return samples;
+    }
+
+    // The intervals overlapping samples [from, to)
+    public ArtifactIntervals between(long from, long to) {
+        ArtifactIntervals result = new ArtifactIntervals();
+        int first = Arrays.binarySearch(ends, 0, count, from + 1);
+        for (int i = first < 0 ? -first - 1 : first; i < count && starts[i] < to; i++) {
+            result.add(starts[i], ends[i], flags[i]);
+        }
+        return result;
+    }
+
+    // Written to a temporary file and moved into place, so readers never see a partial list
+    public void write(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + count * INTERVAL_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(count);
+        for (int i = 0; i < count; i++) {
+            buffer.putLong(starts[i]).putLong(ends[i]).putInt(flags[i]);
+        }
+        buffer.flip();
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static ArtifactIntervals read(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Unsupported artifact file " + file.getFileName());
+        }
+        int count = buffer.getInt();
+        if (buffer.remaining() < (long) count * INTERVAL_BYTES) {
+            throw new IOException("Artifact file is truncated: " + file.getFileName());
+        }
+        ArtifactIntervals intervals = new ArtifactIntervals();
+        for (int i = 0; i < count; i++) {
+            intervals.add(buffer.getLong(), buffer.getLong(), buffer.getInt());
+        }
+        return intervals;
+    }
+}
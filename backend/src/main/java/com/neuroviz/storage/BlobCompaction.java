@@ -0,0 +1,290 @@
+package com.neuroviz.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// The files of one attempt to compact a stored recording. Compressed copies are written under
+// temporary names unique to the attempt and verified against the originals (SHA-256 of the raw
+// content, CRC32 of the channel samples). They only take their final names once the attempt has
+// won the switch-over, and the originals are only deleted after that has committed. Closing
+// deletes whatever the attempt created and did not hand over, and never anything else, so an
+// attempt that fails or loses to another node leaves the other node's files alone.
+public class BlobCompaction implements Closeable {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final int CHUNK_SAMPLES = 16 * 1024;
+
+    private final IoThrottle throttle;
+    private final LongConsumer progress;
+
+    private Path raw;
+    private Path rawTemporary;
+    private Path rawTarget;
+    private final List<Channel> channels = new ArrayList<>();
+    private final List<Path> installed = new ArrayList<>();
+    private boolean committed;
+
+    // progress receives the number of original bytes read as they are processed
+    public BlobCompaction(IoThrottle throttle, LongConsumer progress) {
+        this.throttle = throttle;
+        this.progress = progress;
+    }
+
+    // Gzips the raw upload and checks that it decompresses to the given SHA-256. Returns the
+    // name the copy will have once installed, or null when it does not come out smaller, as
+    // with uploads that were compressed already.
+    public Path compressRaw(Path raw, String sha256) throws IOException {
+        Path temporary = temporaryFor(raw);
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (InputStream in = throttle.wrap(Files.newInputStream(raw));
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary, StandardOpenOption.CREATE_NEW,
+                     StandardOpenOption.WRITE), COPY_BUFFER_SIZE)) {
+            rawTemporary = temporary;
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+                progress.accept(n);
+            }
+        }
+
+        MessageDigest digest = newDigest();
+        try (InputStream in = new GZIPInputStream(throttle.wrap(Files.newInputStream(temporary)), COPY_BUFFER_SIZE)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        if (!HexFormat.of().formatHex(digest.digest()).equals(sha256)) {
+            throw new IOException("Checksum mismatch after compressing " + raw);
+        }
+
+        if (Files.size(temporary) >= Files.size(raw)) {
+            Files.delete(temporary);
+            rawTemporary = null;
+            return null;
+        }
+        this.raw = raw;
+        this.rawTarget = raw.resolveSibling(raw.getFileName() + ".gz");
+        return rawTarget;
+    }
+
+    // Re-encodes a packed channel with the block codecs and checks every sample survived.
+    // Returns null for channels that do not come out smaller, which stay packed.
+    public Channel compressChannel(Path source, SampleFormat format) throws IOException {
+        String name = source.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        Path target = source.resolveSibling((dot < 0 ? name : name.substring(0, dot)) + "."
+                + ChannelStoreWriter.extensionFor(format, ChannelCodec.AUTO));
+        Path temporary = temporaryFor(target);
+        Channel channel = new Channel(source, target, temporary);
+
+        double[] chunk = new double[CHUNK_SAMPLES];
+        CRC32 sourceCrc = new CRC32();
+        try (ChannelReader reader = ChannelReader.open(source, format, ChannelCodec.NONE);
+             CompressedChannelWriter writer = new CompressedChannelWriter(temporary, format, ChannelCodec.AUTO)) {
+            channels.add(channel);
+            long position = 0;
+            int n;
+            while ((n = reader.read(position, chunk, 0, CHUNK_SAMPLES)) > 0) {
+                long bytes = (long) n * format.getBytesPerSample();
+                throttle.acquire(bytes);
+                for (int i = 0; i < n; i++) {
+                    writer.write(chunk[i]);
+                }
+                updateCrc(sourceCrc, chunk, n, format);
+                progress.accept(bytes);
+                position += n;
+            }
+            channel.sampleCount = position;
+            writer.close();
+            channel.sizeBytes = writer.getSizeBytes();
+        }
+
+        CRC32 targetCrc = new CRC32();
+        try (CompressedChannelReader reader = new CompressedChannelReader(temporary)) {
+            if (reader.getSampleCount() != channel.sampleCount) {
+                throw new IOException("Sample count mismatch after compressing " + source);
+            }
+            long position = 0;
+            int n;
+            while ((n = reader.read(position, chunk, 0, CHUNK_SAMPLES)) > 0) {
+                throttle.acquire((long) n * format.getBytesPerSample());
+                updateCrc(targetCrc, chunk, n, format);
+                position += n;
+            }
+            double megabytes = reader.getDecodedSamples() * format.getBytesPerSample() / 1e6;
+            channel.decodeMbPerSecond = reader.getDecodeNanos() > 0 ? megabytes / (reader.getDecodeNanos() / 1e9) : 0;
+        }
+        if (sourceCrc.getValue() != targetCrc.getValue()) {
+            throw new IOException("Checksum mismatch after compressing " + source);
+        }
+        // Noise-like channels can come out larger
+        if (channel.sizeBytes >= Files.size(source)) {
+            Files.delete(temporary);
+            channels.remove(channel);
+            return null;
+        }
+
+        channel.compressionRatio = channel.sizeBytes == 0 ? 1.0
+                : (double) channel.sampleCount * format.getBytesPerSample() / channel.sizeBytes;
+        return channel;
+    }
+
+    // Moves the verified copies to their final names. Only for the attempt that won the switch-over:
+    // a copy left there by an attempt that died half way through is replaced.
+    public void install() throws IOException {
+        if (rawTemporary != null) {
+            Files.move(rawTemporary, rawTarget, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            rawTemporary = null;
+            installed.add(rawTarget);
+        }
+        for (Channel channel : channels) {
+            Files.move(channel.temporary, channel.target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel.temporary = null;
+            installed.add(channel.target);
+        }
+    }
+
+    // Once the switch-over has committed: the copies stay and the originals are deleted.
+    // Returns the bytes reclaimed.
+    public long commit() {
+        committed = true;
+        long reclaimed = 0;
+        List<Path> originals = new ArrayList<>();
+        if (rawTarget != null) originals.add(raw);
+        for (Channel channel : channels) originals.add(channel.source);
+        for (Path original : originals) {
+            try {
+                long size = Files.size(original);
+                Files.delete(original);
+                reclaimed += size;
+            } catch (IOException e) {
+                // Left behind, but no row points at it any more
+            }
+        }
+        if (rawTarget != null) reclaimed -= sizeOf(rawTarget);
+        for (Channel channel : channels) reclaimed -= channel.sizeBytes;
+        return Math.max(0, reclaimed);
+    }
+
+    public Path getRawTarget() {
+        return rawTarget;
+    }
+
+    public List<Channel> getChannels() {
+        return channels;
+    }
+
+    // Deletes the temporary copies, and the installed ones unless the switch-over committed
+    @Override
+    public void close() throws IOException {
+        List<Path> created = new ArrayList<>();
+        if (rawTemporary != null) created.add(rawTemporary);
+        for (Channel channel : channels) {
+            if (channel.temporary != null) created.add(channel.temporary);
+        }
+        if (!committed) created.addAll(installed);
+
+        IOException failure = null;
+        for (Path path : created) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+        rawTemporary = null;
+        installed.clear();
+        if (failure != null) throw failure;
+    }
+
+    // A name no other attempt uses; the writers create it with CREATE_NEW, so nothing is overwritten
+    private static Path temporaryFor(Path target) {
+        return target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+    }
+
+    // Checksums the stored bit patterns, so NaN payloads and -0.0 have to survive as well
+    private static void updateCrc(CRC32 crc, double[] values, int count, SampleFormat format) {
+        for (int i = 0; i < count; i++) {
+            long bits = format == SampleFormat.FLOAT32
+                    ? Float.floatToRawIntBits((float) values[i])
+                    : Double.doubleToRawLongBits(values[i]);
+            for (int shift = 0; shift < 64; shift += 8) {
+                crc.update((int) (bits >>> shift));
+            }
+        }
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // A packed channel file and its compressed copy
+    public static final class Channel {
+        private final Path source;
+        private final Path target;
+        private Path temporary;
+        private long sampleCount;
+        private long sizeBytes;
+        private double compressionRatio;
+        private double decodeMbPerSecond;
+
+        Channel(Path source, Path target, Path temporary) {
+            this.source = source;
+            this.target = target;
+            this.temporary = temporary;
+        }
+
+        public Path getSource() {
+            return source;
+        }
+
+        public Path getTarget() {
+            return target;
+        }
+
+        public long getSampleCount() {
+            return sampleCount;
+        }
+
+        public long getSizeBytes() {
+            return sizeBytes;
+        }
+
+        public double getCompressionRatio() {
+            return compressionRatio;
+        }
+
+        public double getDecodeMbPerSecond() {
+            return decodeMbPerSecond;
+        }
+    }
+}
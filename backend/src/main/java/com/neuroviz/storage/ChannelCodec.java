@@ -0,0 +1,32 @@
+package com.neuroviz.storage;
+
+// Encoding of a channel file. NONE is the packed layout served by memory mapping; the
+// other codecs store blocks that are decoded on read. AUTO picks a codec per block.
+public enum ChannelCodec {
+    NONE(0),
+    GORILLA(1),
+    DELTA_VARINT(2),
+    AUTO(-1);
+
+    private final int tag;
+
+    ChannelCodec(int tag) {
+        this.tag = tag;
+    }
+
+    // Tag written in front of every block of a compressed file
+    public int getTag() {
+        return tag;
+    }
+
+    public boolean isCompressed() {
+        return this != NONE;
+    }
+
+    static ChannelCodec fromTag(int tag) {
+        for (ChannelCodec codec : values()) {
+            if (codec.tag == tag && codec.isCompressed()) return codec;
+        }
+        throw new IllegalArgumentException("Unknown block codec: " + tag);
+    }
+}
@@ -0,0 +1,72 @@
+package com.neuroviz.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Appends samples of one channel as packed little-endian floats
+public class ChannelFileWriter implements ChannelWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final SampleFormat format;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long sampleCount;
+
+    public ChannelFileWriter(Path path, SampleFormat format) throws IOException {
+        this.path = path;
+        this.format = format;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public void write(double value) throws IOException {
+        if (buffer.remaining() < format.getBytesPerSample()) {
+            flush();
+        }
+        if (format == SampleFormat.FLOAT32) {
+            buffer.putFloat((float) value);
+        } else {
+            buffer.putDouble(value);
+        }
+        sampleCount++;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    @Override
+    public long getSizeBytes() {
+        return sampleCount * format.getBytesPerSample();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.neuroviz.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// A square matrix over the channels of a recording, such as pairwise coherence, stored in the
+// recording's channel directory so every session of the recording reuses it.
+//
+// Layout (little-endian): magic, version, channel count, per channel a UTF-8 name prefixed by
+// its byte length, then the row-major float64 values.
+public class ChannelMatrix {
+
+    static final int MAGIC = 0x4D43564E; // "NVCM"
+    static final int VERSION = 1;
+
+    private final List<String> channels;
+    private final double[] values;
+
+    public ChannelMatrix(List<String> channels, double[] values) {
+        if (values.length != channels.size() * channels.size()) {
+            throw new IllegalArgumentException("Expected " + channels.size() + " x " + channels.size() + " values");
+        }
+        this.channels = List.copyOf(channels);
+        this.values = values;
+    }
+
+    // Matrices of one recording, named by what they hold, e.g. coherence-8.0-13.0-256
+    public static Path pathFor(Path channelFile, String name) {
+        return channelFile.resolveSibling("matrices").resolve(name + ".nvcm");
+    }
+
+    public List<String> getChannels() {
+        return channels;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    public double[][] toRows() {
+        int n = channels.size();
+        double[][] rows = new double[n][];
+        for (int i = 0; i < n; i++) {
+            rows[i] = new double[n];
+            System.arraycopy(values, i * n, rows[i], 0, n);
+        }
+        return rows;
+    }
+
+    // Written to a temporary file and moved into place, so readers never see a partial matrix.
+    // The temporary file is unique to this write, as sessions sharing a recording may store the
+    // same matrix at once.
+    public void write(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temporary = Files.createTempFile(file.getParent(), file.getFileName() + ".", ".tmp");
+        List<byte[]> names = new ArrayList<>(channels.size());
+        int nameBytes = 0;
+        for (String channel : channels) {
+            byte[] name = channel.getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            nameBytes += 4 + name.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(12 + nameBytes + 8 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(channels.size());
+        for (byte[] name : names) {
+            buffer.putInt(name.length).put(name);
+        }
+        for (double value : values) {
+            buffer.putDouble(value);
+        }
+        buffer.flip();
+        try {
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    public static ChannelMatrix read(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Unsupported matrix file " + file.getFileName());
+            }
+            int count = buffer.getInt();
+            List<String> channels = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                channels.add(new String(name, StandardCharsets.UTF_8));
+            }
+            double[] values = new double[count * count];
+            buffer.asDoubleBuffer().get(values);
+            return new ChannelMatrix(channels, values);
+        } catch (RuntimeException e) {
+            throw new IOException("Matrix file is truncated: " + file.getFileName(), e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.neuroviz.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Random access to the samples of one channel file, independent of its codec
+public interface ChannelReader extends Closeable {
+
+    long getSampleCount();
+
+    // Reads up to len samples starting at sample start and returns the number read
+    int read(long start, double[] dst, int off, int len) throws IOException;
+
+    static ChannelReader open(Path path, SampleFormat format, ChannelCodec codec) throws IOException {
+        if (codec == null || !codec.isCompressed()) {
+            return new PackedChannelReader(path, format);
+        }
+        return new CompressedChannelReader(path);
+    }
+}
@@ -0,0 +1,86 @@
+package com.neuroviz.storage;
+
+import com.neuroviz.ingest.SampleSink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Transposes row-ordered samples into one packed file per channel
+public class ChannelStoreWriter implements SampleSink, Closeable {
+
+    private final Path directory;
+    private final SampleFormat format;
+    private final ChannelCodec codec;
+    private final List<String> channelNames = new ArrayList<>();
+    private ChannelWriter[] writers = new ChannelWriter[0];
+    private boolean closed;
+
+    public ChannelStoreWriter(Path directory, SampleFormat format) {
+        this(directory, format, ChannelCodec.NONE);
+    }
+
+    public ChannelStoreWriter(Path directory, SampleFormat format, ChannelCodec codec) {
+        this.directory = directory;
+        this.format = format;
+        this.codec = codec;
+    }
+
+    @Override
+    public void start(List<String> names) throws IOException {
+        Files.createDirectories(directory);
+        writers = new ChannelWriter[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            channelNames.add(names.get(i));
+            Path path = directory.resolve(fileName(i, names.get(i), format, codec));
+            writers[i] = codec.isCompressed()
+                    ? new CompressedChannelWriter(path, format, codec)
+                    : new ChannelFileWriter(path, format);
+        }
+    }
+
+    @Override
+    public void accept(int channel, double value) throws IOException {
+        writers[channel].write(value);
+    }
+
+    public List<StoredChannel> getStoredChannels() {
+        List<StoredChannel> stored = new ArrayList<>(writers.length);
+        for (int i = 0; i < writers.length; i++) {
+            ChannelWriter writer = writers[i];
+            stored.add(new StoredChannel(channelNames.get(i), writer.getPath(), format, codec,
+                    writer.getSampleCount(), writer.getSizeBytes()));
+        }
+        return stored;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        IOException failure = null;
+        for (ChannelWriter writer : writers) {
+            if (writer == null) continue;
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    public static String fileName(int index, String channelName, SampleFormat format, ChannelCodec codec) {
+        String safeName = channelName.replaceAll("[^A-Za-z0-9_.-]", "_");
+        if (safeName.length() > 64) safeName = safeName.substring(0, 64);
+        return String.format("%03d_%s.%s", index, safeName, extensionFor(format, codec));
+    }
+
+    // Compressed files get a trailing "z" so they are never mistaken for packed ones
+    public static String extensionFor(SampleFormat format, ChannelCodec codec) {
+        return codec.isCompressed() ? format.getExtension() + "z" : format.getExtension();
+    }
+}
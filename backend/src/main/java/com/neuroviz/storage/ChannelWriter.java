@@ -0,0 +1,17 @@
+package com.neuroviz.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface ChannelWriter extends Closeable {
+
+    void write(double value) throws IOException;
+
+    Path getPath();
+
+    long getSampleCount();
+
+    // Bytes on disk, which is only final once the writer is closed
+    long getSizeBytes();
+}
@@ -0,0 +1,167 @@
+package com.neuroviz.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Reads block-compressed channel files written by CompressedChannelWriter. Only the blocks
+// overlapping a read are fetched and decoded; the last decoded block is kept, so
+// sequential reads decode every block once.
+public class CompressedChannelReader implements ChannelReader {
+
+    private static final int TRANSFER_SAMPLES = 8192;
+
+    private final FileChannel channel;
+    private final SampleFormat format;
+    private final int blockSamples;
+    private final long sampleCount;
+    private final long[] offsets;
+    private final byte[] encoded;
+    private final double[] block;
+    private int cachedBlock = -1;
+    private long decodedSamples;
+    private long decodeNanos;
+
+    public CompressedChannelReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(CompressedChannelWriter.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(header, 0);
+            if (header.getInt() != CompressedChannelWriter.MAGIC || header.getInt() != CompressedChannelWriter.VERSION) {
+                throw new IOException("Unsupported channel file " + path.getFileName());
+            }
+            this.blockSamples = header.getInt();
+            this.format = formatOf(header.getInt());
+
+            ByteBuffer trailer = ByteBuffer.allocate(CompressedChannelWriter.TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(trailer, channel.size() - CompressedChannelWriter.TRAILER_BYTES);
+            long indexOffset = trailer.getLong();
+            this.sampleCount = trailer.getLong();
+            int blockCount = trailer.getInt();
+            if (trailer.getInt() != CompressedChannelWriter.MAGIC) {
+                throw new IOException("Truncated channel file " + path.getFileName());
+            }
+
+            ByteBuffer index = ByteBuffer.allocate((blockCount + 1) * 8).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(index, indexOffset);
+            this.offsets = new long[blockCount + 1];
+            for (int i = 0; i <= blockCount; i++) {
+                offsets[i] = index.getLong();
+            }
+            this.encoded = new byte[CompressedChannelWriter.maxBlockBytes(blockSamples)];
+            this.block = new double[blockSamples];
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public SampleFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    @Override
+    public int read(long start, double[] dst, int off, int len) throws IOException {
+        int read = 0;
+        long end = Math.min(sampleCount, start + len);
+        for (long sample = Math.max(0, start); sample < end; ) {
+            int blockIndex = (int) (sample / blockSamples);
+            int blockLength = decodeBlock(blockIndex);
+            int from = (int) (sample - (long) blockIndex * blockSamples);
+            int count = (int) Math.min(end - sample, blockLength - from);
+            System.arraycopy(block, from, dst, off + read, count);
+            sample += count;
+            read += count;
+        }
+        return read;
+    }
+
+    // Streams a window as packed little-endian samples, the same bytes a packed file would serve
+    public long transferWindow(SampleWindow window, WritableByteChannel target) throws IOException {
+        double[] values = new double[TRANSFER_SAMPLES];
+        ByteBuffer out = ByteBuffer.allocateDirect(TRANSFER_SAMPLES * format.getBytesPerSample()).order(ByteOrder.LITTLE_ENDIAN);
+        long transferred = 0;
+        long sample = window.getStartSample();
+        long end = Math.min(sampleCount, window.getEndSample());
+        while (sample < end) {
+            int count = read(sample, values, 0, (int) Math.min(TRANSFER_SAMPLES, end - sample));
+            out.clear();
+            for (int i = 0; i < count; i++) {
+                if (format == SampleFormat.FLOAT32) {
+                    out.putFloat((float) values[i]);
+                } else {
+                    out.putDouble(values[i]);
+                }
+            }
+            out.flip();
+            while (out.hasRemaining()) {
+                transferred += target.write(out);
+            }
+            sample += count;
+        }
+        return transferred;
+    }
+
+    public long getDecodedSamples() {
+        return decodedSamples;
+    }
+
+    public long getDecodeNanos() {
+        return decodeNanos;
+    }
+
+    private int decodeBlock(int blockIndex) throws IOException {
+        int length = (int) Math.min(blockSamples, sampleCount - (long) blockIndex * blockSamples);
+        if (blockIndex == cachedBlock) return length;
+
+        long position = offsets[blockIndex];
+        int size = (int) (offsets[blockIndex + 1] - position);
+        if (size < 1 || size > encoded.length) {
+            throw new IOException("Corrupt block " + blockIndex);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(encoded, 0, size);
+        readFully(buffer, position);
+
+        long started = System.nanoTime();
+        ChannelCodec codec = ChannelCodec.fromTag(encoded[0]);
+        if (codec == ChannelCodec.DELTA_VARINT) {
+            DeltaVarintCodec.decode(encoded, 1, block, length);
+        } else {
+            GorillaCodec.decode(encoded, 1, block, length);
+        }
+        decodeNanos += System.nanoTime() - started;
+        decodedSamples += length;
+        cachedBlock = blockIndex;
+        return length;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("Unexpected end of channel file");
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    private static SampleFormat formatOf(int bytesPerSample) throws IOException {
+        for (SampleFormat format : SampleFormat.values()) {
+            if (format.getBytesPerSample() == bytesPerSample) return format;
+        }
+        throw new IOException("Unsupported sample size: " + bytesPerSample);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
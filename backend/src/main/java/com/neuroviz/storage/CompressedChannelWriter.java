@@ -0,0 +1,129 @@
+package com.neuroviz.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Writes a channel as independently decodable blocks of BLOCK_SAMPLES samples, so a reader
+// only has to decompress the blocks that overlap the requested window.
+//
+// Layout (little-endian): magic, version, samples per block, bytes per sample; then every
+// block as a codec tag byte plus payload; then the block offset index (block count + 1
+// entries) and a trailer of index offset, sample count, block count and magic.
+public class CompressedChannelWriter implements ChannelWriter {
+
+    static final int MAGIC = 0x4343564E; // "NVCC"
+    static final int VERSION = 1;
+    static final int BLOCK_SAMPLES = 4096;
+    static final int HEADER_BYTES = 16;
+    static final int TRAILER_BYTES = 8 + 8 + 4 + 4;
+
+    private final Path path;
+    private final SampleFormat format;
+    private final ChannelCodec codec;
+    private final FileChannel channel;
+    private final double[] block = new double[BLOCK_SAMPLES];
+    private final byte[] encoded = new byte[maxBlockBytes(BLOCK_SAMPLES)];
+    private int blockFill;
+    private long[] offsets = new long[64];
+    private int blockCount;
+    private long position;
+    private long sampleCount;
+    private boolean closed;
+
+    public CompressedChannelWriter(Path path, SampleFormat format, ChannelCodec codec) throws IOException {
+        if (!codec.isCompressed()) {
+            throw new IllegalArgumentException("Not a block codec: " + codec);
+        }
+        this.path = path;
+        this.format = format;
+        this.codec = codec;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(BLOCK_SAMPLES).putInt(format.getBytesPerSample());
+        header.flip();
+        writeFully(header);
+    }
+
+    static int maxBlockBytes(int samples) {
+        return 1 + Math.max(GorillaCodec.maxEncodedBytes(samples), DeltaVarintCodec.maxEncodedBytes(samples));
+    }
+
+    @Override
+    public void write(double value) throws IOException {
+        // Rounded to the stored precision first, so decoding is exact for float32 channels too
+        block[blockFill++] = format == SampleFormat.FLOAT32 ? (float) value : value;
+        sampleCount++;
+        if (blockFill == BLOCK_SAMPLES) {
+            flushBlock();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockFill == 0) return;
+        ChannelCodec blockCodec = codec;
+        if (blockCodec == ChannelCodec.AUTO) {
+            blockCodec = DeltaVarintCodec.canEncode(block, blockFill) ? ChannelCodec.DELTA_VARINT : ChannelCodec.GORILLA;
+        } else if (blockCodec == ChannelCodec.DELTA_VARINT && !DeltaVarintCodec.canEncode(block, blockFill)) {
+            blockCodec = ChannelCodec.GORILLA;
+        }
+
+        encoded[0] = (byte) blockCodec.getTag();
+        int length = 1 + (blockCodec == ChannelCodec.DELTA_VARINT
+                ? DeltaVarintCodec.encode(block, blockFill, encoded, 1)
+                : GorillaCodec.encode(block, blockFill, encoded, 1));
+
+        if (blockCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[blockCount++] = position;
+        writeFully(ByteBuffer.wrap(encoded, 0, length));
+        blockFill = 0;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+    }
+
+    @Override
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    @Override
+    public long getSizeBytes() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            flushBlock();
+            long indexOffset = position;
+            ByteBuffer index = ByteBuffer.allocate((blockCount + 1) * 8 + TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < blockCount; i++) {
+                index.putLong(offsets[i]);
+            }
+            index.putLong(indexOffset);
+            index.putLong(indexOffset).putLong(sampleCount).putInt(blockCount).putInt(MAGIC);
+            index.flip();
+            writeFully(index);
+        } finally {
+            channel.close();
+        }
+    }
+}
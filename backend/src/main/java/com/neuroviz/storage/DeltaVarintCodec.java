@@ -0,0 +1,61 @@
+package com.neuroviz.storage;
+
+// For integer-valued samples such as raw ADC counts: each value is stored as the zigzag
+// encoded difference to its predecessor in a little-endian base-128 varint, so small
+// steps between neighbouring samples take one or two bytes
+final class DeltaVarintCodec {
+
+    private static final double MAX_EXACT_INTEGER = 1L << 53;
+
+    private DeltaVarintCodec() {}
+
+    static int maxEncodedBytes(int count) {
+        return count * 10;
+    }
+
+    // Only blocks of exact integers round-trip; -0.0, NaN and infinities do not
+    static boolean canEncode(double[] src, int count) {
+        for (int i = 0; i < count; i++) {
+            double value = src[i];
+            if (value != Math.rint(value) || Math.abs(value) > MAX_EXACT_INTEGER
+                    || Double.doubleToRawLongBits(value) == Long.MIN_VALUE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int encode(double[] src, int count, byte[] dst, int off) {
+        int position = off;
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long value = (long) src[i];
+            long delta = value - previous;
+            previous = value;
+            long zigzag = (delta << 1) ^ (delta >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                dst[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            dst[position++] = (byte) zigzag;
+        }
+        return position - off;
+    }
+
+    static void decode(byte[] src, int off, double[] dst, int count) {
+        int position = off;
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = src[position++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            dst[i] = previous;
+        }
+    }
+}
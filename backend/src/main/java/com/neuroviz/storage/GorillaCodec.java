@@ -0,0 +1,134 @@
+package com.neuroviz.storage;
+
+// XOR float compression from Facebook's Gorilla paper. Each value is XORed with its
+// predecessor; identical values cost one bit, and values whose XOR fits inside the previous
+// leading/trailing zero window only store the meaningful bits. Samples are evenly spaced,
+// so the delta-of-delta timestamp stream of the paper is implicit and not stored.
+final class GorillaCodec {
+
+    // 1 + 1 + 5 + 6 + 64 control and value bits in the worst case
+    static final int MAX_BITS_PER_VALUE = 77;
+
+    private GorillaCodec() {}
+
+    static int maxEncodedBytes(int count) {
+        return (int) (((long) count * MAX_BITS_PER_VALUE + 7) / 8) + 8;
+    }
+
+    static int encode(double[] src, int count, byte[] dst, int off) {
+        BitWriter out = new BitWriter(dst, off);
+        if (count == 0) return 0;
+
+        long previous = Double.doubleToRawLongBits(src[0]);
+        out.write(previous, 64);
+        int previousLeading = -1;
+        int previousTrailing = 0;
+
+        for (int i = 1; i < count; i++) {
+            long bits = Double.doubleToRawLongBits(src[i]);
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.write(0, 1);
+                continue;
+            }
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                out.write(0b10, 2);
+                out.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                out.write(0b11, 2);
+                out.write(leading, 5);
+                out.write(meaningful - 1, 6);
+                out.write(xor >>> trailing, meaningful);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+        return out.finish() - off;
+    }
+
+    static void decode(byte[] src, int off, double[] dst, int count) {
+        if (count == 0) return;
+        BitReader in = new BitReader(src, off);
+
+        long previous = in.read(64);
+        dst[0] = Double.longBitsToDouble(previous);
+        int leading = 0;
+        int trailing = 0;
+
+        for (int i = 1; i < count; i++) {
+            if (in.read(1) != 0) {
+                if (in.read(1) != 0) {
+                    leading = (int) in.read(5);
+                    int meaningful = (int) in.read(6) + 1;
+                    trailing = 64 - leading - meaningful;
+                }
+                previous ^= in.read(64 - leading - trailing) << trailing;
+            }
+            dst[i] = Double.longBitsToDouble(previous);
+        }
+    }
+
+    private static final class BitWriter {
+        private final byte[] buffer;
+        private int position;
+        private long pending;
+        private int pendingBits;
+
+        BitWriter(byte[] buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        // Writes the low n bits of value, most significant first
+        void write(long value, int n) {
+            while (n > 0) {
+                int take = Math.min(n, 56 - pendingBits);
+                long chunk = (value >>> (n - take)) & ((1L << take) - 1);
+                pending = (pending << take) | chunk;
+                pendingBits += take;
+                n -= take;
+                while (pendingBits >= 8) {
+                    pendingBits -= 8;
+                    buffer[position++] = (byte) (pending >>> pendingBits);
+                }
+            }
+        }
+
+        int finish() {
+            if (pendingBits > 0) {
+                buffer[position++] = (byte) (pending << (8 - pendingBits));
+                pendingBits = 0;
+            }
+            return position;
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] buffer;
+        private int position;
+        private long pending;
+        private int pendingBits;
+
+        BitReader(byte[] buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        long read(int n) {
+            if (n > 56) {
+                long high = read(n - 32);
+                return (high << 32) | read(32);
+            }
+            while (pendingBits < n) {
+                pending = (pending << 8) | (position < buffer.length ? buffer[position++] & 0xFF : 0);
+                pendingBits += 8;
+            }
+            pendingBits -= n;
+            return (pending >>> pendingBits) & ((1L << n) - 1);
+        }
+    }
+}
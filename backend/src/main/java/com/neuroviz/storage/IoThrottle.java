@@ -0,0 +1,60 @@
+package com.neuroviz.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Token bucket over bytes per second for background I/O. Callers acquire before each read or
+// write and sleep while the bucket is empty; at most one second of bytes can be saved up, so
+// a pause is never followed by a burst that competes with live requests.
+public class IoThrottle {
+
+    private final long bytesPerSecond;
+    private double available;
+    private long lastRefill;
+
+    // 0 or less means unlimited
+    public IoThrottle(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public synchronized void acquire(long bytes) throws IOException {
+        if (bytesPerSecond <= 0) return;
+        refill();
+        available -= bytes;
+        if (available >= 0) return;
+
+        long waitNanos = (long) (-available / bytesPerSecond * 1e9);
+        try {
+            Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while throttled", e);
+        }
+        refill();
+    }
+
+    public InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                acquire(1);
+                return super.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) acquire(n);
+                return n;
+            }
+        };
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(bytesPerSecond, available + (now - lastRefill) / 1e9 * bytesPerSecond);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,147 @@
+package com.neuroviz.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Level-of-detail file stored next to each channel file. Level k holds one
+// (min, max, mean) float triple per 2^(k+1) samples, from 2x up to 4096x decimation.
+//
+// Layout (little-endian): magic, version, level count, sample count, then per level
+// (decimation, bucket count, byte offset), followed by the bucket data of each level.
+public final class LodPyramid {
+
+    static final int MAGIC = 0x444C564E; // "NVLD"
+    static final int VERSION = 1;
+    static final int LEVELS = 12;
+    static final int BUCKET_BYTES = 12;
+
+    private static final int LEVEL_ENTRY_BYTES = 4 + 8 + 8;
+
+    private LodPyramid() {}
+
+    public static Path pathFor(Path channelFile) {
+        String name = channelFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return channelFile.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".lod");
+    }
+
+    static int decimation(int level) {
+        return 1 << (level + 1);
+    }
+
+    static int headerSize() {
+        return 4 + 4 + 4 + 8 + LEVELS * LEVEL_ENTRY_BYTES;
+    }
+
+    // Picks the finest level that fits the window into at most maxBuckets buckets, so the
+    // amount read depends on the pixel width rather than on the recording length
+    public static LodWindow query(Path channelFile, SampleFormat format, ChannelCodec codec, int sampleRate,
+                                  SampleWindow window, int maxBuckets) throws IOException {
+        long span = window.getSampleCount();
+        if (span <= maxBuckets) {
+            return readRaw(channelFile, format, codec, sampleRate, window);
+        }
+
+        try (FileChannel lod = FileChannel.open(pathFor(channelFile), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(headerSize()).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(lod, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Unsupported overview file for " + channelFile.getFileName());
+            }
+            int levels = header.getInt();
+            long sampleCount = header.getLong();
+
+            int decimation = 0;
+            long bucketCount = 0;
+            long offset = 0;
+            for (int level = 0; level < levels; level++) {
+                decimation = header.getInt();
+                bucketCount = header.getLong();
+                offset = header.getLong();
+                long first = window.getStartSample() / decimation;
+                long last = (window.getEndSample() + decimation - 1) / decimation;
+                if (last - first <= maxBuckets) break;
+            }
+
+            long first = window.getStartSample() / decimation;
+            long last = Math.min(bucketCount, (window.getEndSample() + decimation - 1) / decimation);
+            int buckets = (int) Math.max(0, last - first);
+
+            // Beyond the coarsest level, merge neighbouring buckets to fit the width
+            int group = (buckets + maxBuckets - 1) / maxBuckets;
+            int outputBuckets = group == 0 ? 0 : (buckets + group - 1) / group;
+            float[] min = new float[outputBuckets];
+            float[] max = new float[outputBuckets];
+            float[] mean = new float[outputBuckets];
+
+            ByteBuffer data = ByteBuffer.allocate(Math.min(buckets, 64 * 1024) * BUCKET_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            long position = offset + first * BUCKET_BYTES;
+            int bucket = 0;
+            float groupMin = Float.NaN, groupMax = Float.NaN;
+            double groupSum = 0;
+            long groupSamples = 0;
+            int inGroup = 0;
+            while (bucket < buckets) {
+                data.clear();
+                data.limit(Math.min(data.capacity(), (buckets - bucket) * BUCKET_BYTES));
+                readFully(lod, data, position);
+                position += data.limit();
+                data.flip();
+                while (data.hasRemaining()) {
+                    float bMin = data.getFloat(), bMax = data.getFloat(), bMean = data.getFloat();
+                    if (!Float.isNaN(bMean)) {
+                        // Weighted by the samples a bucket covers, which are fewer in the last one
+                        long samples = Math.min(decimation, sampleCount - (first + bucket) * decimation);
+                        groupMin = Float.isNaN(groupMin) ? bMin : Math.min(groupMin, bMin);
+                        groupMax = Float.isNaN(groupMax) ? bMax : Math.max(groupMax, bMax);
+                        groupSum += (double) bMean * samples;
+                        groupSamples += samples;
+                    }
+                    bucket++;
+                    if (++inGroup == group || bucket == buckets) {
+                        int out = (bucket - 1) / group;
+                        min[out] = groupMin;
+                        max[out] = groupMax;
+                        mean[out] = groupSamples > 0 ? (float) (groupSum / groupSamples) : Float.NaN;
+                        groupMin = Float.NaN;
+                        groupMax = Float.NaN;
+                        groupSum = 0;
+                        groupSamples = 0;
+                        inGroup = 0;
+                    }
+                }
+            }
+
+            long samplesPerBucket = (long) decimation * Math.max(1, group);
+            return new LodWindow(first * decimation, samplesPerBucket, (double) samplesPerBucket / sampleRate, min, max, mean);
+        }
+    }
+
+    private static LodWindow readRaw(Path channelFile, SampleFormat format, ChannelCodec codec, int sampleRate,
+                                     SampleWindow window) throws IOException {
+        double[] samples = new double[(int) window.getSampleCount()];
+        int count;
+        try (ChannelReader reader = ChannelReader.open(channelFile, format, codec)) {
+            count = reader.read(window.getStartSample(), samples, 0, samples.length);
+        }
+        // Only the samples that exist, for a window running past the end
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (float) samples[i];
+        }
+        return new LodWindow(window.getStartSample(), 1, 1.0 / sampleRate, values, values, values);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) break;
+            position += read;
+        }
+    }
+}
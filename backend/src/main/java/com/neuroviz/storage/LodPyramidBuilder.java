@@ -0,0 +1,150 @@
+package com.neuroviz.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Builds the min/max/mean pyramid of a channel in one sequential pass. Each level halves the
+// previous one, so level k aggregates 2^k samples; level offsets are known up front from the
+// sample count and every level is written to its own region with positional writes.
+public final class LodPyramidBuilder {
+
+    private static final int READ_SAMPLES = 8192;
+    private static final int BUCKETS_PER_FLUSH = 4096;
+
+    private LodPyramidBuilder() {}
+
+    public static void build(ChannelReader reader, Path lodFile) throws IOException {
+        long sampleCount = reader.getSampleCount();
+        int levels = LodPyramid.LEVELS;
+        long[] offsets = new long[levels];
+        long[] bucketCounts = new long[levels];
+        long offset = LodPyramid.headerSize();
+        for (int level = 0; level < levels; level++) {
+            bucketCounts[level] = divideRoundingUp(sampleCount, LodPyramid.decimation(level));
+            offsets[level] = offset;
+            offset += bucketCounts[level] * LodPyramid.BUCKET_BYTES;
+        }
+
+        try (FileChannel out = FileChannel.open(lodFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(out, sampleCount, bucketCounts, offsets);
+
+            Level[] pyramid = new Level[levels];
+            for (int level = 0; level < levels; level++) {
+                pyramid[level] = new Level(out, offsets[level]);
+            }
+
+            double[] values = new double[READ_SAMPLES];
+            long position = 0;
+            while (position < sampleCount) {
+                int count = reader.read(position, values, 0, (int) Math.min(READ_SAMPLES, sampleCount - position));
+                if (count == 0) break;
+                for (int i = 0; i < count; i++) {
+                    double value = values[i];
+                    if (Double.isNaN(value)) {
+                        pyramid[0].addEmpty(pyramid, 0);
+                    } else {
+                        pyramid[0].add(pyramid, 0, value, value, value, 1);
+                    }
+                }
+                position += count;
+            }
+
+            // Partial buckets cascade upwards, finest level first
+            for (int level = 0; level < levels; level++) {
+                pyramid[level].emitPartial(pyramid, level);
+                pyramid[level].flush();
+            }
+        }
+    }
+
+    private static void writeHeader(FileChannel out, long sampleCount, long[] bucketCounts, long[] offsets) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LodPyramid.headerSize()).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(LodPyramid.MAGIC);
+        header.putInt(LodPyramid.VERSION);
+        header.putInt(bucketCounts.length);
+        header.putLong(sampleCount);
+        for (int level = 0; level < bucketCounts.length; level++) {
+            header.putInt(LodPyramid.decimation(level));
+            header.putLong(bucketCounts[level]);
+            header.putLong(offsets[level]);
+        }
+        header.flip();
+        while (header.hasRemaining()) {
+            out.write(header, header.position());
+        }
+    }
+
+    private static long divideRoundingUp(long value, long divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    // Accumulates two children into one bucket and writes finished buckets in batches
+    private static final class Level {
+        private final FileChannel out;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUCKETS_PER_FLUSH * LodPyramid.BUCKET_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        private long writePosition;
+
+        private int children;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private double sum;
+        private long count;
+
+        Level(FileChannel out, long offset) {
+            this.out = out;
+            this.writePosition = offset;
+        }
+
+        void add(Level[] pyramid, int level, double childMin, double childMax, double childSum, long childCount) throws IOException {
+            min = Math.min(min, childMin);
+            max = Math.max(max, childMax);
+            sum += childSum;
+            count += childCount;
+            if (++children == 2) emit(pyramid, level);
+        }
+
+        void addEmpty(Level[] pyramid, int level) throws IOException {
+            if (++children == 2) emit(pyramid, level);
+        }
+
+        void emitPartial(Level[] pyramid, int level) throws IOException {
+            if (children > 0) emit(pyramid, level);
+        }
+
+        private void emit(Level[] pyramid, int level) throws IOException {
+            if (count > 0) {
+                buffer.putFloat((float) min).putFloat((float) max).putFloat((float) (sum / count));
+            } else {
+                buffer.putFloat(Float.NaN).putFloat(Float.NaN).putFloat(Float.NaN);
+            }
+            if (!buffer.hasRemaining()) flush();
+
+            if (level + 1 < pyramid.length) {
+                if (count > 0) {
+                    pyramid[level + 1].add(pyramid, level + 1, min, max, sum, count);
+                } else {
+                    pyramid[level + 1].addEmpty(pyramid, level + 1);
+                }
+            }
+            children = 0;
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+            sum = 0;
+            count = 0;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                writePosition += out.write(buffer, writePosition);
+            }
+            buffer.clear();
+        }
+    }
+}
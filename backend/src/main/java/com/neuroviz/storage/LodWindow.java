@@ -0,0 +1,47 @@
+package com.neuroviz.storage;
+
+public class LodWindow {
+    private final long startSample;
+    private final long samplesPerBucket;
+    private final double bucketSeconds;
+    private final float[] min;
+    private final float[] max;
+    private final float[] mean;
+
+    public LodWindow(long startSample, long samplesPerBucket, double bucketSeconds, float[] min, float[] max, float[] mean) {
+        this.startSample = startSample;
+        this.samplesPerBucket = samplesPerBucket;
+        this.bucketSeconds = bucketSeconds;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+    }
+
+    public long getStartSample() {
+        return startSample;
+    }
+
+    public long getSamplesPerBucket() {
+        return samplesPerBucket;
+    }
+
+    public double getBucketSeconds() {
+        return bucketSeconds;
+    }
+
+    public int getBucketCount() {
+        return min.length;
+    }
+
+    public float[] getMin() {
+        return min;
+    }
+
+    public float[] getMax() {
+        return max;
+    }
+
+    public float[] getMean() {
+        return mean;
+    }
+}
@@ -0,0 +1,123 @@
+package com.neuroviz.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// A packed channel file of fixed length that is read and written at arbitrary positions
+// through a sliding read-write memory map, e.g. by filters that pass over a channel backwards
+public class MappedChannelFile implements ChannelReader {
+
+    private static final long MAX_SLICE_BYTES = 8L * 1024 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final SampleFormat format;
+    private final long sampleCount;
+    private MappedByteBuffer slice;
+    private long sliceStart;
+    private long sliceSamples;
+
+    private MappedChannelFile(Path path, FileChannel channel, SampleFormat format, long sampleCount) {
+        this.path = path;
+        this.channel = channel;
+        this.format = format;
+        this.sampleCount = sampleCount;
+    }
+
+    // Creates the file at its full size; samples not written read as 0
+    public static MappedChannelFile create(Path path, SampleFormat format, long sampleCount) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = sampleCount * format.getBytesPerSample();
+        if (size > 0) {
+            channel.write(ByteBuffer.allocate(1), size - 1);
+        }
+        return new MappedChannelFile(path, channel, format, sampleCount);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public SampleFormat getFormat() {
+        return format;
+    }
+
+    public long getSizeBytes() {
+        return sampleCount * format.getBytesPerSample();
+    }
+
+    @Override
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    @Override
+    public int read(long start, double[] dst, int off, int len) throws IOException {
+        int read = 0;
+        long end = Math.min(sampleCount, start + len);
+        for (long sample = start; sample < end; ) {
+            int count = mapFor(sample, end);
+            int position = (int) ((sample - sliceStart) * format.getBytesPerSample());
+            if (format == SampleFormat.FLOAT32) {
+                for (int i = 0; i < count; i++) {
+                    dst[off + read + i] = slice.getFloat(position + i * 4);
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    dst[off + read + i] = slice.getDouble(position + i * 8);
+                }
+            }
+            sample += count;
+            read += count;
+        }
+        return read;
+    }
+
+    public void write(long start, double[] src, int off, int len) throws IOException {
+        if (start < 0 || start + len > sampleCount) {
+            throw new IOException("Write of " + len + " samples at " + start + " is outside " + path);
+        }
+        int written = 0;
+        for (long sample = start; sample < start + len; ) {
+            int count = mapFor(sample, start + len);
+            int position = (int) ((sample - sliceStart) * format.getBytesPerSample());
+            if (format == SampleFormat.FLOAT32) {
+                for (int i = 0; i < count; i++) {
+                    slice.putFloat(position + i * 4, (float) src[off + written + i]);
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    slice.putDouble(position + i * 8, src[off + written + i]);
+                }
+            }
+            sample += count;
+            written += count;
+        }
+    }
+
+    // Maps the slice holding sample and returns how many samples up to end it covers
+    private int mapFor(long sample, long end) throws IOException {
+        if (slice == null || sample < sliceStart || sample >= sliceStart + sliceSamples) {
+            int bytesPerSample = format.getBytesPerSample();
+            long sliceLimit = MAX_SLICE_BYTES / bytesPerSample;
+            // Aligned slices, so a backward pass does not remap for every block
+            sliceStart = sample / sliceLimit * sliceLimit;
+            sliceSamples = Math.min(sampleCount - sliceStart, sliceLimit);
+            slice = channel.map(FileChannel.MapMode.READ_WRITE, sliceStart * bytesPerSample, sliceSamples * bytesPerSample);
+            slice.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return (int) Math.min(end - sample, sliceStart + sliceSamples - sample);
+    }
+
+    @Override
+    public void close() throws IOException {
+        slice = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,38 @@
+package com.neuroviz.storage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Serves sample ranges of a packed channel file through memory-mapped slices, so only the
+// pages of the requested window are touched and samples are never decoded or boxed
+public final class MappedChannelReader {
+
+    private static final long MAX_SLICE_BYTES = 8L * 1024 * 1024;
+
+    private MappedChannelReader() {}
+
+    public static long transferWindow(Path path, SampleFormat format, SampleWindow window, WritableByteChannel target) throws IOException {
+        long position = window.getStartSample() * format.getBytesPerSample();
+        long remaining = window.getSampleCount() * format.getBytesPerSample();
+        long transferred = 0;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            remaining = Math.min(remaining, Math.max(0, channel.size() - position));
+            while (remaining > 0) {
+                long sliceBytes = Math.min(remaining, MAX_SLICE_BYTES);
+                MappedByteBuffer slice = channel.map(FileChannel.MapMode.READ_ONLY, position, sliceBytes);
+                while (slice.hasRemaining()) {
+                    target.write(slice);
+                }
+                position += sliceBytes;
+                remaining -= sliceBytes;
+                transferred += sliceBytes;
+            }
+        }
+        return transferred;
+    }
+}
@@ -0,0 +1,71 @@
+package com.neuroviz.storage;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Reads a packed channel file through a sliding memory-mapped slice
+public class PackedChannelReader implements ChannelReader {
+
+    private static final long MAX_SLICE_BYTES = 8L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final SampleFormat format;
+    private final long sampleCount;
+    private MappedByteBuffer slice;
+    private long sliceStart;
+    private long sliceSamples;
+
+    public PackedChannelReader(Path path, SampleFormat format) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.format = format;
+        this.sampleCount = channel.size() / format.getBytesPerSample();
+    }
+
+    @Override
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    @Override
+    public int read(long start, double[] dst, int off, int len) throws IOException {
+        int read = 0;
+        long end = Math.min(sampleCount, start + len);
+        for (long sample = start; sample < end; ) {
+            if (slice == null || sample < sliceStart || sample >= sliceStart + sliceSamples) {
+                map(sample);
+            }
+            int count = (int) Math.min(end - sample, sliceStart + sliceSamples - sample);
+            int position = (int) ((sample - sliceStart) * format.getBytesPerSample());
+            if (format == SampleFormat.FLOAT32) {
+                for (int i = 0; i < count; i++) {
+                    dst[off + read + i] = slice.getFloat(position + i * 4);
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    dst[off + read + i] = slice.getDouble(position + i * 8);
+                }
+            }
+            sample += count;
+            read += count;
+        }
+        return read;
+    }
+
+    private void map(long sample) throws IOException {
+        int bytesPerSample = format.getBytesPerSample();
+        sliceStart = sample;
+        sliceSamples = Math.min(sampleCount - sample, MAX_SLICE_BYTES / bytesPerSample);
+        slice = channel.map(FileChannel.MapMode.READ_ONLY, sample * bytesPerSample, sliceSamples * bytesPerSample);
+        slice.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public void close() throws IOException {
+        slice = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,22 @@
+package com.neuroviz.storage;
+
+public enum SampleFormat {
+    FLOAT32(4, "f32"),
+    FLOAT64(8, "f64");
+
+    private final int bytesPerSample;
+    private final String extension;
+
+    SampleFormat(int bytesPerSample, String extension) {
+        this.bytesPerSample = bytesPerSample;
+        this.extension = extension;
+    }
+
+    public int getBytesPerSample() {
+        return bytesPerSample;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,37 @@
+package com.neuroviz.storage;
+
+// Half-open range [startSample, startSample + sampleCount) of one channel
+public class SampleWindow {
+    private final long startSample;
+    private final long sampleCount;
+
+    public SampleWindow(long startSample, long sampleCount) {
+        this.startSample = startSample;
+        this.sampleCount = sampleCount;
+    }
+
+    // Clamps a time range in seconds to the samples that exist in the channel
+    public static SampleWindow forTimeRange(double fromSeconds, Double toSeconds, int sampleRate, long totalSamples) {
+        if (fromSeconds < 0) {
+            throw new IllegalArgumentException("'from' must not be negative");
+        }
+        if (toSeconds != null && toSeconds <= fromSeconds) {
+            throw new IllegalArgumentException("'to' must be greater than 'from'");
+        }
+        long start = Math.min(totalSamples, (long) Math.floor(fromSeconds * sampleRate));
+        long end = toSeconds == null ? totalSamples : Math.min(totalSamples, (long) Math.ceil(toSeconds * sampleRate));
+        return new SampleWindow(start, Math.max(0, end - start));
+    }
+
+    public long getStartSample() {
+        return startSample;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public long getEndSample() {
+        return startSample + sampleCount;
+    }
+}
@@ -0,0 +1,72 @@
+package com.neuroviz.storage;
+
+// One quantised spectrogram tile: frames x bins cells, frame-major, FRAMES_PER_TILE x
+// BINS_PER_TILE in size with only the first frames x bins cells in use. A cell q > 0 is
+// dbOffset + (q - 1) * dbStep dB; 0 means no data.
+public class SpectrogramTile {
+    private final int level;
+    private final long column;
+    private final int row;
+    private final double startSeconds;
+    private final double startHz;
+    private final int frames;
+    private final int bins;
+    private final float dbOffset;
+    private final float dbStep;
+    private final byte[] cells;
+
+    public SpectrogramTile(int level, long column, int row, double startSeconds, double startHz, int frames, int bins,
+                           float dbOffset, float dbStep, byte[] cells) {
+        this.level = level;
+        this.column = column;
+        this.row = row;
+        this.startSeconds = startSeconds;
+        this.startHz = startHz;
+        this.frames = frames;
+        this.bins = bins;
+        this.dbOffset = dbOffset;
+        this.dbStep = dbStep;
+        this.cells = cells;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public long getColumn() {
+        return column;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    // Centre of the first frame
+    public double getStartSeconds() {
+        return startSeconds;
+    }
+
+    public double getStartHz() {
+        return startHz;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    public int getBins() {
+        return bins;
+    }
+
+    public float getDbOffset() {
+        return dbOffset;
+    }
+
+    public float getDbStep() {
+        return dbStep;
+    }
+
+    public byte[] getCells() {
+        return cells;
+    }
+}
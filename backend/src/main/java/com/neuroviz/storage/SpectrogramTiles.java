@@ -0,0 +1,317 @@
+package com.neuroviz.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Spectrogram tiles stored next to each channel file. Level 0 holds the STFT frames as
+// computed, level k the mean power of 2^k consecutive frames, down to a level that fits in
+// one tile column. Each level is cut into tiles of FRAMES_PER_TILE frames by BINS_PER_TILE
+// frequency bins, quantised to one byte per cell on a dB scale of the tile's own: byte 0 is
+// no data and q > 0 stands for offset + (q - 1) * step dB. All tiles have the same size, so
+// a viewport reads only the tiles it shows, each with one positional read.
+//
+// Layout (little-endian): magic, version, sample rate, segment length, hop, bin count, level
+// count, then per level (frame count, byte offset), followed by the tiles of each level in
+// column order, frequency rows within a column.
+public final class SpectrogramTiles {
+
+    static final int MAGIC = 0x4753564E; // "NVSG"
+    static final int VERSION = 1;
+    public static final int FRAMES_PER_TILE = 256;
+    public static final int BINS_PER_TILE = 64;
+    static final int TILE_HEADER_BYTES = 8;
+    static final int TILE_BYTES = TILE_HEADER_BYTES + FRAMES_PER_TILE * BINS_PER_TILE;
+
+    // Cells more than this far below the loudest cell of their tile are clamped
+    private static final double DYNAMIC_RANGE_DB = 96.0;
+    private static final int BASE_HEADER_BYTES = 4 + 4 + 8 + 4 + 4 + 4 + 4;
+    private static final int LEVEL_ENTRY_BYTES = 8 + 8;
+
+    private SpectrogramTiles() {}
+
+    public static Path pathFor(Path channelFile) {
+        String name = channelFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return channelFile.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".spg");
+    }
+
+    public static Writer create(Path file, double sampleRate, int segmentLength, int hop, int binCount,
+                                long frameCount) throws IOException {
+        return new Writer(file, sampleRate, segmentLength, hop, binCount, frameCount);
+    }
+
+    // Tiles covering a time range in seconds and a frequency range in Hz, at the finest level
+    // that shows the range in at most maxFrames frames
+    public static SpectrogramView query(Path channelFile, double fromSeconds, Double toSeconds, double fromHz,
+                                        Double toHz, int maxFrames) throws IOException {
+        try (FileChannel file = FileChannel.open(pathFor(channelFile), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(BASE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(file, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Unsupported spectrogram file for " + channelFile.getFileName());
+            }
+            double sampleRate = header.getDouble();
+            int segmentLength = header.getInt();
+            int hop = header.getInt();
+            int binCount = header.getInt();
+            int levels = header.getInt();
+
+            ByteBuffer entries = ByteBuffer.allocate(levels * LEVEL_ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(file, entries, BASE_HEADER_BYTES);
+            entries.flip();
+
+            double fromSample = fromSeconds * sampleRate;
+            double toSample = toSeconds == null ? Double.POSITIVE_INFINITY : toSeconds * sampleRate;
+
+            int level = 0;
+            long frameCount = 0;
+            long offset = 0;
+            long firstFrame = 0;
+            long lastFrame = -1;
+            for (int l = 0; l < levels; l++) {
+                level = l;
+                frameCount = entries.getLong();
+                offset = entries.getLong();
+                long frameHop = (long) hop << l;
+                double centre = firstCentre(segmentLength, hop, l);
+                firstFrame = Math.max(0, (long) Math.floor((fromSample - centre) / frameHop));
+                lastFrame = Math.min(frameCount - 1, (long) Math.ceil(Math.min((toSample - centre) / frameHop, frameCount)));
+                if (lastFrame - firstFrame + 1 <= maxFrames) break;
+            }
+
+            double binHz = sampleRate / segmentLength;
+            int firstBin = (int) Math.max(0, Math.floor(fromHz / binHz));
+            int lastBin = toHz == null ? binCount - 1 : (int) Math.min(binCount - 1, Math.ceil(toHz / binHz));
+
+            int rows = divideRoundingUp(binCount, BINS_PER_TILE);
+            double frameSeconds = ((long) hop << level) / sampleRate;
+            List<SpectrogramTile> tiles = new ArrayList<>();
+            if (firstFrame <= lastFrame && firstBin <= lastBin) {
+                ByteBuffer tile = ByteBuffer.allocate(TILE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (long column = firstFrame / FRAMES_PER_TILE; column <= lastFrame / FRAMES_PER_TILE; column++) {
+                    for (int row = firstBin / BINS_PER_TILE; row <= lastBin / BINS_PER_TILE; row++) {
+                        tile.clear();
+                        readFully(file, tile, offset + (column * rows + row) * TILE_BYTES);
+                        tile.flip();
+                        float dbOffset = tile.getFloat();
+                        float dbStep = tile.getFloat();
+                        byte[] cells = new byte[FRAMES_PER_TILE * BINS_PER_TILE];
+                        tile.get(cells);
+
+                        long tileFirstFrame = column * FRAMES_PER_TILE;
+                        int tileFirstBin = row * BINS_PER_TILE;
+                        tiles.add(new SpectrogramTile(level, column, row,
+                                (tileFirstFrame * ((long) hop << level) + firstCentre(segmentLength, hop, level)) / sampleRate,
+                                tileFirstBin * binHz,
+                                (int) Math.min(FRAMES_PER_TILE, frameCount - tileFirstFrame),
+                                Math.min(BINS_PER_TILE, binCount - tileFirstBin),
+                                dbOffset, dbStep, cells));
+                    }
+                }
+            }
+            return new SpectrogramView(level, frameCount, binCount, frameSeconds, binHz, FRAMES_PER_TILE,
+                    BINS_PER_TILE, tiles);
+        }
+    }
+
+    // Frame 0 of level 0 is centred on sample segmentLength / 2; a coarser frame on the middle
+    // of the frames it averages
+    private static double firstCentre(int segmentLength, int hop, int level) {
+        return segmentLength / 2.0 + ((1L << level) - 1) * hop / 2.0;
+    }
+
+    private static int divideRoundingUp(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("Spectrogram file is truncated");
+            position += read;
+        }
+    }
+
+    // Takes the STFT frames in order and writes finished tile columns as they fill up. Output
+    // goes to a temporary file that finish() moves into place, so readers never see a
+    // partial spectrogram; closing without finish() deletes it.
+    public static final class Writer implements Closeable {
+        private final Path target;
+        private final Path temporary;
+        private final FileChannel out;
+        private final int binCount;
+        private final int rows;
+        private final Level[] levels;
+        private final ByteBuffer header;
+        private boolean finished;
+
+        private Writer(Path target, double sampleRate, int segmentLength, int hop, int binCount, long frameCount)
+                throws IOException {
+            this.target = target;
+            // Unique per writer, so jobs computing the same channel concurrently do not share it
+            this.temporary = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName() + ".", ".tmp");
+            this.binCount = binCount;
+            this.rows = divideRoundingUp(binCount, BINS_PER_TILE);
+
+            List<Long> levelFrames = new ArrayList<>();
+            long frames = frameCount;
+            levelFrames.add(frames);
+            while (frames > FRAMES_PER_TILE) {
+                frames = (frames + 1) / 2;
+                levelFrames.add(frames);
+            }
+
+            int headerBytes = BASE_HEADER_BYTES + levelFrames.size() * LEVEL_ENTRY_BYTES;
+            header = ByteBuffer.allocate(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putDouble(sampleRate).putInt(segmentLength).putInt(hop)
+                    .putInt(binCount).putInt(levelFrames.size());
+
+            try {
+                out = FileChannel.open(temporary, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                Files.deleteIfExists(temporary);
+                throw e;
+            }
+            levels = new Level[levelFrames.size()];
+            long offset = headerBytes;
+            for (int l = 0; l < levels.length; l++) {
+                long columns = (levelFrames.get(l) + FRAMES_PER_TILE - 1) / FRAMES_PER_TILE;
+                header.putLong(levelFrames.get(l)).putLong(offset);
+                levels[l] = new Level(offset);
+                offset += columns * rows * TILE_BYTES;
+            }
+            header.flip();
+        }
+
+        public void addFrame(double[] density) throws IOException {
+            levels[0].add(density, 0);
+        }
+
+        public void finish() throws IOException {
+            // Partial pairs cascade upwards, finest level first
+            for (int l = 0; l < levels.length; l++) {
+                levels[l].flushPair(l);
+                levels[l].writeColumn();
+            }
+            while (header.hasRemaining()) {
+                out.write(header, header.position());
+            }
+            out.force(false);
+            out.close();
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                out.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        // One column of power values for the tiles being filled, plus the pending half of the
+        // next coarser frame
+        private final class Level {
+            private final double[] column = new double[FRAMES_PER_TILE * binCount];
+            private final double[] pair = new double[binCount];
+            private final ByteBuffer tile = ByteBuffer.allocate(TILE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            private final long offset;
+            private long columnIndex;
+            private int framesInColumn;
+            private boolean pairPending;
+
+            Level(long offset) {
+                this.offset = offset;
+            }
+
+            void add(double[] power, int level) throws IOException {
+                System.arraycopy(power, 0, column, framesInColumn * binCount, binCount);
+                if (++framesInColumn == FRAMES_PER_TILE) {
+                    writeColumn();
+                }
+                if (level + 1 < levels.length) {
+                    if (pairPending) {
+                        for (int k = 0; k < binCount; k++) {
+                            pair[k] = 0.5 * (pair[k] + power[k]);
+                        }
+                        pairPending = false;
+                        levels[level + 1].add(pair, level + 1);
+                    } else {
+                        System.arraycopy(power, 0, pair, 0, binCount);
+                        pairPending = true;
+                    }
+                }
+            }
+
+            void flushPair(int level) throws IOException {
+                if (pairPending) {
+                    pairPending = false;
+                    levels[level + 1].add(pair, level + 1);
+                }
+            }
+
+            void writeColumn() throws IOException {
+                if (framesInColumn == 0) return;
+                for (int row = 0; row < rows; row++) {
+                    writeTile(row);
+                }
+                columnIndex++;
+                framesInColumn = 0;
+            }
+
+            private void writeTile(int row) throws IOException {
+                int firstBin = row * BINS_PER_TILE;
+                int bins = Math.min(BINS_PER_TILE, binCount - firstBin);
+
+                double max = Double.NEGATIVE_INFINITY;
+                double min = Double.POSITIVE_INFINITY;
+                for (int f = 0; f < framesInColumn; f++) {
+                    for (int k = 0; k < bins; k++) {
+                        double power = column[f * binCount + firstBin + k];
+                        if (power > 0 && Double.isFinite(power)) {
+                            double db = 10 * Math.log10(power);
+                            max = Math.max(max, db);
+                            min = Math.min(min, db);
+                        }
+                    }
+                }
+                double floor = max == Double.NEGATIVE_INFINITY ? 0 : Math.max(min, max - DYNAMIC_RANGE_DB);
+                double step = max == Double.NEGATIVE_INFINITY ? 0 : (max - floor) / 254;
+
+                tile.clear();
+                tile.putFloat((float) floor).putFloat((float) step);
+                for (int f = 0; f < FRAMES_PER_TILE; f++) {
+                    for (int k = 0; k < BINS_PER_TILE; k++) {
+                        tile.put(f < framesInColumn && k < bins
+                                ? quantise(column[f * binCount + firstBin + k], floor, step)
+                                : 0);
+                    }
+                }
+                tile.flip();
+                long position = offset + (columnIndex * rows + row) * TILE_BYTES;
+                while (tile.hasRemaining()) {
+                    position += out.write(tile, position);
+                }
+            }
+        }
+
+        private static byte quantise(double power, double floor, double step) {
+            if (Double.isNaN(power)) return 0;
+            if (!(power > 0) || step == 0) return 1;
+            double db = 10 * Math.log10(power);
+            long q = 1 + Math.round((db - floor) / step);
+            return (byte) Math.max(1, Math.min(255, q));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.neuroviz.storage;
+
+import java.util.List;
+
+// The spectrogram tiles that cover one viewport, all from the same level
+public class SpectrogramView {
+    private final int level;
+    private final long frameCount;
+    private final int binCount;
+    private final double frameSeconds;
+    private final double binHz;
+    private final int framesPerTile;
+    private final int binsPerTile;
+    private final List<SpectrogramTile> tiles;
+
+    public SpectrogramView(int level, long frameCount, int binCount, double frameSeconds, double binHz,
+                           int framesPerTile, int binsPerTile, List<SpectrogramTile> tiles) {
+        this.level = level;
+        this.frameCount = frameCount;
+        this.binCount = binCount;
+        this.frameSeconds = frameSeconds;
+        this.binHz = binHz;
+        this.framesPerTile = framesPerTile;
+        this.binsPerTile = binsPerTile;
+        this.tiles = tiles;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    // Frames of the whole recording at this level
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public int getBinCount() {
+        return binCount;
+    }
+
+    public double getFrameSeconds() {
+        return frameSeconds;
+    }
+
+    public double getBinHz() {
+        return binHz;
+    }
+
+    public int getFramesPerTile() {
+        return framesPerTile;
+    }
+
+    public int getBinsPerTile() {
+        return binsPerTile;
+    }
+
+    public List<SpectrogramTile> getTiles() {
+        return tiles;
+    }
+}
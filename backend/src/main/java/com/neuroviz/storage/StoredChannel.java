@@ -0,0 +1,60 @@
+package com.neuroviz.storage;
+
+import java.nio.file.Path;
+
+public class StoredChannel {
+    private final String channelName;
+    private final Path path;
+    private final SampleFormat format;
+    private final ChannelCodec codec;
+    private final long sampleCount;
+    private final long sizeBytes;
+    private Double decodeMbPerSecond;
+
+    public StoredChannel(String channelName, Path path, SampleFormat format, ChannelCodec codec, long sampleCount, long sizeBytes) {
+        this.channelName = channelName;
+        this.path = path;
+        this.format = format;
+        this.codec = codec;
+        this.sampleCount = sampleCount;
+        this.sizeBytes = sizeBytes;
+    }
+
+    public String getChannelName() {
+        return channelName;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public SampleFormat getFormat() {
+        return format;
+    }
+
+    public ChannelCodec getCodec() {
+        return codec;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    // Packed size over stored size; 1.0 for uncompressed channels
+    public double getCompressionRatio() {
+        return sizeBytes == 0 ? 1.0 : (double) sampleCount * format.getBytesPerSample() / sizeBytes;
+    }
+
+    // Measured while the overview pass decodes the file, null for uncompressed channels
+    public Double getDecodeMbPerSecond() {
+        return decodeMbPerSecond;
+    }
+
+    public void setDecodeMbPerSecond(Double decodeMbPerSecond) {
+        this.decodeMbPerSecond = decodeMbPerSecond;
+    }
+}
@@ -0,0 +1,11 @@
+-- processing_jobs doubles as the work queue: workers on any node claim jobs with
+-- FOR UPDATE SKIP LOCKED and hold a lease they renew while the job runs, so jobs of a node
+-- that died are claimed again once the lease lapses
+ALTER TABLE processing_jobs ADD COLUMN claimed_by VARCHAR(100);
+ALTER TABLE processing_jobs ADD COLUMN lease_expires_at TIMESTAMP;
+ALTER TABLE processing_jobs ADD COLUMN heartbeat_at TIMESTAMP;
+ALTER TABLE processing_jobs ADD COLUMN attempts INTEGER NOT NULL DEFAULT 0;
+
+-- Only unfinished jobs are ever scanned for work
+CREATE INDEX idx_processing_jobs_queue ON processing_jobs(created_at)
+    WHERE status IN ('PENDING', 'RUNNING');
@@ -0,0 +1,5 @@
+-- Hash of a job's type and normalised parameters. A submission matching a pending, running or
+-- completed job of the same session is handed that job instead of starting another.
+ALTER TABLE processing_jobs ADD COLUMN dedup_key VARCHAR(64);
+
+CREATE INDEX idx_processing_jobs_dedup_key ON processing_jobs(session_id, dedup_key);
@@ -0,0 +1,4 @@
+-- A node claims a blob before compacting it, so nodes running compaction at the same time
+-- never work on one blob together; a claim that is not renewed lapses, like a job lease
+ALTER TABLE stored_blobs ADD COLUMN compaction_claimed_by VARCHAR(100);
+ALTER TABLE stored_blobs ADD COLUMN compaction_claim_expires_at TIMESTAMP;
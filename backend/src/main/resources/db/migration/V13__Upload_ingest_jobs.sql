@@ -0,0 +1,11 @@
+-- Completed uploads are read in by a job, so the request that completes them returns at once;
+-- the upload stays INGESTING until the job has created the session
+ALTER TABLE upload_sessions ADD COLUMN job_id BIGINT REFERENCES processing_jobs(id) ON DELETE SET NULL;
+
+ALTER TABLE upload_sessions DROP CONSTRAINT IF EXISTS upload_sessions_status_check;
+ALTER TABLE upload_sessions ADD CONSTRAINT upload_sessions_status_check
+    CHECK (status IN ('UPLOADING', 'INGESTING', 'COMPLETED'));
+
+ALTER TABLE processing_jobs DROP CONSTRAINT IF EXISTS processing_jobs_job_type_check;
+ALTER TABLE processing_jobs ADD CONSTRAINT processing_jobs_job_type_check
+    CHECK (job_type IN ('PREPROCESS', 'ANALYTICS', 'CLASSIFY', 'SPECTROGRAM', 'BATCH_ANALYTICS', 'UPLOAD_INGEST'));
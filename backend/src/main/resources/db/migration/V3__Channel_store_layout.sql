@@ -0,0 +1,7 @@
+-- Layout of the packed per-channel sample files written at upload time
+ALTER TABLE channel_data ADD COLUMN sample_format VARCHAR(20);
+ALTER TABLE channel_data ADD COLUMN sample_count BIGINT;
+
+-- Enum columns are stored by name (EnumType.STRING)
+ALTER TABLE sessions DROP CONSTRAINT IF EXISTS sessions_source_type_check;
+ALTER TABLE sessions ADD CONSTRAINT sessions_source_type_check CHECK (source_type IN ('UPLOAD', 'STREAM'));
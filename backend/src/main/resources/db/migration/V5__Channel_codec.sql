@@ -0,0 +1,4 @@
+-- Codec of each channel file; NULL rows predate codecs and are packed
+ALTER TABLE channel_data ADD COLUMN codec VARCHAR(20);
+ALTER TABLE channel_data ADD COLUMN compression_ratio DOUBLE PRECISION;
+ALTER TABLE channel_data ADD COLUMN decode_mb_per_sec DOUBLE PRECISION;
@@ -0,0 +1,12 @@
+-- Content-addressed recordings shared by sessions with identical uploads
+CREATE TABLE stored_blobs (
+    id BIGSERIAL PRIMARY KEY,
+    sha256 VARCHAR(64) NOT NULL UNIQUE,
+    size_bytes BIGINT NOT NULL,
+    file_path VARCHAR(500) NOT NULL,
+    ref_count INTEGER NOT NULL DEFAULT 0,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+ALTER TABLE sessions ADD COLUMN blob_id BIGINT REFERENCES stored_blobs(id);
+CREATE INDEX idx_sessions_blob_id ON sessions(blob_id);
@@ -0,0 +1,5 @@
+-- Access tracking for background compaction of recordings nobody has opened for a while
+ALTER TABLE stored_blobs ADD COLUMN last_accessed_at TIMESTAMP;
+ALTER TABLE stored_blobs ADD COLUMN compacted_at TIMESTAMP;
+
+CREATE INDEX idx_stored_blobs_compaction ON stored_blobs(compacted_at, last_accessed_at);
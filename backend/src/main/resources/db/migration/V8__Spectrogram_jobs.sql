@@ -0,0 +1,10 @@
+-- Spectrogram tile jobs. Job type and status are stored as the entity's enum names, which
+-- the lowercase checks of the initial schema never matched.
+ALTER TABLE processing_jobs DROP CONSTRAINT IF EXISTS processing_jobs_job_type_check;
+ALTER TABLE processing_jobs ADD CONSTRAINT processing_jobs_job_type_check
+    CHECK (job_type IN ('PREPROCESS', 'ANALYTICS', 'CLASSIFY', 'SPECTROGRAM'));
+
+ALTER TABLE processing_jobs DROP CONSTRAINT IF EXISTS processing_jobs_status_check;
+ALTER TABLE processing_jobs ADD CONSTRAINT processing_jobs_status_check
+    CHECK (status IN ('PENDING', 'RUNNING', 'COMPLETED', 'FAILED'));
+ALTER TABLE processing_jobs ALTER COLUMN status SET DEFAULT 'PENDING';
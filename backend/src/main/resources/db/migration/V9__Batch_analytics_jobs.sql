@@ -0,0 +1,9 @@
+-- Batch analytics jobs span many sessions of one user, so they belong to the user rather than
+-- to a session
+ALTER TABLE processing_jobs ALTER COLUMN session_id DROP NOT NULL;
+ALTER TABLE processing_jobs ADD COLUMN user_id BIGINT REFERENCES users(id) ON DELETE CASCADE;
+CREATE INDEX idx_processing_jobs_user_id ON processing_jobs(user_id);
+
+ALTER TABLE processing_jobs DROP CONSTRAINT IF EXISTS processing_jobs_job_type_check;
+ALTER TABLE processing_jobs ADD CONSTRAINT processing_jobs_job_type_check
+    CHECK (job_type IN ('PREPROCESS', 'ANALYTICS', 'CLASSIFY', 'SPECTROGRAM', 'BATCH_ANALYTICS'));
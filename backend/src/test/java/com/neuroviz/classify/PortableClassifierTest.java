@@ -0,0 +1,149 @@
+package com.neuroviz.classify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neuroviz.dsp.BandPower;
+import com.neuroviz.dsp.FrequencyBand;
+import com.neuroviz.dsp.PowerSpectrum;
+import com.neuroviz.dsp.WelchPsd;
+import com.neuroviz.dsp.WindowFeatures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Window features against the spectrum they summarize, and exported models against
+// scikit-learn's evaluation rules
+class PortableClassifierTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void windowFeaturesMatchDirectEvaluation() {
+        Random random = new Random(5);
+        double[] x = new double[1500];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = 20 * Math.sin(2 * Math.PI * 10 * i / 250.0) + 3 * random.nextGaussian() + 1;
+        }
+        WindowFeatures extractor = new WindowFeatures(500);
+        double[] features = new double[WindowFeatures.COUNT];
+        for (int offset : new int[] {0, 500, 1000}) {
+            extractor.extract(x, offset, 250, features);
+
+            double[] window = Arrays.copyOfRange(x, offset, offset + 500);
+            double mean = Arrays.stream(window).average().orElseThrow();
+            double variance = Arrays.stream(window).map(v -> (v - mean) * (v - mean)).sum() / window.length;
+            PowerSpectrum spectrum = WelchPsd.estimate(window, 250);
+            double[] density = spectrum.getDensity();
+            double psdMean = Arrays.stream(density).average().orElseThrow();
+            int peak = 0;
+            for (int k = 0; k < density.length; k++) {
+                if (density[k] > density[peak]) peak = k;
+            }
+
+            double[] expected = new double[WindowFeatures.COUNT];
+            expected[0] = mean;
+            expected[1] = Math.sqrt(variance);
+            expected[2] = variance;
+            expected[3] = Arrays.stream(window).max().orElseThrow() - Arrays.stream(window).min().orElseThrow();
+            expected[4] = Math.sqrt(Arrays.stream(window).map(v -> v * v).sum() / window.length);
+            FrequencyBand[] bands = FrequencyBand.values();
+            for (int b = 0; b < bands.length; b++) {
+                expected[5 + b] = BandPower.integrate(spectrum, bands[b].getLowHz(), bands[b].getHighHz());
+            }
+            expected[10] = psdMean;
+            expected[11] = Math.sqrt(Arrays.stream(density).map(v -> (v - psdMean) * (v - psdMean)).sum()
+                    / density.length);
+            expected[12] = spectrum.getFrequencies()[peak];
+            expected[13] = Arrays.stream(density).sum();
+            for (int f = 0; f < expected.length; f++) {
+                assertEquals(expected[f], features[f], 1e-9 * Math.max(1, Math.abs(expected[f])),
+                        WindowFeatures.NAMES.get(f));
+            }
+        }
+        assertEquals(10.0, features[12], 0.5);
+    }
+
+    @Test
+    void treeEnsembleAveragesLeafFractions() throws IOException {
+        // Tree 0 splits feature 0 at 0.5 (after scaling), tree 1 is a single leaf
+        String json = """
+                {"format": "neuroviz-classifier", "version": 1, "type": "tree_ensemble",
+                 "classes": ["a", "b"], "features": ["x", "y"], "window_seconds": 1.5,
+                 "scaler": {"mean": [1, 0], "scale": [2, 1]},
+                 "trees": [
+                   {"feature": [0, -2, -2], "threshold": [0.5, -2, -2], "left": [1, -1, -1],
+                    "right": [2, -1, -1], "value": [[5, 5], [9, 1], [0, 4]]},
+                   {"feature": [-2], "threshold": [-2], "left": [-1], "right": [-1], "value": [[0.5, 0.5]]}
+                 ]}
+                """;
+        PortableClassifier classifier = load(json);
+        assertEquals(1.5, classifier.getWindowSeconds());
+        assertEquals(2, ((TreeEnsembleModel) classifier.getModel()).getTreeCount());
+
+        double[] probabilities = new double[2];
+        // (2 - 1) / 2 = 0.5 goes left
+        classifier.predictProba(new double[] {2, 7}, probabilities);
+        assertArrayEquals(new double[] {(0.9 + 0.5) / 2, (0.1 + 0.5) / 2}, probabilities, 1e-12);
+        classifier.predictProba(new double[] {2.5, 7}, probabilities);
+        assertArrayEquals(new double[] {0.25, 0.75}, probabilities, 1e-12);
+    }
+
+    @Test
+    void linearModelsUseSoftmaxOrSigmoid() throws IOException {
+        PortableClassifier multinomial = load("""
+                {"format": "neuroviz-classifier", "version": 1, "type": "linear",
+                 "classes": ["a", "b", "c"], "features": ["x", "y"],
+                 "coefficients": [[1, 0], [0, 1], [-1, -1]], "intercepts": [0, 0.5, 0]}
+                """);
+        double[] probabilities = new double[3];
+        multinomial.predictProba(new double[] {1, 2}, probabilities);
+        double[] z = {1, 2.5, -3};
+        double sum = Math.exp(z[0]) + Math.exp(z[1]) + Math.exp(z[2]);
+        assertArrayEquals(new double[] {Math.exp(z[0]) / sum, Math.exp(z[1]) / sum, Math.exp(z[2]) / sum},
+                probabilities, 1e-12);
+
+        PortableClassifier binary = load("""
+                {"format": "neuroviz-classifier", "version": 1, "type": "linear",
+                 "classes": ["no", "yes"], "features": ["x"],
+                 "coefficients": [[2]], "intercepts": [-1]}
+                """);
+        double[] two = new double[2];
+        binary.predictProba(new double[] {1.5}, two);
+        double p = 1 / (1 + Math.exp(-2));
+        assertArrayEquals(new double[] {1 - p, p}, two, 1e-12);
+    }
+
+    @Test
+    void rejectsMalformedModels() {
+        assertThrows(IOException.class, () -> load("""
+                {"format": "other", "version": 1, "type": "linear", "classes": [], "features": []}
+                """));
+        // A child pointing back at its parent would never reach a leaf
+        assertThrows(IOException.class, () -> load("""
+                {"format": "neuroviz-classifier", "version": 1, "type": "tree_ensemble",
+                 "classes": ["a", "b"], "features": ["x"],
+                 "trees": [{"feature": [0, -2], "threshold": [0, -2], "left": [0, -1], "right": [1, -1],
+                            "value": [[1, 1], [1, 0]]}]}
+                """));
+        assertThrows(IOException.class, () -> load("""
+                {"format": "neuroviz-classifier", "version": 1, "type": "linear",
+                 "classes": ["a", "b", "c"], "features": ["x"], "coefficients": [[1]], "intercepts": [0]}
+                """));
+    }
+
+    private PortableClassifier load(String json) throws IOException {
+        Path file = Files.writeString(directory.resolve("model.json"), json);
+        return PortableClassifier.load(file, mapper);
+    }
+}
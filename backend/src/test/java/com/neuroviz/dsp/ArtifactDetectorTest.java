@@ -0,0 +1,142 @@
+package com.neuroviz.dsp;
+
+import com.neuroviz.storage.ArtifactIntervals;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArtifactDetectorTest {
+
+    @Test
+    void marksSpikesJumpsAndFlatStretchesAsIntervals() {
+        Random random = new Random(5);
+        double[] x = new double[5000];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = random.nextGaussian();
+        }
+        x[1000] = 40;                                   // amplitude
+        for (int i = 2000; i < 2300; i++) x[i] = 0.5;   // flatline
+        for (int i = 3000; i < 3003; i++) x[i] += 2.5;  // a jump in and out, within 3 sigma
+
+        RunningStats values = new RunningStats();
+        RunningStats gradients = new RunningStats();
+        for (int i = 0; i < x.length; i++) {
+            values.add(x[i]);
+            if (i > 0) gradients.add(x[i] - x[i - 1]);
+        }
+
+        ArtifactIntervals intervals = new ArtifactIntervals();
+        List<Long> clean = new ArrayList<>();
+        ArtifactDetector detector = ArtifactDetector.withStatistics(new ArtifactDetector.Settings(3, 1.5, 0.05, 100),
+                values.getMean(), values.getStd(), gradients.getStd(), listener(intervals, clean));
+        for (double value : x) {
+            detector.add(value);
+        }
+        detector.finish();
+
+        assertEquals(x.length, clean.size() + intervals.getSampleCount());
+        assertEquals(intervals.getSampleCount(), detector.getArtifactSamples());
+        assertCovered(intervals, 1000, 1001, ArtifactDetector.AMPLITUDE);
+        assertCovered(intervals, 2000, 2300, ArtifactDetector.FLATLINE);
+        assertCovered(intervals, 3000, 3001, ArtifactDetector.GRADIENT);
+        assertCovered(intervals, 3003, 3004, ArtifactDetector.GRADIENT);
+        for (long index : clean) {
+            assertTrue(index < 1000 || index > 1001 && index < 2000 || index >= 2300, "clean " + index);
+        }
+    }
+
+    @Test
+    void onlineDetectionWaitsForWarmupAndReleasesEverySampleOnce() {
+        Random random = new Random(9);
+        ArtifactIntervals intervals = new ArtifactIntervals();
+        List<Long> clean = new ArrayList<>();
+        ArtifactDetector detector = ArtifactDetector.online(new ArtifactDetector.Settings(4, 0, 0, 25), 500,
+                listener(intervals, clean));
+        for (int i = 0; i < 3000; i++) {
+            double value = random.nextGaussian();
+            if (i == 100 || i == 2000) value = 50;
+            detector.add(value);
+        }
+        detector.finish();
+
+        assertEquals(1, intervals.size());
+        assertEquals(2000, intervals.getStart(0));
+        assertEquals(2001, intervals.getEnd(0));
+        assertEquals(2999, clean.size());
+        for (int i = 1; i < clean.size(); i++) {
+            assertTrue(clean.get(i) > clean.get(i - 1));
+        }
+    }
+
+    @Test
+    void intervalsRoundTripAndSelectByRange(@TempDir Path directory) throws IOException {
+        ArtifactIntervals intervals = new ArtifactIntervals();
+        intervals.add(10, 20, ArtifactDetector.AMPLITUDE);
+        intervals.add(20, 25, ArtifactDetector.GRADIENT);
+        intervals.add(100, 150, ArtifactDetector.FLATLINE);
+        intervals.add(1_000_000_000_000L, 1_000_000_000_100L, ArtifactDetector.AMPLITUDE);
+        assertEquals(3, intervals.size());
+
+        Path file = ArtifactIntervals.pathFor(directory.resolve("00_Fz.f32"));
+        intervals.write(file);
+        ArtifactIntervals read = ArtifactIntervals.read(file);
+        assertEquals(3, read.size());
+        assertEquals(25, read.getEnd(0));
+        assertEquals(ArtifactDetector.AMPLITUDE | ArtifactDetector.GRADIENT, read.getFlags(0));
+        assertEquals(1_000_000_000_000L, read.getStart(2));
+
+        ArtifactIntervals selected = read.between(24, 101);
+        assertEquals(2, selected.size());
+        assertEquals(100, selected.getStart(1));
+        assertEquals(0, read.between(25, 100).size());
+    }
+
+    @Test
+    void mergedStatisticsMatchOnePass() {
+        Random random = new Random(1);
+        RunningStats all = new RunningStats();
+        RunningStats first = new RunningStats();
+        RunningStats second = new RunningStats();
+        for (int i = 0; i < 10_000; i++) {
+            double value = 100 + 10 * random.nextGaussian() + (i < 3000 ? 0 : 25);
+            all.add(value);
+            (i < 3000 ? first : second).add(value);
+        }
+        first.merge(second);
+        assertEquals(all.getCount(), first.getCount());
+        assertEquals(all.getMean(), first.getMean(), 1e-9);
+        assertEquals(all.getStd(), first.getStd(), 1e-9);
+        assertEquals(all.getRms(), first.getRms(), 1e-9);
+        assertEquals(all.getMin(), first.getMin());
+        assertEquals(all.getMax(), first.getMax());
+    }
+
+    private static void assertCovered(ArtifactIntervals intervals, long from, long to, int flag) {
+        ArtifactIntervals overlapping = intervals.between(from, to);
+        assertEquals(1, overlapping.size(), "[" + from + ", " + to + ")");
+        assertTrue(overlapping.getStart(0) <= from && overlapping.getEnd(0) >= to, "[" + from + ", " + to + ")");
+        assertTrue((overlapping.getFlags(0) & flag) != 0, "[" + from + ", " + to + ")");
+    }
+
+    private static ArtifactDetector.Listener listener(ArtifactIntervals intervals, List<Long> clean) {
+        return new ArtifactDetector.Listener() {
+            @Override
+            public void clean(long index, double value) {
+                clean.add(index);
+            }
+
+            @Override
+            public void artifact(long start, long end, int flags) {
+                intervals.add(start, end, flags);
+            }
+        };
+    }
+}
@@ -0,0 +1,184 @@
+package com.neuroviz.dsp;
+
+import com.neuroviz.storage.ChannelMatrix;
+import com.neuroviz.storage.ChannelReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Blocked, batched cross-spectra against per-pair evaluation with a direct DFT, and the
+// limits the measures must reach
+class ConnectivityTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void matricesMatchDirectEvaluation() throws IOException {
+        // Enough channels for several tiles, and segment counts that leave partial batches
+        // and an unpaired last segment
+        Random random = new Random(3);
+        int[][] cases = {{40, 5000, 256}, {3, 1700, 100}, {17, 777, 64}};
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int[] c : cases) {
+                int channels = c[0];
+                int n = c[1];
+                int segmentLength = c[2];
+                double[][] x = new double[channels][n];
+                double[] common = new double[n];
+                for (int i = 0; i < n; i++) {
+                    common[i] = Math.sin(2 * Math.PI * 10 * i / 250.0) + random.nextGaussian();
+                }
+                for (int ch = 0; ch < channels; ch++) {
+                    double mix = random.nextDouble();
+                    for (int i = 0; i < n; i++) {
+                        x[ch][i] = mix * common[i] + random.nextGaussian() + ch;
+                    }
+                }
+                ChannelReader[] readers = new ChannelReader[channels];
+                for (int ch = 0; ch < channels; ch++) {
+                    readers[ch] = new ArrayReader(x[ch]);
+                }
+                for (Connectivity.Measure measure : Connectivity.Measure.values()) {
+                    double[] matrix = Connectivity.compute(readers, n, 250, segmentLength, 4, 30, measure, executor);
+                    double[] expected = direct(x, n, 250, segmentLength, 4, 30, measure);
+                    assertArrayEquals(expected, matrix, 1e-9, measure + " of " + channels + " channels");
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void identicalAndOppositeChannelsReachTheLimits() throws IOException {
+        Random random = new Random(8);
+        double[] a = new double[4000];
+        double[] b = new double[4000];
+        double[] negated = new double[4000];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = random.nextGaussian();
+            b[i] = random.nextGaussian();
+            negated[i] = -3 * a[i] + 5;
+        }
+        ChannelReader[] readers = {new ArrayReader(a), new ArrayReader(negated), new ArrayReader(b)};
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            double[] coherence = Connectivity.compute(readers, 4000, 250, 256, 8, 13,
+                    Connectivity.Measure.COHERENCE, executor);
+            assertEquals(1, coherence[0], 1e-12);
+            assertEquals(1, coherence[1], 1e-9);
+            assertTrue(coherence[2] < 0.2, "independent noise is incoherent: " + coherence[2]);
+
+            double[] correlation = Connectivity.compute(readers, 4000, 250, 256, 8, 13,
+                    Connectivity.Measure.CORRELATION, executor);
+            assertEquals(-1, correlation[1], 1e-9);
+            assertEquals(correlation[1], correlation[3], 0);
+            assertTrue(Math.abs(correlation[2]) < 0.2, "independent noise is uncorrelated: " + correlation[2]);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void matrixRoundTrips() throws IOException {
+        double[] values = {1, 0.25, 0.25, 1};
+        Path file = ChannelMatrix.pathFor(directory.resolve("Fp1.f32"), "coherence-8.0-13.0-256");
+        new ChannelMatrix(List.of("Fp1", "Cz \u00e9"), values).write(file);
+        ChannelMatrix read = ChannelMatrix.read(file);
+        assertEquals(List.of("Fp1", "Cz \u00e9"), read.getChannels());
+        assertArrayEquals(values, read.getValues());
+        assertArrayEquals(new double[] {0.25, 1}, read.toRows()[1]);
+    }
+
+    // scipy.signal.coherence semantics pair by pair: Hann, mean removal, half overlap
+    private static double[] direct(double[][] x, int n, double fs, int segmentLength, double low, double high,
+                                   Connectivity.Measure measure) {
+        int channels = x.length;
+        int step = segmentLength - segmentLength / 2;
+        int segments = (n - segmentLength / 2) / step;
+        double[] window = Windows.hann(segmentLength);
+        int bins = segmentLength / 2 + 1;
+        double[][][] re = new double[channels][segments][bins];
+        double[][][] im = new double[channels][segments][bins];
+        for (int ch = 0; ch < channels; ch++) {
+            for (int s = 0; s < segments; s++) {
+                double mean = 0;
+                for (int i = 0; i < segmentLength; i++) mean += x[ch][s * step + i];
+                mean /= segmentLength;
+                for (int k = 0; k < bins; k++) {
+                    for (int i = 0; i < segmentLength; i++) {
+                        double v = (x[ch][s * step + i] - mean) * window[i];
+                        double phase = -2 * Math.PI * k * i / segmentLength;
+                        re[ch][s][k] += v * Math.cos(phase);
+                        im[ch][s][k] += v * Math.sin(phase);
+                    }
+                }
+            }
+        }
+        double[] result = new double[channels * channels];
+        for (int i = 0; i < channels; i++) {
+            for (int j = 0; j < channels; j++) {
+                double coherence = 0;
+                int count = 0;
+                double cross = 0, powerI = 0, powerJ = 0;
+                for (int k = 0; k < bins; k++) {
+                    double f = k * fs / segmentLength;
+                    if (f < low || f > high) continue;
+                    double sxyRe = 0, sxyIm = 0, sxx = 0, syy = 0;
+                    for (int s = 0; s < segments; s++) {
+                        sxyRe += re[i][s][k] * re[j][s][k] + im[i][s][k] * im[j][s][k];
+                        sxyIm += im[i][s][k] * re[j][s][k] - re[i][s][k] * im[j][s][k];
+                        sxx += re[i][s][k] * re[i][s][k] + im[i][s][k] * im[i][s][k];
+                        syy += re[j][s][k] * re[j][s][k] + im[j][s][k] * im[j][s][k];
+                    }
+                    coherence += (sxyRe * sxyRe + sxyIm * sxyIm) / (sxx * syy);
+                    count++;
+                    double weight = k == 0 || (segmentLength % 2 == 0 && k == segmentLength / 2) ? 1 : 2;
+                    cross += weight * sxyRe;
+                    powerI += weight * sxx;
+                    powerJ += weight * syy;
+                }
+                result[i * channels + j] = i == j ? 1
+                        : measure == Connectivity.Measure.COHERENCE ? coherence / count
+                        : cross / Math.sqrt(powerI * powerJ);
+            }
+        }
+        return result;
+    }
+
+    private static final class ArrayReader implements ChannelReader {
+        private final double[] samples;
+
+        ArrayReader(double[] samples) {
+            this.samples = samples;
+        }
+
+        @Override
+        public long getSampleCount() {
+            return samples.length;
+        }
+
+        @Override
+        public int read(long start, double[] dst, int off, int len) {
+            int count = (int) Math.max(0, Math.min(len, samples.length - start));
+            System.arraycopy(samples, (int) start, dst, off, count);
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
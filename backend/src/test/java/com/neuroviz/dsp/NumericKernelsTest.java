@@ -0,0 +1,63 @@
+package com.neuroviz.dsp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// The vector kernels against the scalar ones for lengths around every vector width, so the
+// remainder loops are covered as well as the full vectors
+class NumericKernelsTest {
+
+    private final NumericKernels scalar = new ScalarKernels();
+    private final NumericKernels vector = new VectorKernels();
+
+    @Test
+    void vectorKernelsMatchScalarKernels() {
+        Random random = new Random(11);
+        for (int length = 0; length <= 70; length++) {
+            double[] x = gaussian(random, length + 3);
+            double[] y = gaussian(random, length + 3);
+            double[] w = gaussian(random, length);
+            int off = length % 3;
+
+            assertEquals(scalar.sum(x, off, length), vector.sum(x, off, length), 1e-12, "sum, length " + length);
+            if (length > 0) {
+                assertEquals(scalar.trapezoid(x, y, off, off + length), vector.trapezoid(x, y, off, off + length),
+                        1e-12, "trapezoid, length " + length);
+            }
+
+            double[] expected = new double[length];
+            double[] actual = new double[length];
+            scalar.subtractMultiply(x, 0.25, w, expected, length);
+            vector.subtractMultiply(x, 0.25, w, actual, length);
+            for (int i = 0; i < length; i++) {
+                assertEquals(expected[i], actual[i], 1e-15, "subtractMultiply, length " + length);
+            }
+
+            double[] expectedAcc = w.clone();
+            double[] actualAcc = w.clone();
+            scalar.accumulateSquaredMagnitude(x, y, expectedAcc, length);
+            vector.accumulateSquaredMagnitude(x, y, actualAcc, length);
+            for (int i = 0; i < length; i++) {
+                assertEquals(expectedAcc[i], actualAcc[i], 1e-12, "accumulateSquaredMagnitude, length " + length);
+            }
+        }
+    }
+
+    @Test
+    void selectsVectorKernelsWhenTheModuleIsPresent() {
+        boolean module = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        String expected = module && vector.getLanes() > 1 ? "vector" : "scalar";
+        assertEquals(expected, NumericKernels.get().getName());
+    }
+
+    private static double[] gaussian(Random random, int length) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextGaussian();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,221 @@
+package com.neuroviz.dsp;
+
+import com.neuroviz.storage.ChannelCodec;
+import com.neuroviz.storage.ChannelReader;
+import com.neuroviz.storage.MappedChannelFile;
+import com.neuroviz.storage.SampleFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Filter designs against the defining properties of butter and iirnotch, and the streaming
+// preprocessor against the same filters applied to the whole signal in memory
+class SosFilterTest {
+
+    private static final double FS = 250;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void butterworthBandpassHasUnityGainInBandAndHalfPowerAtEdges() {
+        double[] sos = IirDesign.butterworthBandpass(4, 1, 40, FS);
+        // Centre of the band after the bilinear pre-warp
+        double centre = FS / Math.PI * Math.atan(Math.sqrt(Math.tan(Math.PI * 1 / FS) * Math.tan(Math.PI * 40 / FS)));
+
+        assertEquals(4, sos.length / 6);
+        assertEquals(1, magnitude(sos, centre), 1e-9);
+        assertEquals(Math.sqrt(0.5), magnitude(sos, 1), 1e-9);
+        assertEquals(Math.sqrt(0.5), magnitude(sos, 40), 1e-9);
+        assertEquals(0, magnitude(sos, 0), 1e-12);
+        assertEquals(0, magnitude(sos, FS / 2), 1e-12);
+    }
+
+    @Test
+    void notchRemovesItsFrequencyOnly() {
+        double[] sos = IirDesign.notch(50, 30, FS);
+        assertEquals(0, magnitude(sos, 50), 1e-12);
+        assertEquals(1, magnitude(sos, 0), 1e-12);
+        assertEquals(1, magnitude(sos, 10), 1e-2);
+        // Q = f0 / bandwidth at the half-power points
+        double half = 50.0 / 30 / 2;
+        assertEquals(Math.sqrt(0.5), magnitude(sos, 50 + half), 2e-3);
+    }
+
+    @Test
+    void blockwiseFilteringMatchesDifferenceEquations() {
+        double[] sos = IirDesign.cascade(IirDesign.butterworthBandpass(4, 1, 40, FS), IirDesign.notch(50, 30, FS));
+        double[] x = signal(5000, 1);
+        double[] expected = x.clone();
+        for (int s = 0; s < sos.length / 6; s++) {
+            expected = differenceEquation(sos, s, expected);
+        }
+
+        double[] actual = x.clone();
+        SosFilter filter = new SosFilter(sos);
+        int[] blocks = {1, 7, 500, 1, 2048, 2443};
+        int position = 0;
+        for (int block : blocks) {
+            filter.filter(actual, position, block);
+            position += block;
+        }
+        for (int i = 0; i < x.length; i++) {
+            assertEquals(expected[i], actual[i], 1e-9, "sample " + i);
+        }
+    }
+
+    @Test
+    void streamingFiltfiltMatchesInMemoryFiltfilt() throws IOException {
+        double[] sos = IirDesign.cascade(IirDesign.butterworthBandpass(4, 1, 40, FS), IirDesign.notch(50, 30, FS));
+        // Several blocks plus a partial one, and a signal shorter than the padding
+        for (int length : new int[] {2 * ChannelPreprocessor.BLOCK_SAMPLES + 1234, 20}) {
+            double[] x = signal(length, 2);
+            double[] expected = filtfilt(sos, x);
+            double[] actual = run(new ChannelPreprocessor(sos, true, null), x, "filtfilt-" + length);
+            for (int i = 0; i < length; i++) {
+                assertEquals(expected[i], actual[i], 1e-9 * (1 + Math.abs(expected[i])), "length " + length + ", sample " + i);
+            }
+        }
+        try (var files = Files.list(directory)) {
+            assertFalse(files.anyMatch(p -> p.toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    void artifactsAreInterpolatedBetweenCleanNeighbours() throws IOException {
+        double[] x = new double[1000];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = i % 2 == 0 ? 1 : -1;
+        }
+        x[0] = 500;
+        x[400] = 500;
+        x[401] = -500;
+
+        double[] actual = run(new ChannelPreprocessor(new double[0], true, new ArtifactDetector.Settings(3, 0, 0, 1)), x, "artifacts");
+        assertEquals(x[1], actual[0]);
+        // Between x[399] = -1 and x[402] = 1
+        assertEquals(-1 + 2 / 3.0, actual[400], 1e-12);
+        assertEquals(-1 + 4 / 3.0, actual[401], 1e-12);
+        assertEquals(x[500], actual[500]);
+    }
+
+    @Test
+    void anOutputThatExistsAlreadyIsLeftAlone() throws IOException {
+        // Another attempt's file: the preprocessor refuses it and must not delete it on the way out
+        double[] x = new double[1000];
+        Path input = directory.resolve("existing.in");
+        Path output = Files.write(directory.resolve("existing.out"), new byte[] {1, 2, 3});
+        try (MappedChannelFile file = MappedChannelFile.create(input, SampleFormat.FLOAT64, x.length)) {
+            file.write(0, x, 0, x.length);
+        }
+        ChannelPreprocessor preprocessor = new ChannelPreprocessor(IirDesign.notch(50, 30, FS), true, null);
+        try (ChannelReader reader = ChannelReader.open(input, SampleFormat.FLOAT64, ChannelCodec.NONE)) {
+            assertThrows(FileAlreadyExistsException.class, () -> preprocessor.process(reader, output, SampleFormat.FLOAT64));
+        }
+        assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(output));
+    }
+
+    private double[] run(ChannelPreprocessor preprocessor, double[] x, String name) throws IOException {
+        Path input = directory.resolve(name + ".in");
+        Path output = directory.resolve(name + ".out");
+        try (MappedChannelFile file = MappedChannelFile.create(input, SampleFormat.FLOAT64, x.length)) {
+            file.write(0, x, 0, x.length);
+        }
+        try (ChannelReader reader = ChannelReader.open(input, SampleFormat.FLOAT64, ChannelCodec.NONE)) {
+            ChannelPreprocessor.Result result = preprocessor.process(reader, output, SampleFormat.FLOAT64);
+            assertEquals(x.length, result.getSampleCount());
+        }
+        double[] y = new double[x.length];
+        try (ChannelReader reader = ChannelReader.open(output, SampleFormat.FLOAT64, ChannelCodec.NONE)) {
+            reader.read(0, y, 0, y.length);
+        }
+        return y;
+    }
+
+    // scipy.signal.filtfilt(b, a, x) on the whole padded signal at once
+    private static double[] filtfilt(double[] sos, double[] x) {
+        int n = x.length;
+        int pad = Math.min(3 * (2 * sos.length / 6 + 1), n - 1);
+        double[] ext = new double[n + 2 * pad];
+        for (int i = 0; i < pad; i++) {
+            ext[i] = 2 * x[0] - x[pad - i];
+            ext[n + pad + i] = 2 * x[n - 1] - x[n - 2 - i];
+        }
+        System.arraycopy(x, 0, ext, pad, n);
+
+        SosFilter filter = new SosFilter(sos);
+        filter.setSteadyState(ext[0]);
+        filter.filter(ext, 0, ext.length);
+        reverse(ext);
+        filter.setSteadyState(ext[0]);
+        filter.filter(ext, 0, ext.length);
+        reverse(ext);
+
+        double[] y = new double[n];
+        System.arraycopy(ext, pad, y, 0, n);
+        return y;
+    }
+
+    private static double[] differenceEquation(double[] sos, int section, double[] x) {
+        double b0 = sos[6 * section], b1 = sos[6 * section + 1], b2 = sos[6 * section + 2];
+        double a1 = sos[6 * section + 4], a2 = sos[6 * section + 5];
+        double[] y = new double[x.length];
+        for (int i = 0; i < x.length; i++) {
+            double v = b0 * x[i];
+            if (i >= 1) v += b1 * x[i - 1] - a1 * y[i - 1];
+            if (i >= 2) v += b2 * x[i - 2] - a2 * y[i - 2];
+            y[i] = v;
+        }
+        return y;
+    }
+
+    private static double magnitude(double[] sos, double hz) {
+        double w = 2 * Math.PI * hz / FS;
+        double re = 1;
+        double im = 0;
+        for (int s = 0; s < sos.length / 6; s++) {
+            double[] num = response(sos[6 * s], sos[6 * s + 1], sos[6 * s + 2], w);
+            double[] den = response(sos[6 * s + 3], sos[6 * s + 4], sos[6 * s + 5], w);
+            double d = den[0] * den[0] + den[1] * den[1];
+            double qr = (num[0] * den[0] + num[1] * den[1]) / d;
+            double qi = (num[1] * den[0] - num[0] * den[1]) / d;
+            double r = re * qr - im * qi;
+            im = re * qi + im * qr;
+            re = r;
+        }
+        return Math.hypot(re, im);
+    }
+
+    // c0 + c1 e^-iw + c2 e^-2iw
+    private static double[] response(double c0, double c1, double c2, double w) {
+        return new double[] {c0 + c1 * Math.cos(w) + c2 * Math.cos(2 * w), -c1 * Math.sin(w) - c2 * Math.sin(2 * w)};
+    }
+
+    private static double[] signal(int length, long seed) {
+        Random random = new Random(seed);
+        double[] x = new double[length];
+        for (int i = 0; i < length; i++) {
+            x[i] = 30 * Math.sin(2 * Math.PI * 10 * i / FS) + 10 * Math.sin(2 * Math.PI * 50 * i / FS)
+                    + 5 * random.nextGaussian() + 100;
+        }
+        return x;
+    }
+
+    private static void reverse(double[] values) {
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            double t = values[i];
+            values[i] = values[j];
+            values[j] = t;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.neuroviz.dsp;
+
+import com.neuroviz.storage.ChannelReader;
+import com.neuroviz.storage.SpectrogramTile;
+import com.neuroviz.storage.SpectrogramTiles;
+import com.neuroviz.storage.SpectrogramView;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Parity with scipy.signal.spectrogram evaluated term by term, and the tile file round trip
+class StftTest {
+
+    @Test
+    void framesMatchDirectEvaluation() throws IOException {
+        Random random = new Random(11);
+        int[][] cases = {{1000, 64, 32}, {1000, 64, 64}, {777, 100, 37}, {300, 256, 128}, {256, 256, 1}};
+        for (int[] c : cases) {
+            double[] x = new double[c[0]];
+            for (int i = 0; i < x.length; i++) {
+                x[i] = 10 * Math.sin(2 * Math.PI * 12.5 * i / 250.0) + random.nextGaussian() + 2;
+            }
+            int segmentLength = c[1];
+            int hop = c[2];
+            List<double[]> frames = new ArrayList<>();
+            Stft.compute(new ArrayReader(x), 250, segmentLength, hop, (frame, density) -> {
+                assertEquals(frames.size(), frame);
+                frames.add(density.clone());
+            });
+
+            assertEquals(Stft.frameCount(x.length, segmentLength, hop), frames.size());
+            for (int f = 0; f < frames.size(); f++) {
+                double[] expected = directFrame(x, f * hop, 250, segmentLength);
+                for (int k = 0; k < expected.length; k++) {
+                    assertEquals(expected[k], frames.get(f)[k], 1e-9 * Math.max(1, Math.abs(expected[k])),
+                            "n=" + segmentLength + ", hop=" + hop + ", frame=" + f + ", bin=" + k);
+                }
+            }
+        }
+    }
+
+    @Test
+    void tilesRoundTripWithinOneQuantisationStep(@TempDir Path directory) throws IOException {
+        double fs = 256;
+        double[] x = new double[256 * 600];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = 40 * Math.sin(2 * Math.PI * 32 * i / fs);
+        }
+        int segmentLength = 256;
+        int hop = 128;
+        Path channelFile = directory.resolve("00_ch1.f32");
+        long frameCount = Stft.frameCount(x.length, segmentLength, hop);
+        List<double[]> frames = new ArrayList<>();
+        try (SpectrogramTiles.Writer writer = SpectrogramTiles.create(SpectrogramTiles.pathFor(channelFile), fs,
+                segmentLength, hop, Stft.binCount(segmentLength), frameCount)) {
+            Stft.compute(new ArrayReader(x), fs, segmentLength, hop, (frame, density) -> {
+                frames.add(density.clone());
+                writer.addFrame(density);
+            });
+            writer.finish();
+        }
+        assertFalse(Files.exists(directory.resolve("00_ch1.spg.tmp")));
+
+        // 10 s to 20 s, 0 to 60 Hz at full resolution: one tile column, the first frequency row
+        SpectrogramView view = SpectrogramTiles.query(channelFile, 10, 20.0, 0, 60.0, 1000);
+        assertEquals(0, view.getLevel());
+        assertEquals(frameCount, view.getFrameCount());
+        assertEquals(1, view.getTiles().size());
+        SpectrogramTile tile = view.getTiles().get(0);
+        assertEquals(64, tile.getBins());
+        for (int f = 0; f < tile.getFrames(); f++) {
+            for (int k = 0; k < tile.getBins(); k++) {
+                int q = tile.getCells()[f * SpectrogramTiles.BINS_PER_TILE + k] & 0xFF;
+                assertTrue(q > 0);
+                double expected = 10 * Math.log10(frames.get(f)[k]);
+                double decoded = tile.getDbOffset() + (q - 1) * tile.getDbStep();
+                if (expected > tile.getDbOffset()) {
+                    assertEquals(expected, decoded, tile.getDbStep() / 2 + 1e-3, "frame=" + f + ", bin=" + k);
+                }
+            }
+            assertEquals(255, tile.getCells()[f * SpectrogramTiles.BINS_PER_TILE + 32] & 0xFF);
+        }
+
+        // The whole recording in 200 frames comes from a coarser level that fits in one column
+        SpectrogramView overview = SpectrogramTiles.query(channelFile, 0, null, 0, null, 200);
+        assertTrue(overview.getLevel() > 0);
+        assertEquals(3, overview.getTiles().size());
+        assertTrue(overview.getFrameCount() <= 200);
+    }
+
+    // One frame of scipy.signal.spectrogram(x, fs, nperseg, noverlap), density scaling
+    private static double[] directFrame(double[] x, int start, double fs, int nperseg) {
+        double[] window = new double[nperseg];
+        double windowPower = 0;
+        double mean = 0;
+        for (int i = 0; i < nperseg; i++) {
+            window[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / nperseg);
+            windowPower += window[i] * window[i];
+            mean += x[start + i];
+        }
+        mean /= nperseg;
+
+        int bins = nperseg / 2 + 1;
+        double[] density = new double[bins];
+        for (int k = 0; k < bins; k++) {
+            double re = 0;
+            double im = 0;
+            for (int j = 0; j < nperseg; j++) {
+                double v = (x[start + j] - mean) * window[j];
+                double phase = -2 * Math.PI * ((long) j * k % nperseg) / nperseg;
+                re += v * Math.cos(phase);
+                im += v * Math.sin(phase);
+            }
+            density[k] = (re * re + im * im) / (fs * windowPower);
+        }
+        int last = nperseg % 2 == 0 ? bins - 1 : bins;
+        for (int k = 1; k < last; k++) {
+            density[k] *= 2;
+        }
+        return density;
+    }
+
+    private static final class ArrayReader implements ChannelReader {
+        private final double[] samples;
+
+        ArrayReader(double[] samples) {
+            this.samples = samples;
+        }
+
+        @Override
+        public long getSampleCount() {
+            return samples.length;
+        }
+
+        @Override
+        public int read(long start, double[] dst, int off, int len) {
+            int count = (int) Math.max(0, Math.min(len, samples.length - start));
+            System.arraycopy(samples, (int) start, dst, off, count);
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
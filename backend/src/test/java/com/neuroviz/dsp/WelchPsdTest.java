@@ -0,0 +1,155 @@
+package com.neuroviz.dsp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Parity with the processing service's scipy.signal.welch call, checked against a direct
+// evaluation of the same definition and against closed-form values for a pure sine
+class WelchPsdTest {
+
+    @Test
+    void fftMatchesDirectDft() {
+        Random random = new Random(42);
+        int[] sizes = {1, 2, 3, 4, 5, 7, 8, 12, 15, 16, 30, 49, 60, 97, 100, 243, 250, 256, 500, 625, 1000, 1021, 1024};
+        for (int n : sizes) {
+            double[] re = new double[n];
+            double[] im = new double[n];
+            for (int i = 0; i < n; i++) {
+                re[i] = random.nextGaussian();
+                im[i] = random.nextGaussian();
+            }
+            Fft fft = Fft.forSize(n);
+            double[] outRe = new double[n];
+            double[] outIm = new double[n];
+            fft.forward(re, im, outRe, outIm, new double[fft.scratchLength()]);
+
+            for (int k = 0; k < n; k++) {
+                double sumRe = 0;
+                double sumIm = 0;
+                for (int j = 0; j < n; j++) {
+                    double phase = -2 * Math.PI * ((long) j * k % n) / n;
+                    sumRe += re[j] * Math.cos(phase) - im[j] * Math.sin(phase);
+                    sumIm += re[j] * Math.sin(phase) + im[j] * Math.cos(phase);
+                }
+                assertEquals(sumRe, outRe[k], 1e-9 * n, "re, n=" + n + ", k=" + k);
+                assertEquals(sumIm, outIm[k], 1e-9 * n, "im, n=" + n + ", k=" + k);
+            }
+        }
+    }
+
+    @Test
+    void welchMatchesDirectEvaluation() {
+        Random random = new Random(7);
+        int[] lengths = {37, 1000, 4099, 10_000};
+        for (int length : lengths) {
+            double[] x = new double[length];
+            for (int i = 0; i < length; i++) {
+                x[i] = 20 * Math.sin(2 * Math.PI * 10.3 * i / 250.0) + 5 * random.nextGaussian() + 3;
+            }
+            PowerSpectrum spectrum = WelchPsd.estimate(x, 250);
+            double[] expected = directWelch(x, 250, Math.min(1024, length / 4), Math.min(512, length / 8));
+
+            assertEquals(expected.length, spectrum.getDensity().length);
+            for (int k = 0; k < expected.length; k++) {
+                assertEquals(expected[k], spectrum.getDensity()[k], 1e-9 * Math.max(1, Math.abs(expected[k])),
+                        "length=" + length + ", bin=" + k);
+                assertEquals(k * 250.0 / spectrum.getSegmentLength(), spectrum.getFrequencies()[k], 1e-12);
+            }
+        }
+    }
+
+    @Test
+    void sineOnBinHasClosedFormDensity() {
+        double fs = 256;
+        double amplitude = 40;
+        double[] x = new double[8192];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = amplitude * Math.sin(2 * Math.PI * 10 * i / fs);
+        }
+        PowerSpectrum spectrum = WelchPsd.estimate(x, fs);
+        int n = spectrum.getSegmentLength();
+        int bin = 10 * n / (int) fs;
+
+        // Periodic Hann: |X[k0]| = A n / 4 and |X[k0 +- 1]| = A n / 8, sum of w^2 = 3n / 8
+        double peak = amplitude * amplitude * n / (3 * fs);
+        assertEquals(1024, n);
+        assertEquals(15, spectrum.getSegmentCount());
+        assertEquals(peak, spectrum.getDensity()[bin], peak * 1e-9);
+        assertEquals(peak / 4, spectrum.getDensity()[bin - 1], peak * 1e-9);
+        assertEquals(peak / 4, spectrum.getDensity()[bin + 1], peak * 1e-9);
+        assertEquals(0, spectrum.getDensity()[bin + 5], peak * 1e-9);
+    }
+
+    @Test
+    void bandPowerIntegratesBinsInsideTheBandLikeTrapz() {
+        // Bins at 0, 2, 4, ... 10 Hz; alpha (8-13 Hz) covers 8 and 10, delta (0.5-4) covers 2 and 4
+        double[] frequencies = {0, 2, 4, 6, 8, 10};
+        double[] density = {9, 1, 3, 5, 2, 4};
+        PowerSpectrum spectrum = new PowerSpectrum(frequencies, density, 10, 1);
+
+        assertEquals(2 * (2 + 4) / 2.0, BandPower.integrate(spectrum, 8, 13), 1e-12);
+        assertEquals(2 * (1 + 3) / 2.0, BandPower.integrate(spectrum, 0.5, 4), 1e-12);
+        assertEquals(0, BandPower.integrate(spectrum, 30, 45));
+        assertEquals(0, BandPower.integrate(spectrum, 5, 7)); // a single bin has no area
+        assertEquals(FrequencyBand.values().length, BandPower.of(spectrum).size());
+    }
+
+    @Test
+    void resultsDoNotDependOnEarlierCallsOnTheThread() {
+        Random random = new Random(3);
+        double[] small = new double[999];
+        double[] large = new double[20_000];
+        for (int i = 0; i < small.length; i++) small[i] = random.nextGaussian();
+        for (int i = 0; i < large.length; i++) large[i] = random.nextGaussian();
+
+        double[] first = WelchPsd.estimate(small, 100).getDensity();
+        WelchPsd.estimate(large, 100);
+        assertArrayEquals(first, WelchPsd.estimate(small, 100).getDensity());
+    }
+
+    @Test
+    void rejectsChannelsTooShortForOneSegment() {
+        assertThrows(IllegalArgumentException.class, () -> WelchPsd.estimate(new double[3], 250));
+    }
+
+    // scipy.signal.welch(x, fs, nperseg, noverlap) evaluated term by term
+    private static double[] directWelch(double[] x, double fs, int nperseg, int noverlap) {
+        int step = nperseg - noverlap;
+        int segments = (x.length - noverlap) / step;
+        double[] window = new double[nperseg];
+        double windowPower = 0;
+        for (int i = 0; i < nperseg; i++) {
+            window[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / nperseg);
+            windowPower += window[i] * window[i];
+        }
+
+        int bins = nperseg / 2 + 1;
+        double[] psd = new double[bins];
+        for (int s = 0; s < segments; s++) {
+            double mean = 0;
+            for (int i = 0; i < nperseg; i++) mean += x[s * step + i];
+            mean /= nperseg;
+            for (int k = 0; k < bins; k++) {
+                double re = 0;
+                double im = 0;
+                for (int j = 0; j < nperseg; j++) {
+                    double v = (x[s * step + j] - mean) * window[j];
+                    double phase = -2 * Math.PI * ((long) j * k % nperseg) / nperseg;
+                    re += v * Math.cos(phase);
+                    im += v * Math.sin(phase);
+                }
+                psd[k] += (re * re + im * im) / (fs * windowPower) / segments;
+            }
+        }
+        int last = nperseg % 2 == 0 ? bins - 1 : bins;
+        for (int k = 1; k < last; k++) {
+            psd[k] *= 2;
+        }
+        return psd;
+    }
+}
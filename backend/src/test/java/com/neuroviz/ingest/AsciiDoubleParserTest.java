@@ -0,0 +1,76 @@
+package com.neuroviz.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsciiDoubleParserTest {
+
+    @Test
+    void matchesParseDoubleBitForBit() {
+        Random random = new Random(29);
+        String[] fixed = {
+                "0", "-0", "+0", "0.0", "-0.0", "1", "-1", "123456789", "9007199254740993", "3.141592653589793",
+                "0.1", "0.30000000000000004", ".5", "5.", "-.25", "1e0", "1e22", "1e23", "1e-22", "1e-23", "2.5E+10",
+                "-7.25e-5", "1.7976931348623157e308", "1e309", "4.9e-324", "2e-324", "1e-400", "123456789012345678901234",
+                "0.000000000000000000000000123", "00012.5000", "1234567890123456789e-10", "6.02214076e23"
+        };
+        for (String text : fixed) {
+            assertParsesLikeJava(text);
+        }
+
+        for (int i = 0; i < 20000; i++) {
+            double value = switch (i % 4) {
+                case 0 -> random.nextGaussian() * 1000;
+                case 1 -> Double.longBitsToDouble(random.nextLong() & 0x7FFFFFFFFFFFFFFFL);
+                case 2 -> random.nextInt(1_000_000) - 500_000;
+                default -> random.nextDouble() * Math.pow(10, random.nextInt(60) - 30);
+            };
+            if (Double.isNaN(value) || Double.isInfinite(value)) continue;
+            assertParsesLikeJava(Double.toString(value));
+            assertParsesLikeJava(String.format(Locale.ROOT, "%.6f", value));
+            assertParsesLikeJava(String.format(Locale.ROOT, "%.17e", value));
+        }
+    }
+
+    @Test
+    void parsesExponents() {
+        assertEquals(1000.0, parse("1e3"));
+        assertEquals(1000.0, parse("1E+3"));
+        assertEquals(-0.0025, parse("-2.5e-3"));
+        assertEquals(0.05, parse(".5e-1"));
+        assertEquals(Double.POSITIVE_INFINITY, parse("1e400"));
+        assertEquals(Double.NEGATIVE_INFINITY, parse("-1e400"));
+        assertEquals(0.0, parse("1e-400"));
+    }
+
+    @Test
+    void malformedInputIsNaN() {
+        String[] malformed = {"", "-", "+", ".", "-.", "e5", "1e", "1e+", "1.2.3", "1..2", "--1", "1-", "abc", "1a",
+                "0x10", "1 2", " 1", "1 ", "1,5", "\"1\""};
+        for (String text : malformed) {
+            assertTrue(Double.isNaN(parse(text)), "'" + text + "' should not parse");
+        }
+    }
+
+    @Test
+    void parsesWithinALargerBuffer() {
+        byte[] buffer = "xx-12.5e1yy".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(-125.0, AsciiDoubleParser.parse(buffer, 2, 7));
+        assertTrue(Double.isNaN(AsciiDoubleParser.parse(buffer, 2, 0)));
+    }
+
+    private static void assertParsesLikeJava(String text) {
+        assertEquals(Double.doubleToRawLongBits(Double.parseDouble(text)), Double.doubleToRawLongBits(parse(text)), text);
+    }
+
+    private static double parse(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        return AsciiDoubleParser.parse(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,183 @@
+package com.neuroviz.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvStreamScannerTest {
+
+    @Test
+    void stripsQuotesAndByteOrderMarkFromTheHeader() throws IOException {
+        Columns columns = new Columns();
+        CsvScanResult result = scan("\uFEFF\"Fp1\", Fp2 ,\"C3\"\n1,2,3\n", columns);
+
+        assertEquals(List.of("Fp1", "Fp2", "C3"), result.getChannelNames());
+        assertEquals(List.of("Fp1", "Fp2", "C3"), columns.names);
+        assertEquals(1L, result.getSampleCount());
+        assertFalse(result.hasParseErrors());
+    }
+
+    @Test
+    void parsesQuotedAndPaddedCells() throws IOException {
+        Columns columns = new Columns();
+        CsvScanResult result = scan("a,b,c\n\"1.5\", -2 ,\t\" 3e2 \"\r\n", columns);
+
+        assertArrayEquals(new double[] {1.5, -2, 300}, columns.row(0));
+        assertFalse(result.hasParseErrors());
+    }
+
+    @Test
+    void crlfAndLfLineEndingsParseAlike() throws IOException {
+        Columns lf = new Columns();
+        Columns crlf = new Columns();
+        CsvScanResult unix = scan("a,b\n1,2\n3,4\n", lf);
+        CsvScanResult windows = scan("a,b\r\n1,2\r\n3,4\r\n", crlf);
+
+        assertEquals(List.of("a", "b"), windows.getChannelNames());
+        assertEquals(unix.getSampleCount(), windows.getSampleCount());
+        assertEquals(lf.values, crlf.values);
+        assertFalse(windows.hasParseErrors());
+    }
+
+    @Test
+    void padsShortRowsAndIgnoresExtraCells() throws IOException {
+        Columns columns = new Columns();
+        CsvScanResult result = scan("a,b,c\n1\n1,2,3,4,5\n\n   \r\n7,8\n", columns);
+
+        // Blank and whitespace-only lines are not rows
+        assertEquals(3L, result.getSampleCount());
+        assertArrayEquals(new double[] {1, Double.NaN, Double.NaN}, columns.row(0));
+        assertArrayEquals(new double[] {1, 2, 3}, columns.row(1));
+        assertArrayEquals(new double[] {7, 8, Double.NaN}, columns.row(2));
+        assertEquals(Map.of("b", 1L, "c", 2L), result.getParseErrorsByChannel());
+    }
+
+    @Test
+    void parsesExponents() throws IOException {
+        Columns columns = new Columns();
+        CsvScanResult result = scan("a,b,c,d,e\n1e3,-2.5E-3,4E+2,.5e1,1e400\n", columns);
+
+        assertArrayEquals(new double[] {1e3, -2.5e-3, 4e2, 5, Double.POSITIVE_INFINITY}, columns.row(0));
+        assertFalse(result.hasParseErrors());
+    }
+
+    @Test
+    void countsUnparseableCellsPerChannel() throws IOException {
+        Columns columns = new Columns();
+        String longCell = "1".repeat(100);
+        CsvScanResult result = scan("a,b,c\nx,1 2,3\n1e,,\"4\"\n-,5," + longCell + "\n1.2.3,6,7", columns);
+
+        assertEquals(4L, result.getSampleCount());
+        assertArrayEquals(new double[] {Double.NaN, Double.NaN, 3}, columns.row(0));
+        assertArrayEquals(new double[] {Double.NaN, Double.NaN, 4}, columns.row(1));
+        assertArrayEquals(new double[] {Double.NaN, 5, Double.NaN}, columns.row(2));
+        assertArrayEquals(new double[] {Double.NaN, 6, 7}, columns.row(3));
+        assertEquals(4L, result.getParseErrors(0));
+        assertEquals(2L, result.getParseErrors(1));
+        assertEquals(1L, result.getParseErrors(2));
+    }
+
+    @Test
+    void rowsSplitAcrossReadsParseLikeOneRead() throws IOException {
+        Random random = new Random(23);
+        StringBuilder csv = new StringBuilder("x,y,z\r\n");
+        for (int r = 0; r < 20000; r++) {
+            csv.append(String.format(Locale.ROOT, "%.5f,%d,%.3e\r\n", random.nextGaussian(), r, random.nextDouble() * 1e6));
+        }
+        byte[] bytes = csv.toString().getBytes(StandardCharsets.US_ASCII);
+
+        Columns whole = new Columns();
+        CsvScanResult expected = new CsvStreamScanner().scan(new ByteArrayInputStream(bytes), null, whole);
+
+        Columns trickled = new Columns();
+        ByteArrayOutputStream tee = new ByteArrayOutputStream();
+        CsvScanResult actual = new CsvStreamScanner().scan(new TrickleStream(bytes, random), tee, trickled);
+
+        assertEquals(20000L, expected.getSampleCount());
+        assertEquals(expected.getSampleCount(), actual.getSampleCount());
+        assertEquals(whole.values, trickled.values);
+        assertFalse(actual.hasParseErrors());
+        assertEquals((long) bytes.length, actual.getBytesRead());
+        assertArrayEquals(bytes, tee.toByteArray());
+    }
+
+    @Test
+    void headerOnlyAndEmptyInputHaveNoRows() throws IOException {
+        CsvScanResult headerOnly = scan("a,b", new Columns());
+        assertEquals(List.of("a", "b"), headerOnly.getChannelNames());
+        assertEquals(0L, headerOnly.getSampleCount());
+
+        CsvScanResult empty = scan("", new Columns());
+        assertTrue(empty.getChannelNames().isEmpty());
+        assertEquals(0L, empty.getSampleCount());
+    }
+
+    private static CsvScanResult scan(String csv, Columns columns) throws IOException {
+        return new CsvStreamScanner().scan(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), null, columns);
+    }
+
+    // Values row-major, as the scanner delivers them
+    private static final class Columns implements SampleSink {
+        private List<String> names;
+        private final List<Double> values = new ArrayList<>();
+
+        @Override
+        public void start(List<String> channelNames) {
+            names = channelNames;
+        }
+
+        @Override
+        public void accept(int channel, double value) {
+            assertEquals((long) values.size() % names.size(), (long) channel);
+            values.add(value);
+        }
+
+        double[] row(int index) {
+            double[] row = new double[names.size()];
+            for (int c = 0; c < row.length; c++) {
+                row[c] = values.get(index * row.length + c);
+            }
+            return row;
+        }
+    }
+
+    // Hands out a few bytes per read, so rows and cells straddle reads
+    private static final class TrickleStream extends InputStream {
+        private final byte[] bytes;
+        private final Random random;
+        private int position;
+
+        TrickleStream(byte[] bytes, Random random) {
+            this.bytes = bytes;
+            this.random = random;
+        }
+
+        @Override
+        public int read() {
+            return position < bytes.length ? bytes[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position == bytes.length) return -1;
+            int n = Math.min(Math.min(len, 1 + random.nextInt(random.nextBoolean() ? 16 : 100_000)), bytes.length - position);
+            System.arraycopy(bytes, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+}
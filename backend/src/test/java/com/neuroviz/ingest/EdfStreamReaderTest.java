@@ -0,0 +1,245 @@
+package com.neuroviz.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EdfStreamReaderTest {
+
+    @Test
+    void readsEdfSignalsAtTheirOwnRates() throws IOException {
+        Signal fp1 = new Signal("Fp1", -100, 100, -32768, 32767, 4);
+        Signal ecg = new Signal("ECG", 0, 10, 0, 1000, 2);
+        int[][] digital = {
+                {-32768, -1, 0, 32767, 5, 6, 7, 8, 100, 200, 300, 400},
+                {0, 1000, 500, 250, 1, 2}
+        };
+        byte[] file = edf(false, "", 3, 0.5, List.of(fp1, ecg), digital);
+
+        Collected collected = new Collected();
+        ByteArrayOutputStream tee = new ByteArrayOutputStream();
+        EdfScanResult result = read(file, tee, collected);
+
+        assertEquals(List.of("Fp1", "ECG"), collected.names);
+        assertEquals(3L, result.getRecordsRead());
+        assertEquals((long) file.length, result.getBytesRead());
+        assertArrayEquals(file, tee.toByteArray());
+        assertEquals(1.5, result.getDurationSeconds(), 1e-12);
+        assertEquals(8.0, result.getHeader().getSampleRate(result.getDataSignals().get(0)), 0.0);
+        assertEquals(4.0, result.getHeader().getSampleRate(result.getDataSignals().get(1)), 0.0);
+        assertEquals(12L, result.getHeader().getRecordBytes());
+
+        assertArrayEquals(physical(fp1, digital[0]), collected.channel(0), 1e-9);
+        assertArrayEquals(physical(ecg, digital[1]), collected.channel(1), 1e-9);
+        assertEquals(-100.0, collected.channel(0)[0], 1e-9);
+        assertEquals(100.0, collected.channel(0)[3], 1e-9);
+        assertEquals(10.0, collected.channel(1)[1], 1e-9);
+    }
+
+    @Test
+    void skipsEdfPlusAnnotationSignals() throws IOException {
+        Signal c3 = new Signal("C3", -3276.8, 3276.7, -32768, 32767, 2);
+        Signal annotations = new Signal("EDF Annotations", -1, 1, -32768, 32767, 3);
+        Signal c4 = new Signal("C4", -3276.8, 3276.7, -32768, 32767, 2);
+        int[][] digital = {
+                {10, 20, 30, 40},
+                // TAL bytes read as shorts; they must not reach any channel
+                {0x2B30, 0x1400, 0x0014, 0x2B31, 0x1400, 0x0014},
+                {-10, -20, -30, -40}
+        };
+        byte[] file = edf(false, "EDF+C", 2, 1, List.of(c3, annotations, c4), digital);
+
+        Collected collected = new Collected();
+        EdfScanResult result = read(file, null, collected);
+
+        assertEquals(List.of("C3", "C4"), collected.names);
+        assertEquals(2, result.getDataSignals().size());
+        assertEquals("EDF+C", result.getHeader().getReserved());
+        assertEquals(2L, result.getRecordsRead());
+        assertArrayEquals(new double[] {1, 2, 3, 4}, collected.channel(0), 1e-9);
+        assertArrayEquals(new double[] {-1, -2, -3, -4}, collected.channel(1), 1e-9);
+    }
+
+    @Test
+    void signExtendsBdfSamples() throws IOException {
+        Signal signal = new Signal("EXG1", -8388608, 8388607, -8388608, 8388607, 6);
+        int[][] digital = {{-8388608, -1, 0, 1, 8388607, -65536}};
+        byte[] file = edf(true, "24BIT", 1, 1, List.of(signal), digital);
+
+        Collected collected = new Collected();
+        EdfScanResult result = read(file, null, collected);
+
+        assertTrue(result.getHeader().isBdf());
+        assertEquals(3, result.getHeader().getBytesPerSample());
+        assertArrayEquals(new double[] {-8388608, -1, 0, 1, 8388607, -65536}, collected.channel(0), 1e-6);
+    }
+
+    @Test
+    void dropsATruncatedLastRecordButKeepsItsBytes() throws IOException {
+        Signal signal = new Signal("Cz", -32768, 32767, -32768, 32767, 4);
+        int[][] digital = {{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12}};
+        byte[] complete = edf(false, "", 3, 1, List.of(signal), digital);
+        // Half of the third record is missing
+        byte[] file = Arrays.copyOf(complete, complete.length - 4);
+
+        Collected collected = new Collected();
+        ByteArrayOutputStream tee = new ByteArrayOutputStream();
+        EdfScanResult result = read(file, tee, collected);
+
+        assertEquals(3L, result.getHeader().getRecordCount());
+        assertEquals(2L, result.getRecordsRead());
+        assertArrayEquals(new double[] {1, 2, 3, 4, 5, 6, 7, 8}, collected.channel(0), 1e-9);
+        assertEquals((long) file.length, result.getBytesRead());
+        assertArrayEquals(file, tee.toByteArray());
+    }
+
+    @Test
+    void readsUntilTheEndWhileTheRecordCountIsUnknown() throws IOException {
+        Signal signal = new Signal("O1", -32768, 32767, -32768, 32767, 2);
+        byte[] file = edf(false, "", -1, 1, List.of(signal), new int[][] {{1, 2, 3, 4, 5, 6}});
+
+        Collected collected = new Collected();
+        EdfScanResult result = read(file, null, collected);
+
+        assertEquals(-1L, result.getHeader().getRecordCount());
+        assertEquals(3L, result.getRecordsRead());
+        assertArrayEquals(new double[] {1, 2, 3, 4, 5, 6}, collected.channel(0), 1e-9);
+    }
+
+    @Test
+    void rejectsRecordSizesThatWouldWrapAround() {
+        // 2^31 + 1000 samples of 2 bytes: an int total wraps around to 2000 bytes
+        List<Signal> signals = new ArrayList<>();
+        for (int s = 0; s < 21; s++) {
+            signals.add(new Signal("S" + s, -1, 1, -32768, 32767, 99_999_999));
+        }
+        signals.add(new Signal("S21", -1, 1, -32768, 32767, 47_484_669));
+        byte[] header = edf(false, "", 1, 1, signals, null);
+
+        IOException e = assertThrows(IOException.class, () -> read(header, null, new Collected()));
+        assertTrue(e.getMessage().contains("4294969296"), e.getMessage());
+    }
+
+    @Test
+    void rejectsFilesThatAreNotEdf() {
+        byte[] file = edf(false, "", 1, 1, List.of(new Signal("A", -1, 1, -1, 1, 1)), new int[][] {{0}});
+        byte[] truncatedHeader = Arrays.copyOf(file, 100);
+        assertThrows(IOException.class, () -> read(truncatedHeader, null, null));
+        file[0] = 'X';
+        assertThrows(IOException.class, () -> read(file, null, null));
+    }
+
+    private static EdfScanResult read(byte[] file, ByteArrayOutputStream tee, SampleSink sink) throws IOException {
+        return new EdfStreamReader().read(Channels.newChannel(new ByteArrayInputStream(file)),
+                tee == null ? null : Channels.newChannel(tee), sink);
+    }
+
+    private static double[] physical(Signal signal, int[] digital) {
+        double scale = (signal.physicalMax - signal.physicalMin) / (signal.digitalMax - signal.digitalMin);
+        double[] values = new double[digital.length];
+        for (int i = 0; i < digital.length; i++) {
+            values[i] = signal.physicalMin + scale * (digital[i] - signal.digitalMin);
+        }
+        return values;
+    }
+
+    private record Signal(String label, double physicalMin, double physicalMax, int digitalMin, int digitalMax,
+                          int samplesPerRecord) {}
+
+    // Header plus data records; digital holds every sample of each signal in record order
+    private static byte[] edf(boolean bdf, String reserved, int recordCount, double recordDuration,
+                              List<Signal> signals, int[][] digital) {
+        int count = signals.size();
+        StringBuilder header = new StringBuilder();
+        header.append(field(bdf ? "XBIOSEMI" : "0", 8));
+        header.append(field("X X X X", 80));
+        header.append(field("Startdate X X X X", 80));
+        header.append(field("01.02.03", 8));
+        header.append(field("04.05.06", 8));
+        header.append(field(String.valueOf(256 + 256 * count), 8));
+        header.append(field(reserved, 44));
+        header.append(field(String.valueOf(recordCount), 8));
+        header.append(field(number(recordDuration), 8));
+        header.append(field(String.valueOf(count), 4));
+        for (Signal s : signals) header.append(field(s.label, 16));
+        for (Signal s : signals) header.append(field("AgAgCl electrode", 80));
+        for (Signal s : signals) header.append(field("uV", 8));
+        for (Signal s : signals) header.append(field(number(s.physicalMin), 8));
+        for (Signal s : signals) header.append(field(number(s.physicalMax), 8));
+        for (Signal s : signals) header.append(field(String.valueOf(s.digitalMin), 8));
+        for (Signal s : signals) header.append(field(String.valueOf(s.digitalMax), 8));
+        for (Signal s : signals) header.append(field("HP:0.1Hz", 80));
+        for (Signal s : signals) header.append(field(String.valueOf(s.samplesPerRecord), 8));
+        for (Signal s : signals) header.append(field("", 32));
+
+        byte[] headerBytes = header.toString().getBytes(StandardCharsets.US_ASCII);
+        if (bdf) headerBytes[0] = (byte) 0xFF;
+        if (digital == null) return headerBytes;
+
+        int bytesPerSample = bdf ? 3 : 2;
+        int records = digital[0].length / signals.get(0).samplesPerRecord;
+        ByteBuffer data = ByteBuffer.allocate(headerBytes.length + records * bytesPerSample
+                * signals.stream().mapToInt(Signal::samplesPerRecord).sum()).order(ByteOrder.LITTLE_ENDIAN);
+        data.put(headerBytes);
+        for (int r = 0; r < records; r++) {
+            for (int s = 0; s < count; s++) {
+                int samples = signals.get(s).samplesPerRecord;
+                for (int i = 0; i < samples; i++) {
+                    int value = digital[s][r * samples + i];
+                    if (bdf) {
+                        data.put((byte) value).put((byte) (value >> 8)).put((byte) (value >> 16));
+                    } else {
+                        data.putShort((short) value);
+                    }
+                }
+            }
+        }
+        return data.array();
+    }
+
+    private static String number(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    private static String field(String value, int length) {
+        assertFalse(value.length() > length, value);
+        return value + " ".repeat(length - value.length());
+    }
+
+    private static final class Collected implements SampleSink {
+        private List<String> names;
+        private final List<List<Double>> channels = new ArrayList<>();
+
+        @Override
+        public void start(List<String> channelNames) {
+            names = channelNames;
+            for (int i = 0; i < channelNames.size(); i++) {
+                channels.add(new ArrayList<>());
+            }
+        }
+
+        @Override
+        public void accept(int channel, double value) {
+            channels.get(channel).add(value);
+        }
+
+        double[] channel(int index) {
+            return channels.get(index).stream().mapToDouble(Double::doubleValue).toArray();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.neuroviz.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// The parallel parser must deliver exactly what the serial scanner does, whatever the ranges
+class ParallelCsvParserTest {
+
+    private static final String[] CELLS = {
+            "1", "-2.5", "+3.25", "1e3", "-4.5E-2", ".5", "7.", "", "abc", "\"8\"", " 9 ", "1 2", "-", "1e", "nan",
+            "123456789012345678901234", "0.000000000000000000001", "1.7976931348623157e308", "4.9e-324"
+    };
+
+    @Test
+    void parsesLikeTheSerialScanner(@TempDir Path directory) throws IOException {
+        Random random = new Random(17);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int trial = 0; trial < 60; trial++) {
+                Path file = directory.resolve("trial" + trial + ".csv");
+                Files.write(file, randomCsv(random).getBytes(StandardCharsets.UTF_8));
+
+                Parsed serial = new Parsed();
+                CsvScanResult expected;
+                try (InputStream in = Files.newInputStream(file)) {
+                    expected = new CsvStreamScanner().scan(in, null, serial);
+                }
+
+                // Ranges from a few bytes, splitting nearly every row, up to the whole file
+                for (int rangeBytes : new int[] {1, 7, 64, 1000, 1 << 20}) {
+                    Parsed parallel = new Parsed();
+                    CsvScanResult actual = new ParallelCsvParser(pool, rangeBytes).parse(file, parallel);
+
+                    String context = "trial " + trial + ", ranges of " + rangeBytes + " bytes";
+                    assertEquals(expected.getChannelNames(), actual.getChannelNames(), context);
+                    assertEquals(expected.getSampleCount(), actual.getSampleCount(), context);
+                    for (int c = 0; c < expected.getChannelCount(); c++) {
+                        assertEquals(expected.getParseErrors(c), actual.getParseErrors(c), context + ", channel " + c);
+                    }
+                    assertEquals(serial.channelNames, parallel.channelNames, context);
+                    assertEquals(serial.channels, parallel.channels, context);
+                    assertEquals(serial.bits, parallel.bits, context);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void filesWithoutDataRowsParseLikeTheSerialScanner(@TempDir Path directory) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            String[] contents = {"", "a,b", "a,b\n", "\uFEFFa,b\r\n\r\n", "a,b\n\n  \n"};
+            for (int i = 0; i < contents.length; i++) {
+                Path file = directory.resolve("empty" + i + ".csv");
+                Files.write(file, contents[i].getBytes(StandardCharsets.UTF_8));
+                CsvScanResult expected;
+                try (InputStream in = Files.newInputStream(file)) {
+                    expected = new CsvStreamScanner().scan(in, null);
+                }
+                CsvScanResult actual = new ParallelCsvParser(pool, 1).parse(file, null);
+                assertEquals(expected.getChannelNames(), actual.getChannelNames(), "file " + i);
+                assertEquals(0L, actual.getSampleCount(), "file " + i);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String randomCsv(Random random) {
+        StringBuilder csv = new StringBuilder();
+        String newline = random.nextBoolean() ? "\n" : "\r\n";
+        if (random.nextInt(3) == 0) csv.append('\uFEFF');
+
+        int channels = 1 + random.nextInt(6);
+        for (int c = 0; c < channels; c++) {
+            if (c > 0) csv.append(',');
+            csv.append(random.nextBoolean() ? "ch" + (c + 1) : "\"Ch " + (c + 1) + "\"");
+        }
+        csv.append(newline);
+
+        int rows = random.nextInt(200);
+        for (int r = 0; r < rows; r++) {
+            switch (random.nextInt(20)) {
+                case 0 -> csv.append(newline); // blank line
+                case 1 -> csv.append("  ").append(newline); // whitespace only
+                default -> {
+                    // Ragged: short rows, and rows with cells beyond the header
+                    int cells = Math.max(1, channels + random.nextInt(5) - 2);
+                    for (int c = 0; c < cells; c++) {
+                        if (c > 0) csv.append(',');
+                        csv.append(random.nextInt(4) == 0
+                                ? CELLS[random.nextInt(CELLS.length)]
+                                : String.format(Locale.ROOT, "%.4f", random.nextGaussian() * 100));
+                    }
+                    csv.append(newline);
+                }
+            }
+        }
+        // Sometimes no newline after the last row
+        if (rows > 0 && random.nextBoolean()) csv.setLength(csv.length() - newline.length());
+        return csv.toString();
+    }
+
+    private static final class Parsed implements SampleSink {
+        private List<String> channelNames;
+        private final List<Integer> channels = new ArrayList<>();
+        private final List<Long> bits = new ArrayList<>();
+
+        @Override
+        public void start(List<String> channelNames) {
+            this.channelNames = channelNames;
+        }
+
+        @Override
+        public void accept(int channel, double value) {
+            channels.add(channel);
+            bits.add(Double.doubleToRawLongBits(value));
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.neuroviz.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnalyticsCacheTest {
+
+    private final AtomicInteger computations = new AtomicInteger();
+
+    @Test
+    void aHitReturnsTheCachedResponse() {
+        AnalyticsCache cache = cache(10, 1 << 20);
+        Map<String, Object> first = cache.get(1L, "psd", "Fp1", "", counting("a"));
+        Map<String, Object> second = cache.get(1L, "psd", "Fp1", "", counting("b"));
+        assertSame(first, second);
+        assertEquals(1, computations.get());
+
+        // Any part of the key that differs is a miss
+        cache.get(2L, "psd", "Fp1", "", counting("c"));
+        cache.get(1L, "bandpower", "Fp1", "", counting("d"));
+        cache.get(1L, "psd", "Fp2", "", counting("e"));
+        cache.get(1L, "psd", "Fp1", "nperseg=512", counting("f"));
+        cache.get(1L, "psd", null, "", counting("g"));
+        assertEquals(6, computations.get());
+        assertEquals(6, cache.getEntryCount());
+    }
+
+    @Test
+    void theLeastRecentlyUsedEntryIsEvictedFirst() {
+        AnalyticsCache cache = cache(2, 1 << 20);
+        cache.get(1L, "psd", "a", "", counting("a"));
+        cache.get(1L, "psd", "b", "", counting("b"));
+        // Touches a, so b is now the eldest
+        cache.get(1L, "psd", "a", "", counting("a"));
+        cache.get(1L, "psd", "c", "", counting("c"));
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(3, computations.get());
+
+        cache.get(1L, "psd", "a", "", counting("a"));
+        assertEquals(3, computations.get());
+        cache.get(1L, "psd", "b", "", counting("b"));
+        assertEquals(4, computations.get());
+    }
+
+    @Test
+    void theSizeBoundEvictsAndSkipsResponsesTooLargeToKeep() {
+        long entrySize = AnalyticsCache.estimateBytes(response(100));
+        AnalyticsCache cache = cache(100, 2 * entrySize + entrySize / 2);
+        cache.get(1L, "psd", "a", "", () -> response(100));
+        cache.get(1L, "psd", "b", "", () -> response(100));
+        assertEquals(2 * entrySize, cache.getSizeBytes());
+        cache.get(1L, "psd", "c", "", () -> response(100));
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(2 * entrySize, cache.getSizeBytes());
+
+        // Returned, but not kept, and nothing is evicted for it
+        Map<String, Object> huge = cache.get(1L, "psd", "d", "", () -> response(10_000));
+        assertEquals(10_000, ((double[]) huge.get("values")).length);
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(2 * entrySize, cache.getSizeBytes());
+    }
+
+    @Test
+    void invalidatingASessionDropsOnlyItsEntries() {
+        AnalyticsCache cache = cache(10, 1 << 20);
+        cache.get(1L, "psd", "Fp1", "", counting("old"));
+        cache.get(2L, "psd", "Fp1", "", counting("other"));
+
+        cache.invalidateSession(1L);
+        assertEquals(1, cache.getEntryCount());
+        assertEquals("new", cache.get(1L, "psd", "Fp1", "", counting("new")).get("value"));
+        assertEquals("other", cache.get(2L, "psd", "Fp1", "", counting("unused")).get("value"));
+        assertEquals(3, computations.get());
+    }
+
+    @Test
+    void aResultComputedAcrossAnInvalidationIsNotKept() throws Exception {
+        AnalyticsCache cache = cache(10, 1 << 20);
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<Map<String, Object>> stale = CompletableFuture.supplyAsync(() -> cache.get(1L, "psd", "Fp1", "", () -> {
+            computing.countDown();
+            await(finish);
+            return Map.of("value", "stale");
+        }));
+        assertTrue(computing.await(5, TimeUnit.SECONDS));
+
+        // A preprocess job completed while the old data was being analysed
+        cache.invalidateSession(1L);
+        finish.countDown();
+        assertEquals("stale", stale.get(5, TimeUnit.SECONDS).get("value"));
+        assertEquals(0, cache.getEntryCount());
+        assertEquals("fresh", cache.get(1L, "psd", "Fp1", "", counting("fresh")).get("value"));
+    }
+
+    @Test
+    void aRemovedSessionIsForgottenWithItsVersion() {
+        AnalyticsCache cache = cache(10, 1 << 20);
+        cache.invalidateSession(1L);
+        cache.get(1L, "psd", "Fp1", "", counting("a"));
+        cache.get(1L, "bandpower", "Fp1", "", counting("b"));
+
+        cache.removeSession(1L);
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getSizeBytes());
+        cache.get(1L, "psd", "Fp1", "", counting("c"));
+        assertEquals(3, computations.get());
+    }
+
+    @Test
+    void concurrentMissesShareOneComputation() throws Exception {
+        AnalyticsCache cache = cache(10, 1 << 20);
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Supplier<Map<String, Object>> slow = () -> {
+            computations.incrementAndGet();
+            computing.countDown();
+            await(finish);
+            return Map.of("value", "shared");
+        };
+
+        CompletableFuture<Map<String, Object>> first = CompletableFuture.supplyAsync(() -> cache.get(1L, "psd", "Fp1", "", slow));
+        assertTrue(computing.await(5, TimeUnit.SECONDS));
+        List<CompletableFuture<Map<String, Object>>> waiting = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            waiting.add(CompletableFuture.supplyAsync(() -> cache.get(1L, "psd", "Fp1", "", slow)));
+        }
+        // Those that come too late to wait find the cached entry, which is the same map
+        Thread.sleep(100);
+
+        finish.countDown();
+        Map<String, Object> value = first.get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<Map<String, Object>> other : waiting) {
+            assertSame(value, other.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, computations.get());
+    }
+
+    @Test
+    void aFailedComputationIsPassedOnAndNotCached() throws Exception {
+        AnalyticsCache cache = cache(10, 1 << 20);
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        CompletableFuture<Map<String, Object>> first = CompletableFuture.supplyAsync(() -> cache.get(1L, "psd", "Fp1", "", () -> {
+            computing.countDown();
+            await(fail);
+            throw new IllegalStateException("channel unreadable");
+        }));
+        assertTrue(computing.await(5, TimeUnit.SECONDS));
+        // Fails as well should it come too late to wait for the first
+        CompletableFuture<Map<String, Object>> waiter = CompletableFuture.supplyAsync(() -> cache.get(1L, "psd", "Fp1", "", () -> {
+            throw new IllegalStateException("channel unreadable");
+        }));
+        Thread.sleep(100);
+
+        fail.countDown();
+        assertTrue(assertThrows(Exception.class, () -> first.get(5, TimeUnit.SECONDS)).getCause() instanceof IllegalStateException);
+        assertTrue(assertThrows(Exception.class, () -> waiter.get(5, TimeUnit.SECONDS)).getCause() instanceof IllegalStateException);
+
+        // The next request computes again
+        assertEquals("retried", cache.get(1L, "psd", "Fp1", "", counting("retried")).get("value"));
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    private AnalyticsCache cache(int maxEntries, long maxBytes) {
+        return new AnalyticsCache(new SimpleMeterRegistry(), maxEntries, maxBytes);
+    }
+
+    private Supplier<Map<String, Object>> counting(String value) {
+        return () -> {
+            computations.incrementAndGet();
+            return Map.of("value", value);
+        };
+    }
+
+    private static Map<String, Object> response(int values) {
+        return Map.of("values", new double[values]);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
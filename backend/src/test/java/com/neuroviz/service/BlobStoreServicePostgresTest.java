@@ -0,0 +1,34 @@
+package com.neuroviz.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+// The tests of BlobStoreServiceTest on Postgres, migrated by Flyway, where uploads of the same
+// content are serialised with advisory locks that hold across instances. Skipped without Docker.
+// Not in the test profile, which runs on H2 with the schema generated from the entities.
+@SpringBootTest
+@ActiveProfiles(value = "postgres-test", inheritProfiles = false)
+@Testcontainers(disabledWithoutDocker = true)
+class BlobStoreServicePostgresTest extends BlobStoreServiceTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("app.compaction.enabled", () -> "false");
+    }
+
+    @Override
+    protected boolean expectsAdvisoryLocks() {
+        return true;
+    }
+}
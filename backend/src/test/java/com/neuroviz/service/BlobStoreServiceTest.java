@@ -0,0 +1,269 @@
+package com.neuroviz.service;
+
+import com.neuroviz.dto.SessionDto;
+import com.neuroviz.dto.request.CreateSessionRequest;
+import com.neuroviz.entity.StoredBlob;
+import com.neuroviz.entity.User;
+import com.neuroviz.repository.SessionRepository;
+import com.neuroviz.repository.StoredBlobRepository;
+import com.neuroviz.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Reference counting of stored recordings through the sessions that use them, and the lock that
+// serialises uploads and removals of the same content. Runs on H2, where the lock is held in this
+// JVM; BlobStoreServicePostgresTest runs the same tests with Postgres advisory locks.
+@SpringBootTest
+@ActiveProfiles("test")
+class BlobStoreServiceTest {
+
+    protected static final Path STORAGE = createStorage();
+
+    @Autowired
+    protected SessionService sessionService;
+
+    @Autowired
+    protected BlobStoreService blobStoreService;
+
+    @Autowired
+    protected StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    protected SessionRepository sessionRepository;
+
+    @Autowired
+    protected UserRepository userRepository;
+
+    @Autowired
+    protected PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) {
+        registry.add("app.storage.path", STORAGE::toString);
+        registry.add("app.storage.raw-path", () -> STORAGE.resolve("raw").toString());
+        registry.add("app.storage.processed-path", () -> STORAGE.resolve("processed").toString());
+    }
+
+    protected boolean expectsAdvisoryLocks() {
+        return false;
+    }
+
+    @Test
+    void locksMatchTheDatabase() {
+        assertEquals(expectsAdvisoryLocks(), blobStoreService.usesAdvisoryLocks());
+    }
+
+    @Test
+    void identicalUploadsShareOneBlob() throws IOException {
+        Path file = recording(2);
+        SessionDto first = upload(file, newUser());
+        SessionDto second = upload(file, newUser());
+
+        StoredBlob blob = blobOf(file).orElseThrow();
+        assertEquals(2, blob.getRefCount());
+        assertTrue(Files.exists(Paths.get(blob.getFilePath())));
+        assertTrue(Files.isDirectory(channelDirectory(blob)));
+        assertEquals(2, first.getChannelData().size());
+        assertEquals(2, second.getChannelData().size());
+    }
+
+    @Test
+    void deletingOneOfTwoSessionsKeepsTheSharedFiles() throws IOException {
+        Path file = recording(3);
+        Long firstUser = newUser();
+        Long secondUser = newUser();
+        SessionDto first = upload(file, firstUser);
+        SessionDto second = upload(file, secondUser);
+        StoredBlob blob = blobOf(file).orElseThrow();
+
+        sessionService.deleteSession(first.getId(), firstUser);
+        assertEquals(1, blobOf(file).orElseThrow().getRefCount());
+        assertTrue(Files.exists(Paths.get(blob.getFilePath())));
+        assertTrue(Files.isDirectory(channelDirectory(blob)));
+        assertEquals(2, sessionService.getSessionById(second.getId(), secondUser).getChannelData().size());
+
+        // The last session takes the row and, once committed, the files with it
+        sessionService.deleteSession(second.getId(), secondUser);
+        assertTrue(blobOf(file).isEmpty());
+        assertFalse(Files.exists(Paths.get(blob.getFilePath())));
+        assertFalse(Files.exists(channelDirectory(blob)));
+    }
+
+    @Test
+    void contentUploadedAgainAfterItsLastSessionIsStoredAgain() throws IOException {
+        Path file = recording(4);
+        Long userId = newUser();
+        SessionDto first = upload(file, userId);
+        sessionService.deleteSession(first.getId(), userId);
+        assertTrue(blobOf(file).isEmpty());
+
+        SessionDto again = upload(file, userId);
+        StoredBlob blob = blobOf(file).orElseThrow();
+        assertEquals(1, blob.getRefCount());
+        assertTrue(Files.exists(Paths.get(blob.getFilePath())));
+        assertTrue(Files.isDirectory(channelDirectory(blob)));
+        assertEquals(2, again.getChannelData().size());
+    }
+
+    @Test
+    void aBlobWithoutReferencesIsReclaimedByTheNextUpload() throws IOException {
+        Path file = recording(5);
+        SessionDto orphaned = upload(file, newUser());
+        // As when sessions go with their user: the rows are gone but the count was never released
+        inTransaction(() -> {
+            sessionRepository.deleteById(orphaned.getId());
+            StoredBlob blob = storedBlobRepository.findBySha256ForUpdate(sha256(file)).orElseThrow();
+            blob.setRefCount(0);
+            storedBlobRepository.save(blob);
+        });
+
+        SessionDto session = upload(file, newUser());
+        StoredBlob blob = blobOf(file).orElseThrow();
+        assertEquals(1, blob.getRefCount());
+        assertTrue(Files.exists(Paths.get(blob.getFilePath())));
+        assertEquals(2, session.getChannelData().size());
+        try (Stream<Path> raw = Files.list(STORAGE.resolve("raw"))) {
+            assertEquals(1, raw.filter(p -> p.getFileName().toString().startsWith(blob.getSha256())).count());
+        }
+    }
+
+    @Test
+    void uploadsOfContentThatIsLockedWaitForTheLock() throws Exception {
+        Path file = recording(6);
+        Long userId = newUser();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch unlock = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> inTransaction(() -> {
+            blobStoreService.lock(sha256(file));
+            locked.countDown();
+            await(unlock);
+        }));
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture<SessionDto> upload = CompletableFuture.supplyAsync(() -> upload(file, userId));
+        assertThrows(TimeoutException.class, () -> upload.get(500, TimeUnit.MILLISECONDS));
+
+        unlock.countDown();
+        holder.get(10, TimeUnit.SECONDS);
+        assertEquals(2, upload.get(30, TimeUnit.SECONDS).getChannelData().size());
+        assertEquals(1, blobOf(file).orElseThrow().getRefCount());
+    }
+
+    @Test
+    void removalsRacingWithUploadsOfTheSameContentLeaveUsableFiles() throws Exception {
+        Long userId = newUser();
+        for (int round = 0; round < 10; round++) {
+            Path file = recording(100 + round);
+            SessionDto existing = upload(file, userId);
+
+            CompletableFuture<Void> removal = CompletableFuture.runAsync(() -> sessionService.deleteSession(existing.getId(), userId));
+            CompletableFuture<SessionDto> reupload = CompletableFuture.supplyAsync(() -> upload(file, userId));
+            removal.get(30, TimeUnit.SECONDS);
+            SessionDto session = reupload.get(30, TimeUnit.SECONDS);
+
+            // Whichever came first, the session left over has its recording and channels
+            StoredBlob blob = blobOf(file).orElseThrow();
+            assertEquals(1, blob.getRefCount());
+            assertTrue(Files.exists(Paths.get(blob.getFilePath())), "round " + round);
+            assertTrue(Files.isDirectory(channelDirectory(blob)), "round " + round);
+            assertEquals(2, sessionService.getSessionById(session.getId(), userId).getChannelData().size());
+        }
+    }
+
+    protected SessionDto upload(Path file, Long userId) {
+        return sessionService.createSessionFromFile(new CreateSessionRequest("Recording", null, null),
+                file, "recording.csv", userId);
+    }
+
+    protected Optional<StoredBlob> blobOf(Path file) {
+        String sha256 = sha256(file);
+        return storedBlobRepository.findAll().stream().filter(b -> b.getSha256().equals(sha256)).findFirst();
+    }
+
+    protected Long newUser() {
+        User user = new User();
+        user.setEmail(UUID.randomUUID() + "@example.com");
+        user.setPasswordHash("unused");
+        return userRepository.save(user).getId();
+    }
+
+    protected void inTransaction(Runnable work) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transaction.executeWithoutResult(status -> work.run());
+    }
+
+    protected static Path channelDirectory(StoredBlob blob) {
+        return STORAGE.resolve("processed").resolve("blobs").resolve(blob.getSha256()).resolve("channels");
+    }
+
+    // Two channels of a few hundred samples, different for every seed
+    protected static Path recording(int seed) {
+        Random random = new Random(seed);
+        StringBuilder csv = new StringBuilder("Fp1,Fp2\n");
+        for (int i = 0; i < 500; i++) {
+            csv.append(random.nextGaussian()).append(',').append(random.nextGaussian()).append('\n');
+        }
+        try {
+            Path uploads = Files.createDirectories(STORAGE.resolve("incoming"));
+            return Files.writeString(uploads.resolve("recording-" + seed + ".csv"), csv);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    protected static String sha256(Path file) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Path createStorage() {
+        try {
+            return Files.createTempDirectory("neuroviz-blobs");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
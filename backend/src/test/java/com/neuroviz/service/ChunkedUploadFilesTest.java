@@ -0,0 +1,189 @@
+package com.neuroviz.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Chunked upload flow apart from JPA: chunks in any order and in parallel, resuming from the
+// missing chunks, repeated completion and the expiry of abandoned uploads
+class ChunkedUploadFilesTest {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    @Test
+    void chunksInAnyOrderAssembleTheFile(@TempDir Path directory) throws IOException {
+        byte[] content = content(10_500);
+        ChunkedUploadFiles files = allocate(directory, content);
+        assertEquals(content.length, Files.size(files.getPartFile()));
+        assertEquals(range(11), files.missingChunks());
+
+        List<Integer> order = range(11);
+        Collections.shuffle(order, new Random(7));
+        for (int index : order) {
+            files.writeChunk(index, chunk(content, index), expectedLength(content, index));
+        }
+        assertTrue(files.missingChunks().isEmpty());
+        assertArrayEquals(content, Files.readAllBytes(files.getPartFile()));
+    }
+
+    @Test
+    void chunksWrittenInParallelAllArrive(@TempDir Path directory) throws Exception {
+        byte[] content = content(64 * CHUNK_SIZE + 17);
+        ChunkedUploadFiles files = allocate(directory, content);
+        int chunkCount = 65;
+        int threads = 8;
+
+        CyclicBarrier start = new CyclicBarrier(threads);
+        List<CompletableFuture<Void>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            writers.add(CompletableFuture.runAsync(() -> {
+                try {
+                    start.await(5, TimeUnit.SECONDS);
+                    for (int index = first; index < chunkCount; index += threads) {
+                        files.writeChunk(index, chunk(content, index), expectedLength(content, index));
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+        for (CompletableFuture<Void> writer : writers) {
+            writer.get(30, TimeUnit.SECONDS);
+        }
+        assertTrue(files.missingChunks().isEmpty());
+        assertArrayEquals(content, Files.readAllBytes(files.getPartFile()));
+    }
+
+    @Test
+    void aResumedUploadSendsOnlyTheMissingChunks(@TempDir Path directory) throws IOException {
+        byte[] content = content(5 * CHUNK_SIZE);
+        ChunkedUploadFiles files = allocate(directory, content);
+        files.writeChunk(0, chunk(content, 0), CHUNK_SIZE);
+        files.writeChunk(3, chunk(content, 3), CHUNK_SIZE);
+
+        // The client went away half way through a chunk, which is not marked as received
+        InputStream truncated = new ByteArrayInputStream(Arrays.copyOfRange(content, CHUNK_SIZE, CHUNK_SIZE + 400));
+        assertThrows(RuntimeException.class, () -> files.writeChunk(1, truncated, -1));
+
+        // A new instance, as after a restart of the backend, sees the same state on disk
+        ChunkedUploadFiles resumed = new ChunkedUploadFiles(directory, "upload", content.length, CHUNK_SIZE, 5);
+        assertEquals(List.of(1, 2, 4), resumed.missingChunks());
+        for (int index : resumed.missingChunks()) {
+            resumed.writeChunk(index, chunk(content, index), CHUNK_SIZE);
+        }
+        assertTrue(resumed.missingChunks().isEmpty());
+        assertArrayEquals(content, Files.readAllBytes(resumed.getPartFile()));
+    }
+
+    @Test
+    void aChunkSentTwiceReplacesTheEarlierCopy(@TempDir Path directory) throws IOException {
+        byte[] content = content(2 * CHUNK_SIZE);
+        ChunkedUploadFiles files = allocate(directory, content);
+        byte[] garbled = new byte[CHUNK_SIZE];
+        files.writeChunk(1, new ByteArrayInputStream(garbled), CHUNK_SIZE);
+        files.writeChunk(1, chunk(content, 1), CHUNK_SIZE);
+        files.writeChunk(0, chunk(content, 0), CHUNK_SIZE);
+        assertArrayEquals(content, Files.readAllBytes(files.getPartFile()));
+    }
+
+    @Test
+    void chunksOfTheWrongSizeOrIndexAreRefused(@TempDir Path directory) throws IOException {
+        byte[] content = content(2 * CHUNK_SIZE + 10);
+        ChunkedUploadFiles files = allocate(directory, content);
+
+        assertThrows(RuntimeException.class, () -> files.writeChunk(3, chunk(content, 0), CHUNK_SIZE));
+        assertThrows(RuntimeException.class, () -> files.writeChunk(-1, chunk(content, 0), CHUNK_SIZE));
+        // The last chunk is short, and its declared length has to say so
+        assertThrows(RuntimeException.class, () -> files.writeChunk(2, chunk(content, 2), CHUNK_SIZE));
+        // Without a declared length, a body longer than the chunk is refused as well
+        InputStream tooLong = new ByteArrayInputStream(new byte[CHUNK_SIZE + 1]);
+        assertThrows(RuntimeException.class, () -> files.writeChunk(0, tooLong, -1));
+        assertEquals(List.of(0, 1, 2), files.missingChunks());
+
+        files.writeChunk(2, chunk(content, 2), 10);
+        assertEquals(List.of(0, 1), files.missingChunks());
+    }
+
+    @Test
+    void completingAgainDoesNotStartAnotherIngest() {
+        // The first complete of a fully received upload queues the job, as does one after it failed
+        assertEquals(UploadCompletion.START_INGEST, UploadCompletion.of(false, false, 0));
+        // Repeated while the job is queued or running, and once it created the session
+        assertEquals(UploadCompletion.UNCHANGED, UploadCompletion.of(false, true, 0));
+        assertEquals(UploadCompletion.UNCHANGED, UploadCompletion.of(true, false, 0));
+        assertEquals(UploadCompletion.INCOMPLETE, UploadCompletion.of(false, false, 2));
+    }
+
+    @Test
+    void onlyUploadsWithoutRecentChunksExpire(@TempDir Path directory) throws IOException {
+        byte[] content = content(3 * CHUNK_SIZE);
+        ChunkedUploadFiles files = allocate(directory, content);
+        Duration expiry = Duration.ofHours(48);
+        assertFalse(files.isIdle(expiry));
+
+        Path marker = directory.resolve("upload.chunks");
+        Files.setLastModifiedTime(marker, FileTime.fromMillis(System.currentTimeMillis() - expiry.toMillis() - 1000));
+        assertTrue(files.isIdle(expiry));
+
+        // A chunk arriving touches the marker, so the upload is kept for another period
+        files.writeChunk(1, chunk(content, 1), CHUNK_SIZE);
+        assertFalse(files.isIdle(expiry));
+
+        files.delete();
+        assertFalse(Files.exists(files.getPartFile()));
+        assertFalse(Files.exists(marker));
+        // Files already gone count as expired, so the row is removed as well
+        assertTrue(files.isIdle(expiry));
+        files.delete();
+    }
+
+    private static ChunkedUploadFiles allocate(Path directory, byte[] content) throws IOException {
+        int chunkCount = (content.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        ChunkedUploadFiles files = new ChunkedUploadFiles(directory, "upload", content.length, CHUNK_SIZE, chunkCount);
+        files.allocate();
+        return files;
+    }
+
+    private static InputStream chunk(byte[] content, int index) {
+        int offset = index * CHUNK_SIZE;
+        return new ByteArrayInputStream(content, offset, Math.min(CHUNK_SIZE, content.length - offset));
+    }
+
+    private static long expectedLength(byte[] content, int index) {
+        return Math.min(CHUNK_SIZE, content.length - (long) index * CHUNK_SIZE);
+    }
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return content;
+    }
+
+    private static List<Integer> range(int count) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < count; i++) indexes.add(i);
+        return indexes;
+    }
+}
@@ -0,0 +1,73 @@
+package com.neuroviz.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neuroviz.dto.request.PreprocessRequest;
+import com.neuroviz.entity.ProcessingJob;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JobDedupKeyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void unsetFlagsResolveToTheirDefaults() throws IOException {
+        String defaults = key(new PreprocessRequest());
+        assertEquals(defaults, key("{\"artifact\":null,\"zeroPhase\":null}"));
+        assertEquals(defaults, key("{\"artifact\":true,\"zeroPhase\":true}"));
+        assertEquals(defaults, key(new PreprocessRequest(List.of(1.0, 40.0), 50, null)));
+    }
+
+    @Test
+    void numbersAreWrittenInOneFormat() throws IOException {
+        String defaults = key(new PreprocessRequest());
+        assertEquals(defaults, key("{\"bandpass\":[1,40]}"));
+        assertEquals(defaults, key("{\"bandpass\":[1.0,40.00],\"notch\":50}"));
+        assertEquals(defaults, key("{\"bandpass\":[1e0,4e1]}"));
+        assertEquals("bandpass=0.5,40.0;notch=60;artifact=true;zeroPhase=true",
+                JobDedupKey.canonicalParams(request("{\"bandpass\":[0.5,40],\"notch\":60}")));
+    }
+
+    @Test
+    void requestsThatFilterDifferentlyGetDifferentKeys() throws IOException {
+        List<String> keys = List.of(
+                key(new PreprocessRequest()),
+                key("{\"bandpass\":[1,45]}"),
+                key("{\"bandpass\":[40,1]}"),
+                key("{\"bandpass\":null}"),
+                key("{\"notch\":60}"),
+                key("{\"notch\":null}"),
+                key("{\"artifact\":false}"),
+                key("{\"zeroPhase\":false}"));
+        assertEquals(keys.size(), keys.stream().distinct().count());
+    }
+
+    @Test
+    void theJobTypeIsPartOfTheKey() {
+        String params = JobDedupKey.canonicalParams(new PreprocessRequest());
+        String key = JobDedupKey.of(ProcessingJob.JobType.PREPROCESS, params);
+        assertNotEquals(key, JobDedupKey.of(ProcessingJob.JobType.SPECTROGRAM, params));
+        assertEquals(key, JobDedupKey.of(ProcessingJob.JobType.PREPROCESS, params));
+        // Fits the dedup_key column
+        assertEquals(64, key.length());
+        assertTrue(key.matches("[0-9a-f]+"));
+    }
+
+    private String key(String json) throws IOException {
+        return key(request(json));
+    }
+
+    private static String key(PreprocessRequest request) {
+        return JobDedupKey.of(ProcessingJob.JobType.PREPROCESS, JobDedupKey.canonicalParams(request));
+    }
+
+    private PreprocessRequest request(String json) throws IOException {
+        return objectMapper.readValue(json, PreprocessRequest.class);
+    }
+}
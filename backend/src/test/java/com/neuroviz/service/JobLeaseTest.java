@@ -0,0 +1,160 @@
+package com.neuroviz.service;
+
+import com.neuroviz.entity.ProcessingJob;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Two nodes sharing one job, as JobExecutor and ProcessingService apply the rules to the row
+class JobLeaseTest {
+
+    private static final long LEASE_MS = 60_000;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final AtomicReference<LocalDateTime> now = new AtomicReference<>(LocalDateTime.of(2024, 3, 1, 12, 0));
+    private final JobLease nodeA = new JobLease("node-a", LEASE_MS, MAX_ATTEMPTS, now::get);
+    private final JobLease nodeB = new JobLease("node-b", LEASE_MS, MAX_ATTEMPTS, now::get);
+
+    @Test
+    void aClaimTakesALeaseAndCountsTheAttempt() {
+        ProcessingJob job = pending();
+        assertEquals(JobLease.Claim.CLAIMED, nodeA.claim(job, now.get()));
+        assertEquals(ProcessingJob.Status.RUNNING, job.getStatus());
+        assertEquals("node-a", job.getClaimedBy());
+        assertEquals(1, job.getAttempts());
+        assertEquals(now.get(), job.getStartedAt());
+        assertEquals(now.get(), job.getHeartbeatAt());
+        assertEquals(now.get().plusSeconds(60), job.getLeaseExpiresAt());
+        assertTrue(nodeA.holds(job));
+        assertFalse(nodeB.holds(job));
+    }
+
+    @Test
+    void onlyPendingJobsAndThoseWhoseLeaseLapsedAreClaimable() {
+        ProcessingJob job = pending();
+        assertTrue(JobLease.isClaimable(job, now.get()));
+        nodeA.claim(job, now.get());
+
+        // Renewed until the lease ends, so nobody else may take it
+        assertFalse(JobLease.isClaimable(job, now.get().plusSeconds(59)));
+        assertFalse(JobLease.isClaimable(job, now.get().plusSeconds(60)));
+        assertEquals(JobLease.Claim.NOT_CLAIMABLE, nodeB.claim(job, now.get().plusSeconds(30)));
+        assertEquals("node-a", job.getClaimedBy());
+        assertTrue(JobLease.isClaimable(job, now.get().plusSeconds(61)));
+
+        // Running rows from before leases existed
+        job.setLeaseExpiresAt(null);
+        assertTrue(JobLease.isClaimable(job, now.get()));
+
+        job.setStatus(ProcessingJob.Status.COMPLETED);
+        assertFalse(JobLease.isClaimable(job, now.get().plusDays(1)));
+        job.setStatus(ProcessingJob.Status.FAILED);
+        assertFalse(JobLease.isClaimable(job, now.get().plusDays(1)));
+    }
+
+    @Test
+    void aJobWhoseNodeDiedIsClaimedAgainAndTheLateResultDropped() {
+        ProcessingJob job = pending();
+        nodeA.claim(job, now.get());
+
+        // Node A stops renewing; once the lease has lapsed node B takes the job over
+        now.set(now.get().plusSeconds(61));
+        assertEquals(JobLease.Claim.CLAIMED, nodeB.claim(job, now.get()));
+        assertEquals("node-b", job.getClaimedBy());
+        assertEquals(2, job.getAttempts());
+        assertFalse(nodeA.holds(job));
+
+        // Node A comes back with its result, which is not recorded
+        assertFalse(nodeA.finish(job, j -> {
+            j.setStatus(ProcessingJob.Status.COMPLETED);
+            j.setResultsJson("{\"node\":\"a\"}");
+        }));
+        assertEquals(ProcessingJob.Status.RUNNING, job.getStatus());
+        assertNull(job.getResultsJson());
+        assertEquals(now.get().plusSeconds(60), job.getLeaseExpiresAt());
+
+        now.set(now.get().plusSeconds(5));
+        assertTrue(nodeB.finish(job, j -> {
+            j.setStatus(ProcessingJob.Status.COMPLETED);
+            j.setResultsJson("{\"node\":\"b\"}");
+        }));
+        assertEquals(ProcessingJob.Status.COMPLETED, job.getStatus());
+        assertEquals("{\"node\":\"b\"}", job.getResultsJson());
+        assertNull(job.getLeaseExpiresAt());
+        assertEquals(now.get(), job.getCompletedAt());
+
+        // Recorded once; a second outcome finds the job no longer running
+        assertFalse(nodeB.finish(job, j -> j.setStatus(ProcessingJob.Status.FAILED)));
+        assertEquals(ProcessingJob.Status.COMPLETED, job.getStatus());
+    }
+
+    @Test
+    void aJobTriedMaxAttemptsTimesIsAbandoned() {
+        ProcessingJob job = pending();
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            assertEquals(JobLease.Claim.CLAIMED, nodeA.claim(job, now.get()));
+            assertEquals(attempt, job.getAttempts());
+            // Each time the node dies while running it
+            now.set(job.getLeaseExpiresAt().plusSeconds(1));
+        }
+
+        assertEquals(JobLease.Claim.ABANDONED, nodeB.claim(job, now.get()));
+        assertEquals(ProcessingJob.Status.FAILED, job.getStatus());
+        assertEquals("Abandoned after 3 attempts", job.getErrorMessage());
+        assertEquals(MAX_ATTEMPTS, job.getAttempts());
+        assertNull(job.getLeaseExpiresAt());
+        assertEquals(now.get(), job.getCompletedAt());
+        assertFalse(JobLease.isClaimable(job, now.get().plusDays(1)));
+        assertFalse(nodeA.finish(job, j -> j.setStatus(ProcessingJob.Status.COMPLETED)));
+    }
+
+    @Test
+    void aJobInterruptedByShutdownIsQueuedAgainByItsNodeOnly() {
+        ProcessingJob job = pending();
+        nodeA.claim(job, now.get());
+
+        assertFalse(nodeB.requeue(job));
+        assertEquals(ProcessingJob.Status.RUNNING, job.getStatus());
+
+        assertTrue(nodeA.requeue(job));
+        assertEquals(ProcessingJob.Status.PENDING, job.getStatus());
+        assertNull(job.getClaimedBy());
+        assertNull(job.getLeaseExpiresAt());
+        assertNull(job.getHeartbeatAt());
+        // The interrupted run still counts
+        assertEquals(1, job.getAttempts());
+
+        // Any node may take it straight away, without waiting for a lease to lapse
+        assertEquals(JobLease.Claim.CLAIMED, nodeB.claim(job, now.get()));
+        assertEquals(2, job.getAttempts());
+        assertFalse(nodeA.requeue(job));
+        assertEquals("node-b", job.getClaimedBy());
+    }
+
+    @Test
+    void aJobClaimedAgainElsewhereIsNotQueuedAgainOnShutdown() {
+        ProcessingJob job = pending();
+        nodeA.claim(job, now.get());
+        now.set(now.get().plusSeconds(61));
+        nodeB.claim(job, now.get());
+
+        // Node A shuts down while still running its copy
+        assertFalse(nodeA.requeue(job));
+        assertEquals(ProcessingJob.Status.RUNNING, job.getStatus());
+        assertEquals("node-b", job.getClaimedBy());
+    }
+
+    private static ProcessingJob pending() {
+        ProcessingJob job = new ProcessingJob();
+        job.setId(1L);
+        job.setJobType(ProcessingJob.JobType.PREPROCESS);
+        job.setStatus(ProcessingJob.Status.PENDING);
+        return job;
+    }
+}
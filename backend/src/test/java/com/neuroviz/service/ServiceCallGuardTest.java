@@ -0,0 +1,276 @@
+package com.neuroviz.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServiceCallGuardTest {
+
+    private static final long OPEN_MS = 1000;
+
+    private final AtomicLong now = new AtomicLong();
+    private final List<String> rejections = new ArrayList<>();
+    private final List<ServiceCallGuard.Outcome> outcomes = new ArrayList<>();
+    private final List<Long> sleeps = new ArrayList<>();
+
+    @Test
+    void opensAfterTheThresholdAndFailsFast() {
+        ServiceCallGuard guard = guard(1, 0, 3);
+        AtomicInteger attempts = new AtomicInteger();
+        Supplier<String> failing = () -> {
+            attempts.incrementAndGet();
+            throw new ServerError();
+        };
+
+        for (int i = 0; i < 3; i++) {
+            assertFalse(guard.isOpen());
+            assertThrows(ServerError.class, () -> guard.call("/x", true, failing));
+        }
+        assertTrue(guard.isOpen());
+
+        // Open: rejected without reaching the service, until the cool-down has passed
+        assertThrows(ProcessingServiceUnavailableException.class, () -> guard.call("/x", true, () -> "ok"));
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(OPEN_MS - 1));
+        assertThrows(ProcessingServiceUnavailableException.class, () -> guard.call("/x", true, () -> "ok"));
+        assertEquals(3, attempts.get());
+        assertEquals(List.of("circuit_open", "circuit_open"), rejections);
+    }
+
+    @Test
+    void successesInBetweenResetTheFailureCount() {
+        ServiceCallGuard guard = guard(1, 0, 3);
+        for (int i = 0; i < 10; i++) {
+            assertThrows(ServerError.class, () -> guard.call("/x", true, ServiceCallGuardTest::serverError));
+            assertThrows(IoError.class, () -> guard.call("/x", true, ServiceCallGuardTest::ioError));
+            assertEquals("ok", guard.call("/x", true, () -> "ok"));
+        }
+        assertFalse(guard.isOpen());
+    }
+
+    @Test
+    void aSingleTrialCallGoesThroughAfterTheCoolDown() throws Exception {
+        ServiceCallGuard guard = guard(4, 0, 1);
+        assertThrows(ServerError.class, () -> guard.call("/x", true, ServiceCallGuardTest::serverError));
+        assertTrue(guard.isOpen());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(OPEN_MS));
+
+        CountDownLatch trialStarted = new CountDownLatch(1);
+        CountDownLatch finishTrial = new CountDownLatch(1);
+        CompletableFuture<String> trial = CompletableFuture.supplyAsync(() -> guard.call("/x", true, () -> {
+            trialStarted.countDown();
+            await(finishTrial);
+            return "trial";
+        }));
+        assertTrue(trialStarted.await(5, TimeUnit.SECONDS));
+
+        // Others still fail fast while the trial is in flight
+        assertThrows(ProcessingServiceUnavailableException.class, () -> guard.call("/x", true, () -> "ok"));
+        assertEquals(List.of("circuit_open"), rejections);
+
+        finishTrial.countDown();
+        assertEquals("trial", trial.get(5, TimeUnit.SECONDS));
+        assertFalse(guard.isOpen());
+        assertEquals("ok", guard.call("/x", true, () -> "ok"));
+    }
+
+    @Test
+    void aFailedTrialReopensTheCircuitAtOnce() {
+        ServiceCallGuard guard = guard(1, 2, 5);
+        for (int i = 0; i < 5; i++) {
+            assertThrows(ServerError.class, () -> guard.call("/x", false, ServiceCallGuardTest::serverError));
+        }
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(OPEN_MS));
+
+        // One failure is enough, and it is not retried although the call is idempotent
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(ServerError.class, () -> guard.call("/x", true, () -> {
+            attempts.incrementAndGet();
+            throw new ServerError();
+        }));
+        assertEquals(1, attempts.get());
+        assertTrue(guard.isOpen());
+        assertThrows(ProcessingServiceUnavailableException.class, () -> guard.call("/x", true, () -> "ok"));
+
+        // A new cool-down starts from the failed trial
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(OPEN_MS));
+        assertEquals("ok", guard.call("/x", true, () -> "ok"));
+        assertFalse(guard.isOpen());
+    }
+
+    @Test
+    void clientErrorsAreNeitherCountedNorRetried() {
+        ServiceCallGuard guard = guard(1, 3, 2);
+        AtomicInteger attempts = new AtomicInteger();
+        for (int i = 0; i < 20; i++) {
+            assertThrows(ClientError.class, () -> guard.call("/x", true, () -> {
+                attempts.incrementAndGet();
+                throw new ClientError();
+            }));
+        }
+        assertEquals(20, attempts.get());
+        assertFalse(guard.isOpen());
+        assertTrue(sleeps.isEmpty());
+
+        // The service answered, so a client error also ends a run of failures
+        assertThrows(ServerError.class, () -> guard.call("/x", false, ServiceCallGuardTest::serverError));
+        assertThrows(ClientError.class, () -> guard.call("/x", false, () -> {
+            throw new ClientError();
+        }));
+        assertThrows(ServerError.class, () -> guard.call("/x", false, ServiceCallGuardTest::serverError));
+        assertFalse(guard.isOpen());
+    }
+
+    @Test
+    void onlyIdempotentCallsAreRetried() {
+        ServiceCallGuard guard = guard(1, 3, 100);
+        AtomicInteger attempts = new AtomicInteger();
+        Supplier<String> failing = () -> {
+            attempts.incrementAndGet();
+            throw new IoError();
+        };
+
+        assertThrows(IoError.class, () -> guard.call("/x", false, failing));
+        assertEquals(1, attempts.get());
+        assertTrue(sleeps.isEmpty());
+
+        attempts.set(0);
+        assertThrows(IoError.class, () -> guard.call("/x", true, failing));
+        assertEquals(4, attempts.get());
+        // Full jitter up to 10, 20 and 40 ms
+        assertEquals(3, sleeps.size());
+        for (int i = 0; i < sleeps.size(); i++) {
+            assertTrue(sleeps.get(i) >= 0 && sleeps.get(i) <= 10L << i, "sleep " + sleeps.get(i));
+        }
+
+        // A retry that succeeds returns its response
+        attempts.set(0);
+        assertEquals("ok", guard.call("/x", true, () -> {
+            if (attempts.incrementAndGet() < 3) throw new ServerError();
+            return "ok";
+        }));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void retriesStopOnceTheCircuitOpens() {
+        ServiceCallGuard guard = guard(1, 10, 2);
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(ServerError.class, () -> guard.call("/x", true, () -> {
+            attempts.incrementAndGet();
+            throw new ServerError();
+        }));
+        assertEquals(2, attempts.get());
+        assertTrue(guard.isOpen());
+    }
+
+    @Test
+    void otherErrorsPassThroughUncounted() {
+        ServiceCallGuard guard = guard(1, 3, 1);
+        assertThrows(IllegalStateException.class, () -> guard.call("/x", true, () -> {
+            throw new IllegalStateException("unreadable response");
+        }));
+        assertFalse(guard.isOpen());
+        assertEquals(List.of(ServiceCallGuard.Outcome.OTHER), outcomes);
+    }
+
+    @Test
+    void theBulkheadRejectsCallsBeyondItsPermits() throws Exception {
+        ServiceCallGuard guard = guard(1, 0, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> guard.call("/x", true, () -> {
+            started.countDown();
+            await(finish);
+            return "first";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(1, guard.inFlight());
+
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(ProcessingServiceUnavailableException.class, () -> guard.call("/x", true, () -> {
+            attempts.incrementAndGet();
+            return "second";
+        }));
+        assertEquals(0, attempts.get());
+        assertEquals(List.of("bulkhead"), rejections);
+        // Rejected by the bulkhead, not by the service: the circuit stays closed
+        assertFalse(guard.isOpen());
+
+        finish.countDown();
+        assertEquals("first", running.get(5, TimeUnit.SECONDS));
+        assertEquals(0, guard.inFlight());
+        assertEquals("third", guard.call("/x", true, () -> "third"));
+    }
+
+    @Test
+    void everyAttemptIsReported() {
+        ServiceCallGuard guard = guard(1, 2, 10);
+        AtomicInteger attempts = new AtomicInteger();
+        guard.call("/x", true, () -> {
+            if (attempts.incrementAndGet() == 1) throw new IoError();
+            if (attempts.get() == 2) throw new ServerError();
+            return "ok";
+        });
+        assertThrows(ClientError.class, () -> guard.call("/x", true, () -> {
+            throw new ClientError();
+        }));
+        assertEquals(List.of(ServiceCallGuard.Outcome.IO_ERROR, ServiceCallGuard.Outcome.SERVER_ERROR,
+                ServiceCallGuard.Outcome.SUCCESS, ServiceCallGuard.Outcome.CLIENT_ERROR), outcomes);
+    }
+
+    private ServiceCallGuard guard(int maxConcurrent, int retries, int failureThreshold) {
+        return new ServiceCallGuard(maxConcurrent, 0, retries, 10, failureThreshold, OPEN_MS,
+                ServiceCallGuardTest::classify, new ServiceCallGuard.Listener() {
+                    @Override
+                    public synchronized void rejected(String reason) {
+                        rejections.add(reason);
+                    }
+
+                    @Override
+                    public synchronized void attempted(String endpoint, ServiceCallGuard.Outcome outcome, long elapsedNanos) {
+                        outcomes.add(outcome);
+                    }
+                }, now::get, sleeps::add);
+    }
+
+    private static ServiceCallGuard.Outcome classify(RuntimeException e) {
+        if (e instanceof ClientError) return ServiceCallGuard.Outcome.CLIENT_ERROR;
+        if (e instanceof ServerError) return ServiceCallGuard.Outcome.SERVER_ERROR;
+        if (e instanceof IoError) return ServiceCallGuard.Outcome.IO_ERROR;
+        return ServiceCallGuard.Outcome.OTHER;
+    }
+
+    private static String serverError() {
+        throw new ServerError();
+    }
+
+    private static String ioError() {
+        throw new IoError();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class ClientError extends RuntimeException {}
+
+    private static final class ServerError extends RuntimeException {}
+
+    private static final class IoError extends RuntimeException {}
+}
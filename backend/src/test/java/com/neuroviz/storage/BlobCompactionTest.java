@@ -0,0 +1,309 @@
+package com.neuroviz.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// File side of compacting one stored recording: copies under attempt-unique names, installed
+// only by the attempt that won the switch-over, originals deleted only after it committed
+class BlobCompactionTest {
+
+    private static final IoThrottle UNTHROTTLED = new IoThrottle(0);
+
+    @Test
+    void theRawCopyIsVerifiedAgainstTheContentHash(@TempDir Path directory) throws IOException {
+        byte[] rawBytes = rawContent(3);
+        Path raw = Files.write(directory.resolve("recording.edf"), rawBytes);
+
+        try (BlobCompaction compaction = new BlobCompaction(UNTHROTTLED, n -> {})) {
+            Path target = compaction.compressRaw(raw, sha256(rawBytes));
+            assertEquals(directory.resolve("recording.edf.gz"), target);
+            // Written under a name of its own until installed
+            assertFalse(Files.exists(target));
+            assertEquals(2, list(directory).size());
+
+            compaction.install();
+            assertArrayEquals(rawBytes, gunzip(target));
+            compaction.commit();
+        }
+        assertEquals(List.of("recording.edf.gz"), list(directory));
+    }
+
+    @Test
+    void aChecksumMismatchLeavesTheOriginalsUntouched(@TempDir Path directory) throws IOException {
+        byte[] rawBytes = rawContent(4);
+        Path raw = Files.write(directory.resolve("recording.edf"), rawBytes);
+        Path channel = channel(directory.resolve("000_Fp1.f32"), SampleFormat.FLOAT32, smooth(10_000, 4));
+        byte[] channelBytes = Files.readAllBytes(channel);
+
+        try (BlobCompaction compaction = new BlobCompaction(UNTHROTTLED, n -> {})) {
+            compaction.compressChannel(channel, SampleFormat.FLOAT32);
+            String otherContent = sha256("something else".getBytes(StandardCharsets.UTF_8));
+            IOException e = assertThrows(IOException.class, () -> compaction.compressRaw(raw, otherContent));
+            assertTrue(e.getMessage().startsWith("Checksum mismatch"), e.getMessage());
+        }
+
+        assertEquals(List.of("000_Fp1.f32", "recording.edf"), list(directory));
+        assertArrayEquals(rawBytes, Files.readAllBytes(raw));
+        assertArrayEquals(channelBytes, Files.readAllBytes(channel));
+    }
+
+    @Test
+    void uploadsThatDoNotShrinkAreLeftAsTheyAre(@TempDir Path directory) throws IOException {
+        byte[] rawBytes = new byte[100_000];
+        new Random(5).nextBytes(rawBytes);
+        Path raw = Files.write(directory.resolve("recording.csv"), rawBytes);
+        double[] noise = new double[20_000];
+        Random random = new Random(6);
+        for (int i = 0; i < noise.length; i++) noise[i] = Double.longBitsToDouble(random.nextLong() & 0x7FEFFFFFFFFFFFFFL);
+        Path channel = channel(directory.resolve("000_Fp1.f64"), SampleFormat.FLOAT64, noise);
+
+        try (BlobCompaction compaction = new BlobCompaction(UNTHROTTLED, n -> {})) {
+            assertNull(compaction.compressRaw(raw, sha256(rawBytes)));
+            assertNull(compaction.compressChannel(channel, SampleFormat.FLOAT64));
+            assertTrue(compaction.getChannels().isEmpty());
+            compaction.install();
+            assertEquals(0L, compaction.commit());
+        }
+        assertEquals(List.of("000_Fp1.f64", "recording.csv"), list(directory));
+        assertArrayEquals(rawBytes, Files.readAllBytes(raw));
+    }
+
+    @Test
+    void channelsAreReencodedBitForBit(@TempDir Path directory) throws IOException {
+        double[] special = {Double.NaN, Double.longBitsToDouble(0xFFF8DEADBEEF0001L), -0.0, 0.0,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE};
+        double[] f64 = smooth(70_000, 7);
+        for (int i = 0; i < special.length; i++) f64[1000 + 97 * i] = special[i];
+        double[] f32 = smooth(70_001, 8);
+        for (int i = 0; i < f32.length; i += 11) f32[i] += 0.25;
+        Path wide = channel(directory.resolve("000_Fp1.f64"), SampleFormat.FLOAT64, f64);
+        Path narrow = channel(directory.resolve("001_Fp2.f32"), SampleFormat.FLOAT32, f32);
+        long[] progress = new long[1];
+
+        try (BlobCompaction compaction = new BlobCompaction(UNTHROTTLED, n -> progress[0] += n)) {
+            BlobCompaction.Channel wideCopy = compaction.compressChannel(wide, SampleFormat.FLOAT64);
+            BlobCompaction.Channel narrowCopy = compaction.compressChannel(narrow, SampleFormat.FLOAT32);
+            assertEquals(directory.resolve("000_Fp1.f64z"), wideCopy.getTarget());
+            assertEquals(directory.resolve("001_Fp2.f32z"), narrowCopy.getTarget());
+            assertEquals(f64.length, wideCopy.getSampleCount());
+            assertEquals(f32.length, narrowCopy.getSampleCount());
+            assertTrue(wideCopy.getCompressionRatio() > 1, "ratio " + wideCopy.getCompressionRatio());
+            assertTrue(narrowCopy.getSizeBytes() < Files.size(narrow));
+            assertEquals(Files.size(wide) + Files.size(narrow), progress[0]);
+
+            compaction.install();
+            assertArrayEquals(bits(f64, SampleFormat.FLOAT64), readCompressed(wideCopy.getTarget()));
+            assertArrayEquals(floats(f32), readCompressed(narrowCopy.getTarget()));
+        }
+    }
+
+    @Test
+    void originalsAreOnlyDeletedOnceTheSwapCommitted(@TempDir Path directory) throws IOException {
+        byte[] rawBytes = rawContent(9);
+        Path raw = Files.write(directory.resolve("recording.edf"), rawBytes);
+        Path channel = channel(directory.resolve("000_Fp1.f32"), SampleFormat.FLOAT32, smooth(30_000, 9));
+        long originalBytes = Files.size(raw) + Files.size(channel);
+
+        try (BlobCompaction compaction = new BlobCompaction(UNTHROTTLED, n -> {})) {
+            compaction.compressRaw(raw, sha256(rawBytes));
+            compaction.compressChannel(channel, SampleFormat.FLOAT32);
+            compaction.install();
+            // Installed, but until the swap commits the rows still point at the originals
+            assertEquals(List.of("000_Fp1.f32", "000_Fp1.f32z", "recording.edf", "recording.edf.gz"), list(directory));
+
+            long copyBytes = Files.size(directory.resolve("recording.edf.gz")) + Files.size(directory.resolve("000_Fp1.f32z"));
+            assertEquals(originalBytes - copyBytes, compaction.commit());
+        }
+        assertEquals(List.of("000_Fp1.f32z", "recording.edf.gz"), list(directory));
+    }
+
+    @Test
+    void aRolledBackSwapTakesItsInstalledCopiesAway(@TempDir Path directory) throws IOException {
+        byte[] rawBytes = rawContent(10);
+        Path raw = Files.write(directory.resolve("recording.edf"), rawBytes);
+        Path channel = channel(directory.resolve("000_Fp1.f32"), SampleFormat.FLOAT32, smooth(30_000, 10));
+        byte[] channelBytes = Files.readAllBytes(channel);
+
+        try (BlobCompaction compaction = new BlobCompaction(UNTHROTTLED, n -> {})) {
+            compaction.compressRaw(raw, sha256(rawBytes));
+            compaction.compressChannel(channel, SampleFormat.FLOAT32);
+            compaction.install();
+        }
+        assertEquals(List.of("000_Fp1.f32", "recording.edf"), list(directory));
+        assertArrayEquals(rawBytes, Files.readAllBytes(raw));
+        assertArrayEquals(channelBytes, Files.readAllBytes(channel));
+    }
+
+    @Test
+    void twoAttemptsOnOneBlobLeaveTheWinnersFilesIntact(@TempDir Path directory) throws Exception {
+        for (int round = 0; round < 20; round++) {
+            Path dir = Files.createDirectories(directory.resolve("round-" + round));
+            byte[] rawBytes = rawContent(round);
+            Path raw = Files.write(dir.resolve("recording.edf"), rawBytes);
+            double[] samples = smooth(50_000, round);
+            Path channel = channel(dir.resolve("000_Fp1.f32"), SampleFormat.FLOAT32, samples);
+
+            // Both compress at the same time; the database lets exactly one of them switch over, and
+            // the loser cleans up while the winner's copies are in place but not yet committed
+            CyclicBarrier start = new CyclicBarrier(2);
+            AtomicBoolean swapTaken = new AtomicBoolean();
+            CountDownLatch winnerInstalled = new CountDownLatch(1);
+            CountDownLatch loserClosed = new CountDownLatch(1);
+            List<CompletableFuture<Boolean>> attempts = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                attempts.add(CompletableFuture.supplyAsync(() -> {
+                    boolean won = false;
+                    try (BlobCompaction compaction = new BlobCompaction(UNTHROTTLED, n -> {})) {
+                        start.await(5, TimeUnit.SECONDS);
+                        compaction.compressRaw(raw, sha256(rawBytes));
+                        compaction.compressChannel(channel, SampleFormat.FLOAT32);
+                        if (swapTaken.compareAndSet(false, true)) {
+                            won = true;
+                            compaction.install();
+                            winnerInstalled.countDown();
+                            assertTrue(loserClosed.await(5, TimeUnit.SECONDS));
+                            compaction.commit();
+                        } else {
+                            assertTrue(winnerInstalled.await(5, TimeUnit.SECONDS));
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    } finally {
+                        if (!won) loserClosed.countDown();
+                    }
+                    return won;
+                }));
+            }
+            boolean first = attempts.get(0).get(10, TimeUnit.SECONDS);
+            boolean second = attempts.get(1).get(10, TimeUnit.SECONDS);
+            assertTrue(first ^ second);
+
+            assertFalse(Files.exists(raw));
+            assertFalse(Files.exists(channel));
+            assertArrayEquals(rawBytes, gunzip(dir.resolve("recording.edf.gz")));
+            assertArrayEquals(floats(samples), readCompressed(dir.resolve("000_Fp1.f32z")));
+            assertEquals(List.of("000_Fp1.f32z", "recording.edf.gz"), list(dir));
+        }
+    }
+
+    @Test
+    void aLostSwapDeletesOnlyItsOwnCopies(@TempDir Path directory) throws IOException {
+        byte[] rawBytes = rawContent(1);
+        Path raw = Files.write(directory.resolve("recording.edf"), rawBytes);
+        double[] samples = smooth(20_000, 1);
+        Path channel = channel(directory.resolve("000_Fp1.f64"), SampleFormat.FLOAT64, samples);
+        // Copies another node has installed under the final names
+        byte[] othersRaw = "installed elsewhere".getBytes(StandardCharsets.UTF_8);
+        Files.write(directory.resolve("recording.edf.gz"), othersRaw);
+        Files.write(directory.resolve("000_Fp1.f64z"), othersRaw);
+
+        try (BlobCompaction compaction = new BlobCompaction(UNTHROTTLED, n -> {})) {
+            assertEquals(directory.resolve("recording.edf.gz"), compaction.compressRaw(raw, sha256(rawBytes)));
+            BlobCompaction.Channel compacted = compaction.compressChannel(channel, SampleFormat.FLOAT64);
+            assertEquals(directory.resolve("000_Fp1.f64z"), compacted.getTarget());
+            assertEquals(6, list(directory).size());
+        }
+
+        assertArrayEquals(rawBytes, Files.readAllBytes(raw));
+        assertArrayEquals(othersRaw, Files.readAllBytes(directory.resolve("recording.edf.gz")));
+        assertArrayEquals(othersRaw, Files.readAllBytes(directory.resolve("000_Fp1.f64z")));
+        assertEquals(List.of("000_Fp1.f64", "000_Fp1.f64z", "recording.edf", "recording.edf.gz"), list(directory));
+    }
+
+    // Header-like text followed by slowly varying 16-bit samples, which gzip shrinks
+    static byte[] rawContent(int seed) {
+        byte[] bytes = new byte[200_000];
+        byte[] header = ("0       patient " + seed + " recording").getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(header, 0, bytes, 0, header.length);
+        for (int i = 256; i + 1 < bytes.length; i += 2) {
+            int value = (int) (1000 * Math.sin((i + seed) / 300.0));
+            bytes[i] = (byte) value;
+            bytes[i + 1] = (byte) (value >> 8);
+        }
+        return bytes;
+    }
+
+    // Integer-valued, so the delta codec takes it and the copy comes out smaller
+    static double[] smooth(int length, int seed) {
+        double[] samples = new double[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = Math.round(200 * Math.sin((i + seed) / 50.0));
+        }
+        return samples;
+    }
+
+    static Path channel(Path file, SampleFormat format, double[] samples) throws IOException {
+        try (ChannelFileWriter writer = new ChannelFileWriter(file, format)) {
+            for (double sample : samples) writer.write(sample);
+        }
+        return file;
+    }
+
+    static long[] readCompressed(Path file) throws IOException {
+        try (CompressedChannelReader reader = new CompressedChannelReader(file)) {
+            double[] all = new double[(int) reader.getSampleCount()];
+            assertEquals(all.length, reader.read(0, all, 0, all.length));
+            return bits(all, reader.getFormat());
+        }
+    }
+
+    static long[] floats(double[] samples) {
+        return bits(samples, SampleFormat.FLOAT32);
+    }
+
+    static long[] bits(double[] values, SampleFormat format) {
+        long[] bits = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bits[i] = format == SampleFormat.FLOAT32
+                    ? Float.floatToRawIntBits((float) values[i])
+                    : Double.doubleToRawLongBits(values[i]);
+        }
+        return bits;
+    }
+
+    static byte[] gunzip(Path file) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return in.readAllBytes();
+        }
+    }
+
+    static List<String> list(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.neuroviz.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Bit-exact round trips through both block codecs and the compressed channel file
+class CompressedChannelTest {
+
+    private static final int BLOCK = CompressedChannelWriter.BLOCK_SAMPLES;
+
+    private static final double[] SPECIAL = {
+            Double.NaN,
+            Double.longBitsToDouble(0x7FF0000000000001L), // signalling NaN
+            Double.longBitsToDouble(0xFFF8DEADBEEF0001L), // negative quiet NaN with a payload
+            0.0, -0.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, Double.MIN_NORMAL, 1.0, -1.0
+    };
+
+    @Test
+    void gorillaRoundTripsEveryBitPattern() {
+        Random random = new Random(3);
+        for (double[] values : samples(random)) {
+            byte[] encoded = new byte[GorillaCodec.maxEncodedBytes(values.length)];
+            int length = GorillaCodec.encode(values, values.length, encoded, 3);
+            assertTrue(length <= GorillaCodec.maxEncodedBytes(values.length));
+
+            double[] decoded = new double[values.length];
+            GorillaCodec.decode(encoded, 3, decoded, values.length);
+            assertArrayEquals(bits(values), bits(decoded));
+        }
+
+        // Repeated values cost one bit each after the first
+        double[] constant = new double[BLOCK];
+        Arrays.fill(constant, 42.125);
+        assertTrue(GorillaCodec.encode(constant, BLOCK, new byte[GorillaCodec.maxEncodedBytes(BLOCK)], 0) <= 8 + BLOCK / 8 + 1);
+    }
+
+    @Test
+    void deltaVarintRoundTripsExactIntegers() {
+        double limit = 1L << 53;
+        double[][] cases = {
+                {0, 1, -1, 2, -2, 1000, -1000},
+                {limit, -limit, limit, -limit},
+                ramp(BLOCK, 0, 1),
+                ramp(BLOCK, 1e6, -3),
+                new double[] {7}
+        };
+        for (double[] values : cases) {
+            assertTrue(DeltaVarintCodec.canEncode(values, values.length));
+            byte[] encoded = new byte[DeltaVarintCodec.maxEncodedBytes(values.length)];
+            int length = DeltaVarintCodec.encode(values, values.length, encoded, 1);
+            double[] decoded = new double[values.length];
+            DeltaVarintCodec.decode(encoded, 1, decoded, values.length);
+            assertArrayEquals(bits(values), bits(decoded));
+            assertTrue(length <= DeltaVarintCodec.maxEncodedBytes(values.length));
+        }
+
+        // Unit steps take one byte each
+        double[] steps = ramp(BLOCK, 0, 1);
+        assertEquals(BLOCK, DeltaVarintCodec.encode(steps, BLOCK, new byte[DeltaVarintCodec.maxEncodedBytes(BLOCK)], 0));
+
+        for (double value : new double[] {-0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0.5,
+                limit * 2}) {
+            assertFalse(DeltaVarintCodec.canEncode(new double[] {1, value, 3}, 3), "value " + value);
+        }
+    }
+
+    @Test
+    void compressedFilesRoundTripWithEveryCodec(@TempDir Path directory) throws IOException {
+        Random random = new Random(5);
+        // Integer blocks, float blocks and special values, with a partial last block
+        double[] values = new double[3 * BLOCK + 123];
+        for (int i = 0; i < values.length; i++) {
+            int block = i / BLOCK;
+            values[i] = block == 0 ? i / 7
+                    : block == 1 ? random.nextGaussian() * 50
+                    : block == 2 ? SPECIAL[i % SPECIAL.length]
+                    : 1000 - i;
+        }
+
+        for (ChannelCodec codec : new ChannelCodec[] {ChannelCodec.GORILLA, ChannelCodec.DELTA_VARINT, ChannelCodec.AUTO}) {
+            Path file = directory.resolve("ch." + codec.name().toLowerCase(Locale.ROOT));
+            write(file, SampleFormat.FLOAT64, codec, values);
+
+            try (CompressedChannelReader reader = new CompressedChannelReader(file)) {
+                assertEquals(SampleFormat.FLOAT64, reader.getFormat());
+                assertEquals(values.length, reader.getSampleCount());
+
+                double[] all = new double[values.length];
+                assertEquals(values.length, reader.read(0, all, 0, all.length));
+                assertArrayEquals(bits(values), bits(all));
+
+                // Random offsets and lengths, across block boundaries and past either end
+                for (int trial = 0; trial < 200; trial++) {
+                    long start = random.nextInt(values.length + 40) - 20;
+                    int length = random.nextInt(2 * BLOCK + 10);
+                    double[] window = new double[length + 2];
+                    int read = reader.read(start, window, 2, length);
+
+                    int from = (int) Math.max(0, start);
+                    int to = (int) Math.min(values.length, start + length);
+                    assertEquals(Math.max(0, to - from), read, "start=" + start + ", length=" + length);
+                    for (int i = 0; i < read; i++) {
+                        assertEquals(Double.doubleToRawLongBits(values[from + i]), Double.doubleToRawLongBits(window[2 + i]),
+                                codec + " start=" + start + ", sample " + (from + i));
+                    }
+                }
+            }
+        }
+
+        // AUTO stores integer blocks as deltas and the rest with Gorilla; DELTA_VARINT falls back
+        // to Gorilla for blocks it cannot encode
+        assertArrayEquals(new int[] {2, 1, 1, 2}, blockTags(directory.resolve("ch.auto")));
+        assertArrayEquals(new int[] {2, 1, 1, 2}, blockTags(directory.resolve("ch.delta_varint")));
+        assertArrayEquals(new int[] {1, 1, 1, 1}, blockTags(directory.resolve("ch.gorilla")));
+    }
+
+    @Test
+    void float32FilesStoreValuesRoundedToFloat(@TempDir Path directory) throws IOException {
+        Random random = new Random(9);
+        double[] values = new double[BLOCK + 17];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian() * 1e3;
+        }
+        Path file = directory.resolve("ch.f32");
+        write(file, SampleFormat.FLOAT32, ChannelCodec.AUTO, values);
+
+        try (CompressedChannelReader reader = new CompressedChannelReader(file)) {
+            assertEquals(SampleFormat.FLOAT32, reader.getFormat());
+            double[] all = new double[values.length];
+            reader.read(0, all, 0, all.length);
+            for (int i = 0; i < values.length; i++) {
+                assertEquals((double) (float) values[i], all[i], 0.0);
+            }
+        }
+    }
+
+    @Test
+    void transferWindowStreamsPackedSamples(@TempDir Path directory) throws IOException {
+        Random random = new Random(13);
+        double[] values = new double[5 * BLOCK + 1];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 3 == 0 ? SPECIAL[i % SPECIAL.length] : random.nextDouble();
+        }
+        Path file = directory.resolve("ch.gorilla");
+        write(file, SampleFormat.FLOAT64, ChannelCodec.GORILLA, values);
+
+        long[][] windows = {{0, values.length}, {BLOCK - 1, 2}, {1000, 10000}, {values.length - 5, 100},
+                {values.length, 10}, {17, 0}};
+        try (CompressedChannelReader reader = new CompressedChannelReader(file)) {
+            for (long[] w : windows) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                long transferred = reader.transferWindow(new SampleWindow(w[0], w[1]), Channels.newChannel(out));
+
+                int from = (int) w[0];
+                int to = (int) Math.min(values.length, w[0] + w[1]);
+                int count = Math.max(0, to - from);
+                assertEquals(8L * count, transferred, "window " + w[0] + "+" + w[1]);
+                ByteBuffer packed = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+                assertEquals(8 * count, packed.remaining());
+                for (int i = 0; i < count; i++) {
+                    assertEquals(Double.doubleToRawLongBits(values[from + i]), packed.getLong());
+                }
+            }
+        }
+    }
+
+    private static double[][] samples(Random random) {
+        double[] randomBits = new double[BLOCK];
+        double[] gaussian = new double[BLOCK];
+        double[] special = new double[SPECIAL.length * 3];
+        for (int i = 0; i < BLOCK; i++) {
+            randomBits[i] = Double.longBitsToDouble(random.nextLong());
+            gaussian[i] = random.nextGaussian() * 100;
+        }
+        for (int i = 0; i < special.length; i++) {
+            special[i] = SPECIAL[(i * 5) % SPECIAL.length];
+        }
+        double[] constant = new double[100];
+        Arrays.fill(constant, -0.0);
+        return new double[][] {
+                randomBits, gaussian, special, constant, ramp(BLOCK, -3.5, 0.01), ramp(BLOCK, 0, 1),
+                {Double.NaN}, {}, {1.0, Double.longBitsToDouble(0x3FF0000000000001L), 1.0}
+        };
+    }
+
+    private static double[] ramp(int count, double start, double step) {
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = start + i * step;
+        }
+        return values;
+    }
+
+    private static long[] bits(double[] values) {
+        long[] bits = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bits[i] = Double.doubleToRawLongBits(values[i]);
+        }
+        return bits;
+    }
+
+    private static void write(Path file, SampleFormat format, ChannelCodec codec, double[] values) throws IOException {
+        try (CompressedChannelWriter writer = new CompressedChannelWriter(file, format, codec)) {
+            for (double value : values) {
+                writer.write(value);
+            }
+            assertEquals(values.length, writer.getSampleCount());
+        }
+    }
+
+    // Codec tag of every block, found through the offset index the trailer points to
+    private static int[] blockTags(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer trailer = ByteBuffer.allocate(CompressedChannelWriter.TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(trailer, channel.size() - CompressedChannelWriter.TRAILER_BYTES);
+            trailer.flip();
+            long indexOffset = trailer.getLong();
+            trailer.getLong();
+            int blockCount = trailer.getInt();
+
+            ByteBuffer index = ByteBuffer.allocate(8 * blockCount).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(index, indexOffset);
+            index.flip();
+            int[] tags = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                ByteBuffer tag = ByteBuffer.allocate(1);
+                channel.read(tag, index.getLong());
+                tags[i] = tag.get(0);
+            }
+            return tags;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.neuroviz.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Every bucket of a query must match min/max/mean computed directly over the samples it covers
+class LodPyramidTest {
+
+    private static final int SAMPLE_RATE = 256;
+
+    @Test
+    void matchesBruteForceOverRandomWindows(@TempDir Path directory) throws IOException {
+        Random random = new Random(31);
+        // Not a multiple of any decimation, so every level ends in a partial bucket
+        double[] samples = signal(random, 100_003, false);
+        Path file = channel(directory, "ch.f64", samples);
+
+        for (int trial = 0; trial < 400; trial++) {
+            long start = random.nextInt(samples.length);
+            long count = 1 + random.nextInt((int) (samples.length - start));
+            int maxBuckets = 1 + random.nextInt(trial % 2 == 0 ? 50 : 2000);
+            assertMatches(file, samples, new SampleWindow(start, count), maxBuckets, true);
+        }
+    }
+
+    @Test
+    void nanSamplesAreLeftOutOfEveryBucket(@TempDir Path directory) throws IOException {
+        Random random = new Random(37);
+        double[] samples = signal(random, 50_001, true);
+        Path file = channel(directory, "ch.f64", samples);
+
+        for (int trial = 0; trial < 300; trial++) {
+            long start = random.nextInt(samples.length);
+            long count = 1 + random.nextInt((int) (samples.length - start));
+            int maxBuckets = 1 + random.nextInt(1000);
+            // A grouped mean cannot tell how many samples of a bucket were NaN, so only min/max there
+            assertMatches(file, samples, new SampleWindow(start, count), maxBuckets, false);
+        }
+        assertMatches(file, samples, new SampleWindow(0, samples.length), 100, false);
+    }
+
+    @Test
+    void picksTheFinestLevelThatFits(@TempDir Path directory) throws IOException {
+        double[] samples = signal(new Random(41), 100_003, false);
+        Path file = channel(directory, "ch.f64", samples);
+
+        // Aligned to bucket edges: exactly maxBuckets buckets at 8x
+        assertEquals(8L, query(file, new SampleWindow(800, 8000), 1000).getSamplesPerBucket());
+        assertEquals(1000, query(file, new SampleWindow(800, 8000), 1000).getBucketCount());
+        // One sample more straddles a further bucket and needs the next level
+        assertEquals(16L, query(file, new SampleWindow(800, 8001), 1000).getSamplesPerBucket());
+        // Unaligned start rounds down to the bucket edge
+        LodWindow unaligned = query(file, new SampleWindow(805, 4000), 1000);
+        assertEquals(8L, unaligned.getSamplesPerBucket());
+        assertEquals(800L, unaligned.getStartSample());
+        // Up to maxBuckets samples are read raw
+        LodWindow raw = query(file, new SampleWindow(100, 1000), 1000);
+        assertEquals(1L, raw.getSamplesPerBucket());
+        assertEquals(100L, raw.getStartSample());
+        assertEquals(1000, raw.getBucketCount());
+        // Beyond 4096x, coarsest buckets are merged
+        LodWindow grouped = query(file, new SampleWindow(0, samples.length), 10);
+        assertEquals(4096L * 3, grouped.getSamplesPerBucket());
+        assertEquals(9, grouped.getBucketCount());
+    }
+
+    @Test
+    void partialLastBucketCountsOnlyItsSamples(@TempDir Path directory) throws IOException {
+        // 4096 samples of 0, then 3 samples of 300: the last coarsest bucket holds just the 3
+        double[] samples = new double[4099];
+        samples[4096] = samples[4097] = samples[4098] = 300;
+        Path file = channel(directory, "ch.f64", samples);
+
+        LodWindow window = query(file, new SampleWindow(0, samples.length), 1);
+        assertEquals(1, window.getBucketCount());
+        assertEquals(900.0 / 4099, window.getMean()[0], 1e-6);
+        assertEquals(0f, window.getMin()[0]);
+        assertEquals(300f, window.getMax()[0]);
+
+        LodWindow tail = query(file, new SampleWindow(4000, 99), 10);
+        assertEquals(16L, tail.getSamplesPerBucket());
+        assertEquals(300f, tail.getMean()[tail.getBucketCount() - 1]);
+    }
+
+    @Test
+    void rawWindowPastTheEndHoldsOnlyExistingSamples(@TempDir Path directory) throws IOException {
+        double[] samples = {1, 2, 3, 4, 5};
+        Path file = channel(directory, "ch.f64", samples);
+
+        LodWindow window = query(file, new SampleWindow(3, 10), 100);
+        assertEquals(2, window.getBucketCount());
+        assertEquals(4f, window.getMean()[0]);
+        assertEquals(5f, window.getMean()[1]);
+        assertEquals(0, query(file, new SampleWindow(7, 10), 100).getBucketCount());
+    }
+
+    private static void assertMatches(Path file, double[] samples, SampleWindow window, int maxBuckets,
+                                      boolean checkGroupedMean) throws IOException {
+        LodWindow lod = query(file, window, maxBuckets);
+        String context = "window " + window.getStartSample() + "+" + window.getSampleCount() + ", " + maxBuckets + " buckets";
+        long spb = lod.getSamplesPerBucket();
+
+        assertEquals(expectedSamplesPerBucket(window, maxBuckets, samples.length), spb, context);
+        assertTrue(lod.getBucketCount() <= maxBuckets, context);
+        assertEquals(0L, lod.getStartSample() % Math.min(spb, 4096), context);
+        assertTrue(lod.getStartSample() <= window.getStartSample(), context);
+        assertTrue(lod.getStartSample() + spb > window.getStartSample(), context);
+        assertTrue(lod.getStartSample() + spb * lod.getBucketCount() >= window.getEndSample(), context);
+        assertEquals((double) spb / SAMPLE_RATE, lod.getBucketSeconds(), 1e-12, context);
+
+        // The last merged bucket only covers the level buckets the window reaches
+        long decimation = Math.min(spb, 4096);
+        long covered = Math.min(samples.length, (window.getEndSample() + decimation - 1) / decimation * decimation);
+        for (int b = 0; b < lod.getBucketCount(); b++) {
+            int from = (int) (lod.getStartSample() + b * spb);
+            int to = (int) Math.min(from + spb, covered);
+            double min = Double.NaN, max = Double.NaN, sum = 0;
+            int count = 0;
+            boolean sawNaN = false;
+            for (int i = from; i < to; i++) {
+                if (Double.isNaN(samples[i])) {
+                    sawNaN = true;
+                    continue;
+                }
+                min = count == 0 ? samples[i] : Math.min(min, samples[i]);
+                max = count == 0 ? samples[i] : Math.max(max, samples[i]);
+                sum += samples[i];
+                count++;
+            }
+            String bucket = context + ", bucket " + b;
+            if (count == 0) {
+                assertTrue(Float.isNaN(lod.getMin()[b]), bucket);
+                assertTrue(Float.isNaN(lod.getMean()[b]), bucket);
+                continue;
+            }
+            assertEquals((float) min, lod.getMin()[b], bucket);
+            assertEquals((float) max, lod.getMax()[b], bucket);
+            if (checkGroupedMean || spb <= 4096 || !sawNaN) {
+                assertEquals(sum / count, lod.getMean()[b], 1e-3, bucket);
+            }
+        }
+    }
+
+    private static long expectedSamplesPerBucket(SampleWindow window, int maxBuckets, long sampleCount) {
+        if (window.getSampleCount() <= maxBuckets) return 1;
+        long decimation = 0;
+        for (int level = 0; level < LodPyramid.LEVELS; level++) {
+            decimation = LodPyramid.decimation(level);
+            long first = window.getStartSample() / decimation;
+            long last = (window.getEndSample() + decimation - 1) / decimation;
+            if (last - first <= maxBuckets) return decimation;
+        }
+        long first = window.getStartSample() / decimation;
+        long last = Math.min((sampleCount + decimation - 1) / decimation, (window.getEndSample() + decimation - 1) / decimation);
+        return decimation * ((last - first + maxBuckets - 1) / maxBuckets);
+    }
+
+    private static LodWindow query(Path file, SampleWindow window, int maxBuckets) throws IOException {
+        return LodPyramid.query(file, SampleFormat.FLOAT64, ChannelCodec.NONE, SAMPLE_RATE, window, maxBuckets);
+    }
+
+    // A drifting oscillation, optionally with NaN runs of varying length
+    private static double[] signal(Random random, int length, boolean withGaps) {
+        double[] samples = new double[length];
+        double drift = 0;
+        for (int i = 0; i < length; i++) {
+            drift += random.nextGaussian();
+            samples[i] = 50 * Math.sin(i / 40.0) + drift + random.nextGaussian() * 5;
+        }
+        if (withGaps) {
+            for (int gap = 0; gap < 40; gap++) {
+                int from = random.nextInt(length);
+                int to = Math.min(length, from + 1 + random.nextInt(gap % 4 == 0 ? 10_000 : 50));
+                for (int i = from; i < to; i++) samples[i] = Double.NaN;
+            }
+        }
+        return samples;
+    }
+
+    private static Path channel(Path directory, String name, double[] samples) throws IOException {
+        Path file = directory.resolve(name);
+        try (ChannelFileWriter writer = new ChannelFileWriter(file, SampleFormat.FLOAT64)) {
+            for (double sample : samples) writer.write(sample);
+        }
+        try (ChannelReader reader = ChannelReader.open(file, SampleFormat.FLOAT64, ChannelCodec.NONE)) {
+            LodPyramidBuilder.build(reader, LodPyramid.pathFor(file));
+        }
+        return file;
+    }
+}
@@ -0,0 +1,126 @@
+package com.neuroviz.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedChannelReaderTest {
+
+    @Test
+    void clampsTimeRangesToTheStoredSamples() {
+        assertWindow(256, 512, SampleWindow.forTimeRange(1, 3.0, 256, 10_000));
+        assertWindow(0, 10_000, SampleWindow.forTimeRange(0, null, 256, 10_000));
+        assertWindow(9_984, 16, SampleWindow.forTimeRange(39, 100.0, 256, 10_000));
+        // Fractional bounds widen to whole samples
+        assertWindow(25, 52, SampleWindow.forTimeRange(0.1, 0.3, 256, 10_000));
+        // Starting at or past the end leaves nothing to read
+        assertWindow(10_000, 0, SampleWindow.forTimeRange(50, 60.0, 256, 10_000));
+        assertWindow(10_000, 0, SampleWindow.forTimeRange(50, null, 256, 10_000));
+        assertWindow(0, 0, SampleWindow.forTimeRange(0, 1.0, 256, 0));
+
+        assertThrows(IllegalArgumentException.class, () -> SampleWindow.forTimeRange(-1, 1.0, 256, 10_000));
+        assertThrows(IllegalArgumentException.class, () -> SampleWindow.forTimeRange(2, 2.0, 256, 10_000));
+        assertThrows(IllegalArgumentException.class, () -> SampleWindow.forTimeRange(2, 1.0, 256, 10_000));
+    }
+
+    @Test
+    void transfersExactlyTheBytesOfTheWindow(@TempDir Path directory) throws IOException {
+        for (SampleFormat format : SampleFormat.values()) {
+            Path file = directory.resolve("ch." + format.getExtension());
+            byte[] bytes = write(file, format, 1000);
+            int size = format.getBytesPerSample();
+
+            assertTransfers(file, format, new SampleWindow(0, 1000), Arrays.copyOfRange(bytes, 0, 1000 * size));
+            assertTransfers(file, format, new SampleWindow(123, 456), Arrays.copyOfRange(bytes, 123 * size, 579 * size));
+            assertTransfers(file, format, new SampleWindow(999, 1), Arrays.copyOfRange(bytes, 999 * size, 1000 * size));
+            assertTransfers(file, format, new SampleWindow(500, 0), new byte[0]);
+        }
+    }
+
+    @Test
+    void windowsRunningPastTheEndAreCutAtTheFile(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("ch.f32");
+        byte[] bytes = write(file, SampleFormat.FLOAT32, 100);
+
+        assertTransfers(file, SampleFormat.FLOAT32, new SampleWindow(90, 50), Arrays.copyOfRange(bytes, 360, 400));
+        assertTransfers(file, SampleFormat.FLOAT32, new SampleWindow(100, 10), new byte[0]);
+        assertTransfers(file, SampleFormat.FLOAT32, new SampleWindow(5_000, 10), new byte[0]);
+        assertTransfers(file, SampleFormat.FLOAT32, SampleWindow.forTimeRange(0, 10.0, 256, 100), bytes);
+    }
+
+    @Test
+    void windowsLargerThanOneSliceArriveWhole(@TempDir Path directory) throws IOException {
+        // Past the 8 MB mapping slice, into a target that takes only part of each write
+        int samples = 1_200_000;
+        Path file = directory.resolve("ch.f64");
+        byte[] bytes = write(file, SampleFormat.FLOAT64, samples);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel trickle = new TrickleChannel(Channels.newChannel(out));
+        long transferred = MappedChannelReader.transferWindow(file, SampleFormat.FLOAT64, new SampleWindow(7, samples), trickle);
+
+        assertEquals((long) (samples - 7) * 8, transferred);
+        assertArrayEquals(Arrays.copyOfRange(bytes, 56, bytes.length), out.toByteArray());
+    }
+
+    private static void assertTransfers(Path file, SampleFormat format, SampleWindow window, byte[] expected) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long transferred = MappedChannelReader.transferWindow(file, format, window, Channels.newChannel(out));
+        assertEquals((long) expected.length, transferred);
+        assertArrayEquals(expected, out.toByteArray());
+    }
+
+    private static void assertWindow(long start, long count, SampleWindow window) {
+        assertEquals(start, window.getStartSample());
+        assertEquals(count, window.getSampleCount());
+    }
+
+    private static byte[] write(Path file, SampleFormat format, int samples) throws IOException {
+        Random random = new Random(samples);
+        try (ChannelFileWriter writer = new ChannelFileWriter(file, format)) {
+            for (int i = 0; i < samples; i++) writer.write(random.nextGaussian() * 100);
+        }
+        return Files.readAllBytes(file);
+    }
+
+    // Accepts at most a few kilobytes per write, like a socket with a full send buffer
+    private static final class TrickleChannel implements WritableByteChannel {
+        private final WritableByteChannel target;
+
+        TrickleChannel(WritableByteChannel target) {
+            this.target = target;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            ByteBuffer part = src.slice();
+            part.limit(Math.min(part.remaining(), 3000));
+            int written = target.write(part);
+            src.position(src.position() + written);
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return target.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            target.close();
+        }
+    }
+}
@@ -10,9 +10,12 @@ import type {
   PreprocessRequest,
   PreprocessResponse,
   PSDAnalysis,
+  SessionBandPowers,
   BandPowerAnalysis,
   ClassificationResult,
   CreateSessionForm,
+  JobEvent,
+  JobEventStream,
 } from '../types'
 
 // Create axios instance
@@ -132,6 +135,16 @@ export const processingApi = {
     return response.data.data
   },
 
+  getBandPowers: async (sessionId: number, channels?: string[]): Promise<SessionBandPowers> => {
+    const query = channels && channels.length > 0
+      ? `?channels=${channels.map(encodeURIComponent).join(',')}`
+      : ''
+    const response = await api.get<ApiResponse<SessionBandPowers>>(
+      `/sessions/${sessionId}/analytics/bandpowers${query}`
+    )
+    return response.data.data
+  },
+
   classifySession: async (sessionId: number): Promise<ClassificationResult> => {
     const response = await api.post<ApiResponse<ClassificationResult>>(
       `/sessions/${sessionId}/classify`
@@ -143,6 +156,62 @@ export const processingApi = {
     const response = await api.get<ApiResponse<any>>(`/jobs/${jobId}`)
     return response.data.data
   },
+
+  // EventSource cannot send the Authorization header, so the stream is opened with a
+  // short-lived token that only grants this job's events. The browser would reconnect a dropped
+  // stream with the same, by then expired token, so it is reopened here with a fresh one
+  // instead. The stream ends once the job has completed or failed, or when closed.
+  openJobEvents: (jobId: number, onEvent: (event: JobEvent) => void): JobEventStream => {
+    const baseURL = import.meta.env.VITE_API_URL || '/api'
+    let source: EventSource | null = null
+    let retryTimer: ReturnType<typeof setTimeout> | undefined
+    let retryDelay = 1000
+    let ended = false
+
+    const close = () => {
+      ended = true
+      clearTimeout(retryTimer)
+      source?.close()
+    }
+
+    const reconnect = () => {
+      source?.close()
+      if (ended) return
+      retryTimer = setTimeout(connect, retryDelay)
+      retryDelay = Math.min(retryDelay * 2, 30000)
+    }
+
+    const connect = async () => {
+      let token: string
+      try {
+        const response = await api.post<ApiResponse<{ token: string }>>(`/jobs/${jobId}/events/token`)
+        token = encodeURIComponent(response.data.data.token)
+      } catch (error) {
+        // The job is gone or not ours; server and network failures may pass, so those are retried
+        if (axios.isAxiosError(error) && error.response && error.response.status < 500) {
+          close()
+        } else {
+          reconnect()
+        }
+        return
+      }
+      if (ended) return
+
+      source = new EventSource(`${baseURL}/jobs/${jobId}/events?access_token=${token}`)
+      source.addEventListener('job', (message) => {
+        retryDelay = 1000
+        const event: JobEvent = JSON.parse((message as MessageEvent).data)
+        if (event.status === 'COMPLETED' || event.status === 'FAILED') {
+          close()
+        }
+        onEvent(event)
+      })
+      source.onerror = reconnect
+    }
+
+    connect()
+    return { close }
+  },
 }
 
 // Direct processing service API (for direct calls to Python service)
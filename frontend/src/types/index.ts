@@ -65,6 +65,19 @@ export interface ProcessingJob {
   updatedAt: string
 }
 
+// An event of a job's event stream: the job's state on connecting, then each change
+export interface JobEvent {
+  jobId: number
+  type?: 'QUEUED' | 'STARTED' | 'PROGRESS' | 'COMPLETED' | 'FAILED'
+  status: ProcessingJob['status']
+  error?: string
+  [detail: string]: unknown
+}
+
+export interface JobEventStream {
+  close: () => void
+}
+
 // API Response types
 export interface ApiResponse<T> {
   success: boolean
@@ -94,6 +107,7 @@ export interface PreprocessRequest {
   bandpass?: [number, number]
   notch?: number
   artifact?: boolean
+  zeroPhase?: boolean
 }
 
 export interface PreprocessResponse {
@@ -119,6 +133,11 @@ export interface BandPowerAnalysis {
   channel: string
 }
 
+export interface SessionBandPowers {
+  bands: Record<string, [number, number]>
+  channels: BandPowerAnalysis[]
+}
+
 export interface ClassificationResult {
   predictedClass: string
   probabilities: Record<string, number>
@@ -3,12 +3,14 @@ EEG classification service using lightweight ML models
 """
 
 import os
+import json
 import logging
 import pickle
 from typing import Dict, List, Tuple
 import numpy as np
 from sklearn.preprocessing import StandardScaler
-from sklearn.ensemble import RandomForestClassifier
+from sklearn.ensemble import RandomForestClassifier, ExtraTreesClassifier
+from sklearn.linear_model import LogisticRegression
 from sklearn.model_selection import train_test_split
 from sklearn.metrics import classification_report
 
@@ -18,6 +20,14 @@ from app.services.signal_processor import SignalProcessor
 logger = logging.getLogger(__name__)
 settings = get_settings()
 
+# Names of the features _extract_features_single returns, in order; the backend checks an
+# exported model against its own extractor with them
+PORTABLE_FEATURES = [
+    "mean", "std", "var", "range", "rms",
+    "delta", "theta", "alpha", "beta", "gamma",
+    "psd_mean", "psd_std", "peak_frequency", "total_power",
+]
+
 
 class EEGClassifier:
     """EEG signal classification using machine learning"""
@@ -39,6 +49,7 @@ class EEGClassifier:
             if os.path.exists(self.model_path):
                 self._load_model()
                 logger.info("Loaded existing EEG classifier model")
+                self._export_portable_model()
             else:
                 self._create_model()
                 logger.info("Created new EEG classifier model")
@@ -68,6 +79,58 @@ class EEGClassifier:
         
         with open(self.model_path, 'wb') as f:
             pickle.dump(model_data, f)
+        
+        self._export_portable_model()
+    
+    def _export_portable_model(self, window_length: float = 2.0) -> None:
+        """Write the model as JSON so the backend can classify without calling this service"""
+        if isinstance(self.model, (RandomForestClassifier, ExtraTreesClassifier)):
+            model = {
+                'type': 'tree_ensemble',
+                'trees': [
+                    {
+                        'feature': tree.tree_.feature.tolist(),
+                        'threshold': tree.tree_.threshold.tolist(),
+                        'left': tree.tree_.children_left.tolist(),
+                        'right': tree.tree_.children_right.tolist(),
+                        'value': tree.tree_.value[:, 0, :].tolist(),
+                    }
+                    for tree in self.model.estimators_
+                ],
+            }
+        elif isinstance(self.model, LogisticRegression):
+            model = {
+                'type': 'linear',
+                'coefficients': self.model.coef_.tolist(),
+                'intercepts': self.model.intercept_.tolist(),
+            }
+        else:
+            logger.warning(f"{type(self.model).__name__} has no portable form; backend keeps calling /classify")
+            return
+        
+        portable = {
+            'format': 'neuroviz-classifier',
+            'version': 1,
+            # Probability columns follow the model's class order
+            'classes': [str(c) for c in self.model.classes_],
+            'features': PORTABLE_FEATURES,
+            'window_seconds': window_length,
+            'scaler': {
+                'mean': self.scaler.mean_.tolist(),
+                'scale': self.scaler.scale_.tolist(),
+            },
+            **model,
+        }
+        
+        try:
+            path = settings.PORTABLE_MODEL_PATH
+            os.makedirs(os.path.dirname(path), exist_ok=True)
+            temporary = path + '.tmp'
+            with open(temporary, 'w') as f:
+                json.dump(portable, f)
+            os.replace(temporary, path)
+        except OSError as e:
+            logger.warning(f"Could not export portable model: {e}")
     
     def _create_model(self) -> None:
         """Create and train a new model with synthetic data"""
@@ -33,6 +33,8 @@ class Settings(BaseSettings):
     # ML Model settings
     MODEL_PATH: str = "/app/models"
     DEFAULT_MODEL_NAME: str = "eeg_classifier.h5"
+    # JSON export of the model on the shared volume, evaluated by the backend
+    PORTABLE_MODEL_PATH: str = "/app/storage/models/eeg_classifier.json"
     
     # Logging
     LOG_LEVEL: str = "INFO"